@@ -5,6 +5,7 @@ import com.enable.ai.service.ChatService;
 import com.enable.ai.service.PromptRagService;
 import com.enable.ai.service.SseService;
 import com.enable.ai.util.PromptConstants;
+import com.enable.ai.util.StreamingXmlTagParser;
 import com.enable.ai.util.XmlTagExtractor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -72,14 +73,19 @@ public class ReActAgent implements AiAgent {
 
         log.info("\n### [STREAM CHAT BEGIN {}] #########################################################################", depth);
 
-        String answer = chatService.streamChat(userId, PromptConstants.SYSTEM_PROMPT_REACT_MODE, XmlTagExtractor.addXmlTagToUserPrompt(userPrompt, promptXmlTag), emitter);
+        // Each reasoning step is published as soon as its closing tag arrives; the stream stops after the final answer
+        StreamingXmlTagParser parser = new StreamingXmlTagParser(new StreamingXmlTagParser.Listener() {
+            @Override
+            public void onClose(String tag, String content) {
+                sseService.sendReasoningStepEvent(emitter, tag, content);
+            }
+        }, ReActAgentResponse.TAGS).stopAfter("final_answer");
+        String answer = chatService.streamChat(userId, PromptConstants.SYSTEM_PROMPT_REACT_MODE,
+                XmlTagExtractor.addXmlTagToUserPrompt(userPrompt, promptXmlTag), emitter, true, parser);
 
         log.info("\n### [STREAM CHAT END {}] ###########################################################################", depth);
 
-        ReActAgentResponse response = new ReActAgentResponse(answer);
-        sseService.sendEvent(emitter, response);
-
-        if (isFinalAnswerPresent(answer)) {
+        if (parser.isOpened("final_answer")) {
             return convertToFinalAnswer(answer);
         } else {
             return streamChatInternal(userId, answer, depth + 1, null, emitter);
@@ -1,6 +1,6 @@
 package com.enable.ai.agent.vo;
 
-import com.enable.ai.util.XmlTagExtractor;
+import com.enable.ai.util.StreamingXmlTagParser;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
@@ -10,6 +10,11 @@ import lombok.ToString;
 @ToString
 public class ReActAgentResponse {
 
+    /**
+     * 响应中的XML标签
+     */
+    public static final String[] TAGS = {"task", "thought", "action", "observation", "final_answer"};
+
     public ReActAgentResponse(String response) {
         extractAndCleanFromResponse(response);
     }
@@ -21,27 +26,23 @@ public class ReActAgentResponse {
     private String finalAnswer;
 
     /**
-     * 从响应字符串中提取各个字段的值
+     * 从响应字符串中提取各个字段的值（一次扫描）
      *
      * @param response 包含XML标签的响应字符串
      */
     public void extractFromResponse(String response) {
-        this.task = extractTagContent(response, "task");
-        this.thought = extractTagContent(response, "thought");
-        this.action = extractTagContent(response, "action");
-        this.observation = extractTagContent(response, "observation");
-        this.finalAnswer = extractTagContent(response, "final_answer");
+        extractFromParser(StreamingXmlTagParser.parse(response, TAGS));
     }
 
     /**
-     * 提取指定标签的内容
-     *
-     * @param response 响应字符串
-     * @param tagName  标签名称
-     * @return 标签内容，如果找不到返回null
+     * 从解析器中读取各个字段的值，标签未结束的字段为null
      */
-    private String extractTagContent(String response, String tagName) {
-        return XmlTagExtractor.extractXmlTagContent(response, tagName);
+    private void extractFromParser(StreamingXmlTagParser parser) {
+        this.task = parser.content("task");
+        this.thought = parser.content("thought");
+        this.action = parser.content("action");
+        this.observation = parser.content("observation");
+        this.finalAnswer = parser.content("final_answer");
     }
 
     /**
@@ -0,0 +1,60 @@
+package com.enable.ai.embedding;
+
+import com.google.common.primitives.Floats;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Primitive-backed embedding vector.
+ * The underlying float[] is shared (e.g. with the embedding cache) and must be treated as read-only.
+ * Boxing only happens at the Milvus SDK boundary through {@link #asFloatList()}.
+ */
+public final class Embedding {
+
+    private final float[] vector;
+
+    public Embedding(float[] vector) {
+        if (vector == null) {
+            throw new IllegalArgumentException("Embedding vector cannot be null");
+        }
+        this.vector = vector;
+    }
+
+    /**
+     * @return the backing array, do not mutate
+     */
+    public float[] vector() {
+        return vector;
+    }
+
+    public int dimension() {
+        return vector.length;
+    }
+
+    /**
+     * Fixed-size List<Float> view over the backing array, for APIs that only accept boxed vectors.
+     * No copy is made; elements are boxed lazily as they are read.
+     */
+    public List<Float> asFloatList() {
+        return Floats.asList(vector);
+    }
+
+    /**
+     * Convert embeddings into the List<List<Float>> shape expected by Milvus insert/search params
+     */
+    public static List<List<Float>> asFloatLists(List<Embedding> embeddings) {
+        List<List<Float>> vectors = new ArrayList<>(embeddings.size());
+        for (Embedding embedding : embeddings) {
+            vectors.add(embedding.asFloatList());
+        }
+        return vectors;
+    }
+
+    /**
+     * Copy a boxed vector returned by Milvus into a primitive embedding
+     */
+    public static Embedding fromFloatList(List<Float> values) {
+        return new Embedding(Floats.toArray(values));
+    }
+}
@@ -0,0 +1,169 @@
+package com.enable.ai.embedding;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent single-text embedding requests into batch calls.
+ * A dispatcher thread waits for the first pending request, then keeps collecting
+ * until either the window elapses or the batch is full, and hands the batch to a
+ * small worker pool so the next window can open while the HTTP call is in flight.
+ * Duplicate texts inside one batch are sent only once.
+ */
+@Slf4j
+public class EmbeddingBatcher implements AutoCloseable {
+
+    private final Function<List<String>, List<float[]>> batchEmbedder;
+    private final long windowNanos;
+    private final int maxBatchSize;
+
+    private final BlockingQueue<PendingRequest> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService workers;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+
+    public EmbeddingBatcher(Function<List<String>, List<float[]>> batchEmbedder,
+                            long windowMillis, int maxBatchSize, int maxConcurrentBatches) {
+        this.batchEmbedder = batchEmbedder;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxBatchSize = maxBatchSize;
+        this.workers = Executors.newFixedThreadPool(maxConcurrentBatches, new ThreadFactoryBuilder()
+                .setNameFormat("embedding-batch-%d")
+                .setDaemon(true)
+                .build());
+        this.dispatcher = new Thread(this::dispatchLoop, "embedding-batch-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Queue a text for the next batch
+     *
+     * @return future completed with the embedding vector once its batch returns
+     */
+    public CompletableFuture<float[]> submit(String text) {
+        CompletableFuture<float[]> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new IllegalStateException("EmbeddingBatcher is closed"));
+            return future;
+        }
+        requestCount.incrementAndGet();
+        PendingRequest request = new PendingRequest(text, future);
+        queue.add(request);
+        // close() may have drained the queue between the check above and the add; whoever removes the
+        // request from the queue owns it, so a late request is failed here instead of waiting forever
+        if (!running && queue.remove(request)) {
+            future.completeExceptionally(new IllegalStateException("EmbeddingBatcher is closed"));
+        }
+        return future;
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    private void dispatchLoop() {
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingRequest first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                List<PendingRequest> batch = new ArrayList<>();
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingRequest next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                queue.drainTo(batch, maxBatchSize - batch.size());
+
+                try {
+                    workers.execute(() -> executeBatch(batch));
+                } catch (RejectedExecutionException e) {
+                    log.warn("Embedding batch rejected, batcher is shutting down");
+                    IllegalStateException cause = new IllegalStateException("EmbeddingBatcher is closed");
+                    batch.forEach(request -> request.future().completeExceptionally(cause));
+                    break;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        failPending(new IllegalStateException("EmbeddingBatcher is closed"));
+    }
+
+    private void executeBatch(List<PendingRequest> batch) {
+        // Group callers by text so duplicates share one slot in the provider request
+        Map<String, List<CompletableFuture<float[]>>> callersByText = new LinkedHashMap<>();
+        for (PendingRequest request : batch) {
+            callersByText.computeIfAbsent(request.text(), t -> new ArrayList<>()).add(request.future());
+        }
+
+        List<String> texts = new ArrayList<>(callersByText.keySet());
+        try {
+            List<float[]> embeddings = batchEmbedder.apply(texts);
+            batchCount.incrementAndGet();
+            log.debug("Embedded batch of {} texts for {} callers", texts.size(), batch.size());
+
+            for (int i = 0; i < texts.size(); i++) {
+                float[] embedding = embeddings.get(i);
+                for (CompletableFuture<float[]> future : callersByText.get(texts.get(i))) {
+                    future.complete(embedding);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error embedding batch of {} texts: {}", texts.size(), e.getMessage(), e);
+            for (PendingRequest request : batch) {
+                request.future().completeExceptionally(e);
+            }
+        }
+    }
+
+    private void failPending(Exception cause) {
+        List<PendingRequest> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (PendingRequest request : remaining) {
+            request.future().completeExceptionally(cause);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdown();
+        failPending(new IllegalStateException("EmbeddingBatcher is closed"));
+    }
+
+    private record PendingRequest(String text, CompletableFuture<float[]> future) {
+    }
+}
@@ -0,0 +1,100 @@
+package com.enable.ai.embedding;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Content-addressed cache of embedding vectors.
+ * Entries are keyed by SHA-256 of (model name + text) and weighed by their
+ * primitive footprint, so the cache is bounded by a memory budget rather than
+ * an entry count.
+ * <p>
+ * Vectors are stored and returned without copying: the array handed to {@link #put} and every array
+ * returned by {@link #get} is shared with all other callers (and with the {@link Embedding}s wrapping
+ * it), so it must be treated as read-only. Copy it before normalizing or otherwise modifying it.
+ */
+@Slf4j
+@Component
+public class EmbeddingCache {
+
+    // float[] header + key object + HashCode bytes + Guava entry overhead (approximate)
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final Cache<HashCode, float[]> cache;
+    private final long maxBytes;
+
+    public EmbeddingCache(@Value("${embedding.cache.max-bytes:67108864}") long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((HashCode key, float[] value) -> weigh(value))
+                .recordStats()
+                .build();
+        log.info("EmbeddingCache initialized with a budget of {} bytes", maxBytes);
+    }
+
+    /**
+     * Build the cache key for a text embedded by the given model
+     */
+    public static HashCode key(String model, String text) {
+        return Hashing.sha256().newHasher()
+                .putString(model, StandardCharsets.UTF_8)
+                .putByte((byte) 0)
+                .putString(text, StandardCharsets.UTF_8)
+                .hash();
+    }
+
+    /**
+     * @return the cached vector, or null if absent. Callers must not mutate the returned array.
+     */
+    public float[] get(HashCode key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Store the vector as is; the caller must not modify it afterwards
+     */
+    public void put(HashCode key, float[] embedding) {
+        cache.put(key, embedding);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long hitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long missCount() {
+        return cache.stats().missCount();
+    }
+
+    public long evictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private static int weigh(float[] value) {
+        return ENTRY_OVERHEAD_BYTES + value.length * Float.BYTES;
+    }
+}
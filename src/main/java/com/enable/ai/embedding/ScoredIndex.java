@@ -0,0 +1,7 @@
+package com.enable.ai.embedding;
+
+/**
+ * Row index of a scored vector together with its similarity score
+ */
+public record ScoredIndex(int index, float score) {
+}
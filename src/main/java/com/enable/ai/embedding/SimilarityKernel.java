@@ -0,0 +1,14 @@
+package com.enable.ai.embedding;
+
+/**
+ * Low-level float[] reductions that {@link VectorKernels} builds on.
+ * Offsets allow rows of a contiguous matrix to be scored without copying.
+ */
+interface SimilarityKernel {
+
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    float squaredL2(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    String name();
+}
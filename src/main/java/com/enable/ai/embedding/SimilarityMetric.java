@@ -0,0 +1,7 @@
+package com.enable.ai.embedding;
+
+public enum SimilarityMetric {
+    DOT,     // 内积，适用于已归一化的向量
+    COSINE,  // 余弦相似度
+    L2       // 欧氏距离（分数为负的平方距离，越大越相似）
+}
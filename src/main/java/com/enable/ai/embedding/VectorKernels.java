@@ -0,0 +1,232 @@
+package com.enable.ai.embedding;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Similarity kernels over primitive float[] vectors.
+ * Uses the JDK Vector API when jdk.incubator.vector is available at runtime and falls back to a
+ * scalar implementation otherwise. Set -Dembedding.simd.enabled=false to force the scalar path.
+ */
+@Slf4j
+public final class VectorKernels {
+
+    private static final String SIMD_MODULE = "jdk.incubator.vector";
+    private static final String SIMD_KERNEL_CLASS = "com.enable.ai.embedding.PanamaSimilarityKernel";
+
+    private static final SimilarityKernel KERNEL = selectKernel();
+
+    private VectorKernels() {
+    }
+
+    /**
+     * @return name of the active kernel, e.g. "simd-256" or "scalar"
+     */
+    public static String kernelName() {
+        return KERNEL.name();
+    }
+
+    public static float dot(float[] a, float[] b) {
+        checkDimension(a, b);
+        return KERNEL.dot(a, 0, b, 0, a.length);
+    }
+
+    /**
+     * Dot product of two slices, e.g. rows of contiguous matrices
+     */
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return KERNEL.dot(a, aOffset, b, bOffset, length);
+    }
+
+    public static float squaredL2(float[] a, float[] b) {
+        checkDimension(a, b);
+        return KERNEL.squaredL2(a, 0, b, 0, a.length);
+    }
+
+    public static float l2(float[] a, float[] b) {
+        return (float) Math.sqrt(squaredL2(a, b));
+    }
+
+    public static float norm(float[] a) {
+        return (float) Math.sqrt(KERNEL.dot(a, 0, a, 0, a.length));
+    }
+
+    /**
+     * @return cosine similarity between -1 and 1, or 0 if either vector has zero length
+     */
+    public static float cosine(float[] a, float[] b) {
+        checkDimension(a, b);
+        float dot = KERNEL.dot(a, 0, b, 0, a.length);
+        float normA = KERNEL.dot(a, 0, a, 0, a.length);
+        float normB = KERNEL.dot(b, 0, b, 0, b.length);
+        if (normA == 0f || normB == 0f) {
+            return 0f;
+        }
+        return (float) (dot / Math.sqrt((double) normA * normB));
+    }
+
+    /**
+     * @return a unit-length copy of the vector, or the same array if its norm is zero
+     */
+    public static float[] normalize(float[] a) {
+        float norm = norm(a);
+        if (norm == 0f) {
+            return a;
+        }
+        float[] normalized = new float[a.length];
+        float inv = 1f / norm;
+        for (int i = 0; i < a.length; i++) {
+            normalized[i] = a[i] * inv;
+        }
+        return normalized;
+    }
+
+    /**
+     * Normalize the vector to unit length in place
+     */
+    public static void normalizeInPlace(float[] a) {
+        float norm = norm(a);
+        if (norm == 0f) {
+            return;
+        }
+        float inv = 1f / norm;
+        for (int i = 0; i < a.length; i++) {
+            a[i] *= inv;
+        }
+    }
+
+    /**
+     * Score one query against the matrix row at the given row index
+     */
+    public static float score(float[] query, float[] matrix, int row, SimilarityMetric metric) {
+        int dim = query.length;
+        int offset = row * dim;
+        switch (metric) {
+            case DOT:
+                return KERNEL.dot(query, 0, matrix, offset, dim);
+            case COSINE: {
+                float dot = KERNEL.dot(query, 0, matrix, offset, dim);
+                float rowNorm = KERNEL.dot(matrix, offset, matrix, offset, dim);
+                float queryNorm = KERNEL.dot(query, 0, query, 0, dim);
+                return rowNorm == 0f || queryNorm == 0f ? 0f : (float) (dot / Math.sqrt((double) rowNorm * queryNorm));
+            }
+            case L2:
+                return -KERNEL.squaredL2(query, 0, matrix, offset, dim);
+            default:
+                throw new IllegalArgumentException("Unsupported metric: " + metric);
+        }
+    }
+
+    /**
+     * Score one query against a contiguous row-major matrix of {@code rows} vectors and return the best k.
+     * Scores are "higher is more similar" for every metric; for L2 the score is the negated squared distance.
+     *
+     * @param query  query vector of dimension d
+     * @param matrix row-major matrix holding at least rows * d floats
+     * @param rows   number of rows to score
+     * @param k      number of results to return
+     * @return up to k results ordered by descending score
+     */
+    public static List<ScoredIndex> topK(float[] query, float[] matrix, int rows, int k, SimilarityMetric metric) {
+        if (matrix.length < rows * query.length) {
+            throw new IllegalArgumentException("Matrix holds fewer than " + rows + " rows of dimension " + query.length);
+        }
+        int capacity = Math.min(k, rows);
+        if (capacity <= 0) {
+            return List.of();
+        }
+
+        // Bounded min-heap on primitive arrays: the root is the worst of the current top k
+        int[] heapIndex = new int[capacity];
+        float[] heapScore = new float[capacity];
+        int size = 0;
+
+        for (int row = 0; row < rows; row++) {
+            float score = score(query, matrix, row, metric);
+            if (size < capacity) {
+                heapIndex[size] = row;
+                heapScore[size] = score;
+                siftUp(heapIndex, heapScore, size++);
+            } else if (score > heapScore[0]) {
+                heapIndex[0] = row;
+                heapScore[0] = score;
+                siftDown(heapIndex, heapScore, size);
+            }
+        }
+
+        // Pop in ascending order and fill from the back to get a descending list
+        ScoredIndex[] ordered = new ScoredIndex[size];
+        for (int n = size - 1; n >= 0; n--) {
+            ordered[n] = new ScoredIndex(heapIndex[0], heapScore[0]);
+            heapIndex[0] = heapIndex[n];
+            heapScore[0] = heapScore[n];
+            siftDown(heapIndex, heapScore, n);
+        }
+        List<ScoredIndex> results = new ArrayList<>(size);
+        for (ScoredIndex scoredIndex : ordered) {
+            results.add(scoredIndex);
+        }
+        return results;
+    }
+
+    private static void siftUp(int[] index, float[] score, int pos) {
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (score[pos] >= score[parent]) {
+                return;
+            }
+            swap(index, score, pos, parent);
+            pos = parent;
+        }
+    }
+
+    private static void siftDown(int[] index, float[] score, int size) {
+        int pos = 0;
+        while (true) {
+            int left = 2 * pos + 1;
+            if (left >= size) {
+                return;
+            }
+            int smallest = left + 1 < size && score[left + 1] < score[left] ? left + 1 : left;
+            if (score[pos] <= score[smallest]) {
+                return;
+            }
+            swap(index, score, pos, smallest);
+            pos = smallest;
+        }
+    }
+
+    private static void swap(int[] index, float[] score, int i, int j) {
+        int ti = index[i];
+        index[i] = index[j];
+        index[j] = ti;
+        float ts = score[i];
+        score[i] = score[j];
+        score[j] = ts;
+    }
+
+    private static void checkDimension(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Embeddings must have the same dimension");
+        }
+    }
+
+    private static SimilarityKernel selectKernel() {
+        boolean simdEnabled = Boolean.parseBoolean(System.getProperty("embedding.simd.enabled", "true"));
+        if (simdEnabled && ModuleLayer.boot().findModule(SIMD_MODULE).isPresent()) {
+            try {
+                SimilarityKernel kernel = (SimilarityKernel) Class.forName(SIMD_KERNEL_CLASS)
+                        .getDeclaredConstructor()
+                        .newInstance();
+                log.info("Using {} similarity kernel", kernel.name());
+                return kernel;
+            } catch (Throwable t) {
+                log.warn("Vector API kernel unavailable, falling back to scalar: {}", t.getMessage());
+            }
+        }
+        log.info("Using scalar similarity kernel (start the JVM with --add-modules {} to enable SIMD)", SIMD_MODULE);
+        return new ScalarSimilarityKernel();
+    }
+}
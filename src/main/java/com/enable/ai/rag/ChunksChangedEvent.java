@@ -0,0 +1,17 @@
+package com.enable.ai.rag;
+
+import com.enable.ai.rag.vo.RagChunk;
+
+import java.util.List;
+
+/**
+ * Published by the storage backends ({@link MilvusRagService}, {@link HnswRagService}) after chunks
+ * were written to or removed from a collection, so secondary indexes over chunk text can follow.
+ * Upserts of an existing id carry the same text (ids are content hashes).
+ *
+ * @param collectionName the collection that changed
+ * @param upserted       chunks written, with id and text
+ * @param removedIds     ids of chunks removed
+ */
+public record ChunksChangedEvent(String collectionName, List<RagChunk> upserted, List<String> removedIds) {
+}
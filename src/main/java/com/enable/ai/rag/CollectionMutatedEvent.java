@@ -0,0 +1,12 @@
+package com.enable.ai.rag;
+
+/**
+ * Published by {@link RoutingRagService} after the contents of a collection changed
+ * (chunks added, a document re-indexed or the collection deleted), so derived state such as
+ * cached retrieval results can be dropped.
+ *
+ * @param collectionName the collection that changed
+ * @param deleted        true if the whole collection was deleted
+ */
+public record CollectionMutatedEvent(String collectionName, boolean deleted) {
+}
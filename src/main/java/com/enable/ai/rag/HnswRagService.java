@@ -0,0 +1,316 @@
+package com.enable.ai.rag;
+
+import com.enable.ai.embedding.Embedding;
+import com.enable.ai.rag.hnsw.HnswIndex;
+import com.enable.ai.rag.vo.RagChunk;
+import com.enable.ai.rag.vo.ReindexResult;
+import com.enable.ai.rag.vo.RetrieveOptions;
+import com.enable.ai.service.EmbeddingService;
+import com.enable.ai.service.RagService;
+import com.enable.ai.util.AsyncUtils;
+import com.enable.ai.util.ContentHash;
+import com.enable.ai.util.TextChunker;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process RagService backed by one HNSW index per collection.
+ * Intended for small, hot collections (e.g. MCP_TOOLS) that are rebuilt at startup:
+ * lookups cost one embedding plus a local graph search, with no Milvus round trip.
+ * Data is kept in memory only and does not survive a restart.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HnswRagService implements RagService {
+
+    private final EmbeddingService embeddingService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Map<String, HnswIndex> indexes = new ConcurrentHashMap<>();
+
+    @Value("${rag.hnsw.m:16}")
+    private int m;
+
+    @Value("${rag.hnsw.ef-construction:200}")
+    private int efConstruction;
+
+    @Value("${rag.hnsw.ef-search:64}")
+    private int efSearch;
+
+    @Override
+    public void addChunkToCollection(String collectionName, RagChunk chunk) {
+        AsyncUtils.join(addChunkToCollectionAsync(collectionName, chunk));
+    }
+
+    @Override
+    public CompletableFuture<Void> addChunkToCollectionAsync(String collectionName, RagChunk chunk) {
+        String docId = chunk.getDocId() != null ? chunk.getDocId() : "";
+        String chunkId = ContentHash.chunkId(docId, chunk.getText());
+        if (getOrCreateIndex(collectionName).contains(chunkId)) {
+            log.debug("Chunk {} already present in local collection {}, skipping", chunkId, collectionName);
+            return CompletableFuture.completedFuture(null);
+        }
+        return embeddingService.generateEmbeddingAsync(chunk.getText())
+                .thenAccept(embedding -> {
+                    getOrCreateIndex(collectionName).add(chunkId, docId, chunk.getChunkIndex(), chunk.getText(), embedding.vector());
+                    publishChanges(collectionName, List.of(new RagChunk(chunkId, docId, chunk.getChunkIndex(), chunk.getText())), List.of());
+                    log.info("Successfully added chunk to local collection: {}", collectionName);
+                });
+    }
+
+    @Override
+    public List<RagChunk> retrieveTopKChunks(String collectionName, String query, int k, RetrieveOptions options) {
+        return AsyncUtils.join(retrieveTopKChunksAsync(collectionName, query, k, options));
+    }
+
+    @Override
+    public CompletableFuture<List<RagChunk>> retrieveTopKChunksAsync(String collectionName, String query, int k, RetrieveOptions options) {
+        if (!indexes.containsKey(collectionName)) {
+            log.warn("Local collection {} does not exist", collectionName);
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+
+        return embeddingService.generateEmbeddingAsync(query)
+                .thenCompose(queryEmbedding -> retrieveTopKChunksAsync(collectionName, query, queryEmbedding, k, options))
+                .exceptionally(e -> {
+                    log.error("Error retrieving chunks from local collection {}: {}", collectionName, e.getMessage(), e);
+                    return new ArrayList<>();
+                });
+    }
+
+    @Override
+    public CompletableFuture<List<RagChunk>> retrieveTopKChunksAsync(String collectionName, String query, Embedding queryEmbedding,
+                                                                     int k, RetrieveOptions options) {
+        HnswIndex index = indexes.get(collectionName);
+        if (index == null) {
+            log.warn("Local collection {} does not exist", collectionName);
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+
+        try {
+            List<RagChunk> chunks = new ArrayList<>();
+            int ef = options != null && options.getEf() != null ? options.getEf() : index.getEfSearch();
+            boolean includeVectors = options != null && options.isIncludeVectors();
+            for (HnswIndex.SearchHit hit : index.search(queryEmbedding.vector(), k, ef)) {
+                chunks.add(new RagChunk(hit.id(), hit.docId(), hit.chunkIndex(), hit.text(), hit.score(),
+                        includeVectors ? index.vector(hit.nodeId()) : null));
+            }
+            log.info("Retrieved {} chunks from local collection: {}", chunks.size(), collectionName);
+            return CompletableFuture.completedFuture(chunks);
+        } catch (Exception e) {
+            log.error("Error retrieving chunks from local collection {}: {}", collectionName, e.getMessage(), e);
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+    }
+
+    @Override
+    public List<List<RagChunk>> retrieveTopKChunksBatch(String collectionName, List<String> queries, int k) {
+        List<List<RagChunk>> results = new ArrayList<>(queries.size());
+        HnswIndex index = indexes.get(collectionName);
+        if (index == null) {
+            log.warn("Local collection {} does not exist", collectionName);
+        }
+        try {
+            List<Embedding> queryEmbeddings = index != null ? embeddingService.generateBatchEmbeddings(queries) : List.of();
+            for (int i = 0; i < queries.size(); i++) {
+                List<RagChunk> chunks = new ArrayList<>();
+                if (index != null) {
+                    for (HnswIndex.SearchHit hit : index.search(queryEmbeddings.get(i).vector(), k)) {
+                        chunks.add(new RagChunk(hit.id(), hit.docId(), hit.chunkIndex(), hit.text(), hit.score(), null));
+                    }
+                }
+                results.add(chunks);
+            }
+            return results;
+        } catch (Exception e) {
+            log.error("Error batch retrieving chunks from local collection {}: {}", collectionName, e.getMessage(), e);
+            results.clear();
+            queries.forEach(query -> results.add(new ArrayList<>()));
+            return results;
+        }
+    }
+
+    @Override
+    public void addContextToCollection(String collectionName, String context) {
+        AsyncUtils.join(addContextToCollectionAsync(collectionName, context));
+    }
+
+    @Override
+    public CompletableFuture<Void> addContextToCollectionAsync(String collectionName, String context) {
+        List<String> textChunks = TextChunker.chunkText(context);
+        if (textChunks.isEmpty()) {
+            log.warn("No chunks generated from context for local collection: {}", collectionName);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // Only embed chunks whose content hash is not in the index yet
+        HnswIndex index = getOrCreateIndex(collectionName);
+        Map<String, String> newChunks = new LinkedHashMap<>();
+        for (String chunk : textChunks) {
+            String chunkId = ContentHash.chunkId(chunk);
+            if (!index.contains(chunkId)) {
+                newChunks.putIfAbsent(chunkId, chunk);
+            }
+        }
+        if (newChunks.isEmpty()) {
+            log.info("All {} chunks already present in local collection: {}", textChunks.size(), collectionName);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        List<String> chunkIds = new ArrayList<>(newChunks.keySet());
+        List<CompletableFuture<Embedding>> futures = new ArrayList<>(chunkIds.size());
+        for (String chunkId : chunkIds) {
+            futures.add(embeddingService.generateEmbeddingAsync(newChunks.get(chunkId)));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenRun(() -> {
+                    List<RagChunk> added = new ArrayList<>(chunkIds.size());
+                    for (int i = 0; i < chunkIds.size(); i++) {
+                        String chunkId = chunkIds.get(i);
+                        int ordinal = textChunks.indexOf(newChunks.get(chunkId));
+                        index.add(chunkId, "", ordinal, newChunks.get(chunkId), futures.get(i).join().vector());
+                        added.add(new RagChunk(chunkId, "", ordinal, newChunks.get(chunkId)));
+                    }
+                    publishChanges(collectionName, added, List.of());
+                    log.info("Successfully added {} new of {} chunks from context to local collection: {}",
+                            chunkIds.size(), textChunks.size(), collectionName);
+                });
+    }
+
+    @Override
+    public ReindexResult reindexDocument(String collectionName, String docId, String text) {
+        HnswIndex index = getOrCreateIndex(collectionName);
+        Map<String, Integer> desired = new LinkedHashMap<>();
+        Map<String, String> texts = new HashMap<>();
+        List<String> textChunks = TextChunker.chunkText(text);
+        for (int i = 0; i < textChunks.size(); i++) {
+            String chunkId = ContentHash.chunkId(docId, textChunks.get(i));
+            if (desired.putIfAbsent(chunkId, i) == null) {
+                texts.put(chunkId, textChunks.get(i));
+            }
+        }
+
+        List<String> removedIds = new ArrayList<>();
+        int unchanged = 0;
+        int reordered = 0;
+        for (int nodeId : index.nodesOfDocument(docId)) {
+            String chunkId = index.id(nodeId);
+            Integer ordinal = desired.get(chunkId);
+            if (ordinal == null) {
+                removedIds.add(chunkId);
+            } else if (ordinal != index.chunkIndex(nodeId)) {
+                // Same content at a new position: update the ordinal in place, no embedding needed
+                index.add(chunkId, docId, ordinal, texts.get(chunkId), index.vector(nodeId));
+                reordered++;
+            } else {
+                unchanged++;
+            }
+        }
+
+        List<String> addedIds = new ArrayList<>();
+        for (String chunkId : desired.keySet()) {
+            if (!index.contains(chunkId)) {
+                addedIds.add(chunkId);
+            }
+        }
+        List<RagChunk> added = new ArrayList<>(addedIds.size());
+        if (!addedIds.isEmpty()) {
+            List<String> addedTexts = addedIds.stream().map(texts::get).toList();
+            List<Embedding> embeddings = embeddingService.generateBatchEmbeddings(addedTexts);
+            for (int i = 0; i < addedIds.size(); i++) {
+                String chunkId = addedIds.get(i);
+                index.add(chunkId, docId, desired.get(chunkId), addedTexts.get(i), embeddings.get(i).vector());
+                added.add(new RagChunk(chunkId, docId, desired.get(chunkId), addedTexts.get(i)));
+            }
+        }
+        // Remove stale chunks only once the new ones are in, as in the Milvus implementation
+        removedIds.forEach(index::remove);
+        publishChanges(collectionName, added, removedIds);
+
+        ReindexResult result = new ReindexResult(docId, addedIds.size(), removedIds.size(), unchanged, reordered);
+        log.info("Reindexed document {} in local collection {}: {}", docId, collectionName, result);
+        return result;
+    }
+
+    @Override
+    public String retrieveContext(String collectionName, String query, int k) {
+        return AsyncUtils.join(retrieveContextAsync(collectionName, query, k));
+    }
+
+    @Override
+    public void deleteCollection(String collectionName) {
+        if (indexes.remove(collectionName) != null) {
+            log.info("Successfully deleted local collection: {}", collectionName);
+        }
+    }
+
+    /**
+     * @return number of chunks in the local collection, 0 if it does not exist
+     */
+    public int size(String collectionName) {
+        HnswIndex index = indexes.get(collectionName);
+        return index != null ? index.liveSize() : 0;
+    }
+
+    /**
+     * Look up live chunks by id; unknown ids are skipped
+     *
+     * @param includeVectors whether to return the stored (normalized) vectors with the chunks
+     */
+    public List<RagChunk> getChunks(String collectionName, Collection<String> ids, boolean includeVectors) {
+        HnswIndex index = indexes.get(collectionName);
+        List<RagChunk> chunks = new ArrayList<>();
+        if (index == null) {
+            return chunks;
+        }
+        for (String id : ids) {
+            int nodeId = index.nodeId(id);
+            if (nodeId >= 0) {
+                chunks.add(new RagChunk(id, index.docId(nodeId), index.chunkIndex(nodeId), index.text(nodeId), null,
+                        includeVectors ? index.vector(nodeId) : null));
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Snapshot of all live chunks with their stored vectors, used to promote a collection to Milvus
+     */
+    public List<Map.Entry<RagChunk, Embedding>> exportCollection(String collectionName) {
+        HnswIndex index = indexes.get(collectionName);
+        if (index == null) {
+            return List.of();
+        }
+        int size = index.size();
+        List<Map.Entry<RagChunk, Embedding>> entries = new ArrayList<>(size);
+        for (int nodeId = 0; nodeId < size; nodeId++) {
+            if (!index.isRemoved(nodeId)) {
+                RagChunk chunk = new RagChunk(index.id(nodeId), index.docId(nodeId), index.chunkIndex(nodeId), index.text(nodeId));
+                entries.add(Map.entry(chunk, new Embedding(index.vector(nodeId))));
+            }
+        }
+        return entries;
+    }
+
+    private void publishChanges(String collectionName, List<RagChunk> upserted, List<String> removedIds) {
+        if (!upserted.isEmpty() || !removedIds.isEmpty()) {
+            eventPublisher.publishEvent(new ChunksChangedEvent(collectionName, upserted, removedIds));
+        }
+    }
+
+    private HnswIndex getOrCreateIndex(String collectionName) {
+        return indexes.computeIfAbsent(collectionName, name -> {
+            log.info("Creating local HNSW collection {} (M={}, efConstruction={}, efSearch={})",
+                    name, m, efConstruction, efSearch);
+            return new HnswIndex(embeddingService.getEmbeddingDimension(), m, efConstruction, efSearch);
+        });
+    }
+}
@@ -0,0 +1,161 @@
+package com.enable.ai.rag;
+
+import com.enable.ai.embedding.Embedding;
+import com.enable.ai.embedding.VectorKernels;
+import com.enable.ai.rag.lexical.Bm25Index;
+import com.enable.ai.rag.lexical.LexicalIndexService;
+import com.enable.ai.rag.vo.RagChunk;
+import com.enable.ai.rag.vo.RetrieveOptions;
+import com.enable.ai.service.RagService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Hybrid dense + lexical retrieval.
+ * <p>
+ * The dense search and the BM25 search each produce a ranked candidate list (k times
+ * rag.hybrid.candidate-multiplier), which are merged by weighted reciprocal rank fusion:
+ * score(chunk) = sum over lists of weight / (rrf-k + rank). RRF only uses ranks, so the L2/IP
+ * and BM25 scores never need to be calibrated against each other. Weights can be set per
+ * collection ("NAME=dense:lexical"); a lexical weight of 0 turns a collection back to dense only.
+ * Chunks found only by the lexical side are fetched by id from the collection, with their vectors,
+ * so they carry the same cosine score as dense hits.
+ */
+@Slf4j
+@Component
+public class HybridRetriever {
+
+    private final LexicalIndexService lexicalIndexService;
+    private final MilvusRagService milvusRagService;
+    private final HnswRagService hnswRagService;
+    private final boolean enabled;
+    private final double[] defaultWeights;
+    private final Map<String, double[]> collectionWeights = new HashMap<>();
+    private final int rrfK;
+    private final int candidateMultiplier;
+
+    public HybridRetriever(LexicalIndexService lexicalIndexService,
+                           MilvusRagService milvusRagService,
+                           HnswRagService hnswRagService,
+                           @Value("${rag.hybrid.enabled:true}") boolean enabled,
+                           @Value("${rag.hybrid.dense-weight:1.0}") double denseWeight,
+                           @Value("${rag.hybrid.lexical-weight:1.0}") double lexicalWeight,
+                           @Value("${rag.hybrid.weights:}") List<String> weights,
+                           @Value("${rag.hybrid.rrf-k:60}") int rrfK,
+                           @Value("${rag.hybrid.candidate-multiplier:4}") int candidateMultiplier) {
+        this.lexicalIndexService = lexicalIndexService;
+        this.milvusRagService = milvusRagService;
+        this.hnswRagService = hnswRagService;
+        this.enabled = enabled;
+        this.defaultWeights = new double[]{denseWeight, lexicalWeight};
+        for (String entry : weights) {
+            String[] nameAndWeights = entry.split("=", 2);
+            String[] pair = nameAndWeights.length == 2 ? nameAndWeights[1].split(":", 2) : new String[0];
+            if (pair.length == 2) {
+                collectionWeights.put(nameAndWeights[0].trim(),
+                        new double[]{Double.parseDouble(pair[0].trim()), Double.parseDouble(pair[1].trim())});
+            }
+        }
+        this.rrfK = rrfK;
+        this.candidateMultiplier = Math.max(1, candidateMultiplier);
+        log.info("Hybrid retrieval {} (weights dense:lexical {}:{}, per collection {}, rrf k {})",
+                enabled ? "enabled" : "disabled", denseWeight, lexicalWeight, weights, rrfK);
+    }
+
+    /**
+     * Top k chunks by fused rank of the dense search (through the given delegate) and the BM25 index
+     *
+     * @param queryEmbedding embedding of the query, used by the dense search and to score lexical-only hits
+     * @param local          whether the collection is served by the in-process index rather than Milvus
+     */
+    public CompletableFuture<List<RagChunk>> retrieveAsync(String collectionName, String query, Embedding queryEmbedding, int k,
+                                                           RetrieveOptions options, RagService dense, boolean local) {
+        double[] weights = collectionWeights.getOrDefault(collectionName, defaultWeights);
+        if (!enabled || weights[1] <= 0) {
+            return dense.retrieveTopKChunksAsync(collectionName, query, queryEmbedding, k, options);
+        }
+        int candidates = k * candidateMultiplier;
+        List<Bm25Index.Hit> lexicalHits = lexicalIndexService.search(collectionName, query, candidates, !local);
+        if (lexicalHits == null || lexicalHits.isEmpty()) {
+            return dense.retrieveTopKChunksAsync(collectionName, query, queryEmbedding, k, options);
+        }
+
+        CompletableFuture<List<RagChunk>> denseFuture = weights[0] > 0
+                ? dense.retrieveTopKChunksAsync(collectionName, query, queryEmbedding, candidates, options)
+                : CompletableFuture.completedFuture(List.of());
+        return denseFuture.thenCompose(denseChunks -> {
+            List<String> denseIds = denseChunks.stream().map(RagChunk::getId).toList();
+            List<String> lexicalIds = lexicalHits.stream().map(Bm25Index.Hit::id).toList();
+            List<String> fused = fuse(List.of(denseIds, lexicalIds), weights, rrfK);
+            List<String> topIds = fused.subList(0, Math.min(k, fused.size()));
+
+            Map<String, RagChunk> chunksById = new HashMap<>();
+            denseChunks.forEach(chunk -> chunksById.put(chunk.getId(), chunk));
+            List<String> missing = topIds.stream().filter(id -> !chunksById.containsKey(id)).toList();
+            return fetchScored(collectionName, queryEmbedding, missing, local, options != null && options.isIncludeVectors())
+                    .handle((fetched, e) -> {
+                        if (e != null) {
+                            log.error("Error fetching lexical hits from collection {}, using dense results: {}",
+                                    collectionName, e.getMessage(), e);
+                            return new ArrayList<>(denseChunks.subList(0, Math.min(k, denseChunks.size())));
+                        }
+                        fetched.forEach(chunk -> chunksById.put(chunk.getId(), chunk));
+                        List<RagChunk> result = new ArrayList<>(topIds.size());
+                        for (String id : topIds) {
+                            RagChunk chunk = chunksById.get(id);
+                            if (chunk != null) {
+                                result.add(chunk);
+                            }
+                        }
+                        log.debug("Hybrid retrieval in {}: {} dense + {} lexical candidates, {} fetched by id",
+                                collectionName, denseIds.size(), lexicalIds.size(), missing.size());
+                        return result;
+                    });
+        });
+    }
+
+    /**
+     * Weighted reciprocal rank fusion of ranked id lists; ties keep the order of first appearance
+     */
+    static List<String> fuse(List<List<String>> rankings, double[] weights, int rrfK) {
+        Map<String, Double> scores = new LinkedHashMap<>();
+        for (int list = 0; list < rankings.size(); list++) {
+            List<String> ranking = rankings.get(list);
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                scores.merge(ranking.get(rank), weights[list] / (rrfK + rank + 1), Double::sum);
+            }
+        }
+        List<Map.Entry<String, Double>> entries = new ArrayList<>(scores.entrySet());
+        entries.sort(Map.Entry.<String, Double>comparingByValue().reversed());
+        return entries.stream().map(Map.Entry::getKey).toList();
+    }
+
+    /**
+     * Fetch chunks by id and score them against the query embedding
+     */
+    private CompletableFuture<List<RagChunk>> fetchScored(String collectionName, Embedding queryEmbedding, List<String> ids,
+                                                          boolean local, boolean includeVectors) {
+        if (ids.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        CompletableFuture<List<RagChunk>> chunks = local
+                ? CompletableFuture.completedFuture(hnswRagService.getChunks(collectionName, ids, true))
+                : milvusRagService.getChunksAsync(collectionName, ids, true);
+        return chunks.thenApply(fetched -> {
+            float[] queryVector = VectorKernels.normalize(queryEmbedding.vector());
+            for (RagChunk chunk : fetched) {
+                if (chunk.getVector() != null) {
+                    chunk.setScore(VectorKernels.dot(queryVector, VectorKernels.normalize(chunk.getVector())));
+                    if (!includeVectors) {
+                        chunk.setVector(null);
+                    }
+                }
+            }
+            return fetched;
+        });
+    }
+}
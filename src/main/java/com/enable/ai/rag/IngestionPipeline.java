@@ -0,0 +1,296 @@
+package com.enable.ai.rag;
+
+import com.enable.ai.embedding.Embedding;
+import com.enable.ai.service.EmbeddingService;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pipelined bulk ingestion: chunks -> provider-sized embedding batches -> size-capped insert batches.
+ * <p>
+ * Embedding runs on a bounded number of workers and is throttled by a shared token-rate limiter
+ * (estimated at 4 characters per token) so bulk loads stay under the provider quota. Stages are
+ * connected by bounded queues, so a slow insert stage back-pressures embedding and a slow provider
+ * back-pressures the producer. Insert batches are capped by row count and estimated payload bytes
+ * to stay under the gRPC message limit.
+ */
+@Slf4j
+@Component
+public class IngestionPipeline {
+
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int ID_BYTES = 36;
+    private static final long POLL_MILLIS = 100;
+    private static final List<Embedding> END_OF_EMBEDDINGS = List.of();
+    private static final List<String> END_OF_INPUT = Collections.unmodifiableList(new ArrayList<>());
+
+    private final EmbeddingService embeddingService;
+    private final int embedBatchSize;
+    private final int embedConcurrency;
+    private final int queueCapacity;
+    private final int insertBatchRows;
+    private final long insertBatchBytes;
+    private final RateLimiter tokenRateLimiter;
+    private final ExecutorService executor;
+
+    public IngestionPipeline(EmbeddingService embeddingService,
+                             @Value("${rag.ingest.embed-batch-size:64}") int embedBatchSize,
+                             @Value("${rag.ingest.embed-concurrency:4}") int embedConcurrency,
+                             @Value("${rag.ingest.queue-capacity:8}") int queueCapacity,
+                             @Value("${rag.ingest.insert-batch-rows:1000}") int insertBatchRows,
+                             @Value("${rag.ingest.insert-batch-bytes:16777216}") long insertBatchBytes,
+                             @Value("${rag.ingest.tokens-per-second:0}") double tokensPerSecond) {
+        this.embeddingService = embeddingService;
+        this.embedBatchSize = embedBatchSize;
+        this.embedConcurrency = embedConcurrency;
+        this.queueCapacity = queueCapacity;
+        this.insertBatchRows = insertBatchRows;
+        this.insertBatchBytes = insertBatchBytes;
+        this.tokenRateLimiter = tokensPerSecond > 0 ? RateLimiter.create(tokensPerSecond) : null;
+        this.executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat("ingest-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Sink for one insert batch; called from a single inserter thread
+     */
+    @FunctionalInterface
+    public interface InsertSink {
+        void insert(List<String> texts, List<Embedding> embeddings);
+    }
+
+    /**
+     * Summary of one ingestion run
+     */
+    public record IngestionStats(int chunks, int embedBatches, int insertBatches, long elapsedMillis) {
+
+        public double chunksPerSecond() {
+            return elapsedMillis > 0 ? chunks * 1000.0 / elapsedMillis : chunks;
+        }
+    }
+
+    /**
+     * Run the pipeline on the caller thread (producer) plus pipeline workers and wait for completion
+     *
+     * @param label  name used in progress logs, e.g. the collection name
+     * @param chunks texts to embed and insert
+     * @param sink   receives size-capped batches of texts with their embeddings
+     */
+    public IngestionStats ingest(String label, List<String> chunks, InsertSink sink) {
+        return new Run(label, chunks, sink).execute();
+    }
+
+    /**
+     * Run the pipeline without blocking the caller
+     */
+    public CompletableFuture<IngestionStats> ingestAsync(String label, List<String> chunks, InsertSink sink) {
+        return CompletableFuture.supplyAsync(() -> ingest(label, chunks, sink), executor);
+    }
+
+    private static long estimateTokens(List<String> texts) {
+        long chars = 0;
+        for (String text : texts) {
+            chars += text.length();
+        }
+        return Math.max(1, chars / CHARS_PER_TOKEN);
+    }
+
+    private record EmbeddedBatch(List<String> texts, List<Embedding> embeddings) {
+    }
+
+    /**
+     * State of one ingestion: its queues, counters and first failure
+     */
+    private final class Run {
+        private final String label;
+        private final List<String> chunks;
+        private final InsertSink sink;
+        private final BlockingQueue<List<String>> embedQueue = new ArrayBlockingQueue<>(queueCapacity);
+        private final BlockingQueue<EmbeddedBatch> insertQueue = new ArrayBlockingQueue<>(queueCapacity);
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final AtomicInteger activeEmbedders = new AtomicInteger();
+        private final AtomicInteger embeddedChunks = new AtomicInteger();
+        private final AtomicInteger embedBatches = new AtomicInteger();
+        private final AtomicInteger insertedChunks = new AtomicInteger();
+        private final AtomicInteger insertBatches = new AtomicInteger();
+        private final long startNanos = System.nanoTime();
+
+        private Run(String label, List<String> chunks, InsertSink sink) {
+            this.label = label;
+            this.chunks = chunks;
+            this.sink = sink;
+        }
+
+        private IngestionStats execute() {
+            if (chunks.isEmpty()) {
+                return new IngestionStats(0, 0, 0, 0);
+            }
+            int workers = Math.max(1, Math.min(embedConcurrency, (chunks.size() + embedBatchSize - 1) / embedBatchSize));
+            activeEmbedders.set(workers);
+            List<Future<?>> tasks = new ArrayList<>(workers + 1);
+            for (int i = 0; i < workers; i++) {
+                tasks.add(executor.submit(this::embedLoop));
+            }
+            Future<?> inserter = executor.submit(this::insertLoop);
+            tasks.add(inserter);
+
+            try {
+                // Stage 1: provider-sized batches, blocking while the embedders are saturated
+                for (int start = 0; start < chunks.size() && failure.get() == null; start += embedBatchSize) {
+                    offer(embedQueue, chunks.subList(start, Math.min(start + embedBatchSize, chunks.size())));
+                }
+                for (int i = 0; i < workers; i++) {
+                    offer(embedQueue, END_OF_INPUT);
+                }
+                inserter.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            } catch (ExecutionException e) {
+                fail(e.getCause());
+            } finally {
+                if (failure.get() != null) {
+                    tasks.forEach(task -> task.cancel(true));
+                }
+            }
+
+            Throwable error = failure.get();
+            if (error != null) {
+                log.error("Ingestion into {} failed after {}/{} chunks: {}", label, insertedChunks.get(), chunks.size(), error.getMessage());
+                throw error instanceof RuntimeException runtimeException ? runtimeException : new RuntimeException("Ingestion failed", error);
+            }
+
+            IngestionStats stats = new IngestionStats(chunks.size(), embedBatches.get(), insertBatches.get(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            log.info("Ingested {} chunks into {} in {} ms ({} embed batches, {} insert batches, {} chunks/s)",
+                    stats.chunks(), label, stats.elapsedMillis(), stats.embedBatches(), stats.insertBatches(),
+                    String.format("%.1f", stats.chunksPerSecond()));
+            return stats;
+        }
+
+        /**
+         * Stage 2: embed batches under the concurrency and token-rate limits
+         */
+        private void embedLoop() {
+            try {
+                while (failure.get() == null) {
+                    List<String> batch = embedQueue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (batch == null) {
+                        continue;
+                    }
+                    if (batch == END_OF_INPUT) {
+                        break;
+                    }
+                    if (tokenRateLimiter != null) {
+                        tokenRateLimiter.acquire((int) Math.min(Integer.MAX_VALUE, estimateTokens(batch)));
+                    }
+                    List<Embedding> embeddings = embeddingService.generateBatchEmbeddings(batch);
+                    embedBatches.incrementAndGet();
+                    int embedded = embeddedChunks.addAndGet(batch.size());
+                    log.debug("Ingestion into {}: embedded {}/{} chunks", label, embedded, chunks.size());
+                    offer(insertQueue, new EmbeddedBatch(batch, embeddings));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            } catch (Throwable t) {
+                fail(t);
+            } finally {
+                // The last embedder to finish tells the inserter that no more batches will come
+                if (activeEmbedders.decrementAndGet() == 0 && failure.get() == null) {
+                    try {
+                        offer(insertQueue, new EmbeddedBatch(END_OF_INPUT, END_OF_EMBEDDINGS));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        fail(e);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Stage 3: regroup embedded rows into insert batches capped by rows and bytes
+         */
+        private void insertLoop() {
+            int bytesPerVector = embeddingService.getEmbeddingDimension() * Float.BYTES;
+            List<String> texts = new ArrayList<>();
+            List<Embedding> embeddings = new ArrayList<>();
+            long bytes = 0;
+            try {
+                while (failure.get() == null) {
+                    EmbeddedBatch batch = insertQueue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (batch == null) {
+                        continue;
+                    }
+                    if (batch.texts() == END_OF_INPUT) {
+                        break;
+                    }
+                    for (int i = 0; i < batch.texts().size(); i++) {
+                        String text = batch.texts().get(i);
+                        long rowBytes = text.getBytes(StandardCharsets.UTF_8).length + ID_BYTES + bytesPerVector;
+                        if (!texts.isEmpty() && (texts.size() >= insertBatchRows || bytes + rowBytes > insertBatchBytes)) {
+                            flush(texts, embeddings);
+                            texts = new ArrayList<>();
+                            embeddings = new ArrayList<>();
+                            bytes = 0;
+                        }
+                        texts.add(text);
+                        embeddings.add(batch.embeddings().get(i));
+                        bytes += rowBytes;
+                    }
+                }
+                if (!texts.isEmpty() && failure.get() == null) {
+                    flush(texts, embeddings);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            } catch (Throwable t) {
+                fail(t);
+            }
+        }
+
+        private void flush(List<String> texts, List<Embedding> embeddings) {
+            sink.insert(texts, embeddings);
+            insertBatches.incrementAndGet();
+            int inserted = insertedChunks.addAndGet(texts.size());
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            log.info("Ingestion into {}: inserted {}/{} chunks ({} chunks/s)", label, inserted, chunks.size(),
+                    String.format("%.1f", seconds > 0 ? inserted / seconds : inserted));
+        }
+
+        /**
+         * Blocking put that gives up once another stage has failed
+         */
+        private <T> void offer(BlockingQueue<T> queue, T item) throws InterruptedException {
+            while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (failure.get() != null) {
+                    return;
+                }
+            }
+        }
+
+        private void fail(Throwable t) {
+            failure.compareAndSet(null, t);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.enable.ai.rag;
+
+import io.milvus.client.MilvusServiceClient;
+import io.milvus.grpc.CollectionSchema;
+import io.milvus.grpc.DescribeCollectionResponse;
+import io.milvus.grpc.GetLoadStateResponse;
+import io.milvus.grpc.LoadState;
+import io.milvus.grpc.ShowCollectionsResponse;
+import io.milvus.param.R;
+import io.milvus.param.RpcStatus;
+import io.milvus.param.collection.*;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared lifecycle manager for Milvus collections.
+ * Caches existence, schema and load state per collection so a steady-state read does no
+ * metadata RPCs, and collapses concurrent create/load calls for the same collection into a
+ * single in-flight operation. Missing collections are cached for a short time (negative cache);
+ * everything is invalidated when the collection is dropped through this manager.
+ */
+@Slf4j
+@Component
+public class MilvusCollectionManager {
+
+    private final MilvusServiceClient milvusClient;
+    private final long negativeTtlMillis;
+    private final long loadTimeoutSeconds;
+
+    private final Map<String, CollectionState> states = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> inFlightCreates = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> inFlightLoads = new ConcurrentHashMap<>();
+
+    public MilvusCollectionManager(MilvusServiceClient milvusClient,
+                                   @Value("${milvus.collection.negative-ttl-ms:5000}") long negativeTtlMillis,
+                                   @Value("${milvus.collection.load-timeout-seconds:30}") long loadTimeoutSeconds) {
+        this.milvusClient = milvusClient;
+        this.negativeTtlMillis = negativeTtlMillis;
+        this.loadTimeoutSeconds = loadTimeoutSeconds;
+    }
+
+    /**
+     * Check if a collection exists, using the cached answer when available
+     */
+    public boolean exists(String collectionName) {
+        CollectionState state = states.get(collectionName);
+        if (state != null && (state.exists || System.currentTimeMillis() - state.checkedAt < negativeTtlMillis)) {
+            return state.exists;
+        }
+
+        HasCollectionParam hasCollectionParam = HasCollectionParam.newBuilder()
+                .withCollectionName(collectionName)
+                .build();
+        R<Boolean> response = milvusClient.hasCollection(hasCollectionParam);
+        handleResponse(response, "Check collection existence: " + collectionName);
+
+        boolean exists = Boolean.TRUE.equals(response.getData());
+        states.put(collectionName, new CollectionState(exists));
+        return exists;
+    }
+
+    /**
+     * Create the collection with the given creator unless it already exists.
+     * Concurrent callers for the same collection wait for the single creator run.
+     */
+    public void ensureCreated(String collectionName, Runnable creator) {
+        if (exists(collectionName)) {
+            return;
+        }
+        singleFlight(inFlightCreates, collectionName, () -> {
+            // Re-check without the negative cache: another instance may have created it meanwhile
+            states.remove(collectionName);
+            if (!exists(collectionName)) {
+                creator.run();
+                states.put(collectionName, new CollectionState(true));
+            }
+        });
+    }
+
+    /**
+     * Make sure the collection is loaded into memory. Returns immediately once it is known to be loaded;
+     * otherwise a single caller issues a synchronous load and the others wait for it.
+     */
+    public void ensureLoaded(String collectionName) {
+        CollectionState state = states.get(collectionName);
+        if (state != null && state.loaded) {
+            return;
+        }
+        singleFlight(inFlightLoads, collectionName, () -> {
+            CollectionState current = states.computeIfAbsent(collectionName, name -> new CollectionState(true));
+            if (current.loaded) {
+                return;
+            }
+
+            GetLoadStateParam getLoadStateParam = GetLoadStateParam.newBuilder()
+                    .withCollectionName(collectionName)
+                    .build();
+            R<GetLoadStateResponse> stateResponse = milvusClient.getLoadState(getLoadStateParam);
+            if (stateResponse.getStatus() != R.Status.Success.getCode()
+                    || stateResponse.getData().getState() != LoadState.LoadStateLoaded) {
+                LoadCollectionParam loadParam = LoadCollectionParam.newBuilder()
+                        .withCollectionName(collectionName)
+                        .withSyncLoad(true)
+                        .withSyncLoadWaitingTimeout(loadTimeoutSeconds)
+                        .build();
+                R<RpcStatus> response = milvusClient.loadCollection(loadParam);
+                handleResponse(response, "Load collection " + collectionName);
+                log.debug("Successfully loaded collection: {}", collectionName);
+            }
+            current.loaded = true;
+        });
+    }
+
+    /**
+     * Release the collection from memory; the next {@link #ensureLoaded} loads it again
+     */
+    public void release(String collectionName) {
+        ReleaseCollectionParam releaseParam = ReleaseCollectionParam.newBuilder()
+                .withCollectionName(collectionName)
+                .build();
+        R<RpcStatus> response = milvusClient.releaseCollection(releaseParam);
+        CollectionState state = states.get(collectionName);
+        if (state != null) {
+            state.loaded = false;
+        }
+        handleResponse(response, "Release collection " + collectionName);
+        log.debug("Released collection: {}", collectionName);
+    }
+
+    /**
+     * Names of all collections in the database (not cached)
+     */
+    public List<String> listCollections() {
+        R<ShowCollectionsResponse> response = milvusClient.showCollections(ShowCollectionsParam.newBuilder().build());
+        handleResponse(response, "List collections");
+        return response.getData().getCollectionNamesList();
+    }
+
+    /**
+     * Schema of an existing collection, described once and then cached
+     */
+    public CollectionSchema getSchema(String collectionName) {
+        CollectionState state = states.get(collectionName);
+        if (state != null && state.schema != null) {
+            return state.schema;
+        }
+
+        DescribeCollectionParam describeParam = DescribeCollectionParam.newBuilder()
+                .withCollectionName(collectionName)
+                .build();
+        R<DescribeCollectionResponse> response = milvusClient.describeCollection(describeParam);
+        handleResponse(response, "Describe collection " + collectionName);
+
+        CollectionSchema schema = response.getData().getSchema();
+        states.computeIfAbsent(collectionName, name -> new CollectionState(true)).schema = schema;
+        return schema;
+    }
+
+    /**
+     * Drop the collection if it exists and forget everything cached about it
+     *
+     * @return true if a collection was dropped
+     */
+    public boolean drop(String collectionName) {
+        states.remove(collectionName);
+        if (!exists(collectionName)) {
+            return false;
+        }
+
+        DropCollectionParam dropParam = DropCollectionParam.newBuilder()
+                .withCollectionName(collectionName)
+                .build();
+        R<RpcStatus> response = milvusClient.dropCollection(dropParam);
+        states.remove(collectionName);
+        handleResponse(response, "Delete collection " + collectionName);
+        return true;
+    }
+
+    /**
+     * Forget cached state, e.g. after an RPC reported the collection missing or not loaded
+     */
+    public void invalidate(String collectionName) {
+        states.remove(collectionName);
+    }
+
+    private void singleFlight(Map<String, CompletableFuture<Void>> inFlight, String collectionName, Runnable operation) {
+        CompletableFuture<Void> mine = new CompletableFuture<>();
+        CompletableFuture<Void> existing = inFlight.putIfAbsent(collectionName, mine);
+        if (existing != null) {
+            try {
+                existing.join();
+                return;
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        try {
+            operation.run();
+            mine.complete(null);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(collectionName, mine);
+        }
+    }
+
+    private <T> void handleResponse(R<T> response, String operation) {
+        if (response.getStatus() != R.Status.Success.getCode()) {
+            String errorMsg = String.format("%s failed: %s", operation, response.getMessage());
+            log.error(errorMsg);
+            throw new RuntimeException(errorMsg);
+        }
+    }
+
+    private static final class CollectionState {
+        private final boolean exists;
+        private final long checkedAt = System.currentTimeMillis();
+        private volatile boolean loaded;
+        private volatile CollectionSchema schema;
+
+        private CollectionState(boolean exists) {
+            this.exists = exists;
+        }
+    }
+}
@@ -0,0 +1,653 @@
+package com.enable.ai.rag;
+
+import com.enable.ai.embedding.Embedding;
+import com.enable.ai.embedding.VectorKernels;
+import com.enable.ai.rag.vo.RetrieveOptions;
+import com.google.common.primitives.Floats;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.milvus.client.MilvusServiceClient;
+import io.milvus.grpc.CollectionSchema;
+import io.milvus.grpc.DescribeCollectionResponse;
+import io.milvus.grpc.DescribeIndexResponse;
+import io.milvus.grpc.FieldSchema;
+import io.milvus.grpc.FlushResponse;
+import io.milvus.grpc.GetCollectionStatisticsResponse;
+import io.milvus.grpc.IndexState;
+import io.milvus.grpc.KeyValuePair;
+import io.milvus.param.IndexType;
+import io.milvus.param.MetricType;
+import io.milvus.param.R;
+import io.milvus.param.RpcStatus;
+import io.milvus.param.alias.AlterAliasParam;
+import io.milvus.param.alias.CreateAliasParam;
+import io.milvus.param.alias.DropAliasParam;
+import io.milvus.param.collection.*;
+import io.milvus.param.index.CreateIndexParam;
+import io.milvus.param.index.DescribeIndexParam;
+import io.milvus.response.DescIndexResponseWrapper;
+import io.milvus.response.GetCollStatResponseWrapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Per-collection vector index policy for Milvus.
+ * <p>
+ * The index type follows the collection size unless it is pinned in milvus.index.overrides:
+ * FLAT (exact) for small collections, HNSW up to a few million rows, IVF_SQ8 beyond that.
+ * With the IP metric vectors are normalized on write and query, so IP ranks by cosine similarity.
+ * Row counts are re-checked after every milvus.index.check-every-rows writes; when a collection
+ * outgrows its tier the index is rebuilt online. Milvus allows one index per field, so the new index
+ * is built in a shadow collection NAME_IX&lt;millis&gt; with the same schema while the old one keeps
+ * serving searches:
+ * <ol>
+ *     <li>create and load the shadow; the {@link CollectionWriter} of the collection mirrors new
+ *     writes and deletes into it;</li>
+ *     <li>after a grace period for writes already in flight, the writer copies the existing rows with
+ *     their stored vectors, and the shadow is flushed and its index build waited for;</li>
+ *     <li>reads and writes switch to the shadow, and NAME becomes an alias of it: an existing alias is
+ *     moved, a collection actually named NAME is dropped after another grace period first.</li>
+ * </ol>
+ * A rebuild that fails before the switch drops the shadow and leaves the collection as it was. The
+ * coordination state is in-process: writes through other instances only reach the old collection and
+ * are lost when it is dropped, so auto-rebuild is off by default and should only be enabled when a
+ * single instance writes the collections. Collections created before this policy keep their existing
+ * index and metric.
+ */
+@Slf4j
+@Component
+public class MilvusIndexManager {
+
+    private static final String AUTO = "AUTO";
+    private static final int DEFAULT_NLIST = 1024;
+    private static final int MIN_NLIST = 128;
+    private static final int MAX_NLIST = 65536;
+    private static final long INDEX_POLL_MILLIS = 1000;
+    static final String SHADOW_SUFFIX = "_IX";
+
+    private final MilvusServiceClient milvusClient;
+    private final MilvusCollectionManager collectionManager;
+    private final String defaultType;
+    private final Map<String, String> overrides = new HashMap<>();
+    private final MetricType metricType;
+    private final long flatMaxRows;
+    private final long hnswMaxRows;
+    private final int hnswM;
+    private final int hnswEfConstruction;
+    private final int defaultEf;
+    private final int defaultNprobe;
+    private final boolean autoRebuild;
+    private final long checkEveryRows;
+    private final int rebuildBatchSize;
+    private final long rebuildGraceMillis;
+    private final long rebuildTimeoutMillis;
+
+    private final Map<String, IndexState> states = new ConcurrentHashMap<>();
+
+    /**
+     * Shadow collections being filled, with the index they are built with
+     */
+    private final Map<String, IndexSpec> shadowSpecs = new ConcurrentHashMap<>();
+
+    /**
+     * Rebuilt collections served from their shadow while the collection name is switched over
+     */
+    private final Map<String, String> redirects = new ConcurrentHashMap<>();
+    private final ExecutorService rebuildExecutor;
+
+    public MilvusIndexManager(MilvusServiceClient milvusClient,
+                              MilvusCollectionManager collectionManager,
+                              @Value("${milvus.index.type:AUTO}") String defaultType,
+                              @Value("${milvus.index.overrides:}") List<String> overrides,
+                              @Value("${milvus.index.metric:IP}") String metricType,
+                              @Value("${milvus.index.flat-max-rows:5000}") long flatMaxRows,
+                              @Value("${milvus.index.hnsw-max-rows:2000000}") long hnswMaxRows,
+                              @Value("${milvus.index.hnsw-m:16}") int hnswM,
+                              @Value("${milvus.index.hnsw-ef-construction:200}") int hnswEfConstruction,
+                              @Value("${milvus.index.default-ef:64}") int defaultEf,
+                              @Value("${milvus.index.default-nprobe:16}") int defaultNprobe,
+                              @Value("${milvus.index.auto-rebuild:false}") boolean autoRebuild,
+                              @Value("${milvus.index.check-every-rows:1000}") long checkEveryRows,
+                              @Value("${milvus.index.rebuild-batch-size:1000}") int rebuildBatchSize,
+                              @Value("${milvus.index.rebuild-grace-ms:5000}") long rebuildGraceMillis,
+                              @Value("${milvus.index.rebuild-timeout-ms:3600000}") long rebuildTimeoutMillis) {
+        this.milvusClient = milvusClient;
+        this.collectionManager = collectionManager;
+        this.defaultType = defaultType.trim().toUpperCase(Locale.ROOT);
+        for (String override : overrides) {
+            String[] parts = override.split("=", 2);
+            if (parts.length == 2) {
+                this.overrides.put(parts[0].trim(), parts[1].trim().toUpperCase(Locale.ROOT));
+            }
+        }
+        this.metricType = MetricType.valueOf(metricType.trim().toUpperCase(Locale.ROOT));
+        this.flatMaxRows = flatMaxRows;
+        this.hnswMaxRows = hnswMaxRows;
+        this.hnswM = hnswM;
+        this.hnswEfConstruction = hnswEfConstruction;
+        this.defaultEf = defaultEf;
+        this.defaultNprobe = defaultNprobe;
+        this.autoRebuild = autoRebuild;
+        this.checkEveryRows = checkEveryRows;
+        this.rebuildBatchSize = rebuildBatchSize;
+        this.rebuildGraceMillis = rebuildGraceMillis;
+        this.rebuildTimeoutMillis = rebuildTimeoutMillis;
+        this.rebuildExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("milvus-index-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * Index type, metric and build parameters of one vector index
+     */
+    public record IndexSpec(IndexType indexType, MetricType metricType, int nlist) {
+
+        String extraParam(int hnswM, int hnswEfConstruction) {
+            return switch (indexType) {
+                case HNSW -> String.format("{\"M\":%d,\"efConstruction\":%d}", hnswM, hnswEfConstruction);
+                case IVF_FLAT, IVF_SQ8, IVF_PQ -> String.format("{\"nlist\":%d}", nlist);
+                default -> "{}";
+            };
+        }
+
+        public boolean normalizesVectors() {
+            return metricType == MetricType.IP;
+        }
+    }
+
+    /**
+     * The service that writes a collection's rows, which takes part in an online rebuild of its index
+     */
+    public interface CollectionWriter {
+
+        /**
+         * Mirror new writes and deletes of the collection into the shadow from now on
+         */
+        void startShadowWrites(String collectionName, String shadow);
+
+        /**
+         * Copy the rows of the source that the mirrored writes do not cover into the shadow
+         *
+         * @return number of rows copied
+         */
+        long copyToShadow(String collectionName, String source, String shadow, int batchSize);
+
+        /**
+         * Run the redirect and stop mirroring as one step, so that every write lands either in both
+         * collections or, through {@link #physical}, in the shadow only
+         */
+        void switchToShadow(String collectionName, Runnable redirect);
+
+        /**
+         * Stop mirroring after a failed rebuild
+         */
+        void stopShadowWrites(String collectionName);
+    }
+
+    /**
+     * Create the vector index of a new (empty) collection with the type chosen for its name
+     */
+    public void createVectorIndex(String collectionName, String fieldName, String indexName) {
+        IndexSpec spec = chooseSpec(collectionName, 0, metricType);
+        createIndex(collectionName, fieldName, indexName, spec, false);
+        states.put(collectionName, new IndexState(fieldName, indexName, spec));
+    }
+
+    /**
+     * Current index of the collection, described once and then cached
+     */
+    public IndexSpec spec(String collectionName, String fieldName, String indexName) {
+        IndexState state = states.get(collectionName);
+        if (state != null) {
+            return state.spec;
+        }
+        IndexSpec shadowSpec = shadowSpecs.get(collectionName);
+        if (shadowSpec != null) {
+            return shadowSpec;
+        }
+
+        DescribeIndexParam describeParam = DescribeIndexParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withFieldName(fieldName)
+                .build();
+        R<DescribeIndexResponse> response = milvusClient.describeIndex(describeParam);
+        handleResponse(response, "Describe index of collection " + collectionName);
+
+        DescIndexResponseWrapper.IndexDesc desc = new DescIndexResponseWrapper(response.getData()).getIndexDescByFieldName(fieldName);
+        IndexSpec spec = desc == null
+                ? new IndexSpec(IndexType.FLAT, MetricType.L2, 0)
+                : new IndexSpec(desc.getIndexType(), desc.getMetricType(), parseNlist(desc.getExtraParam()));
+        states.putIfAbsent(collectionName, new IndexState(fieldName, desc != null ? desc.getIndexName() : indexName, spec));
+        return states.get(collectionName).spec;
+    }
+
+    /**
+     * Search parameters for the index, using the per-request overrides when given
+     */
+    public String searchParams(IndexSpec spec, int k, RetrieveOptions options) {
+        return switch (spec.indexType()) {
+            case HNSW -> {
+                int ef = options != null && options.getEf() != null ? options.getEf() : defaultEf;
+                yield String.format("{\"ef\":%d}", Math.max(k, ef));
+            }
+            case IVF_FLAT, IVF_SQ8, IVF_PQ -> {
+                int nprobe = options != null && options.getNprobe() != null ? options.getNprobe() : defaultNprobe;
+                yield String.format("{\"nprobe\":%d}", Math.max(1, spec.nlist() > 0 ? Math.min(nprobe, spec.nlist()) : nprobe));
+            }
+            default -> "{}";
+        };
+    }
+
+    /**
+     * Vector in the form stored in the collection: unit length when the metric is IP
+     */
+    public List<Float> toStoredVector(IndexSpec spec, Embedding embedding) {
+        return spec.normalizesVectors()
+                ? Floats.asList(VectorKernels.normalize(embedding.vector()))
+                : embedding.asFloatList();
+    }
+
+    /**
+     * Search score as a similarity where higher is better. IP scores of the normalized vectors are
+     * cosine similarities already; squared L2 distances (older collections) map to cosine as 1 - d / 2
+     * for unit-length embeddings.
+     */
+    public float similarity(IndexSpec spec, float score) {
+        return spec.metricType() == MetricType.L2 ? 1 - score / 2 : score;
+    }
+
+    public List<List<Float>> toStoredVectors(IndexSpec spec, List<Embedding> embeddings) {
+        List<List<Float>> vectors = new ArrayList<>(embeddings.size());
+        for (Embedding embedding : embeddings) {
+            vectors.add(toStoredVector(spec, embedding));
+        }
+        return vectors;
+    }
+
+    /**
+     * Count rows written to the collection; schedules a size check once enough rows have arrived
+     *
+     * @param writer service writing the collection, which mirrors and copies rows if the index is rebuilt
+     */
+    public void recordWrites(String collectionName, int rows, CollectionWriter writer) {
+        IndexState state = states.get(collectionName);
+        if (!autoRebuild || state == null || overrides.containsKey(collectionName) || !AUTO.equals(defaultType)) {
+            return;
+        }
+        if (state.pendingWrites.addAndGet(rows) >= checkEveryRows && state.rebuild.isDone()) {
+            state.pendingWrites.set(0);
+            CompletableFuture<Void> rebuild = CompletableFuture.runAsync(() -> rebuildIfOutgrown(collectionName, state, writer), rebuildExecutor);
+            state.rebuild = rebuild.exceptionally(e -> {
+                log.error("Index rebuild for collection {} failed: {}", collectionName, e.getMessage(), e);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Whether the index of the collection is being rebuilt
+     */
+    public boolean isRebuilding(String collectionName) {
+        IndexState state = states.get(collectionName);
+        return state != null && !state.rebuild.isDone();
+    }
+
+    /**
+     * Collection actually read and written for a collection name (differs only while a rebuild switches over)
+     */
+    public String physical(String collectionName) {
+        return redirects.getOrDefault(collectionName, collectionName);
+    }
+
+    /**
+     * Make the name an alias of its newest shadow collection if a rebuild dropped the collection but
+     * did not get to create the alias
+     *
+     * @return whether the alias was created
+     */
+    public boolean restoreAlias(String collectionName) {
+        List<String> shadows = shadowsOf(collectionName);
+        if (shadows.isEmpty()) {
+            return false;
+        }
+        createAlias(collectionName, shadows.get(shadows.size() - 1));
+        return true;
+    }
+
+    /**
+     * Drop the collection, or the alias and the collection it refers to, with any shadow collections left behind
+     *
+     * @return true if a collection was dropped
+     */
+    public boolean drop(String collectionName) {
+        forget(collectionName);
+        boolean dropped = false;
+        if (collectionManager.exists(collectionName)) {
+            String source = resolve(collectionName);
+            if (!source.equals(collectionName)) {
+                R<RpcStatus> response = milvusClient.dropAlias(DropAliasParam.newBuilder()
+                        .withAlias(collectionName)
+                        .build());
+                handleResponse(response, "Drop alias " + collectionName);
+                collectionManager.invalidate(collectionName);
+                dropped = collectionManager.drop(source);
+            } else {
+                dropped = collectionManager.drop(collectionName);
+            }
+        }
+        for (String shadow : shadowsOf(collectionName)) {
+            dropped |= collectionManager.drop(shadow);
+        }
+        return dropped;
+    }
+
+    /**
+     * Forget cached index state, e.g. after the collection was dropped
+     */
+    public void forget(String collectionName) {
+        states.remove(collectionName);
+    }
+
+    private void rebuildIfOutgrown(String collectionName, IndexState state, CollectionWriter writer) {
+        GetCollectionStatisticsParam statisticsParam = GetCollectionStatisticsParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withFlush(false)
+                .build();
+        R<GetCollectionStatisticsResponse> response = milvusClient.getCollectionStatistics(statisticsParam);
+        handleResponse(response, "Get statistics of collection " + collectionName);
+        long rows = new GetCollStatResponseWrapper(response.getData()).getRowCount();
+
+        IndexSpec current = state.spec;
+        // Keep the metric: stored vectors were written for it
+        IndexSpec desired = chooseSpec(collectionName, rows, current.metricType());
+        if (tier(desired.indexType()) <= tier(current.indexType())) {
+            return;
+        }
+
+        String source = resolve(collectionName);
+        for (String stale : shadowsOf(collectionName)) {
+            if (!stale.equals(source)) {
+                // Left over from an interrupted rebuild; the collection itself is complete
+                collectionManager.drop(stale);
+                log.info("Dropped partial shadow collection {}", stale);
+            }
+        }
+        String shadow = collectionName + SHADOW_SUFFIX + System.currentTimeMillis();
+        log.info("Collection {} has {} rows, rebuilding index {} -> {} in shadow collection {}",
+                collectionName, rows, current.indexType(), desired.indexType(), shadow);
+        long start = System.currentTimeMillis();
+        shadowSpecs.put(shadow, desired);
+        boolean switched = false;
+        try {
+            createShadow(source, shadow, state, desired);
+            writer.startShadowWrites(collectionName, shadow);
+            TimeUnit.MILLISECONDS.sleep(rebuildGraceMillis);
+            long copied = writer.copyToShadow(collectionName, source, shadow, rebuildBatchSize);
+            awaitIndexed(shadow, state.fieldName);
+            log.info("Copied {} rows of collection {} into {} and built its {} index", copied, collectionName, shadow, desired.indexType());
+
+            writer.switchToShadow(collectionName, () -> {
+                redirects.put(collectionName, shadow);
+                state.spec = desired;
+            });
+            switched = true;
+            if (source.equals(collectionName)) {
+                // The name is the collection itself: it can only become an alias once the collection is gone
+                TimeUnit.MILLISECONDS.sleep(rebuildGraceMillis);
+                collectionManager.drop(source);
+                createAlias(collectionName, shadow);
+            } else {
+                R<RpcStatus> alterResponse = milvusClient.alterAlias(AlterAliasParam.newBuilder()
+                        .withCollectionName(shadow)
+                        .withAlias(collectionName)
+                        .build());
+                handleResponse(alterResponse, "Alter alias " + collectionName);
+            }
+            redirects.remove(collectionName);
+            collectionManager.invalidate(collectionName);
+            if (!source.equals(collectionName)) {
+                TimeUnit.MILLISECONDS.sleep(rebuildGraceMillis);
+                collectionManager.drop(source);
+            }
+            log.info("Rebuilt index of collection {} as {} in {} ms", collectionName, desired.indexType(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            if (switched) {
+                // Writes since the switch are only in the shadow: keep serving from it
+                log.error("Switching collection {} over to {} failed, serving it from {} until restart: {}",
+                        collectionName, shadow, shadow, e.getMessage());
+            } else {
+                // Until the switch the old collection holds every row, so it simply keeps serving
+                writer.stopShadowWrites(collectionName);
+                dropQuietly(shadow);
+            }
+            throw e instanceof RuntimeException runtime ? runtime : new RuntimeException(e);
+        } finally {
+            shadowSpecs.remove(shadow);
+        }
+    }
+
+    /**
+     * Create and load an empty copy of the source collection: same fields and scalar indexes, the vector
+     * index with the new spec
+     */
+    private void createShadow(String source, String shadow, IndexState state, IndexSpec spec) {
+        R<DescribeCollectionResponse> described = milvusClient.describeCollection(DescribeCollectionParam.newBuilder()
+                .withCollectionName(source)
+                .build());
+        handleResponse(described, "Describe collection " + source);
+        CollectionSchema sourceSchema = described.getData().getSchema();
+
+        List<FieldType> fields = new ArrayList<>(sourceSchema.getFieldsCount());
+        for (FieldSchema field : sourceSchema.getFieldsList()) {
+            fields.add(toFieldType(field));
+        }
+        CreateCollectionParam.Builder createParam = CreateCollectionParam.newBuilder()
+                .withCollectionName(shadow)
+                .withSchema(CollectionSchemaParam.newBuilder()
+                        .withFieldTypes(fields)
+                        .withEnableDynamicField(sourceSchema.getEnableDynamicField())
+                        .build())
+                .withShardsNum(described.getData().getShardsNum());
+        if (sourceSchema.getFieldsList().stream().anyMatch(FieldSchema::getIsPartitionKey)) {
+            createParam.withPartitionsNum((int) described.getData().getNumPartitions());
+        }
+        handleResponse(milvusClient.createCollection(createParam.build()), "Create shadow collection " + shadow);
+
+        R<DescribeIndexResponse> indexes = milvusClient.describeIndex(DescribeIndexParam.newBuilder()
+                .withCollectionName(source)
+                .build());
+        handleResponse(indexes, "Describe indexes of collection " + source);
+        for (DescIndexResponseWrapper.IndexDesc desc : new DescIndexResponseWrapper(indexes.getData()).getIndexDescriptions()) {
+            if (state.fieldName.equals(desc.getFieldName())) {
+                continue;
+            }
+            R<RpcStatus> indexResponse = milvusClient.createIndex(CreateIndexParam.newBuilder()
+                    .withCollectionName(shadow)
+                    .withFieldName(desc.getFieldName())
+                    .withIndexName(desc.getIndexName())
+                    .build());
+            handleResponse(indexResponse, "Create " + desc.getFieldName() + " index for collection " + shadow);
+        }
+        createIndex(shadow, state.fieldName, state.indexName, spec, false);
+        collectionManager.ensureLoaded(shadow);
+    }
+
+    /**
+     * Flush the shadow and wait until its sealed segments are indexed
+     */
+    private void awaitIndexed(String shadow, String fieldName) throws InterruptedException {
+        R<FlushResponse> flushResponse = milvusClient.flush(FlushParam.newBuilder()
+                .withCollectionNames(List.of(shadow))
+                .build());
+        handleResponse(flushResponse, "Flush collection " + shadow);
+
+        long deadline = System.currentTimeMillis() + rebuildTimeoutMillis;
+        while (true) {
+            R<DescribeIndexResponse> response = milvusClient.describeIndex(DescribeIndexParam.newBuilder()
+                    .withCollectionName(shadow)
+                    .withFieldName(fieldName)
+                    .build());
+            handleResponse(response, "Describe index of collection " + shadow);
+            DescIndexResponseWrapper.IndexDesc desc = new DescIndexResponseWrapper(response.getData()).getIndexDescByFieldName(fieldName);
+            if (desc != null && desc.getIndexState() == IndexState.Failed) {
+                throw new IllegalStateException("Index build of collection " + shadow + " failed: " + desc.getIndexFailedReason());
+            }
+            if (desc != null && desc.getIndexState() == IndexState.Finished && desc.getPendingIndexRows() == 0) {
+                return;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Index of collection " + shadow + " not built after " + rebuildTimeoutMillis + " ms");
+            }
+            TimeUnit.MILLISECONDS.sleep(INDEX_POLL_MILLIS);
+        }
+    }
+
+    /**
+     * Name of the collection the name refers to: the collection itself, or the target of the alias
+     */
+    private String resolve(String collectionName) {
+        R<DescribeCollectionResponse> response = milvusClient.describeCollection(DescribeCollectionParam.newBuilder()
+                .withCollectionName(collectionName)
+                .build());
+        handleResponse(response, "Describe collection " + collectionName);
+        return response.getData().getSchema().getName();
+    }
+
+    /**
+     * Shadow collections of the name, oldest first
+     */
+    private List<String> shadowsOf(String collectionName) {
+        Pattern pattern = Pattern.compile(Pattern.quote(collectionName + SHADOW_SUFFIX) + "(\\d+)");
+        return collectionManager.listCollections().stream()
+                .filter(name -> pattern.matcher(name).matches())
+                .sorted(Comparator.comparingLong(name -> Long.parseLong(name.substring(collectionName.length() + SHADOW_SUFFIX.length()))))
+                .toList();
+    }
+
+    private void createAlias(String alias, String collectionName) {
+        CreateAliasParam aliasParam = CreateAliasParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withAlias(alias)
+                .build();
+        handleResponse(milvusClient.createAlias(aliasParam), "Create alias " + alias + " for collection " + collectionName);
+        collectionManager.invalidate(alias);
+        log.info("Collection name {} now refers to collection {}", alias, collectionName);
+    }
+
+    private void dropQuietly(String collectionName) {
+        try {
+            collectionManager.drop(collectionName);
+        } catch (RuntimeException e) {
+            log.warn("Dropping collection {} failed, the next rebuild drops it: {}", collectionName, e.getMessage());
+        }
+    }
+
+    private static FieldType toFieldType(FieldSchema field) {
+        FieldType.Builder builder = FieldType.newBuilder()
+                .withName(field.getName())
+                .withDescription(field.getDescription())
+                .withDataType(field.getDataType())
+                .withPrimaryKey(field.getIsPrimaryKey())
+                .withAutoID(field.getAutoID())
+                .withPartitionKey(field.getIsPartitionKey());
+        for (KeyValuePair param : field.getTypeParamsList()) {
+            switch (param.getKey()) {
+                case "dim" -> builder.withDimension(Integer.parseInt(param.getValue()));
+                case "max_length" -> builder.withMaxLength(Integer.parseInt(param.getValue()));
+                default -> {
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private void createIndex(String collectionName, String fieldName, String indexName, IndexSpec spec, boolean waitForBuild) {
+        CreateIndexParam indexParam = CreateIndexParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withFieldName(fieldName)
+                .withIndexName(indexName)
+                .withIndexType(spec.indexType())
+                .withMetricType(spec.metricType())
+                .withExtraParam(spec.extraParam(hnswM, hnswEfConstruction))
+                .withSyncMode(waitForBuild)
+                .build();
+
+        R<RpcStatus> response = milvusClient.createIndex(indexParam);
+        handleResponse(response, "Create index for collection " + collectionName);
+        log.info("Created {} index ({}) for collection: {}", spec.indexType(), spec.metricType(), collectionName);
+    }
+
+    private IndexSpec chooseSpec(String collectionName, long rows, MetricType metric) {
+        String type = overrides.getOrDefault(collectionName, defaultType);
+        IndexType indexType;
+        if (AUTO.equals(type)) {
+            indexType = rows <= flatMaxRows ? IndexType.FLAT : rows <= hnswMaxRows ? IndexType.HNSW : IndexType.IVF_SQ8;
+        } else {
+            indexType = IndexType.valueOf(type);
+        }
+        // Rule of thumb: nlist ~ 4 * sqrt(rows); an IVF index pinned on an empty collection gets the old default
+        int nlist = rows > 0 ? (int) Math.max(MIN_NLIST, Math.min(MAX_NLIST, 4 * Math.sqrt(rows))) : DEFAULT_NLIST;
+        return new IndexSpec(indexType, metric, nlist);
+    }
+
+    private static int tier(IndexType indexType) {
+        return switch (indexType) {
+            case FLAT -> 0;
+            case HNSW, IVF_FLAT -> 1;
+            default -> 2;
+        };
+    }
+
+    private static int parseNlist(String extraParam) {
+        if (extraParam == null) {
+            return 0;
+        }
+        int at = extraParam.indexOf("\"nlist\"");
+        if (at < 0) {
+            return 0;
+        }
+        String digits = extraParam.substring(extraParam.indexOf(':', at) + 1).replaceAll("^\\D*(\\d+).*$", "$1");
+        try {
+            return Integer.parseInt(digits);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private <T> void handleResponse(R<T> response, String operation) {
+        if (response.getStatus() != R.Status.Success.getCode()) {
+            String errorMsg = String.format("%s failed: %s", operation, response.getMessage());
+            log.error(errorMsg);
+            throw new RuntimeException(errorMsg);
+        }
+    }
+
+    private static final class IndexState {
+        private final String fieldName;
+        private final String indexName;
+        private volatile IndexSpec spec;
+        private volatile CompletableFuture<Void> rebuild = CompletableFuture.completedFuture(null);
+        private final AtomicLong pendingWrites = new AtomicLong();
+
+        private IndexState(String fieldName, String indexName, IndexSpec spec) {
+            this.fieldName = fieldName;
+            this.indexName = indexName;
+            this.spec = spec;
+        }
+    }
+}
@@ -1,37 +1,118 @@
 package com.enable.ai.rag;
 
+import com.enable.ai.embedding.Embedding;
+import com.enable.ai.embedding.VectorKernels;
 import com.enable.ai.rag.vo.PromptWithScore;
+import com.enable.ai.rag.vo.PurgeJob;
+import com.enable.ai.rag.vo.RetrieveOptions;
 import com.enable.ai.rag.vo.SortType;
 import com.enable.ai.service.EmbeddingService;
 import com.enable.ai.service.PromptRagService;
+import com.enable.ai.util.AsyncUtils;
 import com.enable.ai.util.Constants;
 import io.milvus.client.MilvusServiceClient;
+import io.milvus.common.clientenum.ConsistencyLevelEnum;
 import io.milvus.grpc.DataType;
+import io.milvus.grpc.FlushResponse;
 import io.milvus.grpc.MutationResult;
-import io.milvus.grpc.QueryResults;
-import io.milvus.grpc.SearchResults;
 import io.milvus.param.R;
 import io.milvus.param.RpcStatus;
+import io.milvus.param.alias.CreateAliasParam;
 import io.milvus.param.collection.*;
 import io.milvus.param.dml.*;
 import io.milvus.param.index.CreateIndexParam;
+import io.milvus.orm.iterator.QueryIterator;
 import io.milvus.response.QueryResultsWrapper;
 import io.milvus.response.SearchResultsWrapper;
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
-
+import java.util.stream.Stream;
+
+/**
+ * Prompt history in Milvus, one row per prompt with the owning user_id.
+ * <p>
+ * New collections make user_id the partition key, so Milvus hashes users into partitions and a
+ * search or delete filtered by user_id only touches that user's partition. Collections created
+ * before are moved over online by the {@link PromptCollectionMigrator}; while a migration runs,
+ * writes and deletes go to both collections and reads stay on the old one, and once it finishes
+ * the collection name is an alias of the partitioned collection. Index rebuilds (see
+ * {@link MilvusIndexManager}) use the same dual writes and copy into a shadow collection.
+ * <p>
+ * With time buckets enabled (see {@link PromptBucketManager}) new prompts go to a collection per
+ * month instead. Related-prompt searches start with the newest buckets and expand to older ones,
+ * down to the collection itself, only while fewer than k prompts clear the minimum score; listing
+ * and deleting a user's prompts cover every bucket.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
-public class MilvusPromptRagService implements PromptRagService {
+public class MilvusPromptRagService implements PromptRagService, MilvusIndexManager.CollectionWriter {
 
     private final MilvusServiceClient milvusClient;
     private final EmbeddingService embeddingService;
+    private final MilvusCollectionManager collectionManager;
+    private final MilvusIndexManager indexManager;
+    private final ScoreCutoff scoreCutoff;
+    private final PromptBucketManager bucketManager;
+    private final PromptHotTier hotTier;
+    private final int partitions;
+
+    /**
+     * Collections being migrated or re-indexed, by the name written to: writes and deletes also go to
+     * the target, reads stay on the source
+     */
+    private final Map<String, DualWrite> dualWrites = new ConcurrentHashMap<>();
+    private final Object dualWriteLock = new Object();
+
+    /**
+     * Migrated collections served from the target while the source is dropped and the alias created
+     */
+    private final Map<String, String> redirects = new ConcurrentHashMap<>();
+
+    /**
+     * Write-behind buffer for new prompts, null when disabled
+     */
+    private final PromptWriteBuffer writeBuffer;
+    private final Set<String> bufferedCollections = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Adds per collection and user that are stamped but not yet inserted or buffered (still embedding),
+     * registered together with their timestamp under the dual-write lock
+     */
+    private final Map<String, Set<CompletableFuture<Void>>> inFlightAdds = new ConcurrentHashMap<>();
+
+    public MilvusPromptRagService(MilvusServiceClient milvusClient,
+                                  EmbeddingService embeddingService,
+                                  MilvusCollectionManager collectionManager,
+                                  MilvusIndexManager indexManager,
+                                  ScoreCutoff scoreCutoff,
+                                  PromptBucketManager bucketManager,
+                                  PromptHotTier hotTier,
+                                  @Value("${milvus.prompts.partitions:64}") int partitions,
+                                  @Value("${milvus.prompts.write-buffer.enabled:true}") boolean writeBufferEnabled,
+                                  @Value("${milvus.prompts.write-buffer.capacity:10000}") int writeBufferCapacity,
+                                  @Value("${milvus.prompts.write-buffer.max-batch:500}") int writeBufferMaxBatch,
+                                  @Value("${milvus.prompts.write-buffer.flush-interval-ms:1000}") long writeBufferIntervalMillis) {
+        this.milvusClient = milvusClient;
+        this.embeddingService = embeddingService;
+        this.collectionManager = collectionManager;
+        this.indexManager = indexManager;
+        this.scoreCutoff = scoreCutoff;
+        this.bucketManager = bucketManager;
+        this.hotTier = hotTier;
+        this.partitions = partitions;
+        this.writeBuffer = writeBufferEnabled
+                ? new PromptWriteBuffer(this::insertBuffered, writeBufferCapacity, writeBufferMaxBatch, writeBufferIntervalMillis)
+                : null;
+    }
 
     private static final String ID_FIELD = "id";
     private static final String USER_ID_FIELD = "user_id";
@@ -44,48 +125,169 @@ public class MilvusPromptRagService implements PromptRagService {
 
     @Override
     public void addUserPromptToCollection(String collectionName, long userId, String prompt) {
+        AsyncUtils.join(addUserPromptToCollectionAsync(collectionName, userId, prompt));
+    }
+
+    @Override
+    public CompletableFuture<Void> addUserPromptToCollectionAsync(String collectionName, long userId, String prompt) {
+        long timestamp;
+        String bucket;
+        String collection;
+        DualWrite dualWrite;
+        String addKey = key(collectionName, userId);
+        CompletableFuture<Void> inFlight = new CompletableFuture<>();
+        // Timestamp, collection and dual-write decision are taken together, so rows either predate a
+        // migration's cutoff (and are copied) or follow it (and are written to the target directly),
+        // and each write is either dual or redirected when a switch-over happens meanwhile. The add is
+        // registered with its timestamp for awaitPendingAdds.
+        synchronized (dualWriteLock) {
+            timestamp = System.currentTimeMillis();
+            bucket = bucketManager.isEnabled() ? bucketManager.bucketFor(collectionName, timestamp) : null;
+            collection = physical(bucket != null ? bucket : collectionName);
+            dualWrite = dualWrites.get(collection);
+            inFlightAdds.computeIfAbsent(addKey, k -> ConcurrentHashMap.newKeySet()).add(inFlight);
+        }
         try {
-            // Ensure collection exists
-            ensureCollectionExists(collectionName);
-
-            // Generate embedding for the prompt
-            List<Float> embedding = embeddingService.generateEmbedding(prompt);
-
-            // Prepare data for insertion
-            List<Long> userIds = List.of(userId);
-            List<String> prompts = List.of(prompt);
-            List<List<Float>> embeddings = List.of(embedding);
-            List<Long> timestamps = List.of(System.currentTimeMillis());
-
-            List<InsertParam.Field> fields = Arrays.asList(
-                    new InsertParam.Field(USER_ID_FIELD, userIds),
-                    new InsertParam.Field(PROMPT_TEXT_FIELD, prompts),
-                    new InsertParam.Field(VECTOR_FIELD, embeddings),
-                    new InsertParam.Field(TIMESTAMP_FIELD, timestamps)
-            );
+            // Ensure collection exists (only the first call does any RPCs)
+            ensureCollectionExists(collection);
+            if (bucket != null) {
+                bucketManager.created(collectionName, bucket);
+            }
+        } catch (Exception e) {
+            log.error("Error adding prompt for user {} to collection {}: {}",
+                    userId, collectionName, e.getMessage(), e);
+            finishAdd(addKey, inFlight);
+            return CompletableFuture.failedFuture(new RuntimeException("Failed to add user prompt to collection", e));
+        }
 
-            InsertParam insertParam = InsertParam.newBuilder()
-                    .withCollectionName(collectionName)
-                    .withFields(fields)
-                    .build();
+        // Generate embedding for the prompt
+        return embeddingService.generateEmbeddingAsync(prompt)
+                .thenCompose(embedding -> {
+                    hotTier.record(collectionName, userId, prompt, embedding.vector(), timestamp);
+                    return dualWrite == null
+                        ? bufferPrompt(collectionName, collection, userId, prompt, embedding, timestamp)
+                        // Target first: if the source is dropped at switch-over meanwhile, the row is already kept
+                        : insertPrompt(dualWrite.target(), userId, prompt, embedding, timestamp)
+                                .thenCompose(ignored -> insertPrompt(collection, userId, prompt, embedding, timestamp));
+                })
+                .handle((ignored, e) -> {
+                    finishAdd(addKey, inFlight);
+                    if (e != null) {
+                        log.error("Error adding prompt for user {} to collection {}: {}",
+                                userId, collectionName, e.getMessage(), e);
+                        collectionManager.invalidate(collection);
+                        throw new RuntimeException("Failed to add user prompt to collection", AsyncUtils.unwrap(e));
+                    }
+                    log.info("Successfully added prompt for user {} to collection: {}", userId, collectionName);
+                    return null;
+                });
+    }
 
-            R<MutationResult> response = milvusClient.insert(insertParam);
-            handleResponse(response, "Insert prompt for user " + userId);
+    @Override
+    public long awaitPendingAdds(String collectionName, long userId) {
+        long bound;
+        List<CompletableFuture<Void>> pending;
+        // Adds stamped before the bound registered under the same lock, so none of them is missed
+        synchronized (dualWriteLock) {
+            bound = System.currentTimeMillis();
+            Set<CompletableFuture<Void>> adds = inFlightAdds.get(key(collectionName, userId));
+            pending = adds == null ? List.of() : List.copyOf(adds);
+        }
+        if (!pending.isEmpty()) {
+            log.debug("Waiting for {} prompt adds of user {} in collection {}", pending.size(), userId, collectionName);
+            // The futures complete normally whatever the outcome of the add
+            CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+        }
+        return bound;
+    }
+
+    private void finishAdd(String addKey, CompletableFuture<Void> inFlight) {
+        inFlightAdds.computeIfPresent(addKey, (k, adds) -> {
+            adds.remove(inFlight);
+            return adds.isEmpty() ? null : adds;
+        });
+        inFlight.complete(null);
+    }
+
+    private static String key(String collectionName, long userId) {
+        return collectionName + "#" + userId;
+    }
 
-            // Flush to ensure data persistence
+    /**
+     * Queue the prompt in the write buffer, or insert it directly when buffering is off or the buffer is full
+     */
+    private CompletableFuture<Void> bufferPrompt(String collectionName, String collection, long userId, String prompt,
+                                                 Embedding embedding, long timestamp) {
+        if (writeBuffer != null) {
+            MilvusIndexManager.IndexSpec spec = indexManager.spec(collection, VECTOR_FIELD, VECTOR_INDEX_NAME);
+            CompletableFuture<Void> buffered = writeBuffer.submit(new PromptWriteBuffer.BufferedPrompt(collectionName,
+                    collection, userId, prompt, embedding.vector(), indexManager.toStoredVector(spec, embedding),
+                    timestamp, new CompletableFuture<>()));
+            if (buffered != null) {
+                return buffered;
+            }
+            log.warn("Prompt write buffer is full, inserting prompt for user {} directly", userId);
+        }
+        return insertPrompt(collection, userId, prompt, embedding, timestamp);
+    }
+
+    private CompletableFuture<Void> insertBuffered(String collectionName, List<PromptWriteBuffer.BufferedPrompt> prompts) {
+        bufferedCollections.add(collectionName);
+        return insertRows(collectionName,
+                prompts.stream().map(PromptWriteBuffer.BufferedPrompt::userId).toList(),
+                prompts.stream().map(PromptWriteBuffer.BufferedPrompt::prompt).toList(),
+                prompts.stream().map(PromptWriteBuffer.BufferedPrompt::storedVector).toList(),
+                prompts.stream().map(PromptWriteBuffer.BufferedPrompt::timestamp).toList());
+    }
+
+    /**
+     * Insert what is still buffered and persist the collections written through the buffer
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (writeBuffer == null) {
+            return;
+        }
+        writeBuffer.close();
+        if (!bufferedCollections.isEmpty()) {
             FlushParam flushParam = FlushParam.newBuilder()
-                    .addCollectionName(collectionName)
+                    .withCollectionNames(new ArrayList<>(bufferedCollections))
                     .build();
-            milvusClient.flush(flushParam);
-
-            log.info("Successfully added prompt for user {} to collection: {}", userId, collectionName);
-        } catch (Exception e) {
-            log.error("Error adding prompt for user {} to collection {}: {}",
-                    userId, collectionName, e.getMessage(), e);
-            throw new RuntimeException("Failed to add user prompt to collection", e);
+            R<FlushResponse> response = milvusClient.flush(flushParam);
+            if (response.getStatus() != R.Status.Success.getCode()) {
+                log.warn("Flush of prompt collections {} on shutdown failed: {}", bufferedCollections, response.getMessage());
+            }
         }
     }
 
+    private CompletableFuture<Void> insertPrompt(String collectionName, long userId, String prompt, Embedding embedding, long timestamp) {
+        MilvusIndexManager.IndexSpec spec = indexManager.spec(collectionName, VECTOR_FIELD, VECTOR_INDEX_NAME);
+        return insertRows(collectionName, List.of(userId), List.of(prompt),
+                List.of(indexManager.toStoredVector(spec, embedding)), List.of(timestamp));
+    }
+
+    private CompletableFuture<Void> insertRows(String collectionName, List<Long> userIds, List<String> prompts,
+                                               List<List<Float>> embeddings, List<Long> timestamps) {
+        List<InsertParam.Field> fields = Arrays.asList(
+                new InsertParam.Field(USER_ID_FIELD, userIds),
+                new InsertParam.Field(PROMPT_TEXT_FIELD, prompts),
+                new InsertParam.Field(VECTOR_FIELD, embeddings),
+                new InsertParam.Field(TIMESTAMP_FIELD, timestamps)
+        );
+
+        InsertParam insertParam = InsertParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withFields(fields)
+                .build();
+
+        // Inserted rows are searchable once acknowledged; no explicit flush needed
+        return AsyncUtils.toCompletableFuture(milvusClient.insertAsync(insertParam))
+                .thenAccept(response -> {
+                    handleResponse(response, "Insert " + prompts.size() + " prompts into collection " + collectionName);
+                    indexManager.recordWrites(collectionName, prompts.size(), this);
+                });
+    }
+
     @Override
     public List<String> findRelatedUserPrompts(String collectionName, long userId, String query, int k) {
         return findRelatedUserPrompts(collectionName, userId, query, k, SortType.SIMILARITY);
@@ -96,274 +298,657 @@ public class MilvusPromptRagService implements PromptRagService {
      */
     public List<String> findRelatedUserPrompts(String collectionName, long userId,
                                                String query, int k, SortType sortType) {
-        try {
-            // Check if collection exists
-            if (!collectionExists(collectionName)) {
-                log.warn("Collection {} does not exist", collectionName);
-                return new ArrayList<>();
-            }
+        return findRelatedUserPrompts(collectionName, userId, query, k, sortType, RetrieveOptions.defaults());
+    }
 
-            // Load collection if not loaded
-            loadCollection(collectionName);
+    @Override
+    public List<String> findRelatedUserPrompts(String collectionName, long userId, String query, int k,
+                                               SortType sortType, RetrieveOptions options) {
+        return AsyncUtils.join(findRelatedUserPromptsAsync(collectionName, userId, query, k, sortType, options));
+    }
 
-            // Generate embedding for the query
-            List<Float> queryEmbedding = embeddingService.generateEmbedding(query);
+    @Override
+    public CompletableFuture<List<String>> findRelatedUserPromptsAsync(String collectionName, long userId,
+                                                                       String query, int k, SortType sortType) {
+        return findRelatedUserPromptsAsync(collectionName, userId, query, k, sortType, RetrieveOptions.defaults());
+    }
 
-            // Build expression for filtering by user_id
-            String expr = String.format("user_id == %d", userId);
+    @Override
+    public CompletableFuture<List<String>> findRelatedUserPromptsAsync(String collectionName, long userId, String query,
+                                                                       int k, SortType sortType, RetrieveOptions options) {
+        // Generate embedding for the query once, for the hot tier and all buckets
+        return embeddingService.generateEmbeddingAsync(query)
+                .thenCompose(queryEmbedding -> findRelatedUserPromptsAsync(collectionName, userId, queryEmbedding, k, sortType, options))
+                .exceptionally(e -> {
+                    log.error("Error finding related prompts for user {} in collection {}: {}",
+                            userId, collectionName, e.getMessage(), e);
+                    return new ArrayList<>();
+                });
+    }
 
-            // Prepare search parameters
-            List<String> searchOutputFields = Arrays.asList(PROMPT_TEXT_FIELD, TIMESTAMP_FIELD);
-            SearchParam searchParam = SearchParam.newBuilder()
-                    .withCollectionName(collectionName)
-                    .withMetricType(io.milvus.param.MetricType.L2)
-                    .withOutFields(searchOutputFields)
-                    .withTopK(k)
-                    .withFloatVectors(List.of(queryEmbedding))
-                    .withVectorFieldName(VECTOR_FIELD)
-                    .withExpr(expr)
-                    .withParams("{\"nprobe\":10}")
-                    .build();
+    @Override
+    public CompletableFuture<List<String>> findRelatedUserPromptsAsync(String collectionName, long userId, Embedding queryEmbedding,
+                                                                       int k, SortType sortType, RetrieveOptions options) {
+        List<String> collections;
+        try {
+            collections = collections(collectionName);
+        } catch (Exception e) {
+            log.error("Error finding related prompts for user {} in collection {}: {}",
+                    userId, collectionName, e.getMessage(), e);
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
 
-            R<SearchResults> response = milvusClient.search(searchParam);
-            handleResponse(response, "Search related prompts for user " + userId);
+        // Start from a completed stage so a failure anywhere below ends in the exceptionally handler
+        return CompletableFuture.completedFuture(queryEmbedding)
+                .thenCompose(ignored -> {
+                    PromptHotTier.HotHits hot = hotTier.search(collectionName, userId, queryEmbedding.vector(), k);
+                    if (hot == null) {
+                        return expandSearch(collections, 0, userId, queryEmbedding, k, options, null,
+                                bufferedHits(collectionName, userId, queryEmbedding, options));
+                    }
+                    List<PromptWithScore> recent = options == null ? new ArrayList<>(hot.hits())
+                            : scoreCutoff.apply(hot.hits(), PromptWithScore::getScore, options.getMinScore(), false);
+                    // Buffered prompts the ring may have missed (it was evicted and started over meanwhile)
+                    for (PromptWithScore buffered : bufferedHits(collectionName, userId, queryEmbedding, options)) {
+                        if (buffered.getTimestamp() < hot.coveredSince()) {
+                            recent.add(buffered);
+                        }
+                    }
+                    if (hotTier.isConfident(recent, k)) {
+                        // Recent history holds k close matches; no Milvus search
+                        return CompletableFuture.completedFuture(recent);
+                    }
+                    // The hot tier holds everything since coveredSince (buffered prompts included); Milvus adds the older history
+                    List<String> older = collections.stream()
+                            .filter(collection -> bucketManager.mayHoldBefore(collectionName, collection, hot.coveredSince()))
+                            .toList();
+                    return expandSearch(older, 0, userId, queryEmbedding, k, options, hot.coveredSince(), recent);
+                })
+                .thenApply(hits -> {
+                    // Best k over the hot tier and the searched buckets, then the adaptive cutoff over the merged ranking
+                    Map<String, PromptWithScore> distinct = new LinkedHashMap<>();
+                    hits.forEach(hit -> distinct.putIfAbsent(hit.getTimestamp() + "#" + hit.getPromptText(), hit));
+                    List<PromptWithScore> promptsWithScore = distinct.values().stream()
+                            .sorted(Comparator.comparing(PromptWithScore::getScore).reversed())
+                            .limit(k)
+                            .collect(Collectors.toList());
+                    if (options != null) {
+                        promptsWithScore = scoreCutoff.apply(promptsWithScore, PromptWithScore::getScore,
+                                options.getMinScore(), options.isAdaptive());
+                    }
 
-            SearchResultsWrapper wrapper = new SearchResultsWrapper(response.getData().getResults());
-            List<PromptWithScore> promptsWithScore = new ArrayList<>();
+                    // 根据选择的排序方式排序
+                    List<String> relatedPrompts;
+                    if (sortType == SortType.TIMESTAMP) {
+                        // 按时间戳排序（升序，最早的在前）
+                        relatedPrompts = promptsWithScore.stream()
+                                .sorted(Comparator.comparing(PromptWithScore::getTimestamp))
+                                .map(PromptWithScore::getPromptText)
+                                .collect(Collectors.toList());
+                    } else {
+                        // 按相似度排序（已经是按相似度排序的，直接提取）
+                        relatedPrompts = promptsWithScore.stream()
+                                .map(PromptWithScore::getPromptText)
+                                .collect(Collectors.toList());
+                    }
 
-            // Extract prompt texts, timestamps and scores from search results
-            if (wrapper.getRowRecords() != null && !wrapper.getRowRecords().isEmpty()) {
-                List<SearchResultsWrapper.IDScore> scores = wrapper.getIDScore(0);
-                List<QueryResultsWrapper.RowRecord> records = wrapper.getRowRecords();
+                    log.info("Found {} related prompts for user {} in collection: {} (sorted by {})",
+                            relatedPrompts.size(), userId, collectionName, sortType);
+                    return relatedPrompts;
+                })
+                .exceptionally(e -> {
+                    log.error("Error finding related prompts for user {} in collection {}: {}",
+                            userId, collectionName, e.getMessage(), e);
+                    return new ArrayList<>();
+                });
+    }
 
-                for (int i = 0; i < Math.min(records.size(), k); i++) {
-                    QueryResultsWrapper.RowRecord record = records.get(i);
-                    String promptText = (String) record.get(PROMPT_TEXT_FIELD);
-                    Long timestamp = (Long) record.get(TIMESTAMP_FIELD);
+    /**
+     * The user's prompts still in the write buffer, scored like search hits (cosine of the normalized vectors)
+     */
+    private List<PromptWithScore> bufferedHits(String collectionName, long userId, Embedding queryEmbedding,
+                                               RetrieveOptions options) {
+        List<PromptWithScore> hits = new ArrayList<>();
+        if (writeBuffer == null) {
+            return hits;
+        }
+        float[] query = VectorKernels.normalize(queryEmbedding.vector());
+        for (PromptWriteBuffer.BufferedPrompt buffered : writeBuffer.pending(collectionName, userId)) {
+            float score = VectorKernels.dot(query, VectorKernels.normalize(buffered.vector()));
+            hits.add(new PromptWithScore(buffered.prompt(), buffered.timestamp(), score));
+        }
+        if (options != null) {
+            hits = scoreCutoff.apply(hits, PromptWithScore::getScore, options.getMinScore(), false);
+        }
+        return hits;
+    }
 
-                    if (promptText != null && timestamp != null) {
-                        float score = i < scores.size() ? scores.get(i).getScore() : 0f;
-                        promptsWithScore.add(new PromptWithScore(promptText, timestamp, score));
+    /**
+     * Search the collections newest first, a few in parallel at a time, until k prompts clear the minimum score
+     */
+    private CompletableFuture<List<PromptWithScore>> expandSearch(List<String> collections, int from, long userId,
+                                                                  Embedding queryEmbedding, int k, RetrieveOptions options,
+                                                                  Long before, List<PromptWithScore> hits) {
+        if (from >= collections.size()) {
+            return CompletableFuture.completedFuture(hits);
+        }
+        int to = Math.min(collections.size(), from + bucketManager.expandStep());
+        List<CompletableFuture<List<PromptWithScore>>> wave = collections.subList(from, to).stream()
+                .map(collection -> searchUserPrompts(collection, userId, queryEmbedding, k, options, before))
+                .toList();
+        return CompletableFuture.allOf(wave.toArray(CompletableFuture[]::new))
+                .thenCompose(ignored -> {
+                    wave.forEach(future -> hits.addAll(future.join()));
+                    if (hits.size() >= k || to >= collections.size()) {
+                        return CompletableFuture.completedFuture(hits);
                     }
-                }
-            }
-
-            // 根据选择的排序方式排序
-            List<String> relatedPrompts;
-            if (sortType == SortType.TIMESTAMP) {
-                // 按时间戳排序（升序，最早的在前）
-                relatedPrompts = promptsWithScore.stream()
-                        .sorted(Comparator.comparing(PromptWithScore::getTimestamp))
-                        .map(PromptWithScore::getPromptText)
-                        .collect(Collectors.toList());
-            } else {
-                // 按相似度排序（已经是按相似度排序的，直接提取）
-                relatedPrompts = promptsWithScore.stream()
-                        .map(PromptWithScore::getPromptText)
-                        .collect(Collectors.toList());
-            }
+                    log.debug("{} of {} prompts for user {} in {}, expanding to older buckets",
+                            hits.size(), k, userId, collections.subList(0, to));
+                    return expandSearch(collections, to, userId, queryEmbedding, k, options, before, hits);
+                });
+    }
 
-            log.info("Found {} related prompts for user {} in collection: {} (sorted by {})",
-                    relatedPrompts.size(), userId, collectionName, sortType);
-            return relatedPrompts;
+    /**
+     * Top k prompts of the user in one collection, with similarity scores, dropping those below the minimum score
+     *
+     * @param before only prompts stamped before this time, if not null
+     */
+    private CompletableFuture<List<PromptWithScore>> searchUserPrompts(String collectionName, long userId,
+                                                                       Embedding queryEmbedding, int k,
+                                                                       RetrieveOptions options, Long before) {
+        bucketManager.touch(collectionName);
+        MilvusIndexManager.IndexSpec spec;
+        if (!isReadable(collectionName)) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        try {
+            spec = indexManager.spec(collectionName, VECTOR_FIELD, VECTOR_INDEX_NAME);
         } catch (Exception e) {
             log.error("Error finding related prompts for user {} in collection {}: {}",
                     userId, collectionName, e.getMessage(), e);
-            return new ArrayList<>();
+            collectionManager.invalidate(collectionName);
+            return CompletableFuture.completedFuture(new ArrayList<>());
         }
-    }
 
-    @Override
-    public List<String> findAllUserPrompts(String collectionName, long userId) {
-        try {
-            // Check if collection exists
-            if (!collectionExists(collectionName)) {
-                log.warn("Collection {} does not exist", collectionName);
-                return new ArrayList<>();
-            }
+        // Build expression for filtering by user_id
+        String expr = before == null
+                ? String.format("user_id == %d", userId)
+                : String.format("user_id == %d && %s < %d", userId, TIMESTAMP_FIELD, before);
+
+        // Prepare search parameters
+        List<String> searchOutputFields = Arrays.asList(PROMPT_TEXT_FIELD, TIMESTAMP_FIELD);
+        SearchParam searchParam = SearchParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withMetricType(spec.metricType())
+                .withOutFields(searchOutputFields)
+                .withTopK(k)
+                .withFloatVectors(List.of(indexManager.toStoredVector(spec, queryEmbedding)))
+                .withVectorFieldName(VECTOR_FIELD)
+                .withExpr(expr)
+                .withParams(indexManager.searchParams(spec, k, options))
+                .build();
 
-            // Load collection if not loaded
-            loadCollection(collectionName);
+        return AsyncUtils.toCompletableFuture(milvusClient.searchAsync(searchParam))
+                .thenApply(response -> {
+                    handleResponse(response, "Search related prompts for user " + userId);
 
-            // Build expression for filtering by user_id
-            String expr = String.format("user_id == %d", userId);
+                    SearchResultsWrapper wrapper = new SearchResultsWrapper(response.getData().getResults());
+                    List<PromptWithScore> promptsWithScore = new ArrayList<>();
 
-            // Query all prompts for the user
-            QueryParam queryParam = QueryParam.newBuilder()
-                    .withCollectionName(collectionName)
-                    .withExpr(expr)
-                    .withOutFields(Arrays.asList(PROMPT_TEXT_FIELD, TIMESTAMP_FIELD))
-                    .withLimit(Constants.LIMIT_CHUNK_TOKEN_SIZE)  // Set limit within Milvus constraint (max 16384)
-                    .build();
+                    // Extract prompt texts, timestamps and scores from search results
+                    if (wrapper.getRowRecords() != null && !wrapper.getRowRecords().isEmpty()) {
+                        List<SearchResultsWrapper.IDScore> scores = wrapper.getIDScore(0);
+                        List<QueryResultsWrapper.RowRecord> records = wrapper.getRowRecords();
 
-            R<QueryResults> response = milvusClient.query(queryParam);
-            handleResponse(response, "Query all prompts for user " + userId);
+                        for (int i = 0; i < Math.min(records.size(), k); i++) {
+                            QueryResultsWrapper.RowRecord record = records.get(i);
+                            String promptText = (String) record.get(PROMPT_TEXT_FIELD);
+                            Long timestamp = (Long) record.get(TIMESTAMP_FIELD);
 
-            QueryResultsWrapper wrapper = new QueryResultsWrapper(response.getData());
-            List<String> prompts = new ArrayList<>();
+                            if (promptText != null && timestamp != null) {
+                                float score = i < scores.size() ? indexManager.similarity(spec, scores.get(i).getScore()) : 0f;
+                                promptsWithScore.add(new PromptWithScore(promptText, timestamp, score));
+                            }
+                        }
+                    }
+                    if (options != null) {
+                        promptsWithScore = scoreCutoff.apply(promptsWithScore, PromptWithScore::getScore,
+                                options.getMinScore(), false);
+                    }
+                    return promptsWithScore;
+                })
+                .exceptionally(e -> {
+                    log.error("Error finding related prompts for user {} in collection {}: {}",
+                            userId, collectionName, e.getMessage(), e);
+                    collectionManager.invalidate(collectionName);
+                    return new ArrayList<>();
+                });
+    }
 
-            // Extract and sort prompts by timestamp
-            if (wrapper.getRowRecords() != null) {
-                List<QueryResultsWrapper.RowRecord> records = wrapper.getRowRecords();
+    @Override
+    public List<String> findAllUserPrompts(String collectionName, long userId) {
+        return AsyncUtils.join(findAllUserPromptsAsync(collectionName, userId));
+    }
 
-                // Create a list of prompt-timestamp pairs for sorting
-                List<PromptWithTimestamp> promptsWithTime = new ArrayList<>();
-                for (QueryResultsWrapper.RowRecord record : records) {
-                    String promptText = (String) record.get(PROMPT_TEXT_FIELD);
-                    Long timestamp = (Long) record.get(TIMESTAMP_FIELD);
-                    if (promptText != null && timestamp != null) {
-                        promptsWithTime.add(new PromptWithTimestamp(promptText, timestamp));
-                    }
-                }
+    @Override
+    public CompletableFuture<List<String>> findAllUserPromptsAsync(String collectionName, long userId) {
+        return findAllUserPromptsAsync(collectionName, userId, false);
+    }
 
-                // Sort by timestamp and extract prompt texts
-                prompts = promptsWithTime.stream()
-                        .sorted(Comparator.comparing(PromptWithTimestamp::getTimestamp))
-                        .map(PromptWithTimestamp::getPromptText)
-                        .collect(Collectors.toList());
-            }
+    @Override
+    public List<String> findAllUserPromptsStrict(String collectionName, long userId) {
+        return AsyncUtils.join(findAllUserPromptsAsync(collectionName, userId, true));
+    }
 
-            log.info("Found {} prompts for user {} in collection: {}",
-                    prompts.size(), userId, collectionName);
-            return prompts;
+    /**
+     * All prompts of the user across the buckets, oldest first. Unless strict, a bucket that cannot be read
+     * contributes nothing; strict reads fail instead, also when a bucket holds more rows than one query returns.
+     */
+    private CompletableFuture<List<String>> findAllUserPromptsAsync(String collectionName, long userId, boolean strict) {
+        List<CompletableFuture<List<PromptWithTimestamp>>> futures;
+        try {
+            futures = collections(collectionName).stream()
+                    .map(collection -> queryUserPrompts(collection, userId, strict))
+                    .toList();
         } catch (Exception e) {
             log.error("Error finding all prompts for user {} in collection {}: {}",
                     userId, collectionName, e.getMessage(), e);
-            return new ArrayList<>();
+            return strict ? CompletableFuture.failedFuture(e) : CompletableFuture.completedFuture(new ArrayList<>());
         }
+
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> {
+                    // Sort by timestamp and extract prompt texts, including prompts not inserted yet
+                    List<PromptWithTimestamp> buffered = writeBuffer == null ? List.of()
+                            : writeBuffer.pending(collectionName, userId).stream()
+                            .map(prompt -> new PromptWithTimestamp(prompt.prompt(), prompt.timestamp()))
+                            .toList();
+                    List<String> prompts = Stream.concat(futures.stream().flatMap(future -> future.join().stream()), buffered.stream())
+                            .sorted(Comparator.comparing(PromptWithTimestamp::getTimestamp))
+                            .map(PromptWithTimestamp::getPromptText)
+                            .collect(Collectors.toList());
+
+                    log.info("Found {} prompts for user {} in collection: {}",
+                            prompts.size(), userId, collectionName);
+                    return prompts;
+                });
+    }
+
+    /**
+     * All prompts of the user in one collection (bucket)
+     */
+    private CompletableFuture<List<PromptWithTimestamp>> queryUserPrompts(String collectionName, long userId, boolean strict) {
+        if (strict) {
+            try {
+                if (!collectionManager.exists(collectionName)) {
+                    return CompletableFuture.completedFuture(new ArrayList<>());
+                }
+                collectionManager.ensureLoaded(collectionName);
+            } catch (Exception e) {
+                collectionManager.invalidate(collectionName);
+                return CompletableFuture.failedFuture(e);
+            }
+        } else if (!isReadable(collectionName)) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        bucketManager.touch(collectionName);
+
+        // Build expression for filtering by user_id
+        String expr = String.format("user_id == %d", userId);
+
+        // Query all prompts for the user
+        QueryParam queryParam = QueryParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withExpr(expr)
+                .withOutFields(Arrays.asList(PROMPT_TEXT_FIELD, TIMESTAMP_FIELD))
+                .withLimit(Constants.LIMIT_CHUNK_TOKEN_SIZE)  // Set limit within Milvus constraint (max 16384)
+                .build();
+
+        return AsyncUtils.toCompletableFuture(milvusClient.queryAsync(queryParam))
+                .thenApply(response -> {
+                    handleResponse(response, "Query all prompts for user " + userId);
+
+                    QueryResultsWrapper wrapper = new QueryResultsWrapper(response.getData());
+
+                    // Create a list of prompt-timestamp pairs for sorting
+                    List<PromptWithTimestamp> promptsWithTime = new ArrayList<>();
+                    if (wrapper.getRowRecords() != null) {
+                        for (QueryResultsWrapper.RowRecord record : wrapper.getRowRecords()) {
+                            String promptText = (String) record.get(PROMPT_TEXT_FIELD);
+                            Long timestamp = (Long) record.get(TIMESTAMP_FIELD);
+                            if (promptText != null && timestamp != null) {
+                                promptsWithTime.add(new PromptWithTimestamp(promptText, timestamp));
+                            }
+                        }
+                    }
+                    if (strict && wrapper.getRowCount() >= Constants.LIMIT_CHUNK_TOKEN_SIZE) {
+                        String errorMsg = String.format("User %d has more than %d prompts in collection %s",
+                                userId, Constants.LIMIT_CHUNK_TOKEN_SIZE, collectionName);
+                        log.error(errorMsg);
+                        throw new RuntimeException(errorMsg);
+                    }
+                    return promptsWithTime;
+                })
+                .exceptionally(e -> {
+                    log.error("Error finding all prompts for user {} in collection {}: {}",
+                            userId, collectionName, e.getMessage(), e);
+                    collectionManager.invalidate(collectionName);
+                    if (strict) {
+                        throw e instanceof CompletionException completion ? completion : new CompletionException(e);
+                    }
+                    return new ArrayList<>();
+                });
     }
 
     @Override
     public void deleteUserPromptsCollection(String collectionName, long userId) {
-        try {
-            // Check if collection exists
-            if (!collectionExists(collectionName)) {
-                log.warn("Collection {} does not exist, nothing to delete", collectionName);
-                return;
+        deleteUserPrompts(collectionName, userId, null, null);
+    }
+
+    @Override
+    public long deleteUserPrompts(String collectionName, long userId, Long before, PurgeJob progress) {
+        hotTier.remove(collectionName, userId, before);
+        if (writeBuffer != null) {
+            // Buffered prompts of the user are dropped; a batch already being inserted is waited for
+            writeBuffer.discard(collectionName, userId, before == null ? Long.MAX_VALUE : before);
+        }
+        List<String> names = bucketManager.searchOrder(collectionName, collectionName);
+        List<String> collections = new ArrayList<>();
+        // Resolved with the dual-write decision, like writes
+        synchronized (dualWriteLock) {
+            for (String name : names) {
+                String collection = physical(name);
+                DualWrite dualWrite = dualWrites.get(collection);
+                if (dualWrite != null) {
+                    // Rows of this user copied later must be deleted again before the copy is switched over to
+                    dualWrite.deletes().merge(userId, before == null ? Long.MAX_VALUE : before, Math::max);
+                    collections.add(dualWrite.target());
+                }
+                collections.add(collection);
             }
+        }
+        if (progress != null) {
+            progress.setCollectionsTotal(collections.size());
+        }
 
-            // Load collection if not loaded
-            loadCollection(collectionName);
+        // One expression delete per collection: Milvus resolves it and prunes to the user's partition
+        String expr = before == null
+                ? String.format("user_id == %d", userId)
+                : String.format("user_id == %d && %s < %d", userId, TIMESTAMP_FIELD, before);
+        long deleted = 0;
+        for (String collection : collections) {
+            deleted += deleteByExpression(collection, expr, "Delete prompts of user " + userId);
+            if (progress != null) {
+                progress.setCollectionsDone(progress.getCollectionsDone() + 1);
+                progress.setDeletedRows(deleted);
+            }
+        }
+        log.info("Deleted {} prompts for user {} from collection: {}{}", deleted, userId, collectionName,
+                before == null ? "" : " (older than " + before + ")");
+        return deleted;
+    }
 
-            // Use batch deletion to avoid hitting Milvus query limits
-            deleteUserPromptsBatch(collectionName, userId);
+    /**
+     * Delete the rows matching the expression, without a flush (deletes are visible once acknowledged)
+     *
+     * @return number of rows deleted
+     */
+    private long deleteByExpression(String collectionName, String expr, String operation) {
+        try {
+            // Check if collection exists and is loaded (cached after the first call)
+            if (!collectionManager.exists(collectionName)) {
+                log.debug("Collection {} does not exist, nothing to delete", collectionName);
+                return 0;
+            }
+            collectionManager.ensureLoaded(collectionName);
 
-            log.info("Successfully deleted all prompts for user {} from collection: {}",
-                    userId, collectionName);
+            DeleteParam deleteParam = DeleteParam.newBuilder()
+                    .withCollectionName(collectionName)
+                    .withExpr(expr)
+                    .build();
+            R<MutationResult> response = milvusClient.delete(deleteParam);
+            handleResponse(response, operation);
+            return response.getData().getDeleteCnt();
         } catch (Exception e) {
-            log.error("Error deleting prompts for user {} from collection {}: {}",
-                    userId, collectionName, e.getMessage(), e);
+            log.error("Error deleting prompts ({}) from collection {}: {}", expr, collectionName, e.getMessage(), e);
+            collectionManager.invalidate(collectionName);
             throw new RuntimeException("Failed to delete user prompts from collection", e);
         }
     }
 
     /**
-     * Delete user prompts in batches to avoid hitting Milvus query limits
+     * Check that the collection exists and is loaded; both answers are cached after the first call
      */
-    private void deleteUserPromptsBatch(String collectionName, long userId) {
-        int batchSize = 1000; // Small batch size to avoid limits
-        int totalDeleted = 0;
-        
-        while (true) {
-            try {
-                // Query a batch of IDs to delete (using small limit)
-                String expr = String.format("user_id == %d", userId);
-                QueryParam queryParam = QueryParam.newBuilder()
-                        .withCollectionName(collectionName)
-                        .withExpr(expr)
-                        .withOutFields(List.of(ID_FIELD))
-                        .withLimit((long) batchSize)
-                        .build();
-
-                R<QueryResults> queryResponse = milvusClient.query(queryParam);
-                if (queryResponse.getStatus() != R.Status.Success.getCode()) {
-                    log.warn("Query failed during batch deletion: {}", queryResponse.getMessage());
-                    break;
-                }
+    private boolean isReadable(String collectionName) {
+        try {
+            if (!collectionManager.exists(collectionName)) {
+                log.warn("Collection {} does not exist", collectionName);
+                return false;
+            }
+            collectionManager.ensureLoaded(collectionName);
+            return true;
+        } catch (Exception e) {
+            log.error("Error preparing collection {} for reading: {}", collectionName, e.getMessage(), e);
+            collectionManager.invalidate(collectionName);
+            return false;
+        }
+    }
 
-                QueryResultsWrapper wrapper = new QueryResultsWrapper(queryResponse.getData());
-                if (wrapper.getRowRecords() == null || wrapper.getRowRecords().isEmpty()) {
-                    // No more records to delete
-                    break;
-                }
+    /**
+     * Ensure that a collection exists, create it if it doesn't.
+     * Concurrent callers share a single creation.
+     */
+    private void ensureCollectionExists(String collectionName) {
+        collectionManager.ensureCreated(collectionName, () -> {
+            if (indexManager.restoreAlias(collectionName)) {
+                // An index rebuild dropped the old collection but did not get to create the alias
+                return;
+            }
+            String migrated = partitionedName(collectionName);
+            if (!collectionName.equals(migrated) && collectionManager.exists(migrated)) {
+                // A migration dropped the old collection but did not get to create the alias
+                createAlias(collectionName, migrated);
+            } else {
+                createCollection(collectionName);
+            }
+        });
+    }
 
-                // Extract IDs and delete them
-                List<Long> idsToDelete = new ArrayList<>();
-                for (QueryResultsWrapper.RowRecord record : wrapper.getRowRecords()) {
-                    Long id = (Long) record.get(ID_FIELD);
-                    if (id != null) {
-                        idsToDelete.add(id);
-                    }
-                }
+    /**
+     * Collection actually read and written for a collection or bucket name (differs only while a
+     * migration or an index rebuild switches over)
+     */
+    private String physical(String collectionName) {
+        return indexManager.physical(redirects.getOrDefault(collectionName, collectionName));
+    }
 
-                if (idsToDelete.isEmpty()) {
-                    break;
-                }
+    /**
+     * Collections to read for the name, newest bucket first
+     */
+    private List<String> collections(String collectionName) {
+        return bucketManager.searchOrder(collectionName, collectionName).stream()
+                .map(this::physical)
+                .toList();
+    }
 
-                // Delete by IDs
-                String deleteExpr = String.format("id in %s", idsToDelete.toString().replace('[', '[').replace(']', ']'));
-                DeleteParam deleteParam = DeleteParam.newBuilder()
-                        .withCollectionName(collectionName)
-                        .withExpr(deleteExpr)
-                        .build();
+    /**
+     * Name of the partitioned collection a flat collection is migrated to
+     */
+    static String partitionedName(String collectionName) {
+        return collectionName + "_PK";
+    }
 
-                R<MutationResult> deleteResponse = milvusClient.delete(deleteParam);
-                handleResponse(deleteResponse, "Batch delete prompts for user " + userId);
+    /**
+     * Whether user_id is the partition key of the collection (or of the collection the name is an alias of)
+     */
+    boolean isPartitioned(String collectionName) {
+        return collectionManager.getSchema(collectionName).getFieldsList().stream()
+                .anyMatch(field -> USER_ID_FIELD.equals(field.getName()) && field.getIsPartitionKey());
+    }
 
-                totalDeleted += idsToDelete.size();
-                log.debug("Deleted batch of {} records for user {}, total deleted: {}", 
-                         idsToDelete.size(), userId, totalDeleted);
+    /**
+     * Start writing new prompts (and deletes) to the target as well
+     *
+     * @return the cutoff: rows stamped at or before it must be copied, later rows are written to both collections
+     */
+    long startDualWrite(String collectionName, String target) {
+        synchronized (dualWriteLock) {
+            long cutoff = System.currentTimeMillis();
+            dualWrites.put(collectionName, new DualWrite(target, cutoff, new ConcurrentHashMap<>()));
+            // Later writes must get a strictly later timestamp
+            while (System.currentTimeMillis() <= cutoff) {
+                Thread.onSpinWait();
+            }
+            return cutoff;
+        }
+    }
+
+    /**
+     * Copy the rows stamped at or before the cutoff into the target, in batches, with their stored vectors
+     *
+     * @return number of rows copied
+     */
+    long copyPrompts(String source, String target, long cutoff, int batchSize, LongConsumer progress) {
+        if (writeBuffer != null) {
+            // Buffered rows stamped before the cutoff must be in the source before it is scanned
+            writeBuffer.flush();
+        }
+        collectionManager.ensureLoaded(source);
+        ensureCollectionExists(target);
+        MilvusIndexManager.IndexSpec targetSpec = indexManager.spec(target, VECTOR_FIELD, VECTOR_INDEX_NAME);
+        QueryIteratorParam iteratorParam = QueryIteratorParam.newBuilder()
+                .withCollectionName(source)
+                .withExpr(String.format("%s <= %d", TIMESTAMP_FIELD, cutoff))
+                .withOutFields(Arrays.asList(USER_ID_FIELD, PROMPT_TEXT_FIELD, VECTOR_FIELD, TIMESTAMP_FIELD))
+                .withBatchSize((long) batchSize)
+                .withConsistencyLevel(ConsistencyLevelEnum.STRONG)
+                .build();
+        R<QueryIterator> response = milvusClient.queryIterator(iteratorParam);
+        handleResponse(response, "Scan collection " + source);
 
-                // If we got fewer records than batch size, we're done
-                if (idsToDelete.size() < batchSize) {
+        long copied = 0;
+        QueryIterator iterator = response.getData();
+        try {
+            while (true) {
+                List<QueryResultsWrapper.RowRecord> records = iterator.next();
+                if (records.isEmpty()) {
                     break;
                 }
-
-            } catch (Exception e) {
-                log.error("Error in batch deletion for user {}: {}", userId, e.getMessage(), e);
-                break;
+                List<Long> userIds = new ArrayList<>(records.size());
+                List<String> prompts = new ArrayList<>(records.size());
+                List<List<Float>> embeddings = new ArrayList<>(records.size());
+                List<Long> timestamps = new ArrayList<>(records.size());
+                for (QueryResultsWrapper.RowRecord record : records) {
+                    @SuppressWarnings("unchecked")
+                    List<Float> vector = (List<Float>) record.get(VECTOR_FIELD);
+                    userIds.add((Long) record.get(USER_ID_FIELD));
+                    prompts.add((String) record.get(PROMPT_TEXT_FIELD));
+                    embeddings.add(indexManager.toStoredVector(targetSpec, Embedding.fromFloatList(vector)));
+                    timestamps.add((Long) record.get(TIMESTAMP_FIELD));
+                }
+                AsyncUtils.join(insertRows(target, userIds, prompts, embeddings, timestamps));
+                copied += records.size();
+                progress.accept(copied);
             }
+        } finally {
+            iterator.close();
         }
+        return copied;
+    }
 
-        // Flush to ensure deletion is persisted
-        FlushParam flushParam = FlushParam.newBuilder()
-                .addCollectionName(collectionName)
-                .build();
-        milvusClient.flush(flushParam);
-
-        log.info("Batch deletion completed for user {}, total deleted: {}", userId, totalDeleted);
+    /**
+     * Delete again, from the target, copied rows of users whose prompts were deleted during the copy
+     */
+    void reapplyDeletes(String collectionName) {
+        DualWrite dualWrite = dualWrites.get(collectionName);
+        if (dualWrite == null) {
+            return;
+        }
+        for (Map.Entry<Long, Long> delete : dualWrite.deletes().entrySet()) {
+            // Copied rows are the ones stamped at or before the cutoff
+            long bound = Math.min(delete.getValue(), dualWrite.cutoff() + 1);
+            deleteByExpression(dualWrite.target(),
+                    String.format("user_id == %d && %s < %d", delete.getKey(), TIMESTAMP_FIELD, bound),
+                    "Delete copied prompts of user " + delete.getKey());
+        }
     }
 
     /**
-     * Ensure that a collection exists, create it if it doesn't
+     * Serve the collection from the target only (reads and writes), before the source is dropped
      */
-    private void ensureCollectionExists(String collectionName) {
-        if (!collectionExists(collectionName)) {
-            createCollection(collectionName);
+    void redirect(String collectionName, String target) {
+        synchronized (dualWriteLock) {
+            redirects.put(collectionName, target);
+            dualWrites.remove(collectionName);
         }
     }
 
     /**
-     * Check if a collection exists
+     * Make the collection name an alias of the target and stop redirecting
      */
-    private boolean collectionExists(String collectionName) {
-        try {
-            HasCollectionParam hasCollectionParam = HasCollectionParam.newBuilder()
-                    .withCollectionName(collectionName)
-                    .build();
+    void completeMigration(String collectionName, String target) {
+        createAlias(collectionName, target);
+        redirects.remove(collectionName);
+        collectionManager.invalidate(collectionName);
+        indexManager.forget(collectionName);
+    }
 
-            R<Boolean> response = milvusClient.hasCollection(hasCollectionParam);
-            handleResponse(response, "Check collection existence: " + collectionName);
+    void abortMigration(String collectionName) {
+        dualWrites.remove(collectionName);
+        redirects.remove(collectionName);
+    }
 
-            return response.getData();
-        } catch (Exception e) {
-            log.error("Error checking collection existence {}: {}", collectionName, e.getMessage(), e);
-            return false;
+    @Override
+    public void startShadowWrites(String collectionName, String shadow) {
+        synchronized (dualWriteLock) {
+            boolean migrating = dualWrites.containsKey(collectionName) || redirects.containsKey(collectionName)
+                    || dualWrites.values().stream().anyMatch(dualWrite -> dualWrite.target().equals(collectionName));
+            if (migrating) {
+                throw new IllegalStateException("Collection " + collectionName + " is being migrated");
+            }
+            startDualWrite(collectionName, shadow);
         }
     }
 
     /**
-     * Create a new collection with vector field and user_id field
+     * Copy the rows stamped at or before the cutoff, as in a migration, and re-apply the deletes that raced with the copy
+     */
+    @Override
+    public long copyToShadow(String collectionName, String source, String shadow, int batchSize) {
+        DualWrite dualWrite = dualWrites.get(collectionName);
+        if (dualWrite == null || !dualWrite.target().equals(shadow)) {
+            throw new IllegalStateException("Writes of collection " + collectionName + " are not mirrored into " + shadow);
+        }
+        long copied = copyPrompts(source, shadow, dualWrite.cutoff(), batchSize, rows -> {
+        });
+        reapplyDeletes(collectionName);
+        return copied;
+    }
+
+    @Override
+    public void switchToShadow(String collectionName, Runnable redirect) {
+        synchronized (dualWriteLock) {
+            redirect.run();
+            dualWrites.remove(collectionName);
+        }
+    }
+
+    @Override
+    public void stopShadowWrites(String collectionName) {
+        dualWrites.remove(collectionName);
+    }
+
+    private void createAlias(String alias, String collectionName) {
+        CreateAliasParam aliasParam = CreateAliasParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withAlias(alias)
+                .build();
+        handleResponse(milvusClient.createAlias(aliasParam), "Create alias " + alias + " for collection " + collectionName);
+        log.info("Collection name {} now refers to collection {}", alias, collectionName);
+    }
+
+    /**
+     * Create a new collection with vector field and user_id field; user_id is the partition key
      */
     private void createCollection(String collectionName) {
         try {
@@ -378,6 +963,7 @@ public class MilvusPromptRagService implements PromptRagService {
                     FieldType.newBuilder()
                             .withName(USER_ID_FIELD)
                             .withDataType(DataType.Int64)
+                            .withPartitionKey(true)
                             .build(),
                     FieldType.newBuilder()
                             .withName(PROMPT_TEXT_FIELD)
@@ -402,6 +988,7 @@ public class MilvusPromptRagService implements PromptRagService {
             CreateCollectionParam createParam = CreateCollectionParam.newBuilder()
                     .withCollectionName(collectionName)
                     .withSchema(schema)
+                    .withPartitionsNum(partitions)
                     .build();
 
             R<RpcStatus> response = milvusClient.createCollection(createParam);
@@ -422,18 +1009,8 @@ public class MilvusPromptRagService implements PromptRagService {
      */
     private void createIndexes(String collectionName) {
         try {
-            // Create vector index
-            CreateIndexParam vectorIndexParam = CreateIndexParam.newBuilder()
-                    .withCollectionName(collectionName)
-                    .withFieldName(VECTOR_FIELD)
-                    .withIndexName(VECTOR_INDEX_NAME)
-                    .withIndexType(io.milvus.param.IndexType.IVF_FLAT)
-                    .withMetricType(io.milvus.param.MetricType.L2)
-                    .withExtraParam("{\"nlist\":1024}")
-                    .build();
-
-            R<RpcStatus> vectorIndexResponse = milvusClient.createIndex(vectorIndexParam);
-            handleResponse(vectorIndexResponse, "Create vector index for collection " + collectionName);
+            // Create vector index (type chosen by the index policy)
+            indexManager.createVectorIndex(collectionName, VECTOR_FIELD, VECTOR_INDEX_NAME);
 
             // Create index for user_id field to improve query performance
             CreateIndexParam userIdIndexParam = CreateIndexParam.newBuilder()
@@ -462,67 +1039,6 @@ public class MilvusPromptRagService implements PromptRagService {
         }
     }
 
-    /**
-     * Load collection into memory
-     */
-    private void loadCollection(String collectionName) {
-        try {
-            // Check if collection is already loaded
-            GetLoadStateParam getLoadStateParam = GetLoadStateParam.newBuilder()
-                    .withCollectionName(collectionName)
-                    .build();
-
-            R<io.milvus.grpc.GetLoadStateResponse> stateResponse = milvusClient.getLoadState(getLoadStateParam);
-            if (stateResponse.getStatus() == R.Status.Success.getCode() &&
-                    stateResponse.getData().getState() == io.milvus.grpc.LoadState.LoadStateLoaded) {
-                return; // Collection is already loaded
-            }
-
-            // Load collection
-            LoadCollectionParam loadParam = LoadCollectionParam.newBuilder()
-                    .withCollectionName(collectionName)
-                    .build();
-
-            R<RpcStatus> response = milvusClient.loadCollection(loadParam);
-            handleResponse(response, "Load collection " + collectionName);
-
-            // Wait for collection to be loaded
-            waitForCollectionLoad(collectionName);
-
-            log.debug("Successfully loaded collection: {}", collectionName);
-        } catch (Exception e) {
-            log.error("Error loading collection {}: {}", collectionName, e.getMessage(), e);
-            throw new RuntimeException("Failed to load collection", e);
-        }
-    }
-
-    /**
-     * Wait for collection to be fully loaded
-     */
-    private void waitForCollectionLoad(String collectionName) {
-        try {
-            for (int i = 0; i < 30; i++) { // Wait up to 30 seconds
-                GetLoadStateParam getLoadStateParam = GetLoadStateParam.newBuilder()
-                        .withCollectionName(collectionName)
-                        .build();
-
-                R<io.milvus.grpc.GetLoadStateResponse> response = milvusClient.getLoadState(getLoadStateParam);
-                if (response.getStatus() == R.Status.Success.getCode() &&
-                        response.getData().getState() == io.milvus.grpc.LoadState.LoadStateLoaded) {
-                    return;
-                }
-
-                TimeUnit.SECONDS.sleep(1);
-            }
-            log.warn("Collection {} may not be fully loaded yet", collectionName);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            log.warn("Interrupted while waiting for collection {} to load", collectionName);
-        } catch (Exception e) {
-            log.warn("Error checking load state for collection {}: {}", collectionName, e.getMessage());
-        }
-    }
-
     /**
      * Handle Milvus API response and throw exception if failed
      */
@@ -554,4 +1070,11 @@ public class MilvusPromptRagService implements PromptRagService {
             return timestamp;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Migration or rebuild in progress: target collection, copy cutoff and users whose prompts were deleted meanwhile
+     * (with the timestamp bound of the delete, Long.MAX_VALUE for all prompts)
+     */
+    private record DualWrite(String target, long cutoff, Map<Long, Long> deletes) {
+    }
+}
@@ -1,122 +1,225 @@
 package com.enable.ai.rag;
 
+import com.enable.ai.embedding.Embedding;
 import com.enable.ai.rag.vo.RagChunk;
+import com.enable.ai.rag.vo.ReindexResult;
+import com.enable.ai.rag.vo.RetrieveOptions;
 import com.enable.ai.service.EmbeddingService;
 import com.enable.ai.service.RagService;
+import com.enable.ai.util.AsyncUtils;
+import com.enable.ai.util.ContentHash;
+import com.enable.ai.util.MilvusExpressions;
 import com.enable.ai.util.TextChunker;
 import io.milvus.client.MilvusServiceClient;
+import io.milvus.common.clientenum.ConsistencyLevelEnum;
+import io.milvus.orm.iterator.QueryIterator;
 import io.milvus.grpc.DataType;
+import io.milvus.grpc.MutationResult;
+import io.milvus.grpc.QueryResults;
 import io.milvus.grpc.SearchResults;
 import io.milvus.param.R;
 import io.milvus.param.RpcStatus;
 import io.milvus.param.collection.*;
+import io.milvus.param.dml.DeleteParam;
 import io.milvus.param.dml.InsertParam;
+import io.milvus.param.dml.QueryIteratorParam;
+import io.milvus.param.dml.QueryParam;
 import io.milvus.param.dml.SearchParam;
+import io.milvus.param.dml.UpsertParam;
 import io.milvus.param.index.CreateIndexParam;
+import io.milvus.response.QueryResultsWrapper;
+import io.milvus.response.SearchResultsWrapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class MilvusRagService implements RagService {
+public class MilvusRagService implements RagService, MilvusIndexManager.CollectionWriter {
 
     private final MilvusServiceClient milvusClient;
     private final EmbeddingService embeddingService;
+    private final MilvusCollectionManager collectionManager;
+    private final IngestionPipeline ingestionPipeline;
+    private final MilvusIndexManager indexManager;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Collections whose index is being rebuilt: writes and deletes are mirrored into the shadow collection
+     */
+    private final Map<String, ShadowCopy> shadows = new ConcurrentHashMap<>();
     
     private static final String ID_FIELD = "id";
     private static final String TEXT_FIELD = "text";
     private static final String VECTOR_FIELD = "vector";
+    private static final String DOC_ID_FIELD = "doc_id";
+    private static final String CHUNK_INDEX_FIELD = "chunk_index";
     private static final String INDEX_NAME = "vector_index";
+    private static final String DOC_ID_INDEX_NAME = "doc_id_index";
+    private static final int ID_LOOKUP_BATCH_SIZE = 1000;
+    private static final long QUERY_BATCH_SIZE = 1000L;
 
 
     @Override
     public void addChunkToCollection(String collectionName, RagChunk chunk) {
+        AsyncUtils.join(addChunkToCollectionAsync(collectionName, chunk));
+    }
+
+    @Override
+    public CompletableFuture<Void> addChunkToCollectionAsync(String collectionName, RagChunk chunk) {
+        String docId = chunk.getDocId() != null ? chunk.getDocId() : "";
+        String chunkId = ContentHash.chunkId(docId, chunk.getText());
+        RagChunk row = new RagChunk(chunkId, docId, chunk.getChunkIndex(), chunk.getText());
+        return collectionReady(collectionName)
+            // Skip unchanged content with a primary-key lookup before any embedding call
+            .thenCompose(ignored -> findExistingIdsAsync(collectionName, List.of(chunkId)))
+            .thenCompose(existingIds -> {
+                if (existingIds.contains(chunkId)) {
+                    log.info("Chunk {} already present in collection {}, skipping", chunkId, collectionName);
+                    return CompletableFuture.<Void>completedFuture(null);
+                }
+                // Generate embedding for the chunk text
+                return embeddingService.generateEmbeddingAsync(chunk.getText())
+                    .thenCompose(embedding -> upsertAsync(collectionName, List.of(row), List.of(embedding),
+                        "Upsert chunk to collection " + collectionName))
+                    .thenRun(() -> log.info("Successfully added chunk to collection: {}", collectionName));
+            })
+            .handle((ignored, e) -> {
+                if (e != null) {
+                    log.error("Error adding chunk to collection {}: {}", collectionName, e.getMessage(), e);
+                    collectionManager.invalidate(collectionName);
+                    throw new RuntimeException("Failed to add chunk to collection", AsyncUtils.unwrap(e));
+                }
+                return null;
+            });
+    }
+
+    @Override
+    public List<RagChunk> retrieveTopKChunks(String collectionName, String query, int k, RetrieveOptions options) {
+        return AsyncUtils.join(retrieveTopKChunksAsync(collectionName, query, k, options));
+    }
+
+    @Override
+    public CompletableFuture<List<RagChunk>> retrieveTopKChunksAsync(String collectionName, String query, int k, RetrieveOptions options) {
+        return embeddingService.generateEmbeddingAsync(query)
+            .thenCompose(queryEmbedding -> retrieveTopKChunksAsync(collectionName, query, queryEmbedding, k, options))
+            .exceptionally(e -> {
+                log.error("Error retrieving chunks from collection {}: {}", collectionName, e.getMessage(), e);
+                return new ArrayList<>();
+            });
+    }
+
+    @Override
+    public CompletableFuture<List<RagChunk>> retrieveTopKChunksAsync(String collectionName, String query, Embedding queryEmbedding,
+                                                                     int k, RetrieveOptions options) {
+        MilvusIndexManager.IndexSpec spec;
+        SearchParam searchParam;
         try {
-            // Ensure collection exists
-            ensureCollectionExists(collectionName);
-            
-            // Generate embedding for the chunk text
-            List<Float> embedding = embeddingService.generateEmbedding(chunk.getText());
-            
-            // Generate a unique ID for this chunk
-            String chunkId = UUID.randomUUID().toString();
-            
-            // Prepare data for insertion
-            List<String> ids = List.of(chunkId);
-            List<String> texts = List.of(chunk.getText());
-            List<List<Float>> vectors = List.of(embedding);
-            
-            List<InsertParam.Field> fields = Arrays.asList(
-                new InsertParam.Field(ID_FIELD, ids),
-                new InsertParam.Field(TEXT_FIELD, texts),
-                new InsertParam.Field(VECTOR_FIELD, vectors)
-            );
-            
-            InsertParam insertParam = InsertParam.newBuilder()
-                .withCollectionName(collectionName)
-                .withFields(fields)
+            // Check if collection exists and is loaded (cached after the first call)
+            String physical = indexManager.physical(collectionName);
+            if (!collectionManager.exists(physical)) {
+                log.warn("Collection {} does not exist", collectionName);
+                return CompletableFuture.completedFuture(new ArrayList<>());
+            }
+            collectionManager.ensureLoaded(physical);
+            spec = indexManager.spec(collectionName, VECTOR_FIELD, INDEX_NAME);
+
+            // Prepare search parameters
+            List<String> searchOutputFields = outputFields(collectionName, options != null && options.isIncludeVectors());
+            searchParam = SearchParam.newBuilder()
+                .withCollectionName(physical)
+                .withMetricType(spec.metricType())
+                .withOutFields(searchOutputFields)
+                .withTopK(k)
+                .withFloatVectors(List.of(indexManager.toStoredVector(spec, queryEmbedding)))
+                .withVectorFieldName(VECTOR_FIELD)
+                .withParams(indexManager.searchParams(spec, k, options))
                 .build();
-            
-            R<io.milvus.grpc.MutationResult> response = milvusClient.insert(insertParam);
-            handleResponse(response, "Insert chunk to collection " + collectionName);
-            
-            log.info("Successfully added chunk to collection: {}", collectionName);
         } catch (Exception e) {
-            log.error("Error adding chunk to collection {}: {}", collectionName, e.getMessage(), e);
-            throw new RuntimeException("Failed to add chunk to collection", e);
+            log.error("Error retrieving chunks from collection {}: {}", collectionName, e.getMessage(), e);
+            collectionManager.invalidate(collectionName);
+            return CompletableFuture.completedFuture(new ArrayList<>());
         }
+
+        return AsyncUtils.toCompletableFuture(milvusClient.searchAsync(searchParam))
+            .thenApply(response -> {
+                handleResponse(response, "Search in collection " + collectionName);
+
+                SearchResultsWrapper wrapper = new SearchResultsWrapper(response.getData().getResults());
+                List<RagChunk> chunks = new ArrayList<>();
+
+                if (response.getData().getResults().getTopK() > 0) {
+                    for (SearchResultsWrapper.IDScore idScore : wrapper.getIDScore(0)) {
+                        chunks.add(toRagChunk(idScore, spec));
+                    }
+                }
+
+                log.info("Retrieved {} chunks from collection: {}", chunks.size(), collectionName);
+                return chunks;
+            })
+            .exceptionally(e -> {
+                log.error("Error retrieving chunks from collection {}: {}", collectionName, e.getMessage(), e);
+                collectionManager.invalidate(collectionName);
+                return new ArrayList<>();
+            });
     }
 
     @Override
-    public List<RagChunk> retrieveTopKChunks(String collectionName, String query, int k) {
+    public List<List<RagChunk>> retrieveTopKChunksBatch(String collectionName, List<String> queries, int k) {
+        List<List<RagChunk>> results = new ArrayList<>(queries.size());
+        if (queries.isEmpty()) {
+            return results;
+        }
         try {
-            // Check if collection exists
-            if (!collectionExists(collectionName)) {
+            // Check if collection exists and is loaded (cached after the first call)
+            String physical = indexManager.physical(collectionName);
+            if (!collectionManager.exists(physical)) {
                 log.warn("Collection {} does not exist", collectionName);
-                return new ArrayList<>();
+                return emptyResults(queries.size());
             }
-            
-            // Load collection if not loaded
-            loadCollection(collectionName);
-            
-            // Generate embedding for the query
-            List<Float> queryEmbedding = embeddingService.generateEmbedding(query);
-            
-            // Prepare search parameters
-            List<String> searchOutputFields = Arrays.asList(ID_FIELD, TEXT_FIELD);
+            collectionManager.ensureLoaded(physical);
+            MilvusIndexManager.IndexSpec spec = indexManager.spec(collectionName, VECTOR_FIELD, INDEX_NAME);
+
+            // Embed all queries in one batch call
+            List<Embedding> queryEmbeddings = embeddingService.generateBatchEmbeddings(queries);
+
+            // One search request with nq = queries.size()
             SearchParam searchParam = SearchParam.newBuilder()
-                .withCollectionName(collectionName)
-                .withMetricType(io.milvus.param.MetricType.L2)
-                .withOutFields(searchOutputFields)
+                .withCollectionName(physical)
+                .withMetricType(spec.metricType())
+                .withOutFields(outputFields(collectionName))
                 .withTopK(k)
-                .withFloatVectors(List.of(queryEmbedding))
+                .withFloatVectors(indexManager.toStoredVectors(spec, queryEmbeddings))
                 .withVectorFieldName(VECTOR_FIELD)
-                .withParams("{\"nprobe\":10}")
+                .withParams(indexManager.searchParams(spec, k, null))
                 .build();
-            
+
             R<SearchResults> response = milvusClient.search(searchParam);
-            handleResponse(response, "Search in collection " + collectionName);
-            
-            SearchResults results = response.getData();
-            List<RagChunk> chunks = new ArrayList<>();
-            
-            if (results.getResults().getTopK() > 0) {
-                for (int i = 0; i < Math.min(results.getResults().getTopK(), k); i++) {
-                    String text = results.getResults().getFieldsData(1).getScalars().getStringData().getData(i);
-                    chunks.add(new RagChunk(text));
+            handleResponse(response, "Batch search in collection " + collectionName);
+
+            SearchResultsWrapper wrapper = new SearchResultsWrapper(response.getData().getResults());
+            for (int i = 0; i < queries.size(); i++) {
+                List<RagChunk> chunks = new ArrayList<>();
+                for (SearchResultsWrapper.IDScore idScore : wrapper.getIDScore(i)) {
+                    chunks.add(toRagChunk(idScore, spec));
                 }
+                results.add(chunks);
             }
-            
-            log.info("Retrieved {} chunks from collection: {}", chunks.size(), collectionName);
-            return chunks;
+
+            log.info("Retrieved chunks for {} queries from collection: {}", queries.size(), collectionName);
+            return results;
         } catch (Exception e) {
-            log.error("Error retrieving chunks from collection {}: {}", collectionName, e.getMessage(), e);
-            return new ArrayList<>();
+            log.error("Error batch retrieving chunks from collection {}: {}", collectionName, e.getMessage(), e);
+            collectionManager.invalidate(collectionName);
+            return emptyResults(queries.size());
         }
     }
 
@@ -134,38 +237,62 @@ public class MilvusRagService implements RagService {
                 return;
             }
             
-            // Prepare data for batch insertion
-            List<String> ids = new ArrayList<>();
-            List<String> texts = new ArrayList<>();
-            List<List<Float>> vectors = new ArrayList<>();
-            
-            for (String chunk : textChunks) {
-                ids.add(UUID.randomUUID().toString());
-                texts.add(chunk);
-                vectors.add(embeddingService.generateEmbedding(chunk));
+            // Skip chunks whose content hash is already stored, before any embedding call
+            List<String> newChunks = filterNewChunks(collectionName, textChunks,
+                AsyncUtils.join(findExistingIdsAsync(collectionName, chunkIds(textChunks))));
+            if (newChunks.isEmpty()) {
+                return;
             }
             
-            List<InsertParam.Field> fields = Arrays.asList(
-                new InsertParam.Field(ID_FIELD, ids),
-                new InsertParam.Field(TEXT_FIELD, texts),
-                new InsertParam.Field(VECTOR_FIELD, vectors)
-            );
-            
-            InsertParam insertParam = InsertParam.newBuilder()
-                .withCollectionName(collectionName)
-                .withFields(fields)
-                .build();
-            
-            R<io.milvus.grpc.MutationResult> response = milvusClient.insert(insertParam);
-            handleResponse(response, "Insert context chunks to collection " + collectionName);
+            // Embed in provider-sized batches and upsert in size-capped batches
+            Map<String, Integer> ordinals = ordinals(textChunks);
+            ingestionPipeline.ingest(collectionName, newChunks,
+                (texts, embeddings) -> upsertAsync(collectionName, toRows("", texts, ordinals), embeddings,
+                    "Upsert context chunks to collection " + collectionName).join());
             
-            log.info("Successfully added {} chunks from context to collection: {}", textChunks.size(), collectionName);
+            log.info("Successfully added {} new of {} chunks from context to collection: {}",
+                newChunks.size(), textChunks.size(), collectionName);
         } catch (Exception e) {
             log.error("Error adding context to collection {}: {}", collectionName, e.getMessage(), e);
+            collectionManager.invalidate(collectionName);
             throw new RuntimeException("Failed to add context to collection", e);
         }
     }
 
+    @Override
+    public CompletableFuture<Void> addContextToCollectionAsync(String collectionName, String context) {
+        // Split context into chunks
+        List<String> textChunks = TextChunker.chunkText(context);
+
+        if (textChunks.isEmpty()) {
+            log.warn("No chunks generated from context for collection: {}", collectionName);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return collectionReady(collectionName)
+            .thenCompose(ignored -> findExistingIdsAsync(collectionName, chunkIds(textChunks)))
+            .thenCompose(existingIds -> {
+                List<String> newChunks = filterNewChunks(collectionName, textChunks, existingIds);
+                if (newChunks.isEmpty()) {
+                    return CompletableFuture.<Void>completedFuture(null);
+                }
+                Map<String, Integer> ordinals = ordinals(textChunks);
+                return ingestionPipeline.ingestAsync(collectionName, newChunks,
+                        (texts, embeddings) -> upsertAsync(collectionName, toRows("", texts, ordinals), embeddings,
+                            "Upsert context chunks to collection " + collectionName).join())
+                    .thenRun(() -> log.info("Successfully added {} new of {} chunks from context to collection: {}",
+                        newChunks.size(), textChunks.size(), collectionName));
+            })
+            .handle((ignored, e) -> {
+                if (e != null) {
+                    log.error("Error adding context to collection {}: {}", collectionName, e.getMessage(), e);
+                    collectionManager.invalidate(collectionName);
+                    throw new RuntimeException("Failed to add context to collection", AsyncUtils.unwrap(e));
+                }
+                return null;
+            });
+    }
+
     @Override
     public String retrieveContext(String collectionName, String query, int k) {
         try {
@@ -195,21 +322,97 @@ public class MilvusRagService implements RagService {
         }
     }
 
+    @Override
+    public ReindexResult reindexDocument(String collectionName, String docId, String text) {
+        try {
+            ensureCollectionExists(collectionName);
+            if (!hasDocumentFields(collectionName)) {
+                throw new IllegalStateException("Collection " + collectionName
+                    + " was created without doc_id/chunk_index fields; recreate it to use document re-indexing");
+            }
+            collectionManager.ensureLoaded(indexManager.physical(collectionName));
+
+            Map<String, Integer> desired = new LinkedHashMap<>();
+            Map<String, String> texts = new HashMap<>();
+            List<String> textChunks = TextChunker.chunkText(text);
+            for (int i = 0; i < textChunks.size(); i++) {
+                String chunkId = ContentHash.chunkId(docId, textChunks.get(i));
+                if (desired.putIfAbsent(chunkId, i) == null) {
+                    texts.put(chunkId, textChunks.get(i));
+                }
+            }
+
+            // Diff the stored chunk hashes of the document against the new chunking
+            List<String> removedIds = new ArrayList<>();
+            List<String> reorderedIds = new ArrayList<>();
+            Set<String> storedIds = new HashSet<>();
+            for (QueryResultsWrapper.RowRecord record : queryDocument(collectionName, docId, List.of(ID_FIELD, CHUNK_INDEX_FIELD))) {
+                String chunkId = (String) record.get(ID_FIELD);
+                storedIds.add(chunkId);
+                Integer ordinal = desired.get(chunkId);
+                if (ordinal == null) {
+                    removedIds.add(chunkId);
+                } else if (ordinal != ((Long) record.get(CHUNK_INDEX_FIELD)).intValue()) {
+                    reorderedIds.add(chunkId);
+                }
+            }
+
+            // Write first and delete stale chunks last: a failure part-way leaves extra chunks, never
+            // missing ones, and the content-hash ids make a retry skip whatever was already written
+            if (!reorderedIds.isEmpty()) {
+                // Same content at a new position: rewrite the row with its stored vector, no embedding needed
+                List<RagChunk> rows = new ArrayList<>(reorderedIds.size());
+                List<Embedding> embeddings = new ArrayList<>(reorderedIds.size());
+                for (QueryResultsWrapper.RowRecord record : queryByIds(collectionName, reorderedIds, List.of(ID_FIELD, VECTOR_FIELD))) {
+                    String chunkId = (String) record.get(ID_FIELD);
+                    @SuppressWarnings("unchecked")
+                    List<Float> vector = (List<Float>) record.get(VECTOR_FIELD);
+                    rows.add(new RagChunk(chunkId, docId, desired.get(chunkId), texts.get(chunkId)));
+                    embeddings.add(Embedding.fromFloatList(vector));
+                }
+                AsyncUtils.join(upsertAsync(collectionName, rows, embeddings, "Reorder chunks of document " + docId));
+            }
+
+            List<String> addedTexts = new ArrayList<>();
+            for (Map.Entry<String, Integer> entry : desired.entrySet()) {
+                if (!storedIds.contains(entry.getKey())) {
+                    addedTexts.add(texts.get(entry.getKey()));
+                }
+            }
+            Map<String, Integer> ordinals = ordinals(textChunks);
+            ingestionPipeline.ingest(collectionName, addedTexts,
+                (batchTexts, embeddings) -> upsertAsync(collectionName, toRows(docId, batchTexts, ordinals), embeddings,
+                    "Upsert chunks of document " + docId).join());
+            deleteByIds(collectionName, removedIds);
+
+            int unchanged = storedIds.size() - removedIds.size() - reorderedIds.size();
+            ReindexResult result = new ReindexResult(docId, addedTexts.size(), removedIds.size(), unchanged, reorderedIds.size());
+            log.info("Reindexed document {} in collection {}: {}", docId, collectionName, result);
+            return result;
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error reindexing document {} in collection {}: {}", docId, collectionName, e.getMessage(), e);
+            collectionManager.invalidate(collectionName);
+            throw new RuntimeException("Failed to reindex document", e);
+        }
+    }
+
+    /**
+     * Whether the collection exists in Milvus
+     */
+    public boolean collectionExists(String collectionName) {
+        return collectionManager.exists(indexManager.physical(collectionName));
+    }
+
     @Override
     public void deleteCollection(String collectionName) {
         try {
-            if (!collectionExists(collectionName)) {
+            if (!indexManager.drop(collectionName)) {
                 log.warn("Collection {} does not exist, nothing to delete", collectionName);
                 return;
             }
             
-            DropCollectionParam dropParam = DropCollectionParam.newBuilder()
-                .withCollectionName(collectionName)
-                .build();
-            
-            R<RpcStatus> response = milvusClient.dropCollection(dropParam);
-            handleResponse(response, "Delete collection " + collectionName);
-            
             log.info("Successfully deleted collection: {}", collectionName);
         } catch (Exception e) {
             log.error("Error deleting collection {}: {}", collectionName, e.getMessage(), e);
@@ -218,31 +421,485 @@ public class MilvusRagService implements RagService {
     }
 
     /**
-     * Ensure that a collection exists, create it if it doesn't
+     * Insert chunks whose embeddings are already computed, e.g. when promoting a local collection
      */
-    private void ensureCollectionExists(String collectionName) {
-        if (!collectionExists(collectionName)) {
-            createCollection(collectionName);
+    public void insertEmbeddedChunks(String collectionName, List<RagChunk> chunks, List<Embedding> embeddings) {
+        if (chunks.size() != embeddings.size()) {
+            throw new IllegalArgumentException("Chunks and embeddings must have the same size");
+        }
+        if (chunks.isEmpty()) {
+            return;
+        }
+        try {
+            ensureCollectionExists(collectionName);
+            AsyncUtils.join(upsertAsync(collectionName, chunks, embeddings, "Upsert embedded chunks to collection " + collectionName));
+
+            log.info("Successfully inserted {} embedded chunks to collection: {}", chunks.size(), collectionName);
+        } catch (Exception e) {
+            log.error("Error inserting embedded chunks to collection {}: {}", collectionName, e.getMessage(), e);
+            collectionManager.invalidate(collectionName);
+            throw new RuntimeException("Failed to insert embedded chunks to collection", e);
         }
     }
-    
+
     /**
-     * Check if a collection exists
+     * Upsert chunks keyed by their content hash, so writing the same text twice never duplicates a row.
+     * Collections created before document support get only the id, text and vector fields.
      */
-    private boolean collectionExists(String collectionName) {
+    private CompletableFuture<Void> upsertAsync(String collectionName, List<RagChunk> chunks, List<Embedding> embeddings, String operation) {
+        // Shadow before name, see switchToShadow
+        ShadowCopy shadow = shadows.get(collectionName);
+        String physical = indexManager.physical(collectionName);
+        List<String> ids = new ArrayList<>(chunks.size());
+        List<String> texts = new ArrayList<>(chunks.size());
+        List<String> docIds = new ArrayList<>(chunks.size());
+        List<Long> chunkIndexes = new ArrayList<>(chunks.size());
+        for (RagChunk chunk : chunks) {
+            ids.add(chunk.getId());
+            texts.add(chunk.getText());
+            docIds.add(chunk.getDocId() != null ? chunk.getDocId() : "");
+            chunkIndexes.add((long) chunk.getChunkIndex());
+        }
+
+        MilvusIndexManager.IndexSpec spec = indexManager.spec(collectionName, VECTOR_FIELD, INDEX_NAME);
+        List<InsertParam.Field> fields = new ArrayList<>(Arrays.asList(
+            new InsertParam.Field(ID_FIELD, ids),
+            new InsertParam.Field(TEXT_FIELD, texts),
+            new InsertParam.Field(VECTOR_FIELD, indexManager.toStoredVectors(spec, embeddings))
+        ));
+        if (hasDocumentFields(collectionName)) {
+            fields.add(new InsertParam.Field(DOC_ID_FIELD, docIds));
+            fields.add(new InsertParam.Field(CHUNK_INDEX_FIELD, chunkIndexes));
+        }
+
+        UpsertParam upsertParam = UpsertParam.newBuilder()
+            .withCollectionName(physical)
+            .withFields(fields)
+            .build();
+
+        CompletableFuture<Void> mirrored = shadow == null ? CompletableFuture.completedFuture(null)
+            : mirror(shadow, ids, () -> AsyncUtils.toCompletableFuture(milvusClient.upsertAsync(UpsertParam.newBuilder()
+                .withCollectionName(shadow.name)
+                .withFields(fields)
+                .build())));
+        return AsyncUtils.toCompletableFuture(milvusClient.upsertAsync(upsertParam))
+            .thenAccept(response -> handleResponse(response, operation))
+            .thenCombine(mirrored, (written, ignored) -> written)
+            .thenRun(() -> {
+                indexManager.recordWrites(collectionName, chunks.size(), this);
+                eventPublisher.publishEvent(new ChunksChangedEvent(collectionName, chunks, List.of()));
+            });
+    }
+
+    /**
+     * Primary-key lookup of which of the given chunk ids are already stored
+     */
+    private CompletableFuture<Set<String>> findExistingIdsAsync(String collectionName, List<String> ids) {
+        String physical = indexManager.physical(collectionName);
         try {
-            HasCollectionParam hasCollectionParam = HasCollectionParam.newBuilder()
-                .withCollectionName(collectionName)
+            collectionManager.ensureLoaded(physical);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        List<CompletableFuture<List<String>>> lookups = new ArrayList<>();
+        for (int start = 0; start < ids.size(); start += ID_LOOKUP_BATCH_SIZE) {
+            List<String> batch = ids.subList(start, Math.min(start + ID_LOOKUP_BATCH_SIZE, ids.size()));
+            QueryParam queryParam = QueryParam.newBuilder()
+                .withCollectionName(physical)
+                .withExpr(MilvusExpressions.in(ID_FIELD, batch))
+                .withOutFields(List.of(ID_FIELD))
                 .build();
-            
-            R<Boolean> response = milvusClient.hasCollection(hasCollectionParam);
-            handleResponse(response, "Check collection existence: " + collectionName);
-            
-            return response.getData();
+            lookups.add(AsyncUtils.toCompletableFuture(milvusClient.queryAsync(queryParam))
+                .thenApply(response -> {
+                    handleResponse(response, "Look up chunk ids in collection " + collectionName);
+                    List<String> found = new ArrayList<>();
+                    for (QueryResultsWrapper.RowRecord record : new QueryResultsWrapper(response.getData()).getRowRecords()) {
+                        found.add((String) record.get(ID_FIELD));
+                    }
+                    return found;
+                }));
+        }
+
+        return CompletableFuture.allOf(lookups.toArray(new CompletableFuture[0]))
+            .thenApply(allDone -> {
+                Set<String> existing = new HashSet<>();
+                lookups.forEach(lookup -> existing.addAll(lookup.join()));
+                return existing;
+            });
+    }
+
+    /**
+     * All chunks of the document, paged with a query iterator so documents of any size are read completely
+     */
+    private List<QueryResultsWrapper.RowRecord> queryDocument(String collectionName, String docId, List<String> outFields) {
+        QueryIteratorParam iteratorParam = QueryIteratorParam.newBuilder()
+            .withCollectionName(indexManager.physical(collectionName))
+            .withExpr(MilvusExpressions.eq(DOC_ID_FIELD, docId))
+            .withOutFields(outFields)
+            .withBatchSize(QUERY_BATCH_SIZE)
+            .build();
+        R<QueryIterator> response = milvusClient.queryIterator(iteratorParam);
+        handleResponse(response, "Query chunks of document " + docId);
+
+        List<QueryResultsWrapper.RowRecord> records = new ArrayList<>();
+        QueryIterator iterator = response.getData();
+        try {
+            while (true) {
+                List<QueryResultsWrapper.RowRecord> batch = iterator.next();
+                if (batch.isEmpty()) {
+                    break;
+                }
+                records.addAll(batch);
+            }
+        } finally {
+            iterator.close();
+        }
+        return records;
+    }
+
+    private List<QueryResultsWrapper.RowRecord> queryByIds(String collectionName, List<String> ids, List<String> outFields) {
+        String physical = indexManager.physical(collectionName);
+        List<QueryResultsWrapper.RowRecord> records = new ArrayList<>(ids.size());
+        for (int start = 0; start < ids.size(); start += ID_LOOKUP_BATCH_SIZE) {
+            QueryParam queryParam = QueryParam.newBuilder()
+                .withCollectionName(physical)
+                .withExpr(MilvusExpressions.in(ID_FIELD, ids.subList(start, Math.min(start + ID_LOOKUP_BATCH_SIZE, ids.size()))))
+                .withOutFields(outFields)
+                .build();
+            R<QueryResults> response = milvusClient.query(queryParam);
+            handleResponse(response, "Query chunks by id in collection " + collectionName);
+            records.addAll(new QueryResultsWrapper(response.getData()).getRowRecords());
+        }
+        return records;
+    }
+
+    private void deleteByIds(String collectionName, List<String> ids) {
+        // Shadow before name, see switchToShadow
+        ShadowCopy shadow = shadows.get(collectionName);
+        String physical = indexManager.physical(collectionName);
+        for (int start = 0; start < ids.size(); start += ID_LOOKUP_BATCH_SIZE) {
+            String expr = MilvusExpressions.in(ID_FIELD, ids.subList(start, Math.min(start + ID_LOOKUP_BATCH_SIZE, ids.size())));
+            if (shadow != null) {
+                mirror(shadow, ids.subList(start, Math.min(start + ID_LOOKUP_BATCH_SIZE, ids.size())),
+                    () -> CompletableFuture.completedFuture(milvusClient.delete(DeleteParam.newBuilder()
+                        .withCollectionName(shadow.name)
+                        .withExpr(expr)
+                        .build()))).join();
+            }
+            DeleteParam deleteParam = DeleteParam.newBuilder()
+                .withCollectionName(physical)
+                .withExpr(expr)
+                .build();
+            R<MutationResult> response = milvusClient.delete(deleteParam);
+            handleResponse(response, "Delete chunks from collection " + collectionName);
+        }
+        if (!ids.isEmpty()) {
+            eventPublisher.publishEvent(new ChunksChangedEvent(collectionName, List.of(), ids));
+        }
+    }
+
+    /**
+     * Look up chunks by id; unknown ids are skipped
+     *
+     * @param includeVectors whether to return the stored vectors with the chunks
+     */
+    public CompletableFuture<List<RagChunk>> getChunksAsync(String collectionName, List<String> ids, boolean includeVectors) {
+        if (ids.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        QueryParam queryParam;
+        try {
+            String physical = indexManager.physical(collectionName);
+            collectionManager.ensureLoaded(physical);
+            queryParam = QueryParam.newBuilder()
+                .withCollectionName(physical)
+                .withExpr(MilvusExpressions.in(ID_FIELD, ids))
+                .withOutFields(outputFields(collectionName, includeVectors))
+                .build();
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return AsyncUtils.toCompletableFuture(milvusClient.queryAsync(queryParam))
+            .thenApply(response -> {
+                handleResponse(response, "Query chunks by id in collection " + collectionName);
+                List<RagChunk> chunks = new ArrayList<>();
+                for (QueryResultsWrapper.RowRecord record : new QueryResultsWrapper(response.getData()).getRowRecords()) {
+                    RagChunk chunk = new RagChunk((String) record.get(ID_FIELD), (String) record.get(TEXT_FIELD));
+                    if (record.contains(DOC_ID_FIELD)) {
+                        chunk.setDocId((String) record.get(DOC_ID_FIELD));
+                        chunk.setChunkIndex(((Long) record.get(CHUNK_INDEX_FIELD)).intValue());
+                    }
+                    if (record.contains(VECTOR_FIELD)) {
+                        chunk.setVector(toFloatArray(record.get(VECTOR_FIELD)));
+                    }
+                    chunks.add(chunk);
+                }
+                return chunks;
+            });
+    }
+
+    /**
+     * Stream the id and text of every chunk in the collection in batches, e.g. to rebuild a local index
+     */
+    public void scanChunks(String collectionName, int batchSize, Consumer<List<RagChunk>> consumer) {
+        String physical = indexManager.physical(collectionName);
+        if (!collectionManager.exists(physical)) {
+            return;
+        }
+        collectionManager.ensureLoaded(physical);
+        QueryIteratorParam iteratorParam = QueryIteratorParam.newBuilder()
+            .withCollectionName(physical)
+            .withOutFields(Arrays.asList(ID_FIELD, TEXT_FIELD))
+            .withBatchSize((long) batchSize)
+            .build();
+        R<QueryIterator> response = milvusClient.queryIterator(iteratorParam);
+        handleResponse(response, "Scan collection " + collectionName);
+
+        QueryIterator iterator = response.getData();
+        try {
+            while (true) {
+                List<QueryResultsWrapper.RowRecord> records = iterator.next();
+                if (records.isEmpty()) {
+                    break;
+                }
+                List<RagChunk> chunks = new ArrayList<>(records.size());
+                for (QueryResultsWrapper.RowRecord record : records) {
+                    chunks.add(new RagChunk((String) record.get(ID_FIELD), (String) record.get(TEXT_FIELD)));
+                }
+                consumer.accept(chunks);
+            }
+        } finally {
+            iterator.close();
+        }
+    }
+
+    @Override
+    public void startShadowWrites(String collectionName, String shadow) {
+        shadows.put(collectionName, new ShadowCopy(shadow));
+    }
+
+    /**
+     * Copy every chunk with its stored vector, skipping ids written or deleted since the mirroring
+     * started: the shadow already has their latest state
+     */
+    @Override
+    public long copyToShadow(String collectionName, String source, String shadow, int batchSize) {
+        ShadowCopy copy = shadows.get(collectionName);
+        if (copy == null || !copy.name.equals(shadow)) {
+            throw new IllegalStateException("Writes of collection " + collectionName + " are not mirrored into " + shadow);
+        }
+        List<String> outFields = outputFields(collectionName, true);
+        collectionManager.ensureLoaded(source);
+        QueryIteratorParam iteratorParam = QueryIteratorParam.newBuilder()
+            .withCollectionName(source)
+            .withOutFields(outFields)
+            .withBatchSize((long) batchSize)
+            .withConsistencyLevel(ConsistencyLevelEnum.STRONG)
+            .build();
+        R<QueryIterator> response = milvusClient.queryIterator(iteratorParam);
+        handleResponse(response, "Scan collection " + source);
+
+        long copied = 0;
+        QueryIterator iterator = response.getData();
+        try {
+            while (true) {
+                List<QueryResultsWrapper.RowRecord> records = iterator.next();
+                if (records.isEmpty()) {
+                    break;
+                }
+                // Held across the upsert, so a mirrored write of the same id either comes after it or is seen here
+                synchronized (copy) {
+                    List<QueryResultsWrapper.RowRecord> untouched = records.stream()
+                        .filter(record -> !copy.touchedIds.contains((String) record.get(ID_FIELD)))
+                        .toList();
+                    if (!untouched.isEmpty()) {
+                        List<InsertParam.Field> fields = new ArrayList<>();
+                        for (String field : outFields) {
+                            fields.add(new InsertParam.Field(field, untouched.stream().map(record -> record.get(field)).toList()));
+                        }
+                        R<MutationResult> upsertResponse = milvusClient.upsert(UpsertParam.newBuilder()
+                            .withCollectionName(shadow)
+                            .withFields(fields)
+                            .build());
+                        handleResponse(upsertResponse, "Copy chunks into collection " + shadow);
+                        copied += untouched.size();
+                    }
+                }
+            }
+        } finally {
+            iterator.close();
+        }
+        if (copy.failure != null) {
+            throw new IllegalStateException("Mirroring writes into collection " + shadow + " failed", copy.failure);
+        }
+        return copied;
+    }
+
+    /**
+     * Upserts and deletes read the shadow before resolving the collection name; with the redirect in
+     * place before the shadow is removed, a write sees the shadow, the redirect or both, and upserting
+     * the same chunk into the shadow twice is harmless
+     */
+    @Override
+    public void switchToShadow(String collectionName, Runnable redirect) {
+        ShadowCopy copy = shadows.get(collectionName);
+        if (copy != null && copy.failure != null) {
+            throw new IllegalStateException("Mirroring writes into collection " + copy.name + " failed", copy.failure);
+        }
+        redirect.run();
+        shadows.remove(collectionName);
+    }
+
+    @Override
+    public void stopShadowWrites(String collectionName) {
+        shadows.remove(collectionName);
+    }
+
+    /**
+     * Mark the ids as written, then apply the write to the shadow. A failed write fails the rebuild
+     * rather than the request: the collection being served has the row.
+     */
+    private CompletableFuture<Void> mirror(ShadowCopy shadow, List<String> ids, Supplier<CompletableFuture<? extends R<?>>> write) {
+        synchronized (shadow) {
+            shadow.touchedIds.addAll(ids);
+        }
+        CompletableFuture<? extends R<?>> written;
+        try {
+            written = write.get();
         } catch (Exception e) {
-            log.error("Error checking collection existence {}: {}", collectionName, e.getMessage(), e);
-            return false;
+            written = CompletableFuture.failedFuture(e);
+        }
+        return written.handle((response, e) -> {
+            Throwable failure = e != null ? e
+                : response.getStatus() != R.Status.Success.getCode() ? new RuntimeException(response.getMessage()) : null;
+            if (failure != null) {
+                log.error("Mirroring a write into collection {} failed: {}", shadow.name, failure.getMessage(), failure);
+                shadow.failure = failure;
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Drop chunks that are already stored and duplicates within the document
+     */
+    private List<String> filterNewChunks(String collectionName, List<String> textChunks, Set<String> existingIds) {
+        Map<String, String> newChunks = new LinkedHashMap<>();
+        for (String chunk : textChunks) {
+            String chunkId = ContentHash.chunkId(chunk);
+            if (!existingIds.contains(chunkId)) {
+                newChunks.putIfAbsent(chunkId, chunk);
+            }
+        }
+        if (newChunks.size() < textChunks.size()) {
+            log.info("Skipping {} of {} chunks already present in collection {}",
+                textChunks.size() - newChunks.size(), textChunks.size(), collectionName);
+        }
+        return new ArrayList<>(newChunks.values());
+    }
+
+    private static List<String> chunkIds(List<String> texts) {
+        List<String> ids = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            ids.add(ContentHash.chunkId(text));
+        }
+        return ids;
+    }
+
+    /**
+     * Position of the first occurrence of each chunk text in the document
+     */
+    private static Map<String, Integer> ordinals(List<String> textChunks) {
+        Map<String, Integer> ordinals = new HashMap<>();
+        for (int i = 0; i < textChunks.size(); i++) {
+            ordinals.putIfAbsent(textChunks.get(i), i);
         }
+        return ordinals;
+    }
+
+    private static List<RagChunk> toRows(String docId, List<String> texts, Map<String, Integer> ordinals) {
+        List<RagChunk> rows = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            rows.add(new RagChunk(ContentHash.chunkId(docId, text), docId, ordinals.getOrDefault(text, 0), text));
+        }
+        return rows;
+    }
+
+    private RagChunk toRagChunk(SearchResultsWrapper.IDScore idScore, MilvusIndexManager.IndexSpec spec) {
+        RagChunk chunk = new RagChunk(idScore.getStrID(), (String) idScore.get(TEXT_FIELD));
+        chunk.setScore(indexManager.similarity(spec, idScore.getScore()));
+        if (idScore.contains(DOC_ID_FIELD)) {
+            chunk.setDocId((String) idScore.get(DOC_ID_FIELD));
+            chunk.setChunkIndex(((Long) idScore.get(CHUNK_INDEX_FIELD)).intValue());
+        }
+        if (idScore.contains(VECTOR_FIELD)) {
+            chunk.setVector(toFloatArray(idScore.get(VECTOR_FIELD)));
+        }
+        return chunk;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static float[] toFloatArray(Object vector) {
+        return Embedding.fromFloatList((List<Float>) vector).vector();
+    }
+
+    private List<String> outputFields(String collectionName) {
+        return outputFields(collectionName, false);
+    }
+
+    private List<String> outputFields(String collectionName, boolean includeVectors) {
+        List<String> fields = new ArrayList<>(List.of(ID_FIELD, TEXT_FIELD));
+        if (hasDocumentFields(collectionName)) {
+            fields.add(DOC_ID_FIELD);
+            fields.add(CHUNK_INDEX_FIELD);
+        }
+        if (includeVectors) {
+            fields.add(VECTOR_FIELD);
+        }
+        return fields;
+    }
+
+    /**
+     * Whether the collection schema has doc_id/chunk_index (collections created before document support do not)
+     */
+    private boolean hasDocumentFields(String collectionName) {
+        return collectionManager.getSchema(indexManager.physical(collectionName)).getFieldsList().stream()
+            .anyMatch(field -> DOC_ID_FIELD.equals(field.getName()));
+    }
+
+    /**
+     * Ensure the collection exists as a future, so creation failures surface through the async chain.
+     * Only the first call for a collection does any RPCs.
+     */
+    private CompletableFuture<Void> collectionReady(String collectionName) {
+        try {
+            ensureCollectionExists(collectionName);
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static List<List<RagChunk>> emptyResults(int queries) {
+        List<List<RagChunk>> results = new ArrayList<>(queries);
+        for (int i = 0; i < queries; i++) {
+            results.add(new ArrayList<>());
+        }
+        return results;
+    }
+
+    /**
+     * Ensure that a collection exists, create it if it doesn't.
+     * Concurrent callers share a single creation.
+     */
+    private void ensureCollectionExists(String collectionName) {
+        collectionManager.ensureCreated(indexManager.physical(collectionName), () -> {
+            // An index rebuild may have dropped the collection without getting to create the alias
+            if (!indexManager.restoreAlias(collectionName)) {
+                createCollection(collectionName);
+            }
+        });
     }
     
     /**
@@ -267,6 +924,15 @@ public class MilvusRagService implements RagService {
                     .withName(VECTOR_FIELD)
                     .withDataType(DataType.FloatVector)
                     .withDimension(embeddingService.getEmbeddingDimension())
+                    .build(),
+                FieldType.newBuilder()
+                    .withName(DOC_ID_FIELD)
+                    .withDataType(DataType.VarChar)
+                    .withMaxLength(512)
+                    .build(),
+                FieldType.newBuilder()
+                    .withName(CHUNK_INDEX_FIELD)
+                    .withDataType(DataType.Int64)
                     .build()
             );
             
@@ -293,22 +959,22 @@ public class MilvusRagService implements RagService {
     }
     
     /**
-     * Create vector index for the collection
+     * Create vector index for the collection, plus the doc_id scalar index
      */
     private void createVectorIndex(String collectionName) {
         try {
-            CreateIndexParam indexParam = CreateIndexParam.newBuilder()
+            indexManager.createVectorIndex(collectionName, VECTOR_FIELD, INDEX_NAME);
+
+            // Create index for doc_id field so document re-indexing can find its chunks quickly
+            CreateIndexParam docIdIndexParam = CreateIndexParam.newBuilder()
                 .withCollectionName(collectionName)
-                .withFieldName(VECTOR_FIELD)
-                .withIndexName(INDEX_NAME)
-                .withIndexType(io.milvus.param.IndexType.IVF_FLAT)
-                .withMetricType(io.milvus.param.MetricType.L2)
-                .withExtraParam("{\"nlist\":1024}")
+                .withFieldName(DOC_ID_FIELD)
+                .withIndexName(DOC_ID_INDEX_NAME)
                 .build();
-            
-            R<RpcStatus> response = milvusClient.createIndex(indexParam);
-            handleResponse(response, "Create index for collection " + collectionName);
-            
+
+            R<RpcStatus> docIdIndexResponse = milvusClient.createIndex(docIdIndexParam);
+            handleResponse(docIdIndexResponse, "Create doc_id index for collection " + collectionName);
+
             log.info("Successfully created index for collection: {}", collectionName);
         } catch (Exception e) {
             log.error("Error creating index for collection {}: {}", collectionName, e.getMessage(), e);
@@ -316,55 +982,6 @@ public class MilvusRagService implements RagService {
         }
     }
     
-    /**
-     * Load collection into memory
-     */
-    private void loadCollection(String collectionName) {
-        try {
-            LoadCollectionParam loadParam = LoadCollectionParam.newBuilder()
-                .withCollectionName(collectionName)
-                .build();
-            
-            R<RpcStatus> response = milvusClient.loadCollection(loadParam);
-            handleResponse(response, "Load collection " + collectionName);
-            
-            // Wait for collection to be loaded
-            waitForCollectionLoad(collectionName);
-            
-            log.debug("Successfully loaded collection: {}", collectionName);
-        } catch (Exception e) {
-            log.error("Error loading collection {}: {}", collectionName, e.getMessage(), e);
-            throw new RuntimeException("Failed to load collection", e);
-        }
-    }
-    
-    /**
-     * Wait for collection to be fully loaded
-     */
-    private void waitForCollectionLoad(String collectionName) {
-        try {
-            for (int i = 0; i < 30; i++) { // Wait up to 30 seconds
-                GetLoadStateParam getLoadStateParam = GetLoadStateParam.newBuilder()
-                    .withCollectionName(collectionName)
-                    .build();
-                
-                R<io.milvus.grpc.GetLoadStateResponse> response = milvusClient.getLoadState(getLoadStateParam);
-                if (response.getStatus() == R.Status.Success.getCode() && 
-                    response.getData().getState() == io.milvus.grpc.LoadState.LoadStateLoaded) {
-                    return;
-                }
-                
-                TimeUnit.SECONDS.sleep(1);
-            }
-            log.warn("Collection {} may not be fully loaded yet", collectionName);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            log.warn("Interrupted while waiting for collection {} to load", collectionName);
-        } catch (Exception e) {
-            log.warn("Error checking load state for collection {}: {}", collectionName, e.getMessage());
-        }
-    }
-    
     /**
      * Handle Milvus API response and throw exception if failed
      */
@@ -375,4 +992,18 @@ public class MilvusRagService implements RagService {
             throw new RuntimeException(errorMsg);
         }
     }
+
+    /**
+     * Shadow collection of a rebuild in progress, with the ids written or deleted since the mirroring started
+     */
+    private static final class ShadowCopy {
+        private final String name;
+        // Guarded by the ShadowCopy monitor
+        private final Set<String> touchedIds = new HashSet<>();
+        private volatile Throwable failure;
+
+        private ShadowCopy(String name) {
+            this.name = name;
+        }
+    }
 }
\ No newline at end of file
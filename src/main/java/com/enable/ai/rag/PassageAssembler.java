@@ -0,0 +1,229 @@
+package com.enable.ai.rag;
+
+import com.enable.ai.embedding.VectorKernels;
+import com.enable.ai.rag.vo.Passage;
+import com.enable.ai.rag.vo.RagChunk;
+import com.enable.ai.rag.vo.RetrievalResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Post-retrieval stage that turns an over-fetched, ranked candidate list into a compact context.
+ * <p>
+ * First k chunks are picked by Maximal Marginal Relevance: each step takes the candidate maximizing
+ * lambda * sim(query, c) - (1 - lambda) * max sim(c, picked), so near-duplicates of an already
+ * picked chunk lose out to chunks that add information. Then picked chunks from the same source are
+ * stitched: consecutive chunks of a document (by chunk index), or any two chunks whose text overlaps
+ * by at least rag.refine.min-overlap-chars (the chunker's overlap window), become one passage with
+ * the shared span kept once. Chunks fully contained in another picked chunk are dropped.
+ */
+@Slf4j
+@Component
+public class PassageAssembler {
+
+    private final int candidateMultiplier;
+    private final float lambda;
+    private final int minOverlapChars;
+
+    public PassageAssembler(@Value("${rag.refine.candidate-multiplier:3}") int candidateMultiplier,
+                            @Value("${rag.refine.mmr-lambda:0.5}") float lambda,
+                            @Value("${rag.refine.min-overlap-chars:20}") int minOverlapChars) {
+        this.candidateMultiplier = Math.max(1, candidateMultiplier);
+        this.lambda = lambda;
+        this.minOverlapChars = Math.max(1, minOverlapChars);
+    }
+
+    /**
+     * Number of candidates to fetch for k results
+     */
+    public int candidates(int k) {
+        return k * candidateMultiplier;
+    }
+
+    /**
+     * @param queryVector the query embedding
+     * @param candidates  ranked candidates, with vectors when available
+     */
+    public RetrievalResult assemble(float[] queryVector, List<RagChunk> candidates, int k) {
+        List<RagChunk> baseline = candidates.subList(0, Math.min(k, candidates.size()));
+        List<RagChunk> picked = selectByMmr(queryVector, candidates, k);
+        List<Passage> passages = stitch(picked);
+
+        int baselineTokens = RetrievalResult.estimateTokens(baseline.stream().map(RagChunk::getText).toList());
+        int tokens = RetrievalResult.estimateTokens(passages.stream().map(Passage::getText).toList());
+        log.debug("Assembled {} passages from {} of {} candidates, ~{} tokens instead of ~{}",
+                passages.size(), picked.size(), candidates.size(), tokens, baselineTokens);
+        return new RetrievalResult(passages, candidates.size(), picked.size(), baselineTokens, tokens, baselineTokens - tokens);
+    }
+
+    /**
+     * Greedy MMR over the candidates; keeps the ranked order if any candidate lacks a vector
+     */
+    List<RagChunk> selectByMmr(float[] queryVector, List<RagChunk> candidates, int k) {
+        int n = candidates.size();
+        if (n <= k || candidates.stream().anyMatch(chunk -> chunk.getVector() == null)) {
+            return new ArrayList<>(candidates.subList(0, Math.min(k, n)));
+        }
+        float[] query = VectorKernels.normalize(queryVector);
+        float[][] vectors = new float[n][];
+        float[] relevance = new float[n];
+        float[] redundancy = new float[n];
+        for (int i = 0; i < n; i++) {
+            vectors[i] = VectorKernels.normalize(candidates.get(i).getVector());
+            relevance[i] = VectorKernels.dot(query, vectors[i]);
+            redundancy[i] = -1f;
+        }
+
+        boolean[] taken = new boolean[n];
+        List<RagChunk> picked = new ArrayList<>(k);
+        while (picked.size() < k) {
+            int best = -1;
+            float bestScore = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                if (taken[i]) {
+                    continue;
+                }
+                float score = lambda * relevance[i] - (1 - lambda) * Math.max(0f, redundancy[i]);
+                if (score > bestScore) {
+                    best = i;
+                    bestScore = score;
+                }
+            }
+            taken[best] = true;
+            picked.add(candidates.get(best));
+            for (int i = 0; i < n; i++) {
+                if (!taken[i]) {
+                    redundancy[i] = Math.max(redundancy[i], VectorKernels.dot(vectors[i], vectors[best]));
+                }
+            }
+        }
+        return picked;
+    }
+
+    /**
+     * Merge picked chunks into passages, ordered by the best pick in each passage
+     */
+    List<Passage> stitch(List<RagChunk> picked) {
+        int n = picked.size();
+        boolean[] dropped = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n && !dropped[i]; j++) {
+                if (i != j && !dropped[j] && sameSource(picked.get(i), picked.get(j))
+                        && picked.get(j).getText().contains(picked.get(i).getText())
+                        && (picked.get(i).getText().length() < picked.get(j).getText().length() || i > j)) {
+                    dropped[i] = true;
+                }
+            }
+        }
+
+        // Candidate links a -> b (b continues a), strongest first: consecutive chunk indexes, then text overlap
+        List<int[]> links = new ArrayList<>();
+        for (int a = 0; a < n; a++) {
+            for (int b = 0; b < n; b++) {
+                if (a == b || dropped[a] || dropped[b] || !sameSource(picked.get(a), picked.get(b))) {
+                    continue;
+                }
+                int overlap = overlap(picked.get(a).getText(), picked.get(b).getText());
+                boolean consecutive = hasDocument(picked.get(a))
+                        && picked.get(b).getChunkIndex() == picked.get(a).getChunkIndex() + 1;
+                if (overlap >= minOverlapChars) {
+                    links.add(new int[]{a, b, overlap, consecutive ? 1 : 0});
+                } else if (consecutive) {
+                    // Adjacent without a real shared span (a short match is coincidence): join as is
+                    links.add(new int[]{a, b, 0, 1});
+                }
+            }
+        }
+        links.sort(Comparator.<int[]>comparingInt(link -> -link[3]).thenComparingInt(link -> -link[2]));
+
+        int[] next = new int[n];
+        int[] previous = new int[n];
+        int[] overlapWithNext = new int[n];
+        Arrays.fill(next, -1);
+        Arrays.fill(previous, -1);
+        for (int[] link : links) {
+            int a = link[0];
+            int b = link[1];
+            if (next[a] == -1 && previous[b] == -1 && head(a, previous) != head(b, previous)) {
+                next[a] = b;
+                previous[b] = a;
+                overlapWithNext[a] = link[2];
+            }
+        }
+
+        List<Passage> passages = new ArrayList<>();
+        List<Integer> passageRanks = new ArrayList<>();
+        for (int start = 0; start < n; start++) {
+            if (dropped[start] || previous[start] != -1) {
+                continue;
+            }
+            StringBuilder text = new StringBuilder(picked.get(start).getText());
+            List<String> chunkIds = new ArrayList<>();
+            chunkIds.add(picked.get(start).getId());
+            int rank = start;
+            for (int i = start; next[i] != -1; i = next[i]) {
+                String continuation = picked.get(next[i]).getText().substring(overlapWithNext[i]);
+                if (overlapWithNext[i] == 0 && !continuation.isEmpty()) {
+                    text.append(' ');
+                }
+                text.append(continuation);
+                chunkIds.add(picked.get(next[i]).getId());
+                rank = Math.min(rank, next[i]);
+            }
+            passages.add(new Passage(picked.get(start).getDocId(), chunkIds, text.toString()));
+            passageRanks.add(rank);
+        }
+
+        Integer[] order = new Integer[passages.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(passageRanks::get));
+        List<Passage> ordered = new ArrayList<>(order.length);
+        for (int i : order) {
+            ordered.add(passages.get(i));
+        }
+        return ordered;
+    }
+
+    /**
+     * Length of the longest suffix of a that is a prefix of b (prefix function over b + separator + tail of a)
+     */
+    static int overlap(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        if (max == 0) {
+            return 0;
+        }
+        String s = b.substring(0, max) + '\u0000' + a.substring(a.length() - max);
+        int[] prefix = new int[s.length()];
+        for (int i = 1; i < s.length(); i++) {
+            int j = prefix[i - 1];
+            while (j > 0 && s.charAt(i) != s.charAt(j)) {
+                j = prefix[j - 1];
+            }
+            if (s.charAt(i) == s.charAt(j)) {
+                j++;
+            }
+            prefix[i] = j;
+        }
+        return prefix[s.length() - 1];
+    }
+
+    private static int head(int i, int[] previous) {
+        while (previous[i] != -1) {
+            i = previous[i];
+        }
+        return i;
+    }
+
+    private static boolean hasDocument(RagChunk chunk) {
+        return chunk.getDocId() != null && !chunk.getDocId().isEmpty();
+    }
+
+    private static boolean sameSource(RagChunk a, RagChunk b) {
+        return Objects.equals(Objects.toString(a.getDocId(), ""), Objects.toString(b.getDocId(), ""));
+    }
+}
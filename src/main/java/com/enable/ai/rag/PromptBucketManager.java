@@ -0,0 +1,206 @@
+package com.enable.ai.rag;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Time buckets of the prompt collections.
+ * <p>
+ * New prompts of collection NAME are written to a collection per month, NAME_yyyyMM (UTC), each
+ * partitioned by user_id like NAME itself; NAME keeps the history written before bucketing. User_id
+ * already is the partition key, which Milvus does not combine with manual partitions, so the time
+ * dimension is split across collections instead. Searches walk the buckets newest first (see
+ * {@link #searchOrder}) and only reach older ones when the recent ones do not yield enough prompts.
+ * <p>
+ * Only the newest milvus.prompts.buckets.resident collections of a name stay loaded: older ones are
+ * released from Milvus memory once they have not been searched for idle-release-ms, and loaded again
+ * by the next search that expands to them.
+ */
+@Slf4j
+@Component
+public class PromptBucketManager {
+
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyyMM").withZone(ZoneOffset.UTC);
+
+    private final MilvusCollectionManager collectionManager;
+    private final boolean enabled;
+    private final int resident;
+    private final long idleReleaseMillis;
+    private final long listTtlMillis;
+    private final int expandStep;
+
+    private final Map<String, Buckets> bucketsByCollection = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastAccess = new ConcurrentHashMap<>();
+    private final Set<String> released = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService releaseExecutor;
+
+    public PromptBucketManager(MilvusCollectionManager collectionManager,
+                               @Value("${milvus.prompts.buckets.enabled:true}") boolean enabled,
+                               @Value("${milvus.prompts.buckets.resident:3}") int resident,
+                               @Value("${milvus.prompts.buckets.idle-release-ms:600000}") long idleReleaseMillis,
+                               @Value("${milvus.prompts.buckets.list-ttl-ms:60000}") long listTtlMillis,
+                               @Value("${milvus.prompts.buckets.expand-step:2}") int expandStep) {
+        this.collectionManager = collectionManager;
+        this.enabled = enabled;
+        this.resident = Math.max(1, resident);
+        this.idleReleaseMillis = idleReleaseMillis;
+        this.listTtlMillis = listTtlMillis;
+        this.expandStep = Math.max(1, expandStep);
+        this.releaseExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("prompt-bucket-release-%d")
+                .setDaemon(true)
+                .build());
+        if (enabled && idleReleaseMillis > 0) {
+            long period = Math.max(1000, idleReleaseMillis / 4);
+            releaseExecutor.scheduleWithFixedDelay(this::releaseIdle, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        releaseExecutor.shutdownNow();
+    }
+
+    /**
+     * Whether new prompts are written to monthly buckets; existing buckets are searched either way
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Number of buckets searched in parallel per expansion step
+     */
+    public int expandStep() {
+        return expandStep;
+    }
+
+    /**
+     * Bucket a prompt written at the given time goes to
+     */
+    public String bucketFor(String collectionName, long timestamp) {
+        return collectionName + "_" + MONTH.format(Instant.ofEpochMilli(timestamp));
+    }
+
+    /**
+     * Record a bucket this process has just created
+     */
+    public void created(String collectionName, String bucket) {
+        Buckets buckets = bucketsByCollection.get(collectionName);
+        if (buckets != null && !buckets.names.contains(bucket)) {
+            refresh(collectionName);
+        }
+    }
+
+    /**
+     * Collections to search for the name, newest bucket first, ending with the pre-bucketing collection
+     *
+     * @param base collection holding the history written before bucketing
+     */
+    public List<String> searchOrder(String collectionName, String base) {
+        List<String> order = new ArrayList<>(buckets(collectionName));
+        order.add(base);
+        return order;
+    }
+
+    /**
+     * Whether the collection can hold prompts stamped before the time ({@code timestamp < before}): false for
+     * buckets of later months, and for the bucket of the month that starts exactly at before
+     */
+    public boolean mayHoldBefore(String collectionName, String collection, long before) {
+        if (collection.length() != collectionName.length() + 7 || !collection.startsWith(collectionName + "_")) {
+            return true;
+        }
+        String month = collection.substring(collectionName.length() + 1);
+        return month.compareTo(MONTH.format(Instant.ofEpochMilli(before - 1))) <= 0;
+    }
+
+    /**
+     * Record a search of the collection; a released bucket is loaded again by the search itself
+     */
+    public void touch(String collectionName) {
+        lastAccess.put(collectionName, System.currentTimeMillis());
+        released.remove(collectionName);
+    }
+
+    /**
+     * Existing buckets of the name, newest first; listed from Milvus at most every list-ttl-ms
+     */
+    List<String> buckets(String collectionName) {
+        Buckets buckets = bucketsByCollection.get(collectionName);
+        if (buckets == null || System.currentTimeMillis() - buckets.listedAt >= listTtlMillis) {
+            buckets = refresh(collectionName);
+        }
+        return buckets.names;
+    }
+
+    private Buckets refresh(String collectionName) {
+        // A bucket whose index was rebuilt is an alias, listed as the collection it refers to
+        Pattern pattern = Pattern.compile(Pattern.quote(collectionName) + "_(\\d{6})(" + MilvusIndexManager.SHADOW_SUFFIX + "\\d+)?");
+        Set<String> found = new HashSet<>();
+        try {
+            for (String name : collectionManager.listCollections()) {
+                Matcher matcher = pattern.matcher(name);
+                if (matcher.matches()) {
+                    found.add(collectionName + "_" + matcher.group(1));
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error listing buckets of collection {}: {}", collectionName, e.getMessage(), e);
+            Buckets previous = bucketsByCollection.get(collectionName);
+            if (previous != null) {
+                return previous;
+            }
+        }
+        // The suffix is a zero-padded month, so the lexical order is the chronological one
+        List<String> names = new ArrayList<>(found);
+        names.sort(Comparator.reverseOrder());
+        Buckets buckets = new Buckets(List.copyOf(names), System.currentTimeMillis());
+        bucketsByCollection.put(collectionName, buckets);
+        return buckets;
+    }
+
+    /**
+     * Release the non-resident buckets (and pre-bucketing collections) that have not been searched recently
+     */
+    void releaseIdle() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Buckets> entry : bucketsByCollection.entrySet()) {
+            List<String> names = new ArrayList<>(entry.getValue().names);
+            names.add(entry.getKey());
+            for (int i = resident; i < names.size(); i++) {
+                String name = names.get(i);
+                Long accessed = lastAccess.get(name);
+                if (released.contains(name) || (accessed != null && now - accessed < idleReleaseMillis)) {
+                    continue;
+                }
+                try {
+                    if (collectionManager.exists(name)) {
+                        collectionManager.release(name);
+                        log.info("Released idle prompt bucket {}", name);
+                    }
+                    released.add(name);
+                } catch (Exception e) {
+                    log.error("Error releasing prompt bucket {}: {}", name, e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private record Buckets(List<String> names, long listedAt) {
+    }
+}
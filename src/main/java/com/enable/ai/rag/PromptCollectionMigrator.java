@@ -0,0 +1,144 @@
+package com.enable.ai.rag;
+
+import com.enable.ai.rag.vo.MigrationStatus;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Online migration of a flat prompt collection to one partitioned by user_id.
+ * <p>
+ * Steps, while the service keeps serving the collection:
+ * <ol>
+ *     <li>create the partitioned collection NAME_PK and start dual writes: new prompts and deletes go
+ *     to both collections, reads stay on the old one;</li>
+ *     <li>after a grace period for writes already in flight, copy every row stamped before the
+ *     cutoff with its stored vector, in batches through a query iterator;</li>
+ *     <li>re-apply deletes that raced with the copy, serve reads and writes from NAME_PK, drop the
+ *     old collection after another grace period and make NAME an alias of NAME_PK.</li>
+ * </ol>
+ * If the process dies during the copy the old collection is still complete and a new run starts
+ * over; if it dies after the drop, the alias is created the next time the collection is used.
+ * The coordination state is in-process, so only one instance should serve the collection while
+ * it migrates.
+ */
+@Slf4j
+@Component
+public class PromptCollectionMigrator {
+
+    private final MilvusPromptRagService promptRagService;
+    private final MilvusCollectionManager collectionManager;
+    private final MilvusIndexManager indexManager;
+    private final int batchSize;
+    private final long graceMillis;
+    private final Map<String, MigrationStatus> statuses = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+
+    public PromptCollectionMigrator(MilvusPromptRagService promptRagService,
+                                    MilvusCollectionManager collectionManager,
+                                    MilvusIndexManager indexManager,
+                                    @Value("${milvus.prompts.migration.batch-size:1000}") int batchSize,
+                                    @Value("${milvus.prompts.migration.grace-ms:5000}") long graceMillis) {
+        this.promptRagService = promptRagService;
+        this.collectionManager = collectionManager;
+        this.indexManager = indexManager;
+        this.batchSize = batchSize;
+        this.graceMillis = graceMillis;
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("prompt-migration-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Start migrating the collection unless it is already partitioned or being migrated
+     */
+    public synchronized MigrationStatus start(String collectionName) {
+        MigrationStatus current = statuses.get(collectionName);
+        if (current != null && (current.getState() == MigrationStatus.State.COPYING
+                || current.getState() == MigrationStatus.State.SWITCHING)) {
+            return current;
+        }
+        if (!collectionManager.exists(collectionName)) {
+            throw new IllegalStateException("Collection " + collectionName + " does not exist");
+        }
+        if (indexManager.isRebuilding(collectionName)) {
+            throw new IllegalStateException("Index of collection " + collectionName + " is being rebuilt, migrate it afterwards");
+        }
+        String target = MilvusPromptRagService.partitionedName(collectionName);
+        if (promptRagService.isPartitioned(collectionName)) {
+            return status(collectionName);
+        }
+
+        // A target without the alias is left over from an interrupted run; the old collection is complete
+        if (collectionManager.drop(target)) {
+            indexManager.forget(target);
+            log.info("Dropped partial migration target {}", target);
+        }
+        MigrationStatus status = new MigrationStatus(collectionName, target, MigrationStatus.State.COPYING,
+                0, System.currentTimeMillis(), null, null);
+        statuses.put(collectionName, status);
+        long cutoff = promptRagService.startDualWrite(collectionName, target);
+        log.info("Migrating collection {} to partitioned collection {} (copying rows up to {})", collectionName, target, cutoff);
+        executor.execute(() -> migrate(status, cutoff));
+        return status;
+    }
+
+    public MigrationStatus status(String collectionName) {
+        MigrationStatus status = statuses.get(collectionName);
+        if (status != null) {
+            return status;
+        }
+        boolean done = collectionManager.exists(collectionName) && promptRagService.isPartitioned(collectionName);
+        return new MigrationStatus(collectionName, null, done ? MigrationStatus.State.DONE : MigrationStatus.State.IDLE,
+                0, null, null, done ? "Collection is partitioned by user_id" : null);
+    }
+
+    private void migrate(MigrationStatus status, long cutoff) {
+        String source = status.getCollectionName();
+        String target = status.getTarget();
+        try {
+            TimeUnit.MILLISECONDS.sleep(graceMillis);
+            long copied = promptRagService.copyPrompts(source, target, cutoff, batchSize, status::setCopiedRows);
+            log.info("Copied {} rows from collection {} to {}", copied, source, target);
+
+            status.setState(MigrationStatus.State.SWITCHING);
+            promptRagService.reapplyDeletes(source);
+            promptRagService.redirect(source, target);
+            TimeUnit.MILLISECONDS.sleep(graceMillis);
+            collectionManager.drop(source);
+            indexManager.forget(source);
+            promptRagService.completeMigration(source, target);
+
+            status.setState(MigrationStatus.State.DONE);
+            status.setFinishedAt(System.currentTimeMillis());
+            log.info("Migration of collection {} finished in {} ms", source, status.getFinishedAt() - status.getStartedAt());
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.error("Migration of collection {} failed: {}", source, e.getMessage(), e);
+            // Until the old collection is dropped it holds every row, so it can simply keep serving
+            collectionManager.invalidate(source);
+            if (collectionManager.exists(source)) {
+                promptRagService.abortMigration(source);
+            }
+            status.setState(MigrationStatus.State.FAILED);
+            status.setFinishedAt(System.currentTimeMillis());
+            status.setMessage(e.getMessage());
+        }
+    }
+}
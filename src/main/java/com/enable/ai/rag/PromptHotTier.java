@@ -0,0 +1,228 @@
+package com.enable.ai.rag;
+
+import com.enable.ai.embedding.ScoredIndex;
+import com.enable.ai.embedding.SimilarityMetric;
+import com.enable.ai.embedding.VectorKernels;
+import com.enable.ai.rag.vo.PromptWithScore;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * In-process hot tier of recent user prompts.
+ * <p>
+ * Each user gets a ring buffer of the last per-user prompts written through this process, with
+ * their normalized vectors in one row-major matrix, so a related-prompt query is a single
+ * {@link VectorKernels#topK} pass (SIMD when available) without a Milvus round trip. Rings live in
+ * a cache bounded by max-bytes and evict least recently used users.
+ * <p>
+ * A ring covers every prompt of the user from {@code coveredSince} on: that is the first prompt it
+ * recorded, moved forward as old prompts are overwritten. Older history has to come from Milvus
+ * (with {@code timestamp < coveredSince}). This relies on a user's prompts being written, compacted and
+ * deleted through the instance that serves the user (sticky sessions): otherwise newer prompts written
+ * elsewhere are never returned and purged ones keep being served. The tier is therefore off by default.
+ */
+@Slf4j
+@Component
+public class PromptHotTier {
+
+    // Ring arrays, key and Guava entry overhead (approximate)
+    private static final int RING_OVERHEAD_BYTES = 256;
+    private static final int PROMPT_OVERHEAD_BYTES = 48;
+
+    private final boolean enabled;
+    private final int perUser;
+    private final float skipScore;
+    private final Cache<String, Ring> rings;
+
+    public PromptHotTier(@Value("${milvus.prompts.hot-tier.enabled:false}") boolean enabled,
+                         @Value("${milvus.prompts.hot-tier.per-user:64}") int perUser,
+                         @Value("${milvus.prompts.hot-tier.max-bytes:67108864}") long maxBytes,
+                         @Value("${milvus.prompts.hot-tier.skip-score:0.8}") float skipScore) {
+        this.enabled = enabled;
+        this.perUser = Math.max(1, perUser);
+        this.skipScore = skipScore;
+        this.rings = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, Ring ring) -> ring.bytes())
+                .build();
+        log.info("Prompt hot tier {} ({} prompts per user, budget {} bytes)",
+                enabled ? "enabled" : "disabled", perUser, maxBytes);
+    }
+
+    /**
+     * Record a prompt written for the user
+     */
+    public void record(String collectionName, long userId, String prompt, float[] vector, long timestamp) {
+        if (!enabled) {
+            return;
+        }
+        String key = key(collectionName, userId);
+        Ring ring;
+        try {
+            ring = rings.get(key, () -> new Ring(perUser, timestamp));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        ring.add(prompt, VectorKernels.normalize(vector), timestamp);
+        // Re-put so the cache weighs the ring at its new size, unless a deletion invalidated it meanwhile:
+        // that ring may still hold deleted prompts and must not come back
+        rings.asMap().replace(key, ring, ring);
+    }
+
+    /**
+     * Best k recent prompts of the user by cosine similarity
+     *
+     * @return the hits and the time from which the ring is complete, or null if the user has no ring
+     */
+    public HotHits search(String collectionName, long userId, float[] query, int k) {
+        if (!enabled) {
+            return null;
+        }
+        Ring ring = rings.getIfPresent(key(collectionName, userId));
+        return ring == null ? null : ring.search(VectorKernels.normalize(query), k);
+    }
+
+    /**
+     * Whether recent hits alone can answer a top-k query without searching older history: there are
+     * k of them and the k-th best scores at least skip-score. Clearing the request's min-score is not
+     * enough, since nearly any recent prompt does and older, closer matches would never be considered.
+     */
+    public boolean isConfident(List<PromptWithScore> hits, int k) {
+        if (k <= 0 || hits.size() < k) {
+            return false;
+        }
+        List<Float> scores = hits.stream().map(PromptWithScore::getScore).sorted(Comparator.reverseOrder()).toList();
+        return scores.get(k - 1) >= skipScore;
+    }
+
+    /**
+     * Forget the user's prompts stamped before the bound (all of them if null)
+     */
+    public void remove(String collectionName, long userId, Long before) {
+        String key = key(collectionName, userId);
+        Ring ring = rings.getIfPresent(key);
+        if (ring == null) {
+            return;
+        }
+        if (before == null) {
+            rings.invalidate(key);
+        } else {
+            ring.removeBefore(before);
+            rings.asMap().replace(key, ring, ring);
+        }
+    }
+
+    private static String key(String collectionName, long userId) {
+        return collectionName + "#" + userId;
+    }
+
+    /**
+     * Hits from the hot tier; the ring holds every prompt of the user stamped at or after coveredSince
+     */
+    public record HotHits(List<PromptWithScore> hits, long coveredSince) {
+    }
+
+    /**
+     * Fixed-capacity ring; the matrix grows by doubling up to the capacity
+     */
+    private static final class Ring {
+        private final int capacity;
+        private float[] matrix = new float[0];
+        private String[] prompts = new String[0];
+        private long[] timestamps = new long[0];
+        private int size;
+        private int next;
+        private int dimension;
+        private long coveredSince;
+        private long promptBytes;
+
+        private Ring(int capacity, long coveredSince) {
+            this.capacity = capacity;
+            this.coveredSince = coveredSince;
+        }
+
+        private synchronized void add(String prompt, float[] vector, long timestamp) {
+            if (dimension != vector.length) {
+                // First prompt, or the embedding model changed: start over
+                dimension = vector.length;
+                matrix = new float[0];
+                prompts = new String[0];
+                timestamps = new long[0];
+                size = 0;
+                next = 0;
+                promptBytes = 0;
+                coveredSince = timestamp;
+            }
+            int slot;
+            if (size < capacity) {
+                if (size == prompts.length) {
+                    int grown = Math.min(capacity, Math.max(4, size * 2));
+                    matrix = Arrays.copyOf(matrix, grown * dimension);
+                    prompts = Arrays.copyOf(prompts, grown);
+                    timestamps = Arrays.copyOf(timestamps, grown);
+                }
+                slot = size++;
+            } else {
+                slot = next;
+                next = (next + 1) % capacity;
+                // The overwritten prompt now has to come from Milvus
+                coveredSince = Math.max(coveredSince, timestamps[slot] + 1);
+                promptBytes -= 2L * prompts[slot].length();
+            }
+            System.arraycopy(vector, 0, matrix, slot * dimension, dimension);
+            prompts[slot] = prompt;
+            timestamps[slot] = timestamp;
+            promptBytes += 2L * prompt.length();
+        }
+
+        private synchronized HotHits search(float[] query, int k) {
+            List<PromptWithScore> hits = new ArrayList<>();
+            if (size > 0 && query.length == dimension) {
+                for (ScoredIndex scored : VectorKernels.topK(query, matrix, size, k, SimilarityMetric.DOT)) {
+                    hits.add(new PromptWithScore(prompts[scored.index()], timestamps[scored.index()], scored.score()));
+                }
+            }
+            return new HotHits(hits, coveredSince);
+        }
+
+        private synchronized void removeBefore(long before) {
+            float[] keptMatrix = new float[matrix.length];
+            String[] keptPrompts = new String[prompts.length];
+            long[] keptTimestamps = new long[timestamps.length];
+            int kept = 0;
+            long keptBytes = 0;
+            // Oldest first, so the compacted ring keeps overwriting the oldest prompt
+            int oldest = size == capacity ? next : 0;
+            for (int n = 0; n < size; n++) {
+                int i = (oldest + n) % size;
+                if (timestamps[i] >= before) {
+                    System.arraycopy(matrix, i * dimension, keptMatrix, kept * dimension, dimension);
+                    keptPrompts[kept] = prompts[i];
+                    keptTimestamps[kept] = timestamps[i];
+                    keptBytes += 2L * prompts[i].length();
+                    kept++;
+                }
+            }
+            matrix = keptMatrix;
+            prompts = keptPrompts;
+            timestamps = keptTimestamps;
+            size = kept;
+            next = 0;
+            promptBytes = keptBytes;
+        }
+
+        private synchronized int bytes() {
+            return (int) Math.min(Integer.MAX_VALUE, RING_OVERHEAD_BYTES + 4L * matrix.length + 8L * timestamps.length
+                    + promptBytes + (long) PROMPT_OVERHEAD_BYTES * prompts.length);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.enable.ai.rag;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+/**
+ * Write-behind buffer for prompt inserts.
+ * <p>
+ * Prompts are queued (bounded by capacity) and a flusher thread inserts them in batches across users,
+ * one insert per target collection, when max-batch prompts are queued or flush-interval-ms after the
+ * first one. Nothing is flushed on the caller's path; a full queue is reported to the caller, which
+ * then writes directly. Until a prompt is inserted it is served from the buffer to reads of the same
+ * user ({@link #pending}), and a user's deletion discards it ({@link #discard}). {@link #close} stops
+ * accepting prompts and inserts everything still queued.
+ */
+@Slf4j
+public class PromptWriteBuffer implements AutoCloseable {
+
+    private final BiFunction<String, List<BufferedPrompt>, CompletableFuture<Void>> inserter;
+    private final int maxBatchSize;
+    private final long intervalNanos;
+
+    private final BlockingQueue<BufferedPrompt> queue;
+    private final Map<String, List<BufferedPrompt>> pendingByUser = new ConcurrentHashMap<>();
+    // Held while a batch is inserted, so a discard can wait for prompts already taken off the queue
+    private final ReentrantLock insertLock = new ReentrantLock();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    /**
+     * @param inserter inserts the prompts into the given collection, completing once Milvus acknowledged them
+     */
+    public PromptWriteBuffer(BiFunction<String, List<BufferedPrompt>, CompletableFuture<Void>> inserter,
+                             int capacity, int maxBatchSize, long intervalMillis) {
+        this.inserter = inserter;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.flusher = new Thread(this::flushLoop, "prompt-write-buffer");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Queue a prompt for the next batch
+     *
+     * @return future completed once the prompt is inserted, or null if the buffer is full or closed
+     */
+    public CompletableFuture<Void> submit(BufferedPrompt prompt) {
+        if (!running) {
+            return null;
+        }
+        pendingByUser.computeIfAbsent(key(prompt.collectionName(), prompt.userId()), k -> new CopyOnWriteArrayList<>())
+                .add(prompt);
+        if (!queue.offer(prompt)) {
+            removePending(prompt);
+            return null;
+        }
+        // close() may have run its final flush between the check above and the offer; whoever takes the
+        // prompt out of the queue owns it, so a late prompt goes back to the caller for a direct insert
+        if (!running && queue.remove(prompt)) {
+            removePending(prompt);
+            return null;
+        }
+        return prompt.future();
+    }
+
+    /**
+     * Prompts of the user queued for the collection and not inserted yet
+     */
+    public List<BufferedPrompt> pending(String collectionName, long userId) {
+        List<BufferedPrompt> pending = pendingByUser.get(key(collectionName, userId));
+        return pending == null ? List.of() : List.copyOf(pending);
+    }
+
+    /**
+     * Drop the user's queued prompts stamped before the bound and wait for a batch in flight,
+     * so a following delete sees every row
+     */
+    public void discard(String collectionName, long userId, long before) {
+        List<BufferedPrompt> pending = pendingByUser.get(key(collectionName, userId));
+        if (pending != null) {
+            List<BufferedPrompt> dropped = pending.stream().filter(prompt -> prompt.timestamp() < before).toList();
+            queue.removeAll(dropped);
+            dropped.forEach(this::removePending);
+            dropped.forEach(prompt -> prompt.future().complete(null));
+            log.debug("Discarded {} buffered prompts of user {} in collection {}", dropped.size(), userId, collectionName);
+        }
+        insertLock.lock();
+        insertLock.unlock();
+    }
+
+    /**
+     * Insert everything queued now, on the calling thread
+     */
+    public void flush() {
+        insertLock.lock();
+        try {
+            List<BufferedPrompt> batch = new ArrayList<>();
+            while (queue.drainTo(batch, maxBatchSize) > 0) {
+                insert(batch);
+                batch = new ArrayList<>();
+            }
+        } finally {
+            insertLock.unlock();
+        }
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                BufferedPrompt first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                insertLock.lock();
+                try {
+                    List<BufferedPrompt> batch = new ArrayList<>();
+                    batch.add(first);
+                    long deadline = System.nanoTime() + intervalNanos;
+                    while (batch.size() < maxBatchSize && running) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        // Not holding the lock while waiting, so discards and direct flushes are not held up
+                        insertLock.unlock();
+                        BufferedPrompt next;
+                        try {
+                            next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        } finally {
+                            insertLock.lock();
+                        }
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    insert(batch);
+                } finally {
+                    insertLock.unlock();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Insert a batch, one call per collection, skipping prompts discarded meanwhile. Caller holds the insert lock.
+     */
+    private void insert(List<BufferedPrompt> batch) {
+        Map<String, List<BufferedPrompt>> byCollection = new LinkedHashMap<>();
+        for (BufferedPrompt prompt : batch) {
+            if (!prompt.future().isDone()) {
+                byCollection.computeIfAbsent(prompt.target(), target -> new ArrayList<>()).add(prompt);
+            }
+        }
+        for (Map.Entry<String, List<BufferedPrompt>> entry : byCollection.entrySet()) {
+            List<BufferedPrompt> prompts = entry.getValue();
+            Exception error = null;
+            try {
+                inserter.apply(entry.getKey(), prompts).join();
+                log.debug("Inserted batch of {} buffered prompts into collection {}", prompts.size(), entry.getKey());
+            } catch (Exception e) {
+                log.error("Error inserting {} buffered prompts into collection {}: {}",
+                        prompts.size(), entry.getKey(), e.getMessage(), e);
+                error = e;
+            }
+            // Out of the read overlay before the callers see completion
+            prompts.forEach(this::removePending);
+            for (BufferedPrompt prompt : prompts) {
+                if (error == null) {
+                    prompt.future().complete(null);
+                } else {
+                    prompt.future().completeExceptionally(error);
+                }
+            }
+        }
+    }
+
+    private void removePending(BufferedPrompt prompt) {
+        pendingByUser.computeIfPresent(key(prompt.collectionName(), prompt.userId()), (k, pending) -> {
+            pending.remove(prompt);
+            return pending.isEmpty() ? null : pending;
+        });
+    }
+
+    private static String key(String collectionName, long userId) {
+        return collectionName + "#" + userId;
+    }
+
+    @Override
+    public void close() {
+        // Not interrupted: the flusher finishes its current batch and exits within one interval
+        running = false;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int remaining = queue.size();
+        flush();
+        if (remaining > 0) {
+            log.info("Flushed {} buffered prompts on shutdown", remaining);
+        }
+    }
+
+    /**
+     * A prompt waiting to be inserted
+     *
+     * @param collectionName collection name the prompt was added under (for reads of the same user)
+     * @param target         collection the row is inserted into (a time bucket or the migrated collection)
+     * @param vector         the prompt embedding, for scoring it against queries while buffered
+     * @param storedVector   the vector as stored in the target collection
+     */
+    public record BufferedPrompt(String collectionName, String target, long userId, String prompt,
+                                 float[] vector, List<Float> storedVector, long timestamp,
+                                 CompletableFuture<Void> future) {
+    }
+}
@@ -0,0 +1,264 @@
+package com.enable.ai.rag;
+
+import com.enable.ai.embedding.VectorKernels;
+import com.enable.ai.rag.vo.RagChunk;
+import com.enable.ai.rag.vo.RetrieveOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Cache of retrieval results in front of the vector search.
+ * <p>
+ * A lookup first matches the normalized query text exactly (no embedding needed), then
+ * semantically: the query embedding is compared with the embeddings of cached queries and the
+ * best match above the similarity threshold is reused. Each collection has its own memory budget
+ * (LRU eviction) and hit/miss counters. Entries expire after a TTL, and a collection's entries
+ * are dropped on every {@link CollectionMutatedEvent}; results computed while a mutation was in
+ * flight are not stored.
+ */
+@Slf4j
+@Component
+public class RetrievalCache {
+
+    // Entry object, key string, LinkedHashMap node and list overhead (approximate)
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+    private static final int CHUNK_OVERHEAD_BYTES = 96;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("[\\p{Punct}？！。，；：、\\s]+$");
+
+    private final boolean enabled;
+    private final long maxBytesPerCollection;
+    private final long ttlMillis;
+    private final float similarityThreshold;
+    private final Map<String, CollectionCache> collections = new ConcurrentHashMap<>();
+
+    public RetrievalCache(@Value("${rag.cache.enabled:true}") boolean enabled,
+                          @Value("${rag.cache.max-bytes-per-collection:8388608}") long maxBytesPerCollection,
+                          @Value("${rag.cache.ttl-seconds:600}") long ttlSeconds,
+                          @Value("${rag.cache.similarity-threshold:0.95}") float similarityThreshold) {
+        this.enabled = enabled;
+        this.maxBytesPerCollection = maxBytesPerCollection;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.similarityThreshold = similarityThreshold;
+        log.info("RetrievalCache {} (budget {} bytes per collection, ttl {} s, similarity threshold {})",
+                enabled ? "enabled" : "disabled", maxBytesPerCollection, ttlSeconds, similarityThreshold);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Hit and size counters of one collection's cache
+     */
+    public record Stats(int entries, long bytes, long exactHits, long semanticHits, long misses,
+                        long evictions, long invalidations, double hitRate) {
+    }
+
+    /**
+     * Opaque handle of a cache miss; pass it back to {@link #put} to store the computed result
+     */
+    public record Lookup(String collectionName, String key, long generation) {
+    }
+
+    /**
+     * Exact match on the normalized query text
+     *
+     * @return the cached chunks, or null on a miss
+     */
+    public List<RagChunk> getExact(String collectionName, String query, int k, RetrieveOptions options) {
+        if (!enabled) {
+            return null;
+        }
+        return cache(collectionName).getExact(key(query, options), k);
+    }
+
+    /**
+     * Semantic match against cached queries with the same options; counts a miss when nothing matches
+     *
+     * @return the cached chunks, or null on a miss
+     */
+    public List<RagChunk> getSimilar(String collectionName, float[] queryVector, int k, RetrieveOptions options) {
+        if (!enabled) {
+            return null;
+        }
+        return cache(collectionName).getSimilar(VectorKernels.normalize(queryVector), optionsKey(options), k);
+    }
+
+    /**
+     * Remember the collection's generation before the search, so a result that raced with a mutation is not stored
+     */
+    public Lookup begin(String collectionName, String query, RetrieveOptions options) {
+        return new Lookup(collectionName, key(query, options), cache(collectionName).generation());
+    }
+
+    public void put(Lookup lookup, float[] queryVector, int k, RetrieveOptions options, List<RagChunk> chunks) {
+        // Empty results are not cached: they are also what a failed search returns
+        if (!enabled || chunks.isEmpty()) {
+            return;
+        }
+        long bytes = ENTRY_OVERHEAD_BYTES + 2L * lookup.key().length() + (long) Float.BYTES * queryVector.length;
+        for (RagChunk chunk : chunks) {
+            bytes += CHUNK_OVERHEAD_BYTES + 2L * chunk.getText().length()
+                    + (chunk.getVector() != null ? (long) Float.BYTES * chunk.getVector().length : 0);
+        }
+        Entry entry = new Entry(lookup.key(), optionsKey(options), k, VectorKernels.normalize(queryVector),
+                copy(chunks, chunks.size()), bytes, System.currentTimeMillis());
+        cache(lookup.collectionName()).put(entry, lookup.generation());
+    }
+
+    @EventListener
+    public void onCollectionMutated(CollectionMutatedEvent event) {
+        invalidate(event.collectionName());
+    }
+
+    public void invalidate(String collectionName) {
+        CollectionCache cache = collections.get(collectionName);
+        if (cache != null) {
+            cache.invalidate();
+        }
+    }
+
+    public Map<String, Stats> stats() {
+        Map<String, Stats> stats = new TreeMap<>();
+        collections.forEach((name, cache) -> stats.put(name, cache.stats()));
+        return stats;
+    }
+
+    /**
+     * Case-, width- and whitespace-insensitive form of the query; trailing punctuation is ignored
+     */
+    static String normalize(String query) {
+        String normalized = Normalizer.normalize(query, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT).trim();
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ");
+        return TRAILING_PUNCTUATION.matcher(normalized).replaceAll("");
+    }
+
+    private static String key(String query, RetrieveOptions options) {
+        return normalize(query) + '\u0000' + optionsKey(options);
+    }
+
+    private static String optionsKey(RetrieveOptions options) {
+        return options == null ? "" : "ef=" + options.getEf() + ",nprobe=" + options.getNprobe()
+                + (options.isIncludeVectors() ? ",vectors" : "");
+    }
+
+    private static List<RagChunk> copy(List<RagChunk> chunks, int k) {
+        List<RagChunk> copies = new ArrayList<>(k);
+        for (int i = 0; i < k && i < chunks.size(); i++) {
+            RagChunk chunk = chunks.get(i);
+            copies.add(new RagChunk(chunk.getId(), chunk.getDocId(), chunk.getChunkIndex(), chunk.getText(),
+                    chunk.getScore(), chunk.getVector()));
+        }
+        return copies;
+    }
+
+    private CollectionCache cache(String collectionName) {
+        return collections.computeIfAbsent(collectionName, name -> new CollectionCache());
+    }
+
+    private record Entry(String key, String optionsKey, int k, float[] queryVector, List<RagChunk> chunks,
+                         long bytes, long createdAt) {
+    }
+
+    /**
+     * LRU entries of one collection; all access is synchronized on the instance
+     */
+    private final class CollectionCache {
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes;
+        private long generation;
+        private long exactHits;
+        private long semanticHits;
+        private long misses;
+        private long evictions;
+        private long invalidations;
+
+        synchronized long generation() {
+            return generation;
+        }
+
+        synchronized List<RagChunk> getExact(String key, int k) {
+            Entry entry = entries.get(key);
+            if (entry == null || entry.k() < k) {
+                return null;
+            }
+            if (isExpired(entry)) {
+                remove(entry);
+                return null;
+            }
+            exactHits++;
+            return copy(entry.chunks(), k);
+        }
+
+        synchronized List<RagChunk> getSimilar(float[] queryVector, String optionsKey, int k) {
+            Entry best = null;
+            float bestScore = similarityThreshold;
+            for (Entry entry : entries.values()) {
+                if (entry.k() < k || !entry.optionsKey().equals(optionsKey) || isExpired(entry)) {
+                    continue;
+                }
+                float score = VectorKernels.dot(queryVector, entry.queryVector());
+                if (score >= bestScore) {
+                    best = entry;
+                    bestScore = score;
+                }
+            }
+            if (best == null) {
+                misses++;
+                return null;
+            }
+            entries.get(best.key()); // mark as recently used
+            semanticHits++;
+            return copy(best.chunks(), k);
+        }
+
+        synchronized void put(Entry entry, long expectedGeneration) {
+            if (generation != expectedGeneration || entry.bytes() > maxBytesPerCollection) {
+                return;
+            }
+            Entry previous = entries.put(entry.key(), entry);
+            if (previous != null) {
+                bytes -= previous.bytes();
+            }
+            bytes += entry.bytes();
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (bytes > maxBytesPerCollection && eldest.hasNext()) {
+                bytes -= eldest.next().bytes();
+                eldest.remove();
+                evictions++;
+            }
+        }
+
+        synchronized void invalidate() {
+            generation++;
+            if (!entries.isEmpty()) {
+                entries.clear();
+                bytes = 0;
+                invalidations++;
+            }
+        }
+
+        synchronized Stats stats() {
+            long lookups = exactHits + semanticHits + misses;
+            double hitRate = lookups > 0 ? (exactHits + semanticHits) / (double) lookups : 0;
+            return new Stats(entries.size(), bytes, exactHits, semanticHits, misses, evictions, invalidations, hitRate);
+        }
+
+        private boolean isExpired(Entry entry) {
+            return ttlMillis > 0 && System.currentTimeMillis() - entry.createdAt() > ttlMillis;
+        }
+
+        private void remove(Entry entry) {
+            entries.remove(entry.key());
+            bytes -= entry.bytes();
+        }
+    }
+}
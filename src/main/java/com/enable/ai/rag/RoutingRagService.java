@@ -0,0 +1,354 @@
+package com.enable.ai.rag;
+
+import com.enable.ai.embedding.Embedding;
+import com.enable.ai.rag.vo.RagChunk;
+import com.enable.ai.rag.vo.ReindexResult;
+import com.enable.ai.rag.vo.RetrievalResult;
+import com.enable.ai.rag.vo.RetrieveOptions;
+import com.enable.ai.service.EmbeddingService;
+import com.enable.ai.service.RagService;
+import com.enable.ai.util.AsyncUtils;
+import com.enable.ai.util.Constants;
+import com.enable.ai.util.TextChunker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Primary RagService that routes each collection to the in-process HNSW index or to Milvus.
+ * Collections listed in rag.local.collections are served locally until they grow beyond
+ * rag.local.max-chunks, at which point their chunks (with the stored vectors) are copied to
+ * Milvus and the collection is served remotely from then on. The Milvus collection is the record of
+ * the promotion: a local collection that exists in Milvus is served from Milvus, also after a restart,
+ * until the collection is deleted. The copy runs in the background: from the write that crosses the
+ * limit on, writes go to Milvus while reads stay local until the copy has finished.
+ * <p>
+ * Retrievals go through the {@link RetrievalCache} and then the {@link HybridRetriever}
+ * (dense + BM25 fused by reciprocal rank); every mutation publishes a
+ * {@link CollectionMutatedEvent} once it has finished, which drops the collection's cached results.
+ * Passage retrieval adds the {@link PassageAssembler} stage (MMR and overlap stitching) on top.
+ */
+@Slf4j
+@Primary
+@Service
+public class RoutingRagService implements RagService {
+
+    private final MilvusRagService milvusRagService;
+    private final HnswRagService hnswRagService;
+    private final EmbeddingService embeddingService;
+    private final RetrievalCache retrievalCache;
+    private final HybridRetriever hybridRetriever;
+    private final PassageAssembler passageAssembler;
+    private final ScoreCutoff scoreCutoff;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Set<String> localCollections;
+    private final int localMaxChunks;
+    // Whether a local collection has been promoted; checked against Milvus on first use, since a
+    // promotion made before a restart is only recorded by the Milvus collection itself
+    private final Map<String, Boolean> promoted = new ConcurrentHashMap<>();
+    // Local collections whose chunks are being copied to Milvus
+    private final Set<String> promoting = ConcurrentHashMap.newKeySet();
+    private final ExecutorService promotionExecutor;
+
+    public RoutingRagService(MilvusRagService milvusRagService,
+                             HnswRagService hnswRagService,
+                             EmbeddingService embeddingService,
+                             RetrievalCache retrievalCache,
+                             HybridRetriever hybridRetriever,
+                             PassageAssembler passageAssembler,
+                             ScoreCutoff scoreCutoff,
+                             ApplicationEventPublisher eventPublisher,
+                             @Value("${rag.local.collections:" + Constants.MCP_TOOLS_COLLECTION_NAME + "}") List<String> localCollections,
+                             @Value("${rag.local.max-chunks:10000}") int localMaxChunks) {
+        this.milvusRagService = milvusRagService;
+        this.hnswRagService = hnswRagService;
+        this.embeddingService = embeddingService;
+        this.retrievalCache = retrievalCache;
+        this.hybridRetriever = hybridRetriever;
+        this.passageAssembler = passageAssembler;
+        this.scoreCutoff = scoreCutoff;
+        this.eventPublisher = eventPublisher;
+        this.localCollections = new HashSet<>(localCollections);
+        this.localMaxChunks = localMaxChunks;
+        this.promotionExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("rag-promotion-%d")
+                .setDaemon(true)
+                .build());
+        log.info("Serving collections {} from the local HNSW index (up to {} chunks each)", this.localCollections, localMaxChunks);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        promotionExecutor.shutdownNow();
+    }
+
+    @Override
+    public void addChunkToCollection(String collectionName, RagChunk chunk) {
+        try {
+            if (isLocal(collectionName) && reserveLocalCapacity(collectionName, 1)) {
+                hnswRagService.addChunkToCollection(collectionName, chunk);
+            } else {
+                milvusRagService.addChunkToCollection(collectionName, chunk);
+            }
+        } finally {
+            publishMutation(collectionName, false);
+        }
+    }
+
+    @Override
+    public List<RagChunk> retrieveTopKChunks(String collectionName, String query, int k, RetrieveOptions options) {
+        return AsyncUtils.join(retrieveTopKChunksAsync(collectionName, query, k, options));
+    }
+
+    /**
+     * Same path as a single retrieval (retrieval cache, hybrid search) for every query, with the
+     * queries embedded in one batch call. The searches run one per query, concurrently.
+     */
+    @Override
+    public List<List<RagChunk>> retrieveTopKChunksBatch(String collectionName, List<String> queries, int k) {
+        if (queries.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Embedding> queryEmbeddings;
+        try {
+            queryEmbeddings = embeddingService.generateBatchEmbeddings(queries);
+        } catch (Exception e) {
+            log.error("Error batch retrieving chunks from collection {}: {}", collectionName, e.getMessage(), e);
+            return queries.stream().<List<RagChunk>>map(query -> new ArrayList<>()).toList();
+        }
+        List<CompletableFuture<List<RagChunk>>> futures = new ArrayList<>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            futures.add(retrieveTopKChunksAsync(collectionName, queries.get(i), queryEmbeddings.get(i), k, RetrieveOptions.defaults())
+                    .exceptionally(e -> {
+                        log.error("Error retrieving chunks from collection {}: {}", collectionName, e.getMessage(), e);
+                        return new ArrayList<>();
+                    }));
+        }
+        return futures.stream().map(CompletableFuture::join).toList();
+    }
+
+    @Override
+    public void addContextToCollection(String collectionName, String context) {
+        try {
+            if (isLocal(collectionName) && reserveLocalCapacity(collectionName, TextChunker.chunkText(context).size())) {
+                hnswRagService.addContextToCollection(collectionName, context);
+            } else {
+                milvusRagService.addContextToCollection(collectionName, context);
+            }
+        } finally {
+            publishMutation(collectionName, false);
+        }
+    }
+
+    @Override
+    public String retrieveContext(String collectionName, String query, int k) {
+        return AsyncUtils.join(retrieveContextAsync(collectionName, query, k));
+    }
+
+    @Override
+    public CompletableFuture<Void> addChunkToCollectionAsync(String collectionName, RagChunk chunk) {
+        CompletableFuture<Void> future = isLocal(collectionName) && reserveLocalCapacity(collectionName, 1)
+                ? hnswRagService.addChunkToCollectionAsync(collectionName, chunk)
+                : milvusRagService.addChunkToCollectionAsync(collectionName, chunk);
+        return future.whenComplete((ignored, e) -> publishMutation(collectionName, false));
+    }
+
+    /**
+     * Cached or fresh top k, trimmed by the score options (minimum score, adaptive cut).
+     * An exact cache hit needs no embedding; otherwise the query is embedded once here and the
+     * embedding is passed on to the semantic cache lookup, the dense search and the lexical-hit scoring.
+     */
+    @Override
+    public CompletableFuture<List<RagChunk>> retrieveTopKChunksAsync(String collectionName, String query, int k, RetrieveOptions options) {
+        List<RagChunk> cached = retrievalCache.getExact(collectionName, query, k, options);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(scoreCutoff.apply(cached, options));
+        }
+        return embeddingService.generateEmbeddingAsync(query)
+                .thenCompose(queryEmbedding -> cachedSearch(collectionName, query, queryEmbedding, k, options))
+                .thenApply(chunks -> scoreCutoff.apply(chunks, options))
+                .exceptionally(e -> {
+                    log.error("Error retrieving chunks from collection {}: {}", collectionName, e.getMessage(), e);
+                    return new ArrayList<>();
+                });
+    }
+
+    @Override
+    public CompletableFuture<List<RagChunk>> retrieveTopKChunksAsync(String collectionName, String query, Embedding queryEmbedding,
+                                                                     int k, RetrieveOptions options) {
+        List<RagChunk> cached = retrievalCache.getExact(collectionName, query, k, options);
+        CompletableFuture<List<RagChunk>> chunks = cached != null
+                ? CompletableFuture.completedFuture(cached)
+                : cachedSearch(collectionName, query, queryEmbedding, k, options);
+        return chunks.thenApply(result -> scoreCutoff.apply(result, options));
+    }
+
+    /**
+     * Serve from the retrieval cache when a similar query is cached, otherwise search and cache the result
+     */
+    private CompletableFuture<List<RagChunk>> cachedSearch(String collectionName, String query, Embedding queryEmbedding,
+                                                           int k, RetrieveOptions options) {
+        if (!retrievalCache.isEnabled()) {
+            return search(collectionName, query, queryEmbedding, k, options);
+        }
+        List<RagChunk> similar = retrievalCache.getSimilar(collectionName, queryEmbedding.vector(), k, options);
+        if (similar != null) {
+            return CompletableFuture.completedFuture(similar);
+        }
+        RetrievalCache.Lookup lookup = retrievalCache.begin(collectionName, query, options);
+        return search(collectionName, query, queryEmbedding, k, options)
+                .thenApply(chunks -> {
+                    retrievalCache.put(lookup, queryEmbedding.vector(), k, options, chunks);
+                    return chunks;
+                });
+    }
+
+    /**
+     * Over-fetch candidates with their vectors, then diversify and stitch them with the {@link PassageAssembler}
+     */
+    @Override
+    public CompletableFuture<RetrievalResult> retrievePassagesAsync(String collectionName, String query, int k, RetrieveOptions options) {
+        RetrieveOptions candidateOptions = options != null
+                ? new RetrieveOptions(options.getEf(), options.getNprobe(), true, options.getMinScore(), options.isAdaptive())
+                : new RetrieveOptions(null, null, true, null, false);
+        return embeddingService.generateEmbeddingAsync(query)
+                .thenCompose(queryEmbedding -> retrieveTopKChunksAsync(collectionName, query, queryEmbedding, passageAssembler.candidates(k), candidateOptions)
+                        .thenApply(candidates -> passageAssembler.assemble(queryEmbedding.vector(), candidates, k)));
+    }
+
+    @Override
+    public CompletableFuture<Void> addContextToCollectionAsync(String collectionName, String context) {
+        CompletableFuture<Void> future = isLocal(collectionName) && reserveLocalCapacity(collectionName, TextChunker.chunkText(context).size())
+                ? hnswRagService.addContextToCollectionAsync(collectionName, context)
+                : milvusRagService.addContextToCollectionAsync(collectionName, context);
+        return future.whenComplete((ignored, e) -> publishMutation(collectionName, false));
+    }
+
+    @Override
+    public ReindexResult reindexDocument(String collectionName, String docId, String text) {
+        try {
+            if (isLocal(collectionName) && reserveLocalCapacity(collectionName, TextChunker.chunkText(text).size())) {
+                return hnswRagService.reindexDocument(collectionName, docId, text);
+            }
+            return milvusRagService.reindexDocument(collectionName, docId, text);
+        } finally {
+            publishMutation(collectionName, false);
+        }
+    }
+
+    @Override
+    public void deleteCollection(String collectionName) {
+        try {
+            hnswRagService.deleteCollection(collectionName);
+            // Always, so a copy promoted before a restart does not outlive the collection
+            milvusRagService.deleteCollection(collectionName);
+            if (localCollections.contains(collectionName)) {
+                promoted.put(collectionName, false);
+            }
+        } finally {
+            publishMutation(collectionName, true);
+        }
+    }
+
+    /**
+     * @return true if the collection is currently served by the local HNSW index
+     */
+    public boolean isLocal(String collectionName) {
+        if (!localCollections.contains(collectionName)) {
+            return false;
+        }
+        try {
+            return !promoted.computeIfAbsent(collectionName, milvusRagService::collectionExists);
+        } catch (Exception e) {
+            log.error("Error checking whether collection {} was promoted to Milvus, serving it locally: {}",
+                    collectionName, e.getMessage(), e);
+            return true;
+        }
+    }
+
+    /**
+     * Dense search on the serving backend, fused with the lexical index
+     */
+    private CompletableFuture<List<RagChunk>> search(String collectionName, String query, Embedding queryEmbedding,
+                                                     int k, RetrieveOptions options) {
+        boolean local = isLocal(collectionName);
+        return hybridRetriever.retrieveAsync(collectionName, query, queryEmbedding, k, options,
+                local ? hnswRagService : milvusRagService, local);
+    }
+
+    private void publishMutation(String collectionName, boolean deleted) {
+        eventPublisher.publishEvent(new CollectionMutatedEvent(collectionName, deleted));
+    }
+
+    /**
+     * Check whether the local collection can take more chunks. If not, the promotion to Milvus is
+     * started on the promotion executor; only that decision is made under the lock, never the copy.
+     *
+     * @return true if the chunks should still go to the local index
+     */
+    private boolean reserveLocalCapacity(String collectionName, int newChunks) {
+        if (!isLocal(collectionName)) {
+            return false;
+        }
+        synchronized (this) {
+            if (Boolean.TRUE.equals(promoted.get(collectionName)) || promoting.contains(collectionName)) {
+                return false;
+            }
+            if (hnswRagService.size(collectionName) + newChunks <= localMaxChunks) {
+                return true;
+            }
+            promoting.add(collectionName);
+        }
+        promotionExecutor.execute(() -> promoteToMilvus(collectionName));
+        return false;
+    }
+
+    /**
+     * Copy the local chunks to Milvus, then serve the collection from Milvus. Chunks added locally
+     * while the first copy ran (reserved before the promotion started) are copied after the switch.
+     * On failure the collection stays local and the next write that does not fit retries; writes that
+     * went to Milvus in the meantime are kept there and served once a promotion succeeds.
+     */
+    private void promoteToMilvus(String collectionName) {
+        try {
+            List<Map.Entry<RagChunk, Embedding>> entries = hnswRagService.exportCollection(collectionName);
+            log.info("Local collection {} exceeds {} chunks, promoting {} chunks to Milvus", collectionName, localMaxChunks, entries.size());
+            insert(collectionName, entries);
+
+            promoted.put(collectionName, true);
+            Set<String> copied = new HashSet<>();
+            entries.forEach(entry -> copied.add(entry.getKey().getId()));
+            List<Map.Entry<RagChunk, Embedding>> late = hnswRagService.exportCollection(collectionName).stream()
+                    .filter(entry -> !copied.contains(entry.getKey().getId()))
+                    .toList();
+            insert(collectionName, late);
+            hnswRagService.deleteCollection(collectionName);
+            log.info("Promoted local collection {} to Milvus ({} chunks added during the copy)", collectionName, late.size());
+        } catch (Exception e) {
+            log.error("Error promoting local collection {} to Milvus, serving it locally: {}", collectionName, e.getMessage(), e);
+        } finally {
+            promoting.remove(collectionName);
+            publishMutation(collectionName, false);
+        }
+    }
+
+    private void insert(String collectionName, List<Map.Entry<RagChunk, Embedding>> entries) {
+        List<RagChunk> chunks = new ArrayList<>(entries.size());
+        List<Embedding> embeddings = new ArrayList<>(entries.size());
+        for (Map.Entry<RagChunk, Embedding> entry : entries) {
+            chunks.add(entry.getKey());
+            embeddings.add(entry.getValue());
+        }
+        milvusRagService.insertEmbeddedChunks(collectionName, chunks, embeddings);
+    }
+}
@@ -0,0 +1,85 @@
+package com.enable.ai.rag;
+
+import com.enable.ai.rag.vo.RagChunk;
+import com.enable.ai.rag.vo.RetrieveOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Trims a ranked result list to the relevant part: "up to k, scoring at least minScore, and
+ * stopping at the largest score gap".
+ * <p>
+ * The adaptive cut sorts the scores, finds the largest drop between neighbours and keeps only
+ * results above it, as long as that drop is at least rag.retrieve.adaptive-min-gap (evenly spread
+ * scores have no natural cut). At least one result survives the adaptive cut; results without a
+ * score are always kept. The input order is preserved.
+ */
+@Component
+public class ScoreCutoff {
+
+    private final float adaptiveMinGap;
+
+    public ScoreCutoff(@Value("${rag.retrieve.adaptive-min-gap:0.05}") float adaptiveMinGap) {
+        this.adaptiveMinGap = adaptiveMinGap;
+    }
+
+    public List<RagChunk> apply(List<RagChunk> chunks, RetrieveOptions options) {
+        if (options == null) {
+            return chunks;
+        }
+        return apply(chunks, RagChunk::getScore, options.getMinScore(), options.isAdaptive());
+    }
+
+    public <T> List<T> apply(List<T> items, Function<T, Float> score, Float minScore, boolean adaptive) {
+        if (minScore == null && !adaptive) {
+            return items;
+        }
+        float threshold = minScore != null ? minScore : Float.NEGATIVE_INFINITY;
+        if (adaptive) {
+            threshold = Math.max(threshold, gapThreshold(items, score, threshold));
+        }
+        List<T> kept = new ArrayList<>(items.size());
+        for (T item : items) {
+            Float value = score.apply(item);
+            if (value == null || value >= threshold) {
+                kept.add(item);
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Lowest score above the largest gap among the scores passing the minimum, or -infinity if there is no clear gap
+     */
+    private <T> float gapThreshold(List<T> items, Function<T, Float> score, float minimum) {
+        float[] scores = new float[items.size()];
+        int count = 0;
+        for (T item : items) {
+            Float value = score.apply(item);
+            if (value != null && value >= minimum) {
+                scores[count++] = value;
+            }
+        }
+        if (count < 2) {
+            return Float.NEGATIVE_INFINITY;
+        }
+        float[] sorted = Arrays.copyOf(scores, count);
+        Arrays.sort(sorted);
+        float largestGap = 0;
+        float threshold = Float.NEGATIVE_INFINITY;
+        // sorted ascending: the gap between sorted[i - 1] and sorted[i] keeps sorted[i] and everything above it
+        for (int i = count - 1; i > 0; i--) {
+            float gap = sorted[i] - sorted[i - 1];
+            if (gap > largestGap) {
+                largestGap = gap;
+                threshold = sorted[i];
+            }
+        }
+        return largestGap >= adaptiveMinGap ? threshold : Float.NEGATIVE_INFINITY;
+    }
+}
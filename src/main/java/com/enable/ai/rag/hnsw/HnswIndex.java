@@ -0,0 +1,467 @@
+package com.enable.ai.rag.hnsw;
+
+import com.enable.ai.embedding.ScoredIndex;
+import com.enable.ai.embedding.VectorKernels;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process HNSW (Hierarchical Navigable Small World) index over cosine similarity.
+ * <p>
+ * Vectors are normalized on insert and stored in fixed-size primitive float[] pages, so growth
+ * never moves existing data. Writers are serialized by a lock; readers never lock. Neighbor lists
+ * are immutable int[] arrays swapped atomically (copy-on-write), and a node only becomes reachable
+ * after its vector and links are written, so searches can run concurrently with inserts.
+ * <p>
+ * Removal is by tombstone: a removed node stays in the graph for navigation but is never returned.
+ */
+public class HnswIndex {
+
+    private static final int PAGE_SHIFT = 7;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int MAX_LEVEL = 16;
+    private static final int[] NO_LINKS = new int[0];
+
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private volatile int efSearch;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile float[][] vectorPages = new float[0][];
+    private volatile Node[] nodes = new Node[0];
+    private volatile int size;
+    private volatile int entryPoint = -1;
+    private volatile int removedCount;
+    private final Map<String, Integer> nodeIdsById = new ConcurrentHashMap<>();
+
+    public HnswIndex(int dimension, int m, int efConstruction, int efSearch) {
+        if (dimension <= 0 || m < 2 || efConstruction < 1 || efSearch < 1) {
+            throw new IllegalArgumentException("Invalid HNSW parameters");
+        }
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1.0 / Math.log(m);
+    }
+
+    /**
+     * Insert a vector with its payload. Adding an id that is already present is a no-op.
+     *
+     * @return the internal node id
+     */
+    public int add(String id, String text, float[] vector) {
+        return add(id, "", 0, text, vector);
+    }
+
+    /**
+     * Insert a chunk of a source document. Adding an id that is already present only updates its
+     * chunk index, and revives it if it was removed.
+     *
+     * @return the internal node id
+     */
+    public int add(String id, String docId, int chunkIndex, String text, float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+        }
+        writeLock.lock();
+        try {
+            Integer existing = nodeIdsById.get(id);
+            if (existing != null) {
+                Node node = nodes[existing];
+                node.chunkIndex = chunkIndex;
+                if (node.removed) {
+                    node.removed = false;
+                    removedCount--;
+                }
+                return existing;
+            }
+            int nodeId = size;
+            ensureCapacity(nodeId + 1);
+
+            float[] normalized = VectorKernels.normalize(vector);
+            System.arraycopy(normalized, 0, vectorPages[nodeId >>> PAGE_SHIFT], (nodeId & PAGE_MASK) * dimension, dimension);
+
+            int level = randomLevel();
+            Node node = new Node(id, docId, chunkIndex, text, level);
+            nodes[nodeId] = node;
+
+            int currentEntry = entryPoint;
+            if (currentEntry < 0) {
+                entryPoint = nodeId;
+                size = nodeId + 1;
+                nodeIdsById.put(id, nodeId);
+                return nodeId;
+            }
+
+            int topLevel = nodes[currentEntry].level;
+            int ep = currentEntry;
+            for (int l = topLevel; l > level; l--) {
+                ep = greedyClosest(normalized, ep, l);
+            }
+
+            for (int l = Math.min(level, topLevel); l >= 0; l--) {
+                List<ScoredIndex> candidates = searchLayer(normalized, ep, efConstruction, l);
+                int[] neighbors = selectNeighbors(candidates, maxConnections(l));
+                node.links.set(l, neighbors);
+                for (int neighbor : neighbors) {
+                    connect(neighbor, nodeId, l);
+                }
+                ep = candidates.get(0).index();
+            }
+
+            size = nodeId + 1;
+            nodeIdsById.put(id, nodeId);
+            if (level > topLevel) {
+                entryPoint = nodeId;
+            }
+            return nodeId;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Approximate k nearest neighbors by cosine similarity, best first
+     */
+    public List<SearchHit> search(float[] query, int k) {
+        return search(query, k, efSearch);
+    }
+
+    public List<SearchHit> search(float[] query, int k, int ef) {
+        int ep = entryPoint;
+        if (ep < 0 || k <= 0) {
+            return List.of();
+        }
+        float[] normalized = VectorKernels.normalize(query);
+        for (int l = nodes[ep].level; l > 0; l--) {
+            ep = greedyClosest(normalized, ep, l);
+        }
+
+        // Widen the beam by the tombstone ratio so removed nodes do not crowd out live results
+        int beam = Math.max(ef, k);
+        int total = size;
+        if (removedCount > 0 && total > removedCount) {
+            beam = (int) Math.min(total, (long) beam * total / (total - removedCount));
+        }
+        List<ScoredIndex> candidates = searchLayer(normalized, ep, beam, 0);
+        List<SearchHit> hits = new ArrayList<>(Math.min(k, candidates.size()));
+        Node[] snapshot = nodes;
+        for (ScoredIndex candidate : candidates) {
+            if (hits.size() >= k) {
+                break;
+            }
+            Node node = snapshot[candidate.index()];
+            if (node.removed) {
+                continue;
+            }
+            hits.add(new SearchHit(candidate.index(), node.id, node.docId, node.chunkIndex, node.text, candidate.score()));
+        }
+        return hits;
+    }
+
+    /**
+     * Copy of the stored (normalized) vector of a node
+     */
+    public float[] vector(int nodeId) {
+        float[] vector = new float[dimension];
+        System.arraycopy(vectorPages[nodeId >>> PAGE_SHIFT], (nodeId & PAGE_MASK) * dimension, vector, 0, dimension);
+        return vector;
+    }
+
+    /**
+     * Tombstone the node with this id
+     *
+     * @return true if a live node was removed
+     */
+    public boolean remove(String id) {
+        writeLock.lock();
+        try {
+            Integer nodeId = nodeIdsById.get(id);
+            if (nodeId == null || nodes[nodeId].removed) {
+                return false;
+            }
+            nodes[nodeId].removed = true;
+            removedCount++;
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return true if a live (not removed) node with this id exists
+     */
+    public boolean contains(String id) {
+        Integer nodeId = nodeIdsById.get(id);
+        return nodeId != null && !nodes[nodeId].removed;
+    }
+
+    /**
+     * @return the node id of a live chunk, or -1 if absent or removed
+     */
+    public int nodeId(String id) {
+        Integer nodeId = nodeIdsById.get(id);
+        return nodeId != null && !nodes[nodeId].removed ? nodeId : -1;
+    }
+
+    /**
+     * Node ids of the live chunks of a document, by scanning all nodes
+     */
+    public List<Integer> nodesOfDocument(String docId) {
+        List<Integer> result = new ArrayList<>();
+        Node[] snapshot = nodes;
+        int count = size;
+        for (int nodeId = 0; nodeId < count; nodeId++) {
+            Node node = snapshot[nodeId];
+            if (!node.removed && node.docId.equals(docId)) {
+                result.add(nodeId);
+            }
+        }
+        return result;
+    }
+
+    public boolean isRemoved(int nodeId) {
+        return nodes[nodeId].removed;
+    }
+
+    public int chunkIndex(int nodeId) {
+        return nodes[nodeId].chunkIndex;
+    }
+
+    public String id(int nodeId) {
+        return nodes[nodeId].id;
+    }
+
+    public String docId(int nodeId) {
+        return nodes[nodeId].docId;
+    }
+
+    public String text(int nodeId) {
+        return nodes[nodeId].text;
+    }
+
+    /**
+     * @return number of nodes including removed ones; node ids range over [0, size)
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of live nodes
+     */
+    public int liveSize() {
+        return size - removedCount;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    public void setEfSearch(int efSearch) {
+        this.efSearch = Math.max(1, efSearch);
+    }
+
+    private float similarity(float[] query, int nodeId) {
+        float[] page = vectorPages[nodeId >>> PAGE_SHIFT];
+        int offset = (nodeId & PAGE_MASK) * dimension;
+        return VectorKernels.dot(query, 0, page, offset, dimension);
+    }
+
+    private float similarity(int a, int b) {
+        float[][] pages = vectorPages;
+        return VectorKernels.dot(pages[a >>> PAGE_SHIFT], (a & PAGE_MASK) * dimension,
+                pages[b >>> PAGE_SHIFT], (b & PAGE_MASK) * dimension, dimension);
+    }
+
+    private int greedyClosest(float[] query, int entry, int level) {
+        int current = entry;
+        float best = similarity(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbor : links(current, level)) {
+                float score = similarity(query, neighbor);
+                if (score > best) {
+                    best = score;
+                    current = neighbor;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Beam search within one layer
+     *
+     * @return up to ef nodes ordered by descending similarity
+     */
+    private List<ScoredIndex> searchLayer(float[] query, int entry, int ef, int level) {
+        BitSet visited = new BitSet();
+        visited.set(entry);
+        ScoredIndex start = new ScoredIndex(entry, similarity(query, entry));
+
+        // candidates: best first; results: worst first so the root can be evicted
+        PriorityQueue<ScoredIndex> candidates = new PriorityQueue<>((a, b) -> Float.compare(b.score(), a.score()));
+        PriorityQueue<ScoredIndex> results = new PriorityQueue<>(Comparator.comparingDouble(ScoredIndex::score));
+        candidates.add(start);
+        results.add(start);
+
+        while (!candidates.isEmpty()) {
+            ScoredIndex current = candidates.poll();
+            if (results.size() >= ef && current.score() < results.peek().score()) {
+                break;
+            }
+            for (int neighbor : links(current.index(), level)) {
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float score = similarity(query, neighbor);
+                if (results.size() < ef || score > results.peek().score()) {
+                    ScoredIndex scored = new ScoredIndex(neighbor, score);
+                    candidates.add(scored);
+                    results.add(scored);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        List<ScoredIndex> ordered = new ArrayList<>(results);
+        ordered.sort((a, b) -> Float.compare(b.score(), a.score()));
+        return ordered;
+    }
+
+    /**
+     * Neighbor selection heuristic from the HNSW paper: prefer candidates that are closer to the
+     * query than to any already selected neighbor, then backfill with the best pruned ones.
+     */
+    private int[] selectNeighbors(List<ScoredIndex> candidates, int maxConnections) {
+        List<ScoredIndex> selected = new ArrayList<>(maxConnections);
+        List<ScoredIndex> pruned = new ArrayList<>();
+        for (ScoredIndex candidate : candidates) {
+            if (selected.size() >= maxConnections) {
+                break;
+            }
+            boolean diverse = true;
+            for (ScoredIndex chosen : selected) {
+                if (similarity(candidate.index(), chosen.index()) > candidate.score()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            } else {
+                pruned.add(candidate);
+            }
+        }
+        for (int i = 0; i < pruned.size() && selected.size() < maxConnections; i++) {
+            selected.add(pruned.get(i));
+        }
+        int[] neighbors = new int[selected.size()];
+        for (int i = 0; i < neighbors.length; i++) {
+            neighbors[i] = selected.get(i).index();
+        }
+        return neighbors;
+    }
+
+    /**
+     * Add a reverse link, shrinking the neighbor list with the heuristic when it overflows
+     */
+    private void connect(int from, int to, int level) {
+        Node node = nodes[from];
+        int[] current = links(from, level);
+        int maxConnections = maxConnections(level);
+        int[] updated;
+        if (current.length < maxConnections) {
+            updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = to;
+        } else {
+            float[] base = vector(from);
+            List<ScoredIndex> candidates = new ArrayList<>(current.length + 1);
+            for (int neighbor : current) {
+                candidates.add(new ScoredIndex(neighbor, similarity(base, neighbor)));
+            }
+            candidates.add(new ScoredIndex(to, similarity(base, to)));
+            candidates.sort((a, b) -> Float.compare(b.score(), a.score()));
+            updated = selectNeighbors(candidates, maxConnections);
+        }
+        node.links.set(level, updated);
+    }
+
+    private int[] links(int nodeId, int level) {
+        Node node = nodes[nodeId];
+        if (level > node.level) {
+            return NO_LINKS;
+        }
+        int[] links = node.links.get(level);
+        return links != null ? links : NO_LINKS;
+    }
+
+    private int maxConnections(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    private int randomLevel() {
+        double r = ThreadLocalRandom.current().nextDouble();
+        int level = (int) Math.floor(-Math.log(1.0 - r) * levelMultiplier);
+        return Math.min(level, MAX_LEVEL);
+    }
+
+    private void ensureCapacity(int required) {
+        if (nodes.length < required) {
+            nodes = Arrays.copyOf(nodes, Math.max(required, Math.max(16, nodes.length * 2)));
+        }
+        int pagesNeeded = (required + PAGE_SIZE - 1) >>> PAGE_SHIFT;
+        if (vectorPages.length < pagesNeeded) {
+            float[][] pages = Arrays.copyOf(vectorPages, pagesNeeded);
+            for (int p = vectorPages.length; p < pagesNeeded; p++) {
+                pages[p] = new float[PAGE_SIZE * dimension];
+            }
+            vectorPages = pages;
+        }
+    }
+
+    private static final class Node {
+        private final String id;
+        private final String docId;
+        private final String text;
+        private final int level;
+        private final AtomicReferenceArray<int[]> links;
+        private volatile int chunkIndex;
+        private volatile boolean removed;
+
+        private Node(String id, String docId, int chunkIndex, String text, int level) {
+            this.id = id;
+            this.docId = docId != null ? docId : "";
+            this.chunkIndex = chunkIndex;
+            this.text = text;
+            this.level = level;
+            this.links = new AtomicReferenceArray<>(level + 1);
+        }
+    }
+
+    /**
+     * A search result with its cosine similarity
+     */
+    public record SearchHit(int nodeId, String id, String docId, int chunkIndex, String text, float score) {
+    }
+}
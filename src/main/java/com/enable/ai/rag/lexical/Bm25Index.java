@@ -0,0 +1,223 @@
+package com.enable.ai.rag.lexical;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory BM25 inverted index over chunk text.
+ * <p>
+ * Documents are identified externally by chunk id and internally by a dense int slot. Each
+ * term's posting list is a pair of growable primitive arrays (slot, term frequency), so the
+ * index holds no per-posting objects and no chunk text. Removal tombstones the slot; postings
+ * of removed slots are skipped at query time and dropped by a compaction once they make up a
+ * quarter of the index. Adding an id that is already present is a no-op (ids are content hashes).
+ * Reads and writes are guarded by a read-write lock.
+ */
+public class Bm25Index {
+
+    private static final int COMPACTION_MIN_REMOVED = 1024;
+
+    private final float k1;
+    private final float b;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> slotsById = new HashMap<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final BitSet removed = new BitSet();
+    private String[] ids = new String[64];
+    private int[] lengths = new int[64];
+    private int slots;
+    private int liveCount;
+    private long totalLength;
+    private int removedSinceCompaction;
+
+    public Bm25Index(float k1, float b) {
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    /**
+     * @return true if the chunk was added, false if it was already indexed
+     */
+    public boolean add(String id, String text) {
+        List<String> tokens = LexicalTokenizer.tokenize(text);
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        for (String token : tokens) {
+            termFrequencies.merge(token, 1, Integer::sum);
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (slotsById.containsKey(id)) {
+                return false;
+            }
+            int slot = slots++;
+            if (slot == ids.length) {
+                ids = Arrays.copyOf(ids, slot * 2);
+                lengths = Arrays.copyOf(lengths, slot * 2);
+            }
+            ids[slot] = id;
+            lengths[slot] = tokens.size();
+            slotsById.put(id, slot);
+            liveCount++;
+            totalLength += tokens.size();
+            for (Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), term -> new Postings()).add(slot, entry.getValue());
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return true if the chunk was indexed and is now removed
+     */
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotsById.remove(id);
+            if (slot == null) {
+                return false;
+            }
+            removed.set(slot);
+            ids[slot] = null;
+            liveCount--;
+            totalLength -= lengths[slot];
+            if (++removedSinceCompaction >= COMPACTION_MIN_REMOVED && removedSinceCompaction * 4 >= liveCount) {
+                compact();
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Top n chunks by BM25 score for the query, best first
+     */
+    public List<Hit> search(String query, int n) {
+        Set<String> terms = new LinkedHashSet<>(LexicalTokenizer.tokenize(query));
+        lock.readLock().lock();
+        try {
+            if (terms.isEmpty() || liveCount == 0 || n <= 0) {
+                return List.of();
+            }
+            float averageLength = Math.max(1f, totalLength / (float) liveCount);
+            float[] scores = new float[slots];
+            int[] touched = new int[Math.min(slots, 1024)];
+            int touchedCount = 0;
+
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list == null) {
+                    continue;
+                }
+                int documentFrequency = Math.min(list.size, liveCount);
+                float idf = (float) Math.log(1 + (liveCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+                for (int i = 0; i < list.size; i++) {
+                    int slot = list.slots[i];
+                    if (removed.get(slot)) {
+                        continue;
+                    }
+                    int tf = list.frequencies[i];
+                    float norm = k1 * (1 - b + b * lengths[slot] / averageLength);
+                    if (scores[slot] == 0) {
+                        if (touchedCount == touched.length) {
+                            touched = Arrays.copyOf(touched, touchedCount * 2);
+                        }
+                        touched[touchedCount++] = slot;
+                    }
+                    scores[slot] += idf * tf * (k1 + 1) / (tf + norm);
+                }
+            }
+
+            PriorityQueue<Hit> top = new PriorityQueue<>(Comparator.comparingDouble(Hit::score));
+            for (int i = 0; i < touchedCount; i++) {
+                int slot = touched[i];
+                if (top.size() < n) {
+                    top.add(new Hit(ids[slot], scores[slot]));
+                } else if (scores[slot] > top.peek().score()) {
+                    top.poll();
+                    top.add(new Hit(ids[slot], scores[slot]));
+                }
+            }
+            List<Hit> hits = new ArrayList<>(top);
+            hits.sort(Comparator.comparingDouble(Hit::score).reversed());
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(String id) {
+        lock.readLock().lock();
+        try {
+            return slotsById.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drop postings of removed slots; terms left without postings are removed. Caller holds the write lock.
+     */
+    private void compact() {
+        Iterator<Postings> iterator = postings.values().iterator();
+        while (iterator.hasNext()) {
+            Postings list = iterator.next();
+            list.removeAll(removed);
+            if (list.size == 0) {
+                iterator.remove();
+            }
+        }
+        removedSinceCompaction = 0;
+    }
+
+    public record Hit(String id, float score) {
+    }
+
+    /**
+     * Parallel growable arrays of slots and term frequencies
+     */
+    private static final class Postings {
+        private int[] slots = new int[4];
+        private int[] frequencies = new int[4];
+        private int size;
+
+        private void add(int slot, int frequency) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            slots[size] = slot;
+            frequencies[size] = frequency;
+            size++;
+        }
+
+        private void removeAll(BitSet removed) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!removed.get(slots[i])) {
+                    slots[kept] = slots[i];
+                    frequencies[kept] = frequencies[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            if (kept < slots.length / 4) {
+                slots = Arrays.copyOf(slots, Math.max(4, kept));
+                frequencies = Arrays.copyOf(frequencies, Math.max(4, kept));
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.enable.ai.rag.lexical;
+
+import com.enable.ai.rag.ChunksChangedEvent;
+import com.enable.ai.rag.CollectionMutatedEvent;
+import com.enable.ai.rag.MilvusRagService;
+import com.enable.ai.rag.vo.RagChunk;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Per-collection BM25 indexes kept next to the vector store.
+ * <p>
+ * Indexes follow writes through {@link ChunksChangedEvent}s. A Milvus collection that already had
+ * data before this process started is bootstrapped once in the background by scanning its chunk
+ * texts; until that finishes {@link #search} returns null and callers fall back to dense-only
+ * retrieval. Local (in-process) collections start empty with the process, so they need no bootstrap.
+ * <p>
+ * Every index lives in the heap of each instance, so a collection that grows past rag.hybrid.max-rows
+ * (during the bootstrap or later) is dropped from lexical search and served vector-only from then on.
+ * Indexes only see the writes made through this instance after the bootstrap: chunks written through
+ * other instances are missing from BM25 hits until the process restarts.
+ */
+@Slf4j
+@Component
+public class LexicalIndexService {
+
+    private final MilvusRagService milvusRagService;
+    private final float k1;
+    private final float b;
+    private final int bootstrapBatchSize;
+    private final int maxRows;
+    private final Map<String, CollectionIndex> indexes = new ConcurrentHashMap<>();
+    private final ExecutorService bootstrapExecutor;
+
+    public LexicalIndexService(MilvusRagService milvusRagService,
+                               @Value("${rag.hybrid.bm25-k1:1.2}") float k1,
+                               @Value("${rag.hybrid.bm25-b:0.75}") float b,
+                               @Value("${rag.hybrid.bootstrap-batch-size:1000}") int bootstrapBatchSize,
+                               @Value("${rag.hybrid.max-rows:200000}") int maxRows) {
+        this.milvusRagService = milvusRagService;
+        this.k1 = k1;
+        this.b = b;
+        this.bootstrapBatchSize = bootstrapBatchSize;
+        this.maxRows = maxRows;
+        this.bootstrapExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("lexical-bootstrap-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bootstrapExecutor.shutdownNow();
+    }
+
+    @EventListener
+    public void onChunksChanged(ChunksChangedEvent event) {
+        CollectionIndex collectionIndex = collectionIndex(event.collectionName());
+        if (collectionIndex.disabled) {
+            return;
+        }
+        Bm25Index index = collectionIndex.index;
+        for (RagChunk chunk : event.upserted()) {
+            index.add(chunk.getId(), chunk.getText());
+        }
+        for (String id : event.removedIds()) {
+            index.remove(id);
+        }
+        if (isOverCap(index)) {
+            disable(event.collectionName());
+        }
+    }
+
+    @EventListener
+    public void onCollectionMutated(CollectionMutatedEvent event) {
+        if (event.deleted()) {
+            indexes.remove(event.collectionName());
+        }
+    }
+
+    /**
+     * Top n chunk ids by BM25 score
+     *
+     * @param bootstrapFromMilvus whether the collection lives in Milvus and may hold chunks this index has not seen
+     * @return the hits, or null while the index is still being bootstrapped or the collection is too large
+     */
+    public List<Bm25Index.Hit> search(String collectionName, String query, int n, boolean bootstrapFromMilvus) {
+        CollectionIndex collectionIndex = collectionIndex(collectionName);
+        if (collectionIndex.disabled) {
+            return null;
+        }
+        if (!collectionIndex.ready) {
+            if (!bootstrapFromMilvus) {
+                collectionIndex.ready = true;
+            } else {
+                startBootstrap(collectionName, collectionIndex);
+                return null;
+            }
+        }
+        return collectionIndex.index.search(query, n);
+    }
+
+    private synchronized void startBootstrap(String collectionName, CollectionIndex collectionIndex) {
+        if (collectionIndex.bootstrap != null) {
+            return;
+        }
+        log.info("Bootstrapping lexical index for collection {}", collectionName);
+        long start = System.currentTimeMillis();
+        collectionIndex.bootstrap = CompletableFuture.runAsync(() -> milvusRagService.scanChunks(collectionName, bootstrapBatchSize,
+                        chunks -> {
+                            chunks.forEach(chunk -> collectionIndex.index.add(chunk.getId(), chunk.getText()));
+                            if (isOverCap(collectionIndex.index)) {
+                                // Stops the scan: the rest of the collection is never read into the heap
+                                disable(collectionName);
+                                throw new CancellationException("Collection " + collectionName + " exceeds the lexical row cap");
+                            }
+                        }),
+                bootstrapExecutor);
+        collectionIndex.bootstrap.whenComplete((ignored, e) -> {
+            if (collectionIndex.disabled) {
+                return;
+            }
+            if (e != null) {
+                log.error("Lexical index bootstrap for collection {} failed, will retry on next search: {}",
+                        collectionName, e.getMessage(), e);
+                collectionIndex.bootstrap = null;
+                return;
+            }
+            collectionIndex.ready = true;
+            log.info("Lexical index for collection {} ready with {} chunks in {} ms",
+                    collectionName, collectionIndex.index.size(), System.currentTimeMillis() - start);
+        });
+    }
+
+    private boolean isOverCap(Bm25Index index) {
+        return maxRows > 0 && index.size() > maxRows;
+    }
+
+    /**
+     * Serve the collection vector-only from now on and free its index
+     */
+    private void disable(String collectionName) {
+        CollectionIndex disabled = new CollectionIndex(new Bm25Index(k1, b));
+        disabled.disabled = true;
+        CollectionIndex previous = indexes.put(collectionName, disabled);
+        if (previous != null) {
+            previous.disabled = true;
+        }
+        log.warn("Collection {} has more than {} chunks, lexical search disabled for it (vector-only retrieval)",
+                collectionName, maxRows);
+    }
+
+    private CollectionIndex collectionIndex(String collectionName) {
+        return indexes.computeIfAbsent(collectionName, name -> new CollectionIndex(new Bm25Index(k1, b)));
+    }
+
+    private static final class CollectionIndex {
+        private final Bm25Index index;
+        private volatile boolean ready;
+        private volatile boolean disabled;
+        private volatile CompletableFuture<Void> bootstrap;
+
+        private CollectionIndex(Bm25Index index) {
+            this.index = index;
+        }
+    }
+}
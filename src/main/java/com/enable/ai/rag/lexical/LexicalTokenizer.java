@@ -0,0 +1,119 @@
+package com.enable.ai.rag.lexical;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Tokenizer for lexical (BM25) matching of chunk text and queries.
+ * <p>
+ * Identifiers are kept whole and also split into their parts, so "getWeatherForecast",
+ * "get_weather" or "ERR-404" match both exactly and by component ("weather", "404").
+ * Han text has no word boundaries and is indexed as overlapping character bigrams.
+ * All tokens are lower-cased.
+ */
+public final class LexicalTokenizer {
+
+    private LexicalTokenizer() {
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int codePoint = text.codePointAt(i);
+            if (isHan(codePoint)) {
+                int end = i;
+                while (end < length && isHan(text.codePointAt(end))) {
+                    end += Character.charCount(text.codePointAt(end));
+                }
+                addHanBigrams(text.substring(i, end), tokens);
+                i = end;
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                int end = i;
+                while (end < length) {
+                    int c = text.codePointAt(end);
+                    if (isHan(c) || !(Character.isLetterOrDigit(c) || isConnector(c))) {
+                        break;
+                    }
+                    end += Character.charCount(c);
+                }
+                // Connectors only join word characters; drop trailing ones ("end." / "foo-")
+                while (end > i && isConnector(text.charAt(end - 1))) {
+                    end--;
+                }
+                addIdentifier(text.substring(i, end), tokens);
+                i = end;
+            } else {
+                i += Character.charCount(codePoint);
+            }
+        }
+        return tokens;
+    }
+
+    private static void addIdentifier(String word, List<String> tokens) {
+        List<String> parts = splitParts(word);
+        tokens.add(word.toLowerCase(Locale.ROOT));
+        if (parts.size() > 1) {
+            for (String part : parts) {
+                tokens.add(part.toLowerCase(Locale.ROOT));
+            }
+        }
+    }
+
+    /**
+     * Split on connectors, lower-to-upper case changes and letter/digit changes
+     */
+    private static List<String> splitParts(String word) {
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= word.length(); i++) {
+            if (i == word.length()) {
+                addPart(word, start, i, parts);
+                break;
+            }
+            char previous = word.charAt(i - 1);
+            char current = word.charAt(i);
+            if (isConnector(current)) {
+                addPart(word, start, i, parts);
+                start = i + 1;
+            } else if (isConnector(previous)) {
+                start = i;
+            } else if ((Character.isLowerCase(previous) && Character.isUpperCase(current))
+                    || (Character.isDigit(previous) != Character.isDigit(current))) {
+                addPart(word, start, i, parts);
+                start = i;
+            }
+        }
+        return parts;
+    }
+
+    private static void addPart(String word, int start, int end, List<String> parts) {
+        if (end > start) {
+            parts.add(word.substring(start, end));
+        }
+    }
+
+    private static void addHanBigrams(String run, List<String> tokens) {
+        int[] codePoints = run.codePoints().toArray();
+        if (codePoints.length == 1) {
+            tokens.add(run);
+            return;
+        }
+        for (int i = 0; i + 1 < codePoints.length; i++) {
+            tokens.add(new String(codePoints, i, 2));
+        }
+    }
+
+    private static boolean isConnector(int c) {
+        return c == '_' || c == '-' || c == '.' || c == '/' || c == ':';
+    }
+
+    private static boolean isHan(int codePoint) {
+        return Character.UnicodeScript.of(codePoint) == Character.UnicodeScript.HAN;
+    }
+}
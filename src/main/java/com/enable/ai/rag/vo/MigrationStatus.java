@@ -0,0 +1,51 @@
+package com.enable.ai.rag.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 集合在线迁移的进度
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MigrationStatus {
+
+    public enum State {
+        /**
+         * 未迁移或已是目标结构
+         */
+        IDLE,
+        /**
+         * 新写入同时写两个集合，历史数据复制中
+         */
+        COPYING,
+        /**
+         * 复制完成，读写切换到新集合
+         */
+        SWITCHING,
+        DONE,
+        FAILED
+    }
+
+    private String collectionName;
+
+    /**
+     * 迁移目标集合
+     */
+    private String target;
+
+    private State state;
+
+    /**
+     * 已复制的行数
+     */
+    private long copiedRows;
+
+    private Long startedAt;
+
+    private Long finishedAt;
+
+    private String message;
+}
@@ -0,0 +1,28 @@
+package com.enable.ai.rag.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 检索后拼接得到的段落：同一来源中相邻或文本重叠的chunk合并为一段，重叠部分只保留一次
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Passage {
+
+    /**
+     * 来源文档ID，未关联文档的chunk为空字符串
+     */
+    private String docId;
+
+    /**
+     * 组成该段落的chunk ID，按在来源中的顺序
+     */
+    private List<String> chunkIds;
+
+    private String text;
+}
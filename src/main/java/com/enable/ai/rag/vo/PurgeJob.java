@@ -0,0 +1,53 @@
+package com.enable.ai.rag.vo;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 后台删除用户提示词的任务及进度
+ */
+@Data
+@NoArgsConstructor
+public class PurgeJob {
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+    private String jobId;
+
+    private String collectionName;
+
+    private long userId;
+
+    /**
+     * 只删除时间戳早于该值（毫秒）的提示词，为空时删除全部
+     */
+    private Long before;
+
+    private volatile State state;
+
+    /**
+     * 需要处理的集合数（含按月分桶的集合）
+     */
+    private volatile int collectionsTotal;
+
+    /**
+     * 已处理的集合数
+     */
+    private volatile int collectionsDone;
+
+    /**
+     * 已删除的行数
+     */
+    private volatile long deletedRows;
+
+    private long submittedAt;
+
+    private volatile Long finishedAt;
+
+    private volatile String message;
+}
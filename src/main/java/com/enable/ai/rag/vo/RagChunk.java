@@ -1,5 +1,6 @@
 package com.enable.ai.rag.vo;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -9,8 +10,47 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class RagChunk {
 
+    /**
+     * 内容哈希ID，相同文本总是得到相同ID（检索结果中返回）
+     */
+    private String id;
+
+    /**
+     * 来源文档ID，未关联文档的chunk为空字符串
+     */
+    private String docId;
+
+    /**
+     * chunk在来源文档中的序号
+     */
+    private int chunkIndex;
+
     private String text;
 
+    /**
+     * 检索得分，越高越相关（余弦相似度）；非检索结果为null
+     */
+    private Float score;
+
+    /**
+     * 检索时按需返回的向量（RetrieveOptions.includeVectors），用于MMR等检索后处理，不序列化到响应中
+     */
+    @JsonIgnore
+    private float[] vector;
+
+    public RagChunk(String text) {
+        this.text = text;
+    }
+
+    public RagChunk(String id, String text) {
+        this.id = id;
+        this.text = text;
+    }
+
+    public RagChunk(String id, String docId, int chunkIndex, String text) {
+        this(id, docId, chunkIndex, text, null, null);
+    }
+
     public String getNameFromText() {
         if (text == null || text.trim().isEmpty()) {
             return null;
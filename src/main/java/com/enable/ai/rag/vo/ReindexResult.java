@@ -0,0 +1,36 @@
+package com.enable.ai.rag.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 文档增量重建索引的结果
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReindexResult {
+
+    private String docId;
+
+    /**
+     * 新增的chunk数量（需要embedding）
+     */
+    private int added;
+
+    /**
+     * 删除的chunk数量
+     */
+    private int removed;
+
+    /**
+     * 内容未变化的chunk数量
+     */
+    private int unchanged;
+
+    /**
+     * 内容未变但序号变化、只更新序号的chunk数量（不需要embedding）
+     */
+    private int reordered;
+}
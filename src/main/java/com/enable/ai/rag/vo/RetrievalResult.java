@@ -0,0 +1,83 @@
+package com.enable.ai.rag.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 带检索后处理(MMR去冗余 + 重叠拼接)的检索结果
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RetrievalResult {
+
+    /**
+     * 拼接后的段落，按相关性排序
+     */
+    private List<Passage> passages;
+
+    /**
+     * 参与MMR的候选chunk数量（k × candidate-multiplier）
+     */
+    private int candidates;
+
+    /**
+     * MMR选中的chunk数量（拼接前）
+     */
+    private int selected;
+
+    /**
+     * 直接拼接原始top k个chunk的估算token数
+     */
+    private int baselineTokens;
+
+    /**
+     * 段落的估算token数
+     */
+    private int tokens;
+
+    /**
+     * 节省的估算token数 (baselineTokens - tokens)
+     */
+    private int savedTokens;
+
+    /**
+     * 不做后处理的结果：每个chunk单独作为一个段落
+     */
+    public static RetrievalResult of(List<RagChunk> chunks) {
+        List<Passage> passages = chunks.stream()
+                .map(chunk -> new Passage(chunk.getDocId(), List.of(chunk.getId()), chunk.getText()))
+                .toList();
+        int tokens = estimateTokens(passages.stream().map(Passage::getText).toList());
+        return new RetrievalResult(passages, chunks.size(), chunks.size(), tokens, tokens, 0);
+    }
+
+    /**
+     * 段落拼接成的上下文，格式与retrieveContext一致
+     */
+    public String toContext() {
+        return passages.stream().map(Passage::getText).collect(Collectors.joining("\n\n"));
+    }
+
+    /**
+     * 估算token数：汉字按每字1个token，其他字符按每4个字符1个token
+     */
+    public static int estimateTokens(List<String> texts) {
+        long han = 0;
+        long other = 0;
+        for (String text : texts) {
+            for (int i = 0; i < text.length(); i++) {
+                if (Character.UnicodeScript.of(text.charAt(i)) == Character.UnicodeScript.HAN) {
+                    han++;
+                } else {
+                    other++;
+                }
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, han + (other + 3) / 4);
+    }
+}
@@ -0,0 +1,47 @@
+package com.enable.ai.rag.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 单次检索的可选参数，为null时使用集合索引的默认值
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RetrieveOptions {
+
+    /**
+     * HNSW索引的搜索宽度ef，越大召回越高、延迟越高（不小于k）
+     */
+    private Integer ef;
+
+    /**
+     * IVF索引搜索的聚类桶数量nprobe，越大召回越高、延迟越高
+     */
+    private Integer nprobe;
+
+    /**
+     * 是否在结果chunk中带回向量（检索后处理如MMR需要）
+     */
+    private boolean includeVectors;
+
+    /**
+     * 最低得分（余弦相似度，越高越相关），低于该得分的结果不返回；为null时不过滤
+     */
+    private Float minScore;
+
+    /**
+     * 自适应k：在得分最大断层处截断，只返回断层之上的结果（最多k个）
+     */
+    private boolean adaptive;
+
+    public RetrieveOptions(Integer ef, Integer nprobe) {
+        this(ef, nprobe, false, null, false);
+    }
+
+    public static RetrieveOptions defaults() {
+        return new RetrieveOptions();
+    }
+}
@@ -0,0 +1,131 @@
+package com.enable.ai.service;
+
+import com.enable.ai.embedding.Embedding;
+import com.enable.ai.rag.vo.RetrieveOptions;
+import com.enable.ai.rag.vo.SortType;
+import com.enable.ai.util.AsyncUtils;
+import com.enable.ai.util.Constants;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Pre-LLM retrieval stage of a chat turn.
+ * <p>
+ * The user prompt is embedded once and the embedding is handed to both the history search and the
+ * tool search, so neither embeds the prompt again (whether or not the embedding cache still holds
+ * it). The two searches run at the same time and are joined under one deadline
+ * (chat.retrieval.timeout-ms), so the stage takes about as long as the slower of them. A side that
+ * fails or misses the deadline contributes nothing (no histories or no tools) rather than failing the chat.
+ */
+@Slf4j
+@Service
+public class ChatContextRetriever {
+
+    private static final ToolCallback[] NO_TOOLS = new ToolCallback[0];
+
+    private final EmbeddingService embeddingService;
+    private final PromptRagService promptRagService;
+    private final PromptHistoryService promptHistoryService;
+    private final McpService mcpService;
+    private final long timeoutMillis;
+    private final int historyMaxPrompts;
+    private final RetrieveOptions historyOptions;
+    private final int toolCount;
+    private final ExecutorService executor;
+
+    public ChatContextRetriever(EmbeddingService embeddingService,
+                                PromptRagService promptRagService,
+                                PromptHistoryService promptHistoryService,
+                                McpService mcpService,
+                                @Value("${chat.retrieval.timeout-ms:5000}") long timeoutMillis,
+                                @Value("${chat.retrieval.threads:8}") int threads,
+                                @Value("${chat.retrieval.tools:5}") int toolCount,
+                                @Value("${chat.history.max-prompts:20}") int historyMaxPrompts,
+                                @Value("${chat.history.min-score:0.25}") float historyMinScore,
+                                @Value("${chat.history.adaptive:true}") boolean historyAdaptive) {
+        this.embeddingService = embeddingService;
+        this.promptRagService = promptRagService;
+        this.promptHistoryService = promptHistoryService;
+        this.mcpService = mcpService;
+        this.timeoutMillis = timeoutMillis;
+        this.toolCount = toolCount;
+        this.historyMaxPrompts = historyMaxPrompts;
+        this.historyOptions = new RetrieveOptions(null, null, false, historyMinScore, historyAdaptive);
+        // The searches are mostly asynchronous; the pool only keeps a blocking step of one side
+        // (e.g. an in-process index) from running on the thread that completed the embedding
+        this.executor = Executors.newFixedThreadPool(Math.max(2, threads), new ThreadFactoryBuilder()
+                .setNameFormat("chat-retrieval-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Related histories (compacted) and tools for the prompt
+     *
+     * @param userId user whose history is searched, or null for none
+     */
+    public ChatContext retrieve(Long userId, String userPrompt, boolean includesTools) {
+        long start = System.nanoTime();
+        CompletableFuture<Embedding> embedding = embeddingService.generateEmbeddingAsync(userPrompt);
+
+        CompletableFuture<List<String>> histories = userId == null
+                ? CompletableFuture.completedFuture(List.of())
+                : embedding.thenComposeAsync(queryEmbedding -> promptRagService.findRelatedUserPromptsAsync(
+                        Constants.USER_PROMPTS_COLLECTION_NAME, userId, queryEmbedding, historyMaxPrompts,
+                        SortType.TIMESTAMP, historyOptions), executor)
+                .thenApply(related -> promptHistoryService.compressUserPromptHistories(related, userId));
+        CompletableFuture<ToolCallback[]> tools = includesTools
+                ? embedding.thenComposeAsync(queryEmbedding -> mcpService.findRelatedToolCallbacksAsync(
+                        userPrompt, queryEmbedding, toolCount), executor)
+                : CompletableFuture.completedFuture(NO_TOOLS);
+
+        try {
+            CompletableFuture.allOf(histories, tools).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Pre-LLM retrieval missed its {} ms deadline (histories done: {}, tools done: {})",
+                    timeoutMillis, histories.isDone(), tools.isDone());
+        } catch (ExecutionException e) {
+            // Reported per side below
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        ChatContext context = new ChatContext(resultOf(histories, List.of(), "histories"), resultOf(tools, NO_TOOLS, "tools"));
+        log.debug("Pre-LLM retrieval took {} ms: {} histories, {} tools",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                context.histories().size(), context.toolCallbacks().length);
+        return context;
+    }
+
+    private static <T> T resultOf(CompletableFuture<T> future, T fallback, String what) {
+        if (!future.isDone()) {
+            future.cancel(true);
+            return fallback;
+        }
+        try {
+            return future.join();
+        } catch (CancellationException | CompletionException e) {
+            Throwable cause = AsyncUtils.unwrap(e);
+            log.error("Error retrieving {} for chat: {}", what, cause.getMessage(), cause);
+            return fallback;
+        }
+    }
+
+    /**
+     * Context retrieved for one chat turn
+     */
+    public record ChatContext(List<String> histories, ToolCallback[] toolCallbacks) {
+    }
+}
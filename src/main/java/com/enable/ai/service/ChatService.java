@@ -1,7 +1,6 @@
 package com.enable.ai.service;
 
-import com.enable.ai.rag.vo.SortType;
-import com.enable.ai.util.Constants;
+import com.enable.ai.util.StreamingXmlTagParser;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.compress.utils.Lists;
@@ -26,13 +25,7 @@ public class ChatService {
     private ChatClient chatClient;
 
     @Autowired
-    private McpService mcpService;
-
-    @Autowired
-    private PromptRagService promptRagService;
-
-    @Autowired
-    private PromptHistoryService promptHistoryService;
+    private ChatContextRetriever chatContextRetriever;
 
     @Autowired
     private SseService sseService;
@@ -48,14 +41,14 @@ public class ChatService {
 
         StringBuilder userPromptBuilder = new StringBuilder();
 
-        if (userId != null) {
-            List<String> userPromptHistories = promptRagService.findRelatedUserPrompts(Constants.USER_PROMPTS_COLLECTION_NAME, userId, userPrompt, 20, SortType.TIMESTAMP);
-            userPromptHistories = promptHistoryService.compressUserPromptHistories(userPromptHistories, userId);
-            if (CollectionUtils.isNotEmpty(userPromptHistories)) {
-                userPromptBuilder.append("\n").append("Here are some of your previous related conversations:");
-                for (String historyPrompt : userPromptHistories) {
-                    userPromptBuilder.append("\n").append(historyPrompt);
-                }
+        // Histories and tools are retrieved in parallel from one embedding of the prompt
+        ChatContextRetriever.ChatContext context = chatContextRetriever.retrieve(userId, userPrompt, includesTools);
+
+        List<String> userPromptHistories = context.histories();
+        if (CollectionUtils.isNotEmpty(userPromptHistories)) {
+            userPromptBuilder.append("\n").append("Here are some of your previous related conversations:");
+            for (String historyPrompt : userPromptHistories) {
+                userPromptBuilder.append("\n").append(historyPrompt);
             }
         }
         userPromptBuilder.append("\n").append("### User Prompt:");
@@ -70,7 +63,7 @@ public class ChatService {
 
         if (includesTools) {
 
-            ToolCallback[] toolCallbacks = mcpService.findRelatedToolCallbacks(userPrompt, 5);
+            ToolCallback[] toolCallbacks = context.toolCallbacks();
 
             log.info("\n>>> [{} tools] registered.", toolCallbacks.length);
             for (ToolCallback callback : toolCallbacks) {
@@ -99,21 +92,28 @@ public class ChatService {
     }
 
     public String streamChat(long userId, String systemPrompt, String userPrompt, SseEmitter emitter, boolean includesTools) throws IOException {
+        return streamChat(userId, systemPrompt, userPrompt, emitter, includesTools, null);
+    }
+
+    /**
+     * 流式对话，输出同时逐块交给parser解析；parser结束（{@link StreamingXmlTagParser#isDone}）后不再接收后续输出
+     */
+    public String streamChat(long userId, String systemPrompt, String userPrompt, SseEmitter emitter, boolean includesTools,
+                             StreamingXmlTagParser parser) throws IOException {
         List<Message> currentMessages = Lists.newArrayList();
 
         currentMessages.add(SystemMessage.builder().text(systemPrompt).build());
 
         StringBuilder userPromptBuilder = new StringBuilder();
 
-        if (userId > 0) {
-            List<String> userPromptHistories = promptRagService.findRelatedUserPrompts(
-                    Constants.USER_PROMPTS_COLLECTION_NAME, userId, userPrompt, 20, SortType.TIMESTAMP);
-            userPromptHistories = promptHistoryService.compressUserPromptHistories(userPromptHistories, userId);
-            if (CollectionUtils.isNotEmpty(userPromptHistories)) {
-                userPromptBuilder.append("\n").append("Here are some of your previous related conversations:");
-                for (String historyPrompt : userPromptHistories) {
-                    userPromptBuilder.append("\n").append(historyPrompt);
-                }
+        // Histories and tools are retrieved in parallel from one embedding of the prompt
+        ChatContextRetriever.ChatContext context = chatContextRetriever.retrieve(userId > 0 ? userId : null, userPrompt, includesTools);
+
+        List<String> userPromptHistories = context.histories();
+        if (CollectionUtils.isNotEmpty(userPromptHistories)) {
+            userPromptBuilder.append("\n").append("Here are some of your previous related conversations:");
+            for (String historyPrompt : userPromptHistories) {
+                userPromptBuilder.append("\n").append(historyPrompt);
             }
         }
         userPromptBuilder.append("\n").append("### User Prompt:");
@@ -128,7 +128,7 @@ public class ChatService {
 
         if (includesTools) {
 
-            ToolCallback[] toolCallbacks = mcpService.findRelatedToolCallbacks(userPrompt, 5);
+            ToolCallback[] toolCallbacks = context.toolCallbacks();
 
             log.info("\n>>> [{} tools] registered.", toolCallbacks.length);
 
@@ -147,23 +147,31 @@ public class ChatService {
         }
 
 
-        // 使用流式响应
+        // 使用流式响应，增量合并后以content事件实时推送
         StringBuilder responseBuilder = new StringBuilder();
 
-        //                        String accumulated = responseBuilder.toString();
-        //                        sseService.sendEvent(emitter, "content", Map.of(
-        //                                "delta", chunk,
-        //                                "accumulated", accumulated
-        //                        ));
-        chatClientRequestSpec
-                .stream()
-                .content()
-                .doOnNext(responseBuilder::append)
-                .doOnError(error -> {
-                    log.error("Error in stream", error);
-                    sseService.sendErrorEvent(emitter, error.getMessage());
-                })
-                .blockLast(); // 等待流完成
+        try (SseDeltaCoalescer deltas = sseService.newContentCoalescer(emitter)) {
+            chatClientRequestSpec
+                    .stream()
+                    .content()
+                    .doOnNext(chunk -> {
+                        responseBuilder.append(chunk);
+                        deltas.append(chunk);
+                        if (parser != null) {
+                            parser.feed(chunk);
+                        }
+                    })
+                    // Cancels the model stream once the parser has what it needs
+                    .takeUntil(chunk -> parser != null && parser.isDone())
+                    .doOnError(error -> {
+                        log.error("Error in stream", error);
+                        sseService.sendErrorEvent(emitter, error.getMessage());
+                    })
+                    .blockLast(); // 等待流完成
+        }
+        if (parser != null) {
+            parser.finish();
+        }
 
         String response = responseBuilder.toString();
         log.info("\n>>> [AI response]: \n{}", response);
@@ -171,5 +179,4 @@ public class ChatService {
         return response;
     }
 
-
 }
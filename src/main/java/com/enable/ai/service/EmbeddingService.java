@@ -1,11 +1,21 @@
 package com.enable.ai.service;
 
+import com.enable.ai.embedding.Embedding;
+import com.enable.ai.embedding.EmbeddingBatcher;
+import com.enable.ai.embedding.EmbeddingCache;
+import com.enable.ai.embedding.ScoredIndex;
+import com.enable.ai.embedding.SimilarityMetric;
+import com.enable.ai.embedding.VectorKernels;
+import com.google.common.hash.HashCode;
+import jakarta.annotation.PreDestroy;
 import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.List;
-import java.util.ArrayList;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service for generating text embeddings using OpenAI's embedding model
@@ -16,6 +26,10 @@ import java.util.ArrayList;
 public class EmbeddingService {
 
     private final EmbeddingModel embeddingModel;
+    private final EmbeddingCache embeddingCache;
+    private final String modelName;
+    private final EmbeddingBatcher embeddingBatcher;
+    private final long batchTimeoutMillis;
 
     // Dimension for text-embedding-3-small model
     private static final int EMBEDDING_DIMENSION = 1536;
@@ -24,39 +38,98 @@ public class EmbeddingService {
      * Constructor injection of the OpenAI embedding model
      * Spring AI will automatically configure this based on application-llm.yml
      */
-    public EmbeddingService(EmbeddingModel embeddingModel) {
+    public EmbeddingService(EmbeddingModel embeddingModel,
+                            EmbeddingCache embeddingCache,
+                            @Value("${spring.ai.openai.embedding.options.model:text-embedding-3-small}") String modelName,
+                            @Value("${embedding.batch.enabled:true}") boolean batchEnabled,
+                            @Value("${embedding.batch.window-ms:3}") long batchWindowMillis,
+                            @Value("${embedding.batch.max-size:64}") int batchMaxSize,
+                            @Value("${embedding.batch.max-concurrent:4}") int batchMaxConcurrent,
+                            @Value("${embedding.batch.timeout-ms:60000}") long batchTimeoutMillis) {
         this.embeddingModel = embeddingModel;
-        log.info("EmbeddingService initialized with OpenAI embedding model");
+        this.batchTimeoutMillis = batchTimeoutMillis;
+        this.embeddingCache = embeddingCache;
+        this.modelName = modelName;
+        this.embeddingBatcher = batchEnabled
+                ? new EmbeddingBatcher(this::embedAndCache, batchWindowMillis, batchMaxSize, batchMaxConcurrent)
+                : null;
+        log.info("EmbeddingService initialized with OpenAI embedding model: {} (micro-batching {})",
+                modelName, batchEnabled ? "enabled" : "disabled");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (embeddingBatcher != null) {
+            embeddingBatcher.close();
+        }
     }
 
     /**
      * Generate embedding vector for the given text using OpenAI's embedding model
      *
      * @param text The input text to generate embeddings for
-     * @return List of Float values representing the embedding vector
+     * @return Primitive embedding vector
      */
-    public List<Float> generateEmbedding(String text) {
+    public Embedding generateEmbedding(String text) {
         try {
-            log.debug("Generating embedding for text: {}", text.substring(0, Math.min(text.length(), 100)));
-
-            // Call the OpenAI embedding model directly with text
-            float[] embedding = embeddingModel.embed(text);
+            HashCode cacheKey = EmbeddingCache.key(modelName, text);
+            float[] embedding = embeddingCache.get(cacheKey);
+            if (embedding == null) {
+                log.debug("Generating embedding for text: {}", text.substring(0, Math.min(text.length(), 100)));
 
-            // Convert float array to List<Float> for compatibility
-            List<Float> floatEmbedding = new ArrayList<>(embedding.length);
-            for (float value : embedding) {
-                floatEmbedding.add(value);
+                if (embeddingBatcher != null) {
+                    // Coalesce with concurrent callers into one provider request
+                    embedding = embeddingBatcher.submit(text).get(batchTimeoutMillis, TimeUnit.MILLISECONDS);
+                } else {
+                    // Call the OpenAI embedding model directly with text
+                    embedding = embeddingModel.embed(text);
+                    embeddingCache.put(cacheKey, embedding);
+                }
             }
 
-            log.debug("Successfully generated embedding with dimension: {}", floatEmbedding.size());
-            return floatEmbedding;
+            log.debug("Successfully generated embedding with dimension: {}", embedding.length);
+            return new Embedding(embedding);
 
         } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             log.error("Error generating embedding for text: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to generate embedding", e);
         }
     }
 
+    /**
+     * Non-blocking variant of {@link #generateEmbedding(String)}.
+     * Cache hits complete immediately; misses complete when the micro-batch containing the text returns.
+     * With batching disabled the provider call runs on the caller thread.
+     *
+     * @param text The input text to generate embeddings for
+     * @return Future of the primitive embedding vector
+     */
+    public CompletableFuture<Embedding> generateEmbeddingAsync(String text) {
+        float[] cached = embeddingCache.get(EmbeddingCache.key(modelName, text));
+        if (cached != null) {
+            return CompletableFuture.completedFuture(new Embedding(cached));
+        }
+        if (embeddingBatcher == null) {
+            try {
+                return CompletableFuture.completedFuture(generateEmbedding(text));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return embeddingBatcher.submit(text)
+                .orTimeout(batchTimeoutMillis, TimeUnit.MILLISECONDS)
+                .handle((embedding, error) -> {
+                    if (error != null) {
+                        log.error("Error generating embedding for text: {}", error.getMessage(), error);
+                        throw new RuntimeException("Failed to generate embedding", error);
+                    }
+                    return new Embedding(embedding);
+                });
+    }
+
     /**
      * Generate embeddings for multiple texts in batch
      * More efficient for processing multiple texts
@@ -64,21 +137,38 @@ public class EmbeddingService {
      * @param texts List of texts to generate embeddings for
      * @return List of embedding vectors
      */
-    public List<List<Float>> generateBatchEmbeddings(List<String> texts) {
+    public List<Embedding> generateBatchEmbeddings(List<String> texts) {
         try {
-            log.debug("Generating embeddings for {} texts", texts.size());
+            // Resolve cached vectors first and only send the distinct misses to the model
+            float[][] resolved = new float[texts.size()][];
+            Set<String> missTexts = new LinkedHashSet<>();
+            for (int i = 0; i < texts.size(); i++) {
+                resolved[i] = embeddingCache.get(EmbeddingCache.key(modelName, texts.get(i)));
+                if (resolved[i] == null) {
+                    missTexts.add(texts.get(i));
+                }
+            }
+
+            if (!missTexts.isEmpty()) {
+                log.debug("Generating embeddings for {} texts ({} cached)", missTexts.size(), texts.size() - missTexts.size());
 
-            // Call the OpenAI embedding model with list of texts
-            List<float[]> embeddingArrays = embeddingModel.embed(texts);
+                List<String> missList = new ArrayList<>(missTexts);
+                List<float[]> embeddingArrays = embedAndCache(missList);
 
-            // Convert all embeddings from float[] to List<Float>
-            List<List<Float>> embeddings = new ArrayList<>();
-            for (float[] embedding : embeddingArrays) {
-                List<Float> floatEmbedding = new ArrayList<>(embedding.length);
-                for (float value : embedding) {
-                    floatEmbedding.add(value);
+                Map<String, float[]> generated = new HashMap<>();
+                for (int i = 0; i < missList.size(); i++) {
+                    generated.put(missList.get(i), embeddingArrays.get(i));
+                }
+                for (int i = 0; i < texts.size(); i++) {
+                    if (resolved[i] == null) {
+                        resolved[i] = generated.get(texts.get(i));
+                    }
                 }
-                embeddings.add(floatEmbedding);
+            }
+
+            List<Embedding> embeddings = new ArrayList<>(resolved.length);
+            for (float[] embedding : resolved) {
+                embeddings.add(new Embedding(embedding));
             }
 
             log.debug("Successfully generated {} embeddings", embeddings.size());
@@ -90,6 +180,18 @@ public class EmbeddingService {
         }
     }
 
+    /**
+     * Call the OpenAI embedding model with list of texts and cache the results.
+     * This is the single entry point to the provider, shared by direct batch calls and the micro-batcher.
+     */
+    private List<float[]> embedAndCache(List<String> texts) {
+        List<float[]> embeddingArrays = embeddingModel.embed(texts);
+        for (int i = 0; i < texts.size(); i++) {
+            embeddingCache.put(EmbeddingCache.key(modelName, texts.get(i)), embeddingArrays.get(i));
+        }
+        return embeddingArrays;
+    }
+
     /**
      * Calculate cosine similarity between two embedding vectors
      * Useful for measuring similarity between texts
@@ -98,29 +200,44 @@ public class EmbeddingService {
      * @param embedding2 Second embedding vector
      * @return Cosine similarity score between -1 and 1
      */
-    public float calculateCosineSimilarity(List<Float> embedding1, List<Float> embedding2) {
-        if (embedding1.size() != embedding2.size()) {
-            throw new IllegalArgumentException("Embeddings must have the same dimension");
-        }
-
-        float dotProduct = 0.0f;
-        float norm1 = 0.0f;
-        float norm2 = 0.0f;
+    public float calculateCosineSimilarity(Embedding embedding1, Embedding embedding2) {
+        return VectorKernels.cosine(embedding1.vector(), embedding2.vector());
+    }
 
-        for (int i = 0; i < embedding1.size(); i++) {
-            dotProduct += embedding1.get(i) * embedding2.get(i);
-            norm1 += embedding1.get(i) * embedding1.get(i);
-            norm2 += embedding2.get(i) * embedding2.get(i);
-        }
+    /**
+     * Score a query embedding against a contiguous row-major matrix of vectors and return the top k rows.
+     * This is the building block for in-process reranking and local search.
+     *
+     * @param query  Query embedding
+     * @param matrix Row-major matrix of {@code rows} vectors with the query's dimension
+     * @param rows   Number of rows in the matrix
+     * @param k      Number of results to return
+     * @param metric Similarity metric, higher scores are more similar
+     * @return Up to k row indices with their scores, best first
+     */
+    public List<ScoredIndex> findTopK(Embedding query, float[] matrix, int rows, int k, SimilarityMetric metric) {
+        return VectorKernels.topK(query.vector(), matrix, rows, k, metric);
+    }
 
-        norm1 = (float) Math.sqrt(norm1);
-        norm2 = (float) Math.sqrt(norm2);
+    /**
+     * @return the embedding model name, which is also part of the cache key
+     */
+    public String getModelName() {
+        return modelName;
+    }
 
-        if (norm1 == 0.0f || norm2 == 0.0f) {
-            return 0.0f;
-        }
+    /**
+     * @return the content-addressed cache used by this service, for hit/miss/eviction metrics
+     */
+    public EmbeddingCache getEmbeddingCache() {
+        return embeddingCache;
+    }
 
-        return dotProduct / (norm1 * norm2);
+    /**
+     * @return the micro-batcher used for single-text requests, or null if batching is disabled
+     */
+    public EmbeddingBatcher getEmbeddingBatcher() {
+        return embeddingBatcher;
     }
 
     /**
@@ -140,22 +257,8 @@ public class EmbeddingService {
      * @param embedding The embedding vector to normalize
      * @return Normalized embedding vector
      */
-    public List<Float> normalizeEmbedding(List<Float> embedding) {
-        float norm = 0.0f;
-        for (Float value : embedding) {
-            norm += value * value;
-        }
-        norm = (float) Math.sqrt(norm);
-
-        if (norm == 0.0f) {
-            return embedding;
-        }
-
-        List<Float> normalized = new ArrayList<>(embedding.size());
-        for (Float value : embedding) {
-            normalized.add(value / norm);
-        }
-
-        return normalized;
+    public Embedding normalizeEmbedding(Embedding embedding) {
+        float[] normalized = VectorKernels.normalize(embedding.vector());
+        return normalized == embedding.vector() ? embedding : new Embedding(normalized);
     }
 }
\ No newline at end of file
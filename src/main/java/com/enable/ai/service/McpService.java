@@ -1,6 +1,8 @@
 package com.enable.ai.service;
 
+import com.enable.ai.embedding.Embedding;
 import com.enable.ai.rag.vo.RagChunk;
+import com.enable.ai.rag.vo.RetrieveOptions;
 import com.enable.ai.util.Constants;
 import com.google.common.collect.Maps;
 import jakarta.annotation.PostConstruct;
@@ -12,6 +14,7 @@ import org.springframework.stereotype.Service;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class McpService {
@@ -45,6 +48,30 @@ public class McpService {
                 .toArray(ToolCallback[]::new);
     }
 
+    /**
+     * findRelatedToolCallbacks的异步版本，不占用调用线程等待embedding和检索
+     */
+    public CompletableFuture<ToolCallback[]> findRelatedToolCallbacksAsync(String query, int k) {
+        return ragService.retrieveTopKChunksAsync(Constants.MCP_TOOLS_COLLECTION_NAME, query, k)
+                .thenApply(this::toToolCallbacks);
+    }
+
+    /**
+     * findRelatedToolCallbacksAsync的变体，使用调用方已计算好的query向量
+     */
+    public CompletableFuture<ToolCallback[]> findRelatedToolCallbacksAsync(String query, Embedding queryEmbedding, int k) {
+        return ragService.retrieveTopKChunksAsync(Constants.MCP_TOOLS_COLLECTION_NAME, query, queryEmbedding, k, RetrieveOptions.defaults())
+                .thenApply(this::toToolCallbacks);
+    }
+
+    private ToolCallback[] toToolCallbacks(List<RagChunk> chunks) {
+        return chunks.stream()
+                .map(RagChunk::getNameFromText)
+                .map(toolCallbackMap::get)
+                .filter(Objects::nonNull)
+                .toArray(ToolCallback[]::new);
+    }
+
     public List<String> findAllToolSchemas() {
         return toolCallbackMap.values().stream()
                 .map(callback -> callback.getToolDefinition().toString())
@@ -2,16 +2,37 @@ package com.enable.ai.service;
 
 import com.enable.ai.util.Constants;
 import com.enable.ai.util.PromptConstants;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.compress.utils.Lists;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Keeps a user's prompt history short with a rolling summary maintained in the background.
+ * <p>
+ * The chat path never waits for compaction: it gets the latest summary snapshot plus the retrieved
+ * histories that fit the budget, and only schedules a compaction when the histories grow past it.
+ * A compaction summarizes everything still stored for the user, which after the previous run is
+ * the previous summary plus the turns since, stores the new summary and purges what it replaced.
+ * At most one compaction per user is queued or running, and the pool size caps them globally.
+ */
 @Slf4j
 @Service
 public class PromptHistoryService {
@@ -22,45 +43,166 @@ public class PromptHistoryService {
     @Autowired
     private PromptRagService promptRagService;
 
+    /**
+     * 同时进行的压缩任务数上限
+     */
+    @Value("${chat.history.compaction.max-concurrent:2}")
+    private int maxConcurrent;
+
+    /**
+     * 内存中保留最新摘要的用户数上限
+     */
+    @Value("${chat.history.compaction.max-summaries:10000}")
+    private int maxSummaries;
+
+    private ExecutorService executor;
+    private Cache<Long, String> summaries;
+
+    /**
+     * Users with a compaction queued or running, with the time it was requested
+     */
+    private final Map<Long, Long> scheduled = new ConcurrentHashMap<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong totalLagMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+    private volatile long lastLagMillis;
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newFixedThreadPool(Math.max(1, maxConcurrent), new ThreadFactoryBuilder()
+                .setNameFormat("history-compaction-%d")
+                .setDaemon(true)
+                .build());
+        summaries = CacheBuilder.newBuilder()
+                .maximumSize(maxSummaries)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Histories to inject into the prompt: the latest summary of the user, then the newest histories
+     * within the size limits. Schedules a background compaction when the histories exceed them.
+     *
+     * @param userPromptHistories related histories, oldest first
+     */
     public List<String> compressUserPromptHistories(List<String> userPromptHistories, long userId) {
+        String summary = summaries.getIfPresent(userId);
         if (CollectionUtils.isEmpty(userPromptHistories)) {
-            return userPromptHistories;
+            return summary == null ? userPromptHistories : List.of(summary);
         }
 
-        if (userPromptHistories.size() >= Constants.MAX_USER_PROMPT_HISTORIES_SESSION_SIZE) {
-            return compressUserPromptHistoriesToString(userPromptHistories, userId);
-        }
         long totalSize = userPromptHistories.stream().mapToLong(String::length).sum();
-        if (totalSize > Constants.MAX_USER_PROMPT_HISTORIES_TOKEN_SIZE) {
-            return compressUserPromptHistoriesToString(userPromptHistories, userId);
+        if (userPromptHistories.size() >= Constants.MAX_USER_PROMPT_HISTORIES_SESSION_SIZE
+                || totalSize > Constants.MAX_USER_PROMPT_HISTORIES_TOKEN_SIZE) {
+            scheduleCompaction(userId);
+        }
+
+        // Newest first within the limits, then back in chronological order after the summary
+        List<String> kept = new ArrayList<>();
+        long size = summary == null ? 0 : summary.length();
+        int limit = Constants.MAX_USER_PROMPT_HISTORIES_SESSION_SIZE - (summary == null ? 0 : 1);
+        for (int i = userPromptHistories.size() - 1; i >= 0 && kept.size() < limit; i--) {
+            String history = userPromptHistories.get(i);
+            if (history.equals(summary)) {
+                continue;
+            }
+            if (!kept.isEmpty() && size + history.length() > Constants.MAX_USER_PROMPT_HISTORIES_TOKEN_SIZE) {
+                break;
+            }
+            kept.add(history);
+            size += history.length();
+        }
+        List<String> histories = new ArrayList<>(kept.size() + 1);
+        if (summary != null) {
+            histories.add(summary);
+        }
+        for (int i = kept.size() - 1; i >= 0; i--) {
+            histories.add(kept.get(i));
         }
-        return userPromptHistories;
+        return histories;
     }
 
-    private List<String> compressUserPromptHistoriesToString(List<String> userPromptHistories, long userId) {
-        List<String> compressedList = Lists.newArrayList();
-        StringBuilder sb = new StringBuilder();
-        for (String history : userPromptHistories) {
-            sb.append(history).append("\n");
+    /**
+     * Queue a compaction of the user's history unless one is already queued or running
+     */
+    public void scheduleCompaction(long userId) {
+        long requestedAt = System.currentTimeMillis();
+        if (scheduled.putIfAbsent(userId, requestedAt) != null) {
+            return;
         }
-        String combinedHistories = sb.toString();
+        executor.execute(() -> compact(userId, requestedAt));
+    }
+
+    public CompactionStats stats() {
+        long now = System.currentTimeMillis();
+        long oldestPending = scheduled.values().stream().mapToLong(requestedAt -> now - requestedAt).max().orElse(0);
+        long done = completed.get();
+        return new CompactionStats(scheduled.size() - running.get(), running.get(), done, failed.get(),
+                lastLagMillis, maxLagMillis.get(), done == 0 ? 0 : (double) totalLagMillis.get() / done, oldestPending);
+    }
+
+    private void compact(long userId, long requestedAt) {
+        running.incrementAndGet();
+        try {
+            // Everything stamped before this point is replaced by the new summary, which is stamped later.
+            // Adds stamped before it but still embedding are waited for, so the read below sees them
+            long compactedBefore = promptRagService.awaitPendingAdds(Constants.USER_PROMPTS_COLLECTION_NAME, userId);
+            // Strict: an incomplete read must not be summarized, as everything before compactedBefore is deleted
+            List<String> prompts = promptRagService.findAllUserPromptsStrict(Constants.USER_PROMPTS_COLLECTION_NAME, userId);
+            String previous = summaries.getIfPresent(userId);
+            if (previous != null && !prompts.contains(previous)) {
+                prompts = new ArrayList<>(prompts);
+                prompts.add(0, previous);
+            }
+            if (prompts.isEmpty()) {
+                return;
+            }
+
+            StringBuilder sb = new StringBuilder();
+            for (String history : prompts) {
+                sb.append(history).append("\n");
+            }
+            String combinedHistories = sb.toString();
 
-        String compressionPrompt = PromptConstants.PROMPT_COMPRESS_HISTORY + "\n" + combinedHistories;
+            String compressionPrompt = PromptConstants.PROMPT_COMPRESS_HISTORY + "\n" + combinedHistories;
 
-        ChatClient.CallResponseSpec aiResponse = chatClient
-                .prompt(compressionPrompt)
-                .call();
+            ChatClient.CallResponseSpec aiResponse = chatClient
+                    .prompt(compressionPrompt)
+                    .call();
 
-        String aiContent = aiResponse.content();
-        compressedList.add(aiContent);
+            String aiContent = Objects.requireNonNull(aiResponse.content());
 
-        log.info(">>> Compressed user prompt histories from {} to {} characters.",
-                combinedHistories.length(), Objects.requireNonNull(aiContent).length());
+            // Store the summary before purging what it replaces, then publish it to the chat path
+            promptRagService.addUserPromptToCollection(Constants.USER_PROMPTS_COLLECTION_NAME, userId, aiContent);
+            promptRagService.deleteUserPrompts(Constants.USER_PROMPTS_COLLECTION_NAME, userId, compactedBefore, null);
+            summaries.put(userId, aiContent);
 
-        // Save the compressed history to vector DB and delete old histories
-        promptRagService.deleteUserPromptsCollection(Constants.USER_PROMPTS_COLLECTION_NAME, userId);
-        promptRagService.addUserPromptToCollection(Constants.USER_PROMPTS_COLLECTION_NAME, userId, aiContent);
+            long lag = System.currentTimeMillis() - requestedAt;
+            lastLagMillis = lag;
+            totalLagMillis.addAndGet(lag);
+            maxLagMillis.accumulateAndGet(lag, Math::max);
+            completed.incrementAndGet();
+            log.info(">>> Compacted {} prompt histories of user {} from {} to {} characters ({} ms after request).",
+                    prompts.size(), userId, combinedHistories.length(), aiContent.length(), lag);
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.error("Error compacting prompt histories of user {}: {}", userId, e.getMessage(), e);
+        } finally {
+            running.decrementAndGet();
+            scheduled.remove(userId);
+        }
+    }
 
-        return compressedList;
+    /**
+     * 历史压缩任务统计：排队数、执行中数、完成/失败数，以及从触发到新摘要可用的延迟（毫秒）
+     */
+    public record CompactionStats(int queued, int running, long completed, long failed, long lastLagMs,
+                                  long maxLagMs, double averageLagMs, long oldestPendingMs) {
     }
 }
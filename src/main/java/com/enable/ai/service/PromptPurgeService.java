@@ -0,0 +1,95 @@
+package com.enable.ai.service;
+
+import com.enable.ai.rag.vo.PurgeJob;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Background deletion of user prompts.
+ * <p>
+ * Purges run on a small pool as jobs whose progress (collections done, rows deleted) can be polled,
+ * so neither history compaction nor the delete endpoint waits for Milvus. Finished jobs are kept for
+ * milvus.prompts.purge.retention-ms.
+ */
+@Slf4j
+@Service
+public class PromptPurgeService {
+
+    private final PromptRagService promptRagService;
+    private final long retentionMillis;
+    private final Map<String, PurgeJob> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+
+    public PromptPurgeService(PromptRagService promptRagService,
+                              @Value("${milvus.prompts.purge.threads:2}") int threads,
+                              @Value("${milvus.prompts.purge.retention-ms:3600000}") long retentionMillis) {
+        this.promptRagService = promptRagService;
+        this.retentionMillis = retentionMillis;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactoryBuilder()
+                .setNameFormat("prompt-purge-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Queue a purge of the user's prompts
+     *
+     * @param before only prompts stamped before this time (epoch millis) are deleted; null deletes all
+     */
+    public PurgeJob submit(String collectionName, long userId, Long before) {
+        pruneFinished();
+        PurgeJob job = new PurgeJob();
+        job.setJobId(UUID.randomUUID().toString());
+        job.setCollectionName(collectionName);
+        job.setUserId(userId);
+        job.setBefore(before);
+        job.setState(PurgeJob.State.QUEUED);
+        job.setSubmittedAt(System.currentTimeMillis());
+        jobs.put(job.getJobId(), job);
+        executor.execute(() -> run(job));
+        return job;
+    }
+
+    /**
+     * @return the job, or null if unknown or expired
+     */
+    public PurgeJob get(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    private void run(PurgeJob job) {
+        job.setState(PurgeJob.State.RUNNING);
+        try {
+            promptRagService.deleteUserPrompts(job.getCollectionName(), job.getUserId(), job.getBefore(), job);
+            job.setState(PurgeJob.State.DONE);
+        } catch (Exception e) {
+            log.error("Purge job {} for user {} in collection {} failed: {}",
+                    job.getJobId(), job.getUserId(), job.getCollectionName(), e.getMessage(), e);
+            job.setMessage(e.getMessage());
+            job.setState(PurgeJob.State.FAILED);
+        } finally {
+            job.setFinishedAt(System.currentTimeMillis());
+        }
+        log.info("Purge job {} for user {} in collection {}: {} rows deleted in {} ms", job.getJobId(), job.getUserId(),
+                job.getCollectionName(), job.getDeletedRows(), job.getFinishedAt() - job.getSubmittedAt());
+    }
+
+    private void pruneFinished() {
+        long now = System.currentTimeMillis();
+        jobs.values().removeIf(job -> job.getFinishedAt() != null && now - job.getFinishedAt() > retentionMillis);
+    }
+}
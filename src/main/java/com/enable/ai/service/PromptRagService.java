@@ -1,8 +1,12 @@
 package com.enable.ai.service;
 
+import com.enable.ai.embedding.Embedding;
+import com.enable.ai.rag.vo.PurgeJob;
+import com.enable.ai.rag.vo.RetrieveOptions;
 import com.enable.ai.rag.vo.SortType;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface PromptRagService {
 
@@ -12,7 +16,52 @@ public interface PromptRagService {
 
     List<String> findRelatedUserPrompts(String collectionName, long userId, String query, int k, SortType sortType);
 
+    /**
+     * 查找相关的用户prompts，按options过滤：得分低于minScore的不返回，adaptive时在得分最大断层处截断
+     */
+    List<String> findRelatedUserPrompts(String collectionName, long userId, String query, int k, SortType sortType, RetrieveOptions options);
+
     List<String> findAllUserPrompts(String collectionName, long userId);
 
+    /**
+     * 与findAllUserPrompts相同，但任一分桶读取失败或行数达到单次查询上限时抛出异常，而不是返回不完整的结果
+     */
+    List<String> findAllUserPromptsStrict(String collectionName, long userId);
+
+    /**
+     * 等待用户已开始但尚未写入（仍在生成embedding）的添加完成，返回调用时刻：
+     * 时间戳早于该时刻的提示词此后都能被读到，可作为读取后按时间删除的安全边界
+     */
+    long awaitPendingAdds(String collectionName, long userId);
+
     void deleteUserPromptsCollection(String collectionName, long userId);
+
+    /**
+     * 按表达式删除用户的提示词（user_id == N，可选 timestamp < before），progress不为空时更新进度
+     *
+     * @return 删除的行数
+     */
+    long deleteUserPrompts(String collectionName, long userId, Long before, PurgeJob progress);
+
+    /**
+     * addUserPromptToCollection的异步版本
+     */
+    CompletableFuture<Void> addUserPromptToCollectionAsync(String collectionName, long userId, String prompt);
+
+    /**
+     * findRelatedUserPrompts的异步版本，不占用调用线程等待embedding和检索
+     */
+    CompletableFuture<List<String>> findRelatedUserPromptsAsync(String collectionName, long userId, String query, int k, SortType sortType);
+
+    CompletableFuture<List<String>> findRelatedUserPromptsAsync(String collectionName, long userId, String query, int k, SortType sortType, RetrieveOptions options);
+
+    /**
+     * findRelatedUserPromptsAsync的变体，使用调用方已计算好的query向量，不再对query做embedding
+     */
+    CompletableFuture<List<String>> findRelatedUserPromptsAsync(String collectionName, long userId, Embedding queryEmbedding, int k, SortType sortType, RetrieveOptions options);
+
+    /**
+     * findAllUserPrompts的异步版本
+     */
+    CompletableFuture<List<String>> findAllUserPromptsAsync(String collectionName, long userId);
 }
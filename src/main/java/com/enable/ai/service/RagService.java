@@ -1,8 +1,14 @@
 package com.enable.ai.service;
 
+import com.enable.ai.embedding.Embedding;
 import com.enable.ai.rag.vo.RagChunk;
+import com.enable.ai.rag.vo.ReindexResult;
+import com.enable.ai.rag.vo.RetrievalResult;
+import com.enable.ai.rag.vo.RetrieveOptions;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 public interface RagService {
 
@@ -15,7 +21,19 @@ public interface RagService {
     /**
      * 检索与query最相关的top k个chunk
      */
-    List<RagChunk> retrieveTopKChunks(String collectionName, String query, int k);
+    default List<RagChunk> retrieveTopKChunks(String collectionName, String query, int k) {
+        return retrieveTopKChunks(collectionName, query, k, RetrieveOptions.defaults());
+    }
+
+    /**
+     * 检索与query最相关的top k个chunk，可按请求调整索引搜索参数(ef/nprobe)
+     */
+    List<RagChunk> retrieveTopKChunks(String collectionName, String query, int k, RetrieveOptions options);
+
+    /**
+     * 批量检索：一次embedding调用和一次多向量(nq>1)检索，按queries顺序返回每个query的top k个chunk
+     */
+    List<List<RagChunk>> retrieveTopKChunksBatch(String collectionName, List<String> queries, int k);
 
     /**
      * 如果collection不存在，创建一个新的collection
@@ -28,9 +46,58 @@ public interface RagService {
      */
     String retrieveContext(String collectionName, String query, int k);
 
+    /**
+     * 按文档增量重建索引：重新分块后与已存储的chunk哈希做diff，
+     * 只删除已移除的chunk、只对新增的chunk做embedding并写入，内容未变但位置变化的chunk只更新序号
+     * text为空时删除该文档的全部chunk
+     */
+    ReindexResult reindexDocument(String collectionName, String docId, String text);
+
     /**
      * 删除collection及其所有内容
      */
     void deleteCollection(String collectionName);
 
+    /**
+     * addChunkToCollection的异步版本，不占用调用线程等待embedding和写入
+     */
+    CompletableFuture<Void> addChunkToCollectionAsync(String collectionName, RagChunk chunk);
+
+    /**
+     * retrieveTopKChunks的异步版本，不占用调用线程等待embedding和检索
+     */
+    default CompletableFuture<List<RagChunk>> retrieveTopKChunksAsync(String collectionName, String query, int k) {
+        return retrieveTopKChunksAsync(collectionName, query, k, RetrieveOptions.defaults());
+    }
+
+    CompletableFuture<List<RagChunk>> retrieveTopKChunksAsync(String collectionName, String query, int k, RetrieveOptions options);
+
+    /**
+     * retrieveTopKChunksAsync的变体，使用调用方已计算好的query向量，不再对query做embedding
+     * query文本仍用于缓存和词法检索
+     */
+    CompletableFuture<List<RagChunk>> retrieveTopKChunksAsync(String collectionName, String query, Embedding queryEmbedding, int k, RetrieveOptions options);
+
+    /**
+     * addContextToCollection的异步版本
+     */
+    CompletableFuture<Void> addContextToCollectionAsync(String collectionName, String context);
+
+    /**
+     * retrieveContext的异步版本
+     */
+    default CompletableFuture<String> retrieveContextAsync(String collectionName, String query, int k) {
+        return retrieveTopKChunksAsync(collectionName, query, k)
+                .thenApply(chunks -> chunks.stream().map(RagChunk::getText).collect(Collectors.joining("\n\n")));
+    }
+
+    /**
+     * 带检索后处理的检索：取k×m个候选(带向量)，按MMR去掉语义重复的chunk后选出k个，
+     * 再把同一来源相邻或文本重叠的chunk拼接成段落（重叠部分只保留一次），并返回节省的估算token数
+     * 默认实现不做后处理
+     */
+    default CompletableFuture<RetrievalResult> retrievePassagesAsync(String collectionName, String query, int k, RetrieveOptions options) {
+        return retrieveTopKChunksAsync(collectionName, query, k, options).thenApply(RetrievalResult::of);
+    }
+
 }
@@ -0,0 +1,81 @@
+package com.enable.ai.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces streamed model output into SSE content deltas.
+ * <p>
+ * The first delta of a stream is sent as soon as it arrives, so the client sees output after the
+ * first token. After that, text is accumulated and sent when max-chars are pending or interval-ms
+ * after the first pending text, whichever comes first, instead of one frame per token. A timer sends
+ * the tail when the stream stalls; {@link #close} sends whatever is still pending.
+ */
+@Slf4j
+public class SseDeltaCoalescer implements AutoCloseable {
+
+    private final Consumer<String> sink;
+    private final ScheduledExecutorService scheduler;
+    private final int maxChars;
+    private final long intervalMillis;
+
+    private final StringBuilder pending = new StringBuilder();
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean first = true;
+    private int frames;
+
+    /**
+     * @param sink      sends one delta; called with the coalescer's lock held, so deltas are sent in order
+     * @param scheduler runs the interval flushes
+     */
+    public SseDeltaCoalescer(Consumer<String> sink, ScheduledExecutorService scheduler, int maxChars, long intervalMillis) {
+        this.sink = sink;
+        this.scheduler = scheduler;
+        this.maxChars = Math.max(1, maxChars);
+        this.intervalMillis = intervalMillis;
+    }
+
+    public synchronized void append(String delta) {
+        if (delta == null || delta.isEmpty()) {
+            return;
+        }
+        pending.append(delta);
+        if (first || pending.length() >= maxChars || intervalMillis <= 0) {
+            first = false;
+            flush();
+        } else if (scheduledFlush == null) {
+            scheduledFlush = scheduler.schedule(this::flush, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Send the pending text now
+     */
+    public synchronized void flush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        String delta = pending.toString();
+        pending.setLength(0);
+        frames++;
+        try {
+            sink.accept(delta);
+        } catch (Exception e) {
+            log.error("Error sending content delta: {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        flush();
+        log.debug("Streamed content in {} SSE frames", frames);
+    }
+}
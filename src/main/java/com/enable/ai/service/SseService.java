@@ -3,9 +3,12 @@ package com.enable.ai.service;
 import com.enable.ai.agent.vo.LeadAgentResponse;
 import com.enable.ai.agent.vo.ReActAgentResponse;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.annotation.PreDestroy;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
@@ -14,6 +17,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 @Slf4j
 @Service
@@ -26,6 +31,34 @@ public class SseService {
     @Getter
     private final ThreadLocal<Set<String>> sentReasoningSteps = ThreadLocal.withInitial(HashSet::new);
 
+    /**
+     * 流式输出合并为content事件：每隔interval-ms或累计max-chars个字符发送一次
+     */
+    @Value("${chat.stream.delta-interval-ms:50}")
+    private long deltaIntervalMillis;
+
+    @Value("${chat.stream.delta-max-chars:64}")
+    private int deltaMaxChars;
+
+    private final ScheduledExecutorService deltaScheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                    .setNameFormat("sse-delta-flush-%d")
+                    .setDaemon(true)
+                    .build());
+
+    @PreDestroy
+    public void shutdown() {
+        deltaScheduler.shutdownNow();
+    }
+
+    /**
+     * 创建content增量事件的合并器，流结束时需close以发送剩余内容
+     */
+    public SseDeltaCoalescer newContentCoalescer(SseEmitter emitter) {
+        return new SseDeltaCoalescer(delta -> sendContentEvent(emitter, delta), deltaScheduler,
+                deltaMaxChars, deltaIntervalMillis);
+    }
+
     public void sendEvent(SseEmitter emitter, String eventType, Map<String, Object> data) throws IOException {
         Map<String, Object> event = new HashMap<>(data);
         if (!event.containsKey("type")) {
@@ -81,6 +114,22 @@ public class SseService {
         }
     }
 
+    /**
+     * 发送单个推理步骤（标签结束时即发送），标签名映射为步骤类型，final_answer为result
+     */
+    public void sendReasoningStepEvent(SseEmitter emitter, String tag, String content) {
+        try {
+            if (content != null && !content.trim().isEmpty()) {
+                sendEvent(emitter, "reasoning_step", Map.of(
+                        "type", "final_answer".equals(tag) ? "result" : tag,
+                        "content", content.trim()
+                ));
+            }
+        } catch (Exception e) {
+            log.error("Error sending SSE event: {}", e.getMessage(), e);
+        }
+    }
+
     public void sendPlanEvent(SseEmitter emitter, LeadAgentResponse response) {
         try {
             if (response.hasPlan()) {
@@ -130,6 +179,14 @@ public class SseService {
         }
     }
 
+    public void sendContentEvent(SseEmitter emitter, String delta) {
+        try {
+            sendEvent(emitter, "content", Map.of("delta", delta));
+        } catch (Exception e) {
+            log.error("Error sending SSE event: {}", e.getMessage(), e);
+        }
+    }
+
     public void sendToolsEvent(SseEmitter emitter, Map<String, String> tools) {
         try {
             sendEvent(emitter, "available_tools", Map.of("tools", tools));
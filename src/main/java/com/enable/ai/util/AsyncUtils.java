@@ -0,0 +1,68 @@
+package com.enable.ai.util;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Helpers for bridging Guava futures (returned by the Milvus SDK) to CompletableFuture
+ */
+public class AsyncUtils {
+
+    /**
+     * Adapt a ListenableFuture without blocking a thread; the result is delivered on the completing thread
+     */
+    public static <T> CompletableFuture<T> toCompletableFuture(ListenableFuture<T> listenableFuture) {
+        CompletableFuture<T> future = new CompletableFuture<>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                listenableFuture.cancel(mayInterruptIfRunning);
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        Futures.addCallback(listenableFuture, new FutureCallback<>() {
+            @Override
+            public void onSuccess(T result) {
+                future.complete(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+        return future;
+    }
+
+    /**
+     * Wait for a future and rethrow its failure unwrapped, so blocking adapters keep the
+     * exception types of the original synchronous methods
+     */
+    public static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw asRuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Strip CompletionException/ExecutionException wrappers
+     */
+    public static Throwable unwrap(Throwable t) {
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+
+    private static RuntimeException asRuntimeException(Throwable t) {
+        Throwable cause = unwrap(t);
+        return cause instanceof RuntimeException runtimeException ? runtimeException : new RuntimeException(cause);
+    }
+}
@@ -0,0 +1,41 @@
+package com.enable.ai.util;
+
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Deterministic content-derived identifiers
+ */
+public class ContentHash {
+
+    /**
+     * Number of hex characters kept from the SHA-256 digest (128 bits); fits the VarChar(36) id field
+     */
+    private static final int ID_LENGTH = 32;
+
+    /**
+     * Stable primary key for a chunk: identical text always maps to the same id,
+     * so re-ingesting unchanged content can be detected with a primary-key lookup.
+     */
+    public static String chunkId(String text) {
+        return Hashing.sha256().hashString(text, StandardCharsets.UTF_8).toString().substring(0, ID_LENGTH);
+    }
+
+    /**
+     * Stable primary key for a chunk of a source document. The document id is part of the hash,
+     * so the same text in two documents gives two rows that can be re-indexed independently.
+     */
+    public static String chunkId(String docId, String text) {
+        if (docId == null || docId.isEmpty()) {
+            return chunkId(text);
+        }
+        return Hashing.sha256().newHasher()
+                .putString(docId, StandardCharsets.UTF_8)
+                .putByte((byte) 0)
+                .putString(text, StandardCharsets.UTF_8)
+                .hash()
+                .toString()
+                .substring(0, ID_LENGTH);
+    }
+}
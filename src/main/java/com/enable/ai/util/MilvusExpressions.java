@@ -0,0 +1,42 @@
+package com.enable.ai.util;
+
+import java.util.Collection;
+import java.util.StringJoiner;
+
+/**
+ * Helpers for building Milvus boolean expressions from user-supplied values
+ */
+public class MilvusExpressions {
+
+    /**
+     * Quote a string literal, escaping backslashes and double quotes
+     */
+    public static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    /**
+     * Render a list literal of quoted strings, e.g. ["a", "b"]
+     */
+    public static String stringList(Collection<String> values) {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (String value : values) {
+            joiner.add(quote(value));
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * field in ["a", "b"]
+     */
+    public static String in(String field, Collection<String> values) {
+        return field + " in " + stringList(values);
+    }
+
+    /**
+     * field == "value"
+     */
+    public static String eq(String field, String value) {
+        return field + " == " + quote(value);
+    }
+}
@@ -0,0 +1,253 @@
+package com.enable.ai.util;
+
+/**
+ * 增量（推送式）XML标签解析器
+ * <p>
+ * 按到达顺序逐块输入流式输出（{@link #feed}），只识别构造时给定的标签（可带属性，支持自闭合），
+ * 其余内容均视为文本。标签在开始和结束时回调 {@link Listener}，结束时给出标签内的原始内容，
+ * 因此不必等完整响应即可处理已完成的标签。跨块拆分的标签会暂存到下一块；同名标签未结束时再次出现、
+ * 未打开的结束标签、以及超过最大长度仍未闭合的 "&lt;" 均按文本处理。
+ * <p>
+ * 同一标签出现多次时每次都会回调，{@link #content} 返回第一次的内容，与
+ * {@link XmlTagExtractor#extractXmlTagContent} 一致。整个解析只扫描一遍，不使用正则表达式；非线程安全。
+ */
+public class StreamingXmlTagParser {
+
+    /**
+     * 标签事件回调
+     */
+    public interface Listener {
+
+        default void onOpen(String tag) {
+        }
+
+        /**
+         * @param content 开始标签与结束标签之间的原始内容（自闭合标签为空字符串）
+         */
+        default void onClose(String tag, String content) {
+        }
+    }
+
+    private static final Listener NO_OP = new Listener() {
+    };
+
+    // 超过该长度仍未遇到 '>' 的 "<..." 不视为标签
+    private static final int MAX_TOKEN_LENGTH = 256;
+
+    private final String[] tags;
+    private final Listener listener;
+    private final StringBuilder[] buffers;
+    private final boolean[] open;
+    private final boolean[] opened;
+    private final String[] contents;
+    private final StringBuilder token = new StringBuilder();
+    private boolean inToken;
+    private int openCount;
+    private int stopTag = -1;
+
+    public StreamingXmlTagParser(Listener listener, String... tags) {
+        this.tags = tags.clone();
+        this.listener = listener == null ? NO_OP : listener;
+        this.buffers = new StringBuilder[tags.length];
+        this.open = new boolean[tags.length];
+        this.opened = new boolean[tags.length];
+        this.contents = new String[tags.length];
+    }
+
+    /**
+     * 一次性解析完整文本
+     */
+    public static StreamingXmlTagParser parse(String text, String... tags) {
+        StreamingXmlTagParser parser = new StreamingXmlTagParser(null, tags);
+        if (text != null) {
+            parser.feed(text);
+        }
+        parser.finish();
+        return parser;
+    }
+
+    /**
+     * 指定标签第一次结束后 {@link #isDone} 返回true，调用方可据此提前结束流
+     */
+    public StreamingXmlTagParser stopAfter(String tag) {
+        this.stopTag = indexOf(tag);
+        return this;
+    }
+
+    /**
+     * 输入下一块流式内容
+     */
+    public void feed(CharSequence chunk) {
+        int length = chunk.length();
+        int textStart = 0;
+        for (int i = 0; i < length; i++) {
+            char c = chunk.charAt(i);
+            if (!inToken) {
+                if (c == '<') {
+                    appendText(chunk, textStart, i);
+                    startToken();
+                }
+            } else if (c == '<') {
+                // 前一个 "<..." 不是标签，从这里重新开始
+                appendText(token, 0, token.length());
+                startToken();
+            } else {
+                token.append(c);
+                if (c == '>') {
+                    endToken();
+                    textStart = i + 1;
+                } else if (token.length() > MAX_TOKEN_LENGTH) {
+                    appendText(token, 0, token.length());
+                    inToken = false;
+                    textStart = i + 1;
+                }
+            }
+        }
+        if (!inToken) {
+            appendText(chunk, textStart, length);
+        }
+    }
+
+    /**
+     * 流结束：未闭合的 "<..." 按文本处理，未结束的标签没有内容
+     */
+    public void finish() {
+        if (inToken) {
+            appendText(token, 0, token.length());
+            inToken = false;
+        }
+    }
+
+    /**
+     * 标签第一次出现的内容，未结束时返回null
+     */
+    public String content(String tag) {
+        int index = indexOf(tag);
+        return index < 0 ? null : contents[index];
+    }
+
+    /**
+     * 标签是否已出现（可能尚未结束）
+     */
+    public boolean isOpened(String tag) {
+        int index = indexOf(tag);
+        return index >= 0 && opened[index];
+    }
+
+    public boolean isClosed(String tag) {
+        return content(tag) != null;
+    }
+
+    /**
+     * {@link #stopAfter} 指定的标签是否已结束
+     */
+    public boolean isDone() {
+        return stopTag >= 0 && contents[stopTag] != null;
+    }
+
+    private void startToken() {
+        token.setLength(0);
+        token.append('<');
+        inToken = true;
+    }
+
+    /**
+     * 处理完整的 "<...>"：识别的标签触发事件，否则作为文本
+     */
+    private void endToken() {
+        inToken = false;
+        int length = token.length();
+        boolean closing = length > 1 && token.charAt(1) == '/';
+        int nameStart = closing ? 2 : 1;
+        int nameEnd = nameStart;
+        while (nameEnd < length && isNameChar(token.charAt(nameEnd))) {
+            nameEnd++;
+        }
+        boolean selfClosing = !closing && length >= 3 && token.charAt(length - 2) == '/';
+        char after = token.charAt(nameEnd);
+        boolean wellFormed = nameEnd > nameStart
+                && (after == '>' || (!closing && (Character.isWhitespace(after) || (after == '/' && selfClosing))));
+        int index = wellFormed ? indexOf(token, nameStart, nameEnd) : -1;
+
+        if (index < 0 || (closing ? !open[index] : open[index])) {
+            appendText(token, 0, length);
+            return;
+        }
+        if (closing) {
+            open[index] = false;
+            openCount--;
+        }
+        // 识别的标签本身只计入其他未结束标签的内容
+        appendText(token, 0, length);
+        if (closing) {
+            close(index, buffers[index].toString());
+            return;
+        }
+        opened[index] = true;
+        listener.onOpen(tags[index]);
+        if (selfClosing) {
+            close(index, "");
+            return;
+        }
+        open[index] = true;
+        openCount++;
+        if (buffers[index] == null) {
+            buffers[index] = new StringBuilder();
+        } else {
+            buffers[index].setLength(0);
+        }
+    }
+
+    private void close(int index, String content) {
+        if (contents[index] == null) {
+            contents[index] = content;
+        }
+        listener.onClose(tags[index], content);
+    }
+
+    /**
+     * 追加到所有未结束的标签内容
+     */
+    private void appendText(CharSequence text, int start, int end) {
+        if (openCount == 0 || start >= end) {
+            return;
+        }
+        for (int i = 0; i < tags.length; i++) {
+            if (open[i]) {
+                buffers[i].append(text, start, end);
+            }
+        }
+    }
+
+    private int indexOf(String tag) {
+        for (int i = 0; i < tags.length; i++) {
+            if (tags[i].equals(tag)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(CharSequence text, int start, int end) {
+        for (int i = 0; i < tags.length; i++) {
+            String tag = tags[i];
+            if (tag.length() == end - start && regionMatches(tag, text, start)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionMatches(String tag, CharSequence text, int start) {
+        for (int i = 0; i < tag.length(); i++) {
+            if (tag.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == ':' || c == '.';
+    }
+}
@@ -55,6 +55,9 @@ public class TextChunker {
             if (!chunk.isEmpty()) {
                 chunks.add(chunk);
             }
+            if (end == text.length()) {
+                break;
+            }
 
             // Move start position with overlap
             start = end - overlap;
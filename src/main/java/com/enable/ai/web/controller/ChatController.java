@@ -76,7 +76,12 @@ public class ChatController {
 //                 String finalAnswer = planAndExecuteAgent.streamChat(userId, prompt, emitter);
                 String finalAnswer = reActAgent.streamChat(userId, prompt, emitter);
                 sseService.sendFinalAnswerEvent(emitter, finalAnswer);
-                promptRagService.addUserPromptToCollection(Constants.USER_PROMPTS_COLLECTION_NAME, userId, "Question: " + prompt + "\nAnswer: " + finalAnswer);
+                // 异步保存对话历史，不阻塞SSE完成
+                promptRagService.addUserPromptToCollectionAsync(Constants.USER_PROMPTS_COLLECTION_NAME, userId, "Question: " + prompt + "\nAnswer: " + finalAnswer)
+                        .exceptionally(e -> {
+                            log.error("Error saving prompt history for userId: " + userId, e);
+                            return null;
+                        });
             } catch (Exception e) {
                 log.error("Error in async chat processing", e);
                 try {
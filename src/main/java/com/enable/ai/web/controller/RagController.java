@@ -1,12 +1,23 @@
 package com.enable.ai.web.controller;
 
+import com.enable.ai.rag.PromptCollectionMigrator;
+import com.enable.ai.rag.RetrievalCache;
+import com.enable.ai.rag.vo.MigrationStatus;
+import com.enable.ai.rag.vo.PurgeJob;
 import com.enable.ai.rag.vo.RagChunk;
+import com.enable.ai.rag.vo.ReindexResult;
+import com.enable.ai.rag.vo.RetrievalResult;
+import com.enable.ai.service.PromptHistoryService;
+import com.enable.ai.service.PromptPurgeService;
 import com.enable.ai.service.PromptRagService;
 import com.enable.ai.service.RagService;
+import com.enable.ai.util.AsyncUtils;
 import com.enable.ai.web.dto.request.AddChunkRequest;
 import com.enable.ai.web.dto.request.AddContextRequest;
+import com.enable.ai.web.dto.request.BatchRetrieveRequest;
 import com.enable.ai.web.dto.request.RetrieveRequest;
 import com.enable.ai.web.dto.response.ApiResponse;
+import com.enable.ai.web.dto.response.BatchRetrieveChunksResponse;
 import com.enable.ai.web.dto.response.RetrieveChunksResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
@@ -16,6 +27,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * RAG (Retrieval-Augmented Generation) RESTful API Controller
@@ -29,6 +41,10 @@ public class RagController {
 
     private final RagService ragService;
     private final PromptRagService promptRagService;
+    private final RetrievalCache retrievalCache;
+    private final PromptCollectionMigrator promptCollectionMigrator;
+    private final PromptPurgeService promptPurgeService;
+    private final PromptHistoryService promptHistoryService;
 
     /**
      * 添加单个文本块到指定集合
@@ -77,6 +93,52 @@ public class RagController {
         }
     }
 
+    /**
+     * 按文档增量重建索引：只写入新增的chunk、删除已移除的chunk
+     * PUT /api/v1/rag/collections/{collectionName}/documents/{docId}
+     */
+    @PutMapping("/collections/{collectionName}/documents/{docId}")
+    public ResponseEntity<ApiResponse<ReindexResult>> reindexDocument(
+            @PathVariable("collectionName") @NotBlank String collectionName,
+            @PathVariable("docId") @NotBlank String docId,
+            @RequestBody @Valid AddContextRequest request) {
+
+        try {
+            log.info("Reindexing document {} in collection: {}, text length: {}",
+                    docId, collectionName, request.getContext().length());
+
+            ReindexResult result = ragService.reindexDocument(collectionName, docId, request.getContext());
+
+            return ResponseEntity.ok(ApiResponse.success(result));
+        } catch (Exception e) {
+            log.error("Error reindexing document {} in collection {}: {}", docId, collectionName, e.getMessage(), e);
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Failed to reindex document: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 删除文档的全部文本块
+     * DELETE /api/v1/rag/collections/{collectionName}/documents/{docId}
+     */
+    @DeleteMapping("/collections/{collectionName}/documents/{docId}")
+    public ResponseEntity<ApiResponse<ReindexResult>> deleteDocument(
+            @PathVariable("collectionName") @NotBlank String collectionName,
+            @PathVariable("docId") @NotBlank String docId) {
+
+        try {
+            log.info("Deleting document {} from collection: {}", docId, collectionName);
+
+            ReindexResult result = ragService.reindexDocument(collectionName, docId, "");
+
+            return ResponseEntity.ok(ApiResponse.success(result));
+        } catch (Exception e) {
+            log.error("Error deleting document {} from collection {}: {}", docId, collectionName, e.getMessage(), e);
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Failed to delete document: " + e.getMessage()));
+        }
+    }
+
     /**
      * 检索与查询最相关的top k个文本块
      * POST /api/v1/rag/collections/{collectionName}/retrieve/chunks
@@ -91,7 +153,8 @@ public class RagController {
                     request.getK(), collectionName, request.getQuery());
 
             List<RagChunk> chunks = ragService.retrieveTopKChunks(
-                    collectionName, request.getQuery(), request.getK());
+                    collectionName, request.getQuery(), request.getK(),
+                    request.toOptions());
 
             RetrieveChunksResponse response = new RetrieveChunksResponse(chunks);
             return ResponseEntity.ok(ApiResponse.success(response));
@@ -102,6 +165,32 @@ public class RagController {
         }
     }
 
+    /**
+     * 批量检索：多个查询合并为一次embedding调用，每个查询和单条检索一样经过检索缓存和混合检索
+     * POST /api/v1/rag/collections/{collectionName}/retrieve/batch
+     */
+    @PostMapping("/collections/{collectionName}/retrieve/batch")
+    public ResponseEntity<ApiResponse<BatchRetrieveChunksResponse>> retrieveTopKChunksBatch(
+            @PathVariable("collectionName") @NotBlank String collectionName,
+            @RequestBody @Valid BatchRetrieveRequest request) {
+
+        try {
+            log.info("Retrieving top {} chunks for {} queries from collection: {}",
+                    request.getK(), request.getQueries().size(), collectionName);
+
+            List<List<RagChunk>> results = ragService.retrieveTopKChunksBatch(
+                    collectionName, request.getQueries(), request.getK());
+
+            BatchRetrieveChunksResponse response = new BatchRetrieveChunksResponse(
+                    results.stream().map(RetrieveChunksResponse::new).toList());
+            return ResponseEntity.ok(ApiResponse.success(response));
+        } catch (Exception e) {
+            log.error("Error batch retrieving chunks from collection {}: {}", collectionName, e.getMessage(), e);
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Failed to retrieve chunks: " + e.getMessage()));
+        }
+    }
+
     /**
      * 检索与查询最相关的文本内容（拼接格式）
      * POST /api/v1/rag/collections/{collectionName}/retrieve/context
@@ -126,6 +215,31 @@ public class RagController {
         }
     }
 
+    /**
+     * 检索去冗余并拼接后的段落：MMR去掉语义重复的chunk，同一来源相邻/重叠的chunk合并，返回节省的token数
+     * POST /api/v1/rag/collections/{collectionName}/retrieve/passages
+     */
+    @PostMapping("/collections/{collectionName}/retrieve/passages")
+    public ResponseEntity<ApiResponse<RetrievalResult>> retrievePassages(
+            @PathVariable("collectionName") @NotBlank String collectionName,
+            @RequestBody @Valid RetrieveRequest request) {
+
+        try {
+            log.info("Retrieving {} passages from collection: {} for query: {}",
+                    request.getK(), collectionName, request.getQuery());
+
+            RetrievalResult result = AsyncUtils.join(ragService.retrievePassagesAsync(
+                    collectionName, request.getQuery(), request.getK(),
+                    request.toOptions()));
+
+            return ResponseEntity.ok(ApiResponse.success(result));
+        } catch (Exception e) {
+            log.error("Error retrieving passages from collection {}: {}", collectionName, e.getMessage(), e);
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Failed to retrieve passages: " + e.getMessage()));
+        }
+    }
+
     /**
      * 删除指定集合及其所有内容
      * DELETE /api/v1/rag/collections/{collectionName}
@@ -147,6 +261,83 @@ public class RagController {
         }
     }
 
+    /**
+     * 后台删除用户的提示词（可只删除早于before的），返回任务用于查询进度
+     * DELETE /api/v1/rag/collections/{collectionName}/users/{userId}/prompts
+     */
+    @DeleteMapping("/collections/{collectionName}/users/{userId}/prompts")
+    public ResponseEntity<ApiResponse<PurgeJob>> purgeUserPrompts(
+            @PathVariable("collectionName") @NotBlank String collectionName,
+            @PathVariable("userId") Long userId,
+            @RequestParam(value = "before", required = false) Long before) {
+
+        log.info("Purging prompts of user {} in collection {}{}", userId, collectionName,
+                before == null ? "" : " older than " + before);
+        return ResponseEntity.ok(ApiResponse.success(promptPurgeService.submit(collectionName, userId, before)));
+    }
+
+    /**
+     * 删除任务的进度
+     * GET /api/v1/rag/purge-jobs/{jobId}
+     */
+    @GetMapping("/purge-jobs/{jobId}")
+    public ResponseEntity<ApiResponse<PurgeJob>> purgeJob(@PathVariable("jobId") @NotBlank String jobId) {
+        PurgeJob job = promptPurgeService.get(jobId);
+        if (job == null) {
+            return ResponseEntity.badRequest().body(ApiResponse.error("Unknown purge job: " + jobId));
+        }
+        return ResponseEntity.ok(ApiResponse.success(job));
+    }
+
+    /**
+     * 后台历史压缩任务的统计（排队/执行中数量与压缩延迟）
+     * GET /api/v1/rag/prompts/compaction/stats
+     */
+    @GetMapping("/prompts/compaction/stats")
+    public ResponseEntity<ApiResponse<PromptHistoryService.CompactionStats>> compactionStats() {
+        return ResponseEntity.ok(ApiResponse.success(promptHistoryService.stats()));
+    }
+
+    /**
+     * 检索结果缓存的命中率等统计（按集合）
+     * GET /api/v1/rag/cache/stats
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<ApiResponse<Map<String, RetrievalCache.Stats>>> cacheStats() {
+        return ResponseEntity.ok(ApiResponse.success(retrievalCache.stats()));
+    }
+
+    /**
+     * 将用户提示词集合迁移为按 user_id 分区（在线进行，迁移期间读写不中断）
+     * POST /api/v1/rag/admin/collections/{collectionName}/partition-migration
+     */
+    @PostMapping("/admin/collections/{collectionName}/partition-migration")
+    public ResponseEntity<ApiResponse<MigrationStatus>> startPartitionMigration(
+            @PathVariable("collectionName") @NotBlank String collectionName) {
+
+        try {
+            log.info("Starting partition migration of collection: {}", collectionName);
+
+            MigrationStatus status = promptCollectionMigrator.start(collectionName);
+
+            return ResponseEntity.ok(ApiResponse.success(status));
+        } catch (Exception e) {
+            log.error("Error starting partition migration of collection {}: {}", collectionName, e.getMessage(), e);
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Failed to start migration: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 分区迁移进度
+     * GET /api/v1/rag/admin/collections/{collectionName}/partition-migration
+     */
+    @GetMapping("/admin/collections/{collectionName}/partition-migration")
+    public ResponseEntity<ApiResponse<MigrationStatus>> partitionMigrationStatus(
+            @PathVariable("collectionName") @NotBlank String collectionName) {
+        return ResponseEntity.ok(ApiResponse.success(promptCollectionMigrator.status(collectionName)));
+    }
+
     /**
      * 健康检查接口
      * GET /api/v1/rag/health
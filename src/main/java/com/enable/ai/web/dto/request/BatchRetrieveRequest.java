@@ -0,0 +1,36 @@
+package com.enable.ai.web.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * 批量检索请求DTO
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchRetrieveRequest {
+
+    /**
+     * 查询文本列表，在一次检索请求中执行
+     */
+    @NotEmpty(message = "Queries cannot be empty")
+    @Size(max = 100, message = "Queries cannot exceed 100 items")
+    private List<@NotBlank(message = "Query cannot be blank") @Size(max = 1000, message = "Query length cannot exceed 1000 characters") String> queries;
+
+    /**
+     * 每个查询返回的top k个结果数量
+     */
+    @Min(value = 1, message = "K must be at least 1")
+    @Max(value = 50, message = "K cannot exceed 50")
+    private int k = 5; // 默认值为5
+}
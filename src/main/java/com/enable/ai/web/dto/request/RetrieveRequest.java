@@ -1,9 +1,12 @@
 package com.enable.ai.web.dto.request;
 
+import com.enable.ai.rag.vo.RetrieveOptions;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
@@ -30,4 +33,34 @@ public class RetrieveRequest {
     @Min(value = 1, message = "K must be at least 1")
     @Max(value = 50, message = "K cannot exceed 50")
     private int k = 5; // 默认值为5
+
+    /**
+     * 可选：HNSW索引的搜索宽度ef，不传使用默认值
+     */
+    @Min(value = 1, message = "Ef must be at least 1")
+    @Max(value = 4096, message = "Ef cannot exceed 4096")
+    private Integer ef;
+
+    /**
+     * 可选：IVF索引搜索的聚类桶数量nprobe，不传使用默认值
+     */
+    @Min(value = 1, message = "Nprobe must be at least 1")
+    @Max(value = 65536, message = "Nprobe cannot exceed 65536")
+    private Integer nprobe;
+
+    /**
+     * 可选：最低得分（余弦相似度），低于该得分的文本块不返回
+     */
+    @DecimalMin(value = "-1", message = "Min score must be at least -1")
+    @DecimalMax(value = "1", message = "Min score cannot exceed 1")
+    private Float minScore;
+
+    /**
+     * 可选：是否在得分最大断层处截断（自适应k），默认不截断
+     */
+    private boolean adaptive;
+
+    public RetrieveOptions toOptions() {
+        return new RetrieveOptions(ef, nprobe, false, minScore, adaptive);
+    }
 }
@@ -0,0 +1,34 @@
+package com.enable.ai.web.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 批量检索文本块的响应DTO
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchRetrieveChunksResponse {
+
+    /**
+     * 每个查询的检索结果，顺序与请求中的queries一致
+     */
+    private List<RetrieveChunksResponse> results;
+
+    /**
+     * 查询数量
+     */
+    private int count;
+
+    /**
+     * 构造函数，自动计算数量
+     */
+    public BatchRetrieveChunksResponse(List<RetrieveChunksResponse> results) {
+        this.results = results;
+        this.count = results != null ? results.size() : 0;
+    }
+}
@@ -0,0 +1,85 @@
+package com.enable.ai.embedding;
+
+import io.milvus.grpc.DataType;
+import io.milvus.param.MetricType;
+import io.milvus.param.ParamUtils;
+import io.milvus.param.collection.FieldType;
+import io.milvus.param.dml.SearchParam;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Allocation benchmark for the embedding -> Milvus request path.
+ * Compares the old boxed ArrayList<Float> copy against the primitive Embedding view,
+ * measuring bytes allocated per retrieve (search request) and per ingested chunk (insert field data).
+ * It is a plain main class rather than a JUnit test, run it against the test classpath.
+ */
+public class EmbeddingAllocationBenchmark {
+
+    private static final int DIMENSION = 1536;
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 20_000;
+
+    public static void main(String[] args) {
+        float[] raw = new float[DIMENSION];
+        Random random = new Random(42);
+        for (int i = 0; i < DIMENSION; i++) {
+            raw[i] = random.nextFloat();
+        }
+        FieldType vectorField = FieldType.newBuilder()
+                .withName("vector")
+                .withDataType(DataType.FloatVector)
+                .withDimension(DIMENSION)
+                .build();
+
+        report("retrieve (boxed copy)", () -> ParamUtils.convertSearchParam(searchParam(boxedCopy(raw))));
+        report("retrieve (Embedding) ", () -> ParamUtils.convertSearchParam(searchParam(new Embedding(raw).asFloatList())));
+        report("ingest   (boxed copy)", () -> ParamUtils.genFieldData(vectorField, List.of(boxedCopy(raw))));
+        report("ingest   (Embedding) ", () -> ParamUtils.genFieldData(vectorField, List.of(new Embedding(raw).asFloatList())));
+    }
+
+    /**
+     * The conversion EmbeddingService used to perform for every generated vector
+     */
+    private static List<Float> boxedCopy(float[] embedding) {
+        List<Float> floatEmbedding = new ArrayList<>(embedding.length);
+        for (float value : embedding) {
+            floatEmbedding.add(value);
+        }
+        return floatEmbedding;
+    }
+
+    private static SearchParam searchParam(List<Float> vector) {
+        return SearchParam.newBuilder()
+                .withCollectionName("benchmark")
+                .withMetricType(MetricType.L2)
+                .withTopK(5)
+                .withFloatVectors(List.of(vector))
+                .withVectorFieldName("vector")
+                .withParams("{\"nprobe\":10}")
+                .build();
+    }
+
+    private static void report(String name, Runnable operation) {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARMUP; i++) {
+            operation.run();
+        }
+
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            operation.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        System.out.printf("%s: %,d bytes/op, %,d ns/op%n", name, allocated / ITERATIONS, elapsed / ITERATIONS);
+    }
+}
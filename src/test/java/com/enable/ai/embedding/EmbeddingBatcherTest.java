@@ -0,0 +1,124 @@
+package com.enable.ai.embedding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddingBatcherTest {
+
+    // Stub embedding model: records each batch call, embeds a text as {length, first char}
+    private final List<List<String>> calls = new CopyOnWriteArrayList<>();
+
+    private List<float[]> embed(List<String> texts) {
+        calls.add(List.copyOf(texts));
+        return texts.stream().map(text -> new float[]{text.length(), text.charAt(0)}).toList();
+    }
+
+    @Test
+    void concurrentCallersShareOneModelCall() throws Exception {
+        try (EmbeddingBatcher batcher = new EmbeddingBatcher(this::embed, 200, 100, 2)) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<CompletableFuture<float[]>> futures = new CopyOnWriteArrayList<>();
+            List<Thread> callers = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String text = "text " + i;
+                Thread caller = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    futures.add(batcher.submit(text));
+                });
+                caller.start();
+                callers.add(caller);
+            }
+            start.countDown();
+            for (Thread caller : callers) {
+                caller.join();
+            }
+
+            for (CompletableFuture<float[]> future : futures) {
+                assertEquals(6f, future.get(2, TimeUnit.SECONDS)[0]);
+            }
+            assertEquals(1, calls.size());
+            assertEquals(8, calls.get(0).size());
+            assertEquals(8, batcher.getRequestCount());
+            assertEquals(1, batcher.getBatchCount());
+        }
+    }
+
+    @Test
+    void batchesNeverExceedTheMaximumSize() throws Exception {
+        try (EmbeddingBatcher batcher = new EmbeddingBatcher(this::embed, 500, 3, 2)) {
+            List<CompletableFuture<float[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                futures.add(batcher.submit("text " + i));
+            }
+
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(2, TimeUnit.SECONDS);
+
+            calls.forEach(call -> assertTrue(call.size() <= 3, call.toString()));
+            assertEquals(7, calls.stream().mapToInt(List::size).sum());
+            assertEquals(3, calls.size());
+        }
+    }
+
+    @Test
+    void duplicateTextsAreEmbeddedOnce() throws Exception {
+        try (EmbeddingBatcher batcher = new EmbeddingBatcher(this::embed, 200, 100, 1)) {
+            CompletableFuture<float[]> first = batcher.submit("same");
+            CompletableFuture<float[]> other = batcher.submit("other text");
+            CompletableFuture<float[]> second = batcher.submit("same");
+
+            assertSame(first.get(2, TimeUnit.SECONDS), second.get(2, TimeUnit.SECONDS));
+            assertEquals(10f, other.get(2, TimeUnit.SECONDS)[0]);
+            assertEquals(List.of(List.of("same", "other text")), calls);
+        }
+    }
+
+    @Test
+    void modelFailureFailsEveryWaitingCaller() throws Exception {
+        RuntimeException failure = new RuntimeException("provider unavailable");
+        try (EmbeddingBatcher batcher = new EmbeddingBatcher(texts -> {
+            throw failure;
+        }, 200, 100, 1)) {
+            List<CompletableFuture<float[]>> futures = List.of(batcher.submit("a"), batcher.submit("b"), batcher.submit("a"));
+
+            for (CompletableFuture<float[]> future : futures) {
+                ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(2, TimeUnit.SECONDS));
+                assertSame(failure, e.getCause());
+            }
+            assertEquals(0, batcher.getBatchCount());
+        }
+    }
+
+    @Test
+    void closeSettlesPendingRequestsAndRejectsNewOnes() throws Exception {
+        EmbeddingBatcher batcher = new EmbeddingBatcher(this::embed, 1000, 100, 1);
+        List<CompletableFuture<float[]>> futures = List.of(batcher.submit("a"), batcher.submit("b"));
+
+        batcher.close();
+
+        // Nothing is left waiting: every queued request is embedded or failed
+        for (CompletableFuture<float[]> future : futures) {
+            try {
+                future.get(2, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                assertInstanceOf(IllegalStateException.class, e.getCause());
+            }
+        }
+        CompletableFuture<float[]> late = batcher.submit("c");
+        assertTrue(late.isCompletedExceptionally());
+        ExecutionException e = assertThrows(ExecutionException.class, late::get);
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+}
@@ -0,0 +1,61 @@
+package com.enable.ai.embedding;
+
+import com.google.common.hash.HashCode;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddingCacheTest {
+
+    @Test
+    void hitReturnsTheStoredVectorAndMissReturnsNull() {
+        EmbeddingCache cache = new EmbeddingCache(1 << 20);
+        float[] vector = {1, 2, 3};
+        cache.put(EmbeddingCache.key("model", "hello"), vector);
+
+        // Shared, not copied: callers treat it as read-only
+        assertSame(vector, cache.get(EmbeddingCache.key("model", "hello")));
+        assertNull(cache.get(EmbeddingCache.key("model", "goodbye")));
+
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void keyIncludesTheModel() {
+        EmbeddingCache cache = new EmbeddingCache(1 << 20);
+        cache.put(EmbeddingCache.key("text-embedding-3-small", "hello"), new float[]{1});
+
+        assertNull(cache.get(EmbeddingCache.key("text-embedding-3-large", "hello")));
+        assertEquals(EmbeddingCache.key("model", "hello"), EmbeddingCache.key("model", "hello"));
+        assertNotEquals(EmbeddingCache.key("model", "hello"), EmbeddingCache.key("model2", "hello"));
+        // The separator keeps the model and text apart
+        assertNotEquals(EmbeddingCache.key("ab", "c"), EmbeddingCache.key("a", "bc"));
+    }
+
+    @Test
+    void entriesAreEvictedToStayWithinTheByteBudget() {
+        // Each entry weighs 128 + 100 * 4 = 528 bytes
+        EmbeddingCache cache = new EmbeddingCache(10_000);
+        for (int i = 0; i < 100; i++) {
+            cache.put(EmbeddingCache.key("model", "text " + i), new float[100]);
+        }
+
+        assertTrue(cache.evictionCount() > 0);
+        assertTrue(cache.size() * 528 <= cache.getMaxBytes(), "size " + cache.size());
+        HashCode newest = EmbeddingCache.key("model", "text 99");
+        assertNotNull(cache.get(newest));
+    }
+
+    @Test
+    void invalidateAllEmptiesTheCache() {
+        EmbeddingCache cache = new EmbeddingCache(1 << 20);
+        cache.put(EmbeddingCache.key("model", "hello"), new float[]{1});
+
+        cache.invalidateAll();
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get(EmbeddingCache.key("model", "hello")));
+    }
+}
@@ -0,0 +1,93 @@
+package com.enable.ai.embedding;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Throughput benchmark for the similarity kernels.
+ * Compares the previous boxed List<Float> cosine loop with {@link VectorKernels}, and measures
+ * one-vs-many top-k scoring over a contiguous matrix.
+ * It is a plain main class rather than a JUnit test; run it against the test classpath,
+ * with and without --add-modules jdk.incubator.vector to compare the SIMD and scalar kernels.
+ */
+public class VectorKernelsBenchmark {
+
+    private static final int DIMENSION = 1536;
+    private static final int ROWS = 10_000;
+    private static final int ITERATIONS = 200_000;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        float[] a = randomVector(random);
+        float[] b = randomVector(random);
+        List<Float> boxedA = boxed(a);
+        List<Float> boxedB = boxed(b);
+        float[] matrix = new float[ROWS * DIMENSION];
+        for (int i = 0; i < matrix.length; i++) {
+            matrix[i] = random.nextFloat() - 0.5f;
+        }
+
+        System.out.println("Kernel: " + VectorKernels.kernelName());
+
+        float sink = 0f;
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                sink += boxedCosine(boxedA, boxedB);
+            }
+            long boxedNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                sink += VectorKernels.cosine(a, b);
+            }
+            long kernelNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int topKRuns = 50;
+            for (int i = 0; i < topKRuns; i++) {
+                sink += VectorKernels.topK(a, matrix, ROWS, 10, SimilarityMetric.DOT).get(0).score();
+            }
+            long topKNanos = System.nanoTime() - start;
+
+            if (round == 1) {
+                System.out.printf("cosine (boxed List<Float>): %,d ns/op%n", boxedNanos / ITERATIONS);
+                System.out.printf("cosine (VectorKernels):     %,d ns/op%n", kernelNanos / ITERATIONS);
+                System.out.printf("top-10 of %,d rows:         %,d us/op%n", ROWS, topKNanos / topKRuns / 1000);
+            }
+        }
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    /**
+     * The loop EmbeddingService.calculateCosineSimilarity used before the kernels
+     */
+    private static float boxedCosine(List<Float> embedding1, List<Float> embedding2) {
+        float dotProduct = 0.0f;
+        float norm1 = 0.0f;
+        float norm2 = 0.0f;
+        for (int i = 0; i < embedding1.size(); i++) {
+            dotProduct += embedding1.get(i) * embedding2.get(i);
+            norm1 += embedding1.get(i) * embedding1.get(i);
+            norm2 += embedding2.get(i) * embedding2.get(i);
+        }
+        return dotProduct / ((float) Math.sqrt(norm1) * (float) Math.sqrt(norm2));
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = random.nextFloat() - 0.5f;
+        }
+        return vector;
+    }
+
+    private static List<Float> boxed(float[] vector) {
+        List<Float> list = new ArrayList<>(vector.length);
+        for (float value : vector) {
+            list.add(value);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,113 @@
+package com.enable.ai.embedding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class VectorKernelsTest {
+
+    // Lengths around the SIMD lane counts (4 to 16 floats), so the tail loop after the last full vector runs too
+    private static final int[] LENGTHS = {1, 3, 4, 7, 8, 15, 16, 17, 31, 33, 100, 1536};
+
+    private final Random random = new Random(7);
+
+    @Test
+    void scalarKernelMatchesDoublePrecisionReference() {
+        assertMatchesReference(new ScalarSimilarityKernel());
+    }
+
+    @Test
+    void simdKernelMatchesScalarKernel() throws Exception {
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(),
+                "run with --add-modules jdk.incubator.vector");
+        SimilarityKernel simd = (SimilarityKernel) Class.forName("com.enable.ai.embedding.PanamaSimilarityKernel")
+                .getDeclaredConstructor()
+                .newInstance();
+        SimilarityKernel scalar = new ScalarSimilarityKernel();
+        assertMatchesReference(simd);
+
+        for (int length : LENGTHS) {
+            float[] a = randomVector(length + 5);
+            float[] b = randomVector(length + 3);
+            // Unaligned offsets, as used when scoring rows of a matrix
+            float tolerance = tolerance(a, 5, b, 3, length);
+            assertEquals(scalar.dot(a, 5, b, 3, length), simd.dot(a, 5, b, 3, length), tolerance, "dot, length " + length);
+            assertEquals(scalar.squaredL2(a, 5, b, 3, length), simd.squaredL2(a, 5, b, 3, length),
+                    2 * tolerance, "squaredL2, length " + length);
+        }
+    }
+
+    @Test
+    void topKMatchesBruteForceForEveryMetric() {
+        int dimension = 24;
+        int rows = 500;
+        float[] matrix = randomVector(rows * dimension);
+        float[] query = randomVector(dimension);
+
+        for (SimilarityMetric metric : SimilarityMetric.values()) {
+            List<ScoredIndex> expected = new ArrayList<>();
+            for (int row = 0; row < rows; row++) {
+                expected.add(new ScoredIndex(row, VectorKernels.score(query, matrix, row, metric)));
+            }
+            expected.sort(Comparator.comparingDouble(ScoredIndex::score).reversed());
+
+            assertEquals(expected.subList(0, 10), VectorKernels.topK(query, matrix, rows, 10, metric), metric.name());
+            assertEquals(expected, VectorKernels.topK(query, matrix, rows, rows + 10, metric), metric.name());
+        }
+    }
+
+    @Test
+    void topKOnlyScoresTheGivenRows() {
+        float[] matrix = {1, 0, 0, 1, 5, 5};
+
+        List<ScoredIndex> top = VectorKernels.topK(new float[]{1, 1}, matrix, 2, 5, SimilarityMetric.DOT);
+
+        assertEquals(2, top.size());
+        assertTrue(top.stream().noneMatch(scored -> scored.index() == 2));
+        assertEquals(List.of(), VectorKernels.topK(new float[]{1, 1}, matrix, 2, 0, SimilarityMetric.DOT));
+        assertThrows(IllegalArgumentException.class,
+                () -> VectorKernels.topK(new float[]{1, 1}, matrix, 4, 1, SimilarityMetric.DOT));
+    }
+
+    private void assertMatchesReference(SimilarityKernel kernel) {
+        for (int length : LENGTHS) {
+            float[] a = randomVector(length);
+            float[] b = randomVector(length);
+            double dot = 0;
+            double squaredL2 = 0;
+            for (int i = 0; i < length; i++) {
+                dot += (double) a[i] * b[i];
+                squaredL2 += (double) (a[i] - b[i]) * (a[i] - b[i]);
+            }
+            float tolerance = tolerance(a, 0, b, 0, length);
+            assertEquals(dot, kernel.dot(a, 0, b, 0, length), tolerance, kernel.name() + " dot, length " + length);
+            assertEquals(squaredL2, kernel.squaredL2(a, 0, b, 0, length), 2 * tolerance,
+                    kernel.name() + " squaredL2, length " + length);
+        }
+    }
+
+    /**
+     * Float rounding error bound of a sum of products, relative to the sum of their magnitudes
+     */
+    private static float tolerance(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        double magnitude = 0;
+        for (int i = 0; i < length; i++) {
+            magnitude += Math.abs((double) a[aOffset + i] * b[bOffset + i]) + Math.abs(a[aOffset + i]) + Math.abs(b[bOffset + i]);
+        }
+        return (float) (1e-5 * magnitude + 1e-6);
+    }
+
+    private float[] randomVector(int length) {
+        float[] vector = new float[length];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = random.nextFloat() * 2 - 1;
+        }
+        return vector;
+    }
+}
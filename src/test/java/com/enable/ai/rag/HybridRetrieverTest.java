@@ -0,0 +1,37 @@
+package com.enable.ai.rag;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HybridRetrieverTest {
+
+    @Test
+    void fusionRewardsIdsFoundByBothLists() {
+        // a: 1/61, b: 1/62, c: 1/63 + 1/61, d: 1/62
+        List<String> fused = HybridRetriever.fuse(List.of(List.of("a", "b", "c"), List.of("c", "d")),
+                new double[]{1, 1}, 60);
+
+        assertEquals(List.of("c", "a", "b", "d"), fused);
+    }
+
+    @Test
+    void tiesKeepTheOrderOfFirstAppearance() {
+        List<String> fused = HybridRetriever.fuse(List.of(List.of("a", "b"), List.of("b", "a")),
+                new double[]{1, 1}, 60);
+
+        assertEquals(List.of("a", "b"), fused);
+    }
+
+    @Test
+    void weightsShiftTheRanking() {
+        List<List<String>> rankings = List.of(List.of("dense1", "dense2"), List.of("lexical1", "lexical2"));
+
+        assertEquals(List.of("dense1", "dense2", "lexical1", "lexical2"),
+                HybridRetriever.fuse(rankings, new double[]{1, 0}, 60));
+        assertEquals(List.of("lexical1", "lexical2", "dense1", "dense2"),
+                HybridRetriever.fuse(rankings, new double[]{1, 2}, 60));
+    }
+}
@@ -0,0 +1,190 @@
+package com.enable.ai.rag;
+
+import com.enable.ai.embedding.Embedding;
+import com.enable.ai.service.EmbeddingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class IngestionPipelineTest {
+
+    private final EmbeddingService embeddingService = mock(EmbeddingService.class);
+    private final List<String> insertedTexts = new CopyOnWriteArrayList<>();
+    private final List<Integer> insertBatchSizes = new CopyOnWriteArrayList<>();
+    private IngestionPipeline pipeline;
+
+    @AfterEach
+    void shutdown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    void singleEmbedderInsertsEveryChunkInOrder() {
+        stubEmbeddings();
+        pipeline = new IngestionPipeline(embeddingService, 3, 1, 2, 4, 1 << 20, 0);
+
+        IngestionPipeline.IngestionStats stats = pipeline.ingest("docs", chunks(10), this::insert);
+
+        assertEquals(chunks(10), insertedTexts);
+        assertEquals(List.of(4, 4, 2), insertBatchSizes);
+        assertEquals(new IngestionPipeline.IngestionStats(10, 4, 3, stats.elapsedMillis()), stats);
+    }
+
+    @Test
+    void parallelEmbeddersInsertEveryChunkWithItsOwnEmbedding() {
+        stubEmbeddings();
+        pipeline = new IngestionPipeline(embeddingService, 5, 4, 2, 7, 1 << 20, 0);
+
+        pipeline.ingest("docs", chunks(100), (texts, embeddings) -> {
+            for (int i = 0; i < texts.size(); i++) {
+                assertEquals(index(texts.get(i)), (int) embeddings.get(i).vector()[0], texts.get(i));
+            }
+            insert(texts, embeddings);
+        });
+
+        assertEquals(100, insertedTexts.size());
+        assertEquals(new HashSet<>(chunks(100)), new HashSet<>(insertedTexts));
+        insertBatchSizes.forEach(size -> assertTrue(size <= 7));
+    }
+
+    @Test
+    void slowEmbeddingBlocksTheProducer() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(embeddingService.generateBatchEmbeddings(anyList())).thenAnswer(invocation -> {
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return embeddings(invocation.getArgument(0));
+        });
+        pipeline = new IngestionPipeline(embeddingService, 1, 1, 1, 100, 1 << 20, 0);
+        Set<Integer> produced = new HashSet<>();
+        List<String> chunks = new AbstractList<>() {
+            private final List<String> texts = chunks(10);
+
+            @Override
+            public String get(int index) {
+                return texts.get(index);
+            }
+
+            @Override
+            public int size() {
+                return texts.size();
+            }
+
+            @Override
+            public List<String> subList(int fromIndex, int toIndex) {
+                synchronized (produced) {
+                    produced.add(fromIndex);
+                }
+                return texts.subList(fromIndex, toIndex);
+            }
+        };
+
+        CompletableFuture<IngestionPipeline.IngestionStats> run = pipeline.ingestAsync("docs", chunks, this::insert);
+        Thread.sleep(300);
+
+        // One batch in the embedder, one in the queue, one waiting to be queued
+        synchronized (produced) {
+            assertEquals(Set.of(0, 1, 2), produced);
+        }
+        assertFalse(run.isDone());
+
+        release.countDown();
+        assertEquals(10, run.get(5, TimeUnit.SECONDS).chunks());
+        assertEquals(chunks(10), insertedTexts);
+    }
+
+    @Test
+    void embeddingFailureStopsTheRunAndReachesTheCaller() {
+        RuntimeException failure = new RuntimeException("quota exceeded");
+        AtomicInteger calls = new AtomicInteger();
+        when(embeddingService.generateBatchEmbeddings(anyList())).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() == 3) {
+                throw failure;
+            }
+            return embeddings(invocation.getArgument(0));
+        });
+        when(embeddingService.getEmbeddingDimension()).thenReturn(1);
+        pipeline = new IngestionPipeline(embeddingService, 1, 1, 1, 1, 1 << 20, 0);
+
+        RuntimeException thrown = assertThrows(RuntimeException.class,
+                () -> pipeline.ingest("docs", chunks(50), this::insert));
+
+        assertSame(failure, thrown);
+        assertEquals(3, calls.get());
+        assertTrue(insertedTexts.size() <= 2);
+    }
+
+    @Test
+    void insertFailureStopsTheRunAndReachesTheCaller() {
+        stubEmbeddings();
+        pipeline = new IngestionPipeline(embeddingService, 1, 2, 1, 1, 1 << 20, 0);
+        IllegalStateException failure = new IllegalStateException("collection dropped");
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+                () -> pipeline.ingest("docs", chunks(50), (texts, embeddings) -> {
+                    throw failure;
+                }));
+
+        assertSame(failure, thrown);
+        // Producer and embedders stop once they see the failure instead of working through all 50 chunks
+        verify(embeddingService, atMost(10)).generateBatchEmbeddings(anyList());
+    }
+
+    @Test
+    void tokenRateLimitThrottlesEmbedding() {
+        stubEmbeddings();
+        // 40 characters ~ 10 tokens per batch, 50 tokens per second: after the first, each batch waits ~200 ms
+        pipeline = new IngestionPipeline(embeddingService, 1, 4, 4, 100, 1 << 20, 50);
+        List<String> chunks = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            chunks.add(i + "-".repeat(39));
+        }
+
+        long start = System.nanoTime();
+        pipeline.ingest("docs", chunks, this::insert);
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 600);
+        assertEquals(5, insertedTexts.size());
+    }
+
+    private void stubEmbeddings() {
+        when(embeddingService.generateBatchEmbeddings(anyList()))
+                .thenAnswer(invocation -> embeddings(invocation.getArgument(0)));
+        when(embeddingService.getEmbeddingDimension()).thenReturn(1);
+    }
+
+    private void insert(List<String> texts, List<Embedding> embeddings) {
+        assertEquals(texts.size(), embeddings.size());
+        insertedTexts.addAll(texts);
+        insertBatchSizes.add(texts.size());
+    }
+
+    private static List<Embedding> embeddings(List<String> texts) {
+        return texts.stream().map(text -> new Embedding(new float[]{index(text)})).toList();
+    }
+
+    private static int index(String text) {
+        return Integer.parseInt(text.replaceAll("\\D.*", ""));
+    }
+
+    private static List<String> chunks(int count) {
+        List<String> chunks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            chunks.add(i + " chunk");
+        }
+        return chunks;
+    }
+}
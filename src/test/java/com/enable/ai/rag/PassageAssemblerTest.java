@@ -0,0 +1,148 @@
+package com.enable.ai.rag;
+
+import com.enable.ai.rag.vo.Passage;
+import com.enable.ai.rag.vo.RagChunk;
+import com.enable.ai.rag.vo.RetrievalResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PassageAssemblerTest {
+
+    private static final float[] QUERY = {1, 0};
+
+    private final PassageAssembler assembler = new PassageAssembler(3, 0.5f, 5);
+
+    @Test
+    void overlapIsTheLongestSuffixThatIsAPrefix() {
+        assertEquals(5, PassageAssembler.overlap("hello world", "world peace"));
+        assertEquals(3, PassageAssembler.overlap("abcabc", "abcx"));
+        assertEquals(0, PassageAssembler.overlap("hello", "world"));
+        assertEquals(0, PassageAssembler.overlap("", "world"));
+    }
+
+    @Test
+    void overlappingChunksAreStitchedWithTheSharedSpanOnce() {
+        RagChunk first = chunk("a", "doc", 0, "The quick brown fox jumps");
+        RagChunk second = chunk("b", "doc", 3, "fox jumps over the dog");
+
+        // Picked in rank order, the continuation first
+        List<Passage> passages = assembler.stitch(List.of(second, first));
+
+        assertEquals(1, passages.size());
+        assertEquals("The quick brown fox jumps over the dog", passages.get(0).getText());
+        assertEquals(List.of("a", "b"), passages.get(0).getChunkIds());
+    }
+
+    @Test
+    void consecutiveChunksWithoutOverlapAreJoined() {
+        List<Passage> passages = assembler.stitch(List.of(
+                chunk("b", "doc", 1, "Second part."), chunk("a", "doc", 0, "First part.")));
+
+        assertEquals(1, passages.size());
+        assertEquals("First part. Second part.", passages.get(0).getText());
+        assertEquals(List.of("a", "b"), passages.get(0).getChunkIds());
+    }
+
+    @Test
+    void containedChunkIsDropped() {
+        List<Passage> passages = assembler.stitch(List.of(
+                chunk("a", "doc", 0, "alpha beta gamma delta"), chunk("b", "doc", 5, "beta gamma")));
+
+        assertEquals(1, passages.size());
+        assertEquals("alpha beta gamma delta", passages.get(0).getText());
+        assertEquals(List.of("a"), passages.get(0).getChunkIds());
+    }
+
+    @Test
+    void chunksOfDifferentSourcesAreNeverMerged() {
+        List<Passage> passages = assembler.stitch(List.of(
+                chunk("a", "doc1", 0, "shared overlapping text here"),
+                chunk("b", "doc2", 1, "overlapping text here and more"),
+                chunk("c", "doc2", 2, "overlapping text")));
+
+        assertEquals(List.of(List.of("a"), List.of("b")), passages.stream().map(Passage::getChunkIds).toList());
+        assertEquals("shared overlapping text here", passages.get(0).getText());
+    }
+
+    @Test
+    void chunksWithoutADocumentAreOneSourceButNeverConsecutive() {
+        // Empty and null docId are the same source: an overlap is stitched
+        List<Passage> overlapping = assembler.stitch(List.of(
+                chunk("a", "", 0, "tool alpha returns weather"), chunk("b", null, 7, "returns weather for a city")));
+        assertEquals(1, overlapping.size());
+        assertEquals("tool alpha returns weather for a city", overlapping.get(0).getText());
+
+        // Without a document the chunk index means nothing, so adjacent indexes are not joined
+        List<Passage> adjacent = assembler.stitch(List.of(chunk("a", "", 0, "first tool"), chunk("b", "", 1, "second tool")));
+        assertEquals(2, adjacent.size());
+
+        // A chunk with a document is a different source than one without
+        List<Passage> mixed = assembler.stitch(List.of(
+                chunk("a", "", 0, "tool alpha returns weather"), chunk("b", "doc", 1, "returns weather for a city")));
+        assertEquals(2, mixed.size());
+    }
+
+    @Test
+    void mmrWithLambdaOneRanksByRelevanceOnly() {
+        PassageAssembler relevanceOnly = new PassageAssembler(3, 1f, 5);
+
+        List<RagChunk> picked = relevanceOnly.selectByMmr(QUERY, candidates(), 2);
+
+        assertEquals(List.of("exact", "near-duplicate"), ids(picked));
+    }
+
+    @Test
+    void mmrWithLambdaZeroPicksTheLeastRedundant() {
+        PassageAssembler diversityOnly = new PassageAssembler(3, 0f, 5);
+
+        List<RagChunk> picked = diversityOnly.selectByMmr(QUERY, candidates(), 2);
+
+        // Ties on the first pick keep the ranked order; then the chunk least similar to it wins
+        assertEquals(List.of("exact", "different"), ids(picked));
+    }
+
+    @Test
+    void mmrKeepsTheRankedOrderWhenAVectorIsMissing() {
+        List<RagChunk> candidates = candidates();
+        candidates.get(1).setVector(null);
+
+        assertEquals(List.of("exact", "near-duplicate"), ids(assembler.selectByMmr(QUERY, candidates, 2)));
+    }
+
+    @Test
+    void tokensSavedCountsWhatStitchingRemoved() {
+        // Baseline: 32 characters ~ 8 tokens; the contained chunk is dropped, leaving 22 characters ~ 6 tokens
+        List<RagChunk> candidates = List.of(
+                chunk("a", "doc", 0, "alpha beta gamma delta"), chunk("b", "doc", 5, "beta gamma"));
+
+        RetrievalResult result = assembler.assemble(QUERY, candidates, 2);
+
+        assertEquals(2, result.getCandidates());
+        assertEquals(2, result.getSelected());
+        assertEquals(8, result.getBaselineTokens());
+        assertEquals(6, result.getTokens());
+        assertEquals(2, result.getSavedTokens());
+        assertEquals(1, result.getPassages().size());
+    }
+
+    private static List<RagChunk> candidates() {
+        RagChunk exact = chunk("exact", "doc1", 0, "exact");
+        exact.setVector(new float[]{1, 0});
+        RagChunk nearDuplicate = chunk("near-duplicate", "doc2", 0, "near duplicate");
+        nearDuplicate.setVector(new float[]{0.99f, 0.1f});
+        RagChunk different = chunk("different", "doc3", 0, "different");
+        different.setVector(new float[]{0.7f, 0.7f});
+        return List.of(exact, nearDuplicate, different);
+    }
+
+    private static RagChunk chunk(String id, String docId, int chunkIndex, String text) {
+        return new RagChunk(id, docId, chunkIndex, text);
+    }
+
+    private static List<String> ids(List<RagChunk> chunks) {
+        return chunks.stream().map(RagChunk::getId).toList();
+    }
+}
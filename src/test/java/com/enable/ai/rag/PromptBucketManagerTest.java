@@ -0,0 +1,67 @@
+package com.enable.ai.rag;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PromptBucketManagerTest {
+
+    private static final String NAME = "prompts";
+    private static final long FEB_1 = Instant.parse("2024-02-01T00:00:00Z").toEpochMilli();
+    private static final long JAN_1 = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+
+    private final MilvusCollectionManager collectionManager = mock(MilvusCollectionManager.class);
+    // Idle release off, so no background thread touches the mock
+    private final PromptBucketManager manager = new PromptBucketManager(collectionManager, true, 1, 0, 60000, 2);
+
+    @AfterEach
+    void shutdown() {
+        manager.shutdown();
+    }
+
+    @Test
+    void bucketIsTheUtcMonthOfTheTimestamp() {
+        assertEquals("prompts_202401", manager.bucketFor(NAME, FEB_1 - 1));
+        assertEquals("prompts_202402", manager.bucketFor(NAME, FEB_1));
+        // Year rollover
+        assertEquals("prompts_202312", manager.bucketFor(NAME, JAN_1 - 1));
+        assertEquals("prompts_202401", manager.bucketFor(NAME, JAN_1));
+    }
+
+    @Test
+    void bucketStartingExactlyAtTheCutoffHoldsNothingBeforeIt() {
+        assertFalse(manager.mayHoldBefore(NAME, "prompts_202402", FEB_1));
+        assertTrue(manager.mayHoldBefore(NAME, "prompts_202401", FEB_1));
+        // One millisecond later the new month's bucket may hold the prompt stamped at FEB_1
+        assertTrue(manager.mayHoldBefore(NAME, "prompts_202402", FEB_1 + 1));
+        assertFalse(manager.mayHoldBefore(NAME, "prompts_202403", FEB_1 + 1));
+    }
+
+    @Test
+    void cutoffAtTheYearRollover() {
+        assertFalse(manager.mayHoldBefore(NAME, "prompts_202401", JAN_1));
+        assertTrue(manager.mayHoldBefore(NAME, "prompts_202312", JAN_1));
+        assertTrue(manager.mayHoldBefore(NAME, "prompts_202401", JAN_1 + 1));
+    }
+
+    @Test
+    void collectionsThatAreNotBucketsMayHoldAnything() {
+        assertTrue(manager.mayHoldBefore(NAME, NAME, JAN_1));
+        assertTrue(manager.mayHoldBefore(NAME, "prompts_archive", JAN_1));
+        assertTrue(manager.mayHoldBefore(NAME, "other_202402", JAN_1));
+    }
+
+    @Test
+    void searchOrderIsNewestBucketFirstThenTheBaseCollection() {
+        when(collectionManager.listCollections()).thenReturn(List.of(
+                "prompts_202312", "prompts_202402_IX1700000000000", "prompts", "prompts_202401", "other_202403", "prompts_archive"));
+
+        assertEquals(List.of("prompts_202402", "prompts_202401", "prompts_202312", "prompts"),
+                manager.searchOrder(NAME, NAME));
+    }
+}
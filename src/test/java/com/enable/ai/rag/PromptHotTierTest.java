@@ -0,0 +1,92 @@
+package com.enable.ai.rag;
+
+import com.enable.ai.rag.vo.PromptWithScore;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromptHotTierTest {
+
+    private static final float[] QUERY = {1, 0};
+
+    @Test
+    void ringOverwritesTheOldestPrompt() {
+        PromptHotTier tier = new PromptHotTier(true, 4, 1 << 20, 0.8f);
+        for (long t = 1; t <= 6; t++) {
+            record(tier, t);
+        }
+
+        PromptHotTier.HotHits hits = tier.search("prompts", 1, QUERY, 10);
+
+        assertEquals(List.of(3L, 4L, 5L, 6L), sortedTimestamps(hits));
+        assertEquals(3, hits.coveredSince());
+    }
+
+    @Test
+    void removeBeforeAfterWraparoundKeepsOverwritingTheOldestPrompt() {
+        PromptHotTier tier = new PromptHotTier(true, 4, 1 << 20, 0.8f);
+        // Slots hold 5, 6, 3, 4 with the next write going to the third slot
+        for (long t = 1; t <= 6; t++) {
+            record(tier, t);
+        }
+        tier.remove("prompts", 1, 4L);
+        assertEquals(List.of(4L, 5L, 6L), sortedTimestamps(tier.search("prompts", 1, QUERY, 10)));
+
+        // Refills the free slot, then overwrites 4, the oldest remaining prompt
+        record(tier, 7);
+        record(tier, 8);
+
+        PromptHotTier.HotHits hits = tier.search("prompts", 1, QUERY, 10);
+        assertEquals(List.of(5L, 6L, 7L, 8L), sortedTimestamps(hits));
+        assertEquals(5, hits.coveredSince());
+    }
+
+    @Test
+    void searchRanksByCosineSimilarity() {
+        PromptHotTier tier = new PromptHotTier(true, 4, 1 << 20, 0.8f);
+        tier.record("prompts", 1, "far", new float[]{0, 1}, 1);
+        tier.record("prompts", 1, "close", new float[]{3, 1}, 2);
+        tier.record("prompts", 1, "same", new float[]{2, 0}, 3);
+
+        List<PromptWithScore> hits = tier.search("prompts", 1, QUERY, 2).hits();
+
+        assertEquals(List.of("same", "close"), hits.stream().map(PromptWithScore::getPromptText).toList());
+        assertEquals(1f, hits.get(0).getScore(), 1e-5f);
+        assertNull(tier.search("prompts", 2, QUERY, 2));
+    }
+
+    @Test
+    void removeWithoutBoundDropsTheRing() {
+        PromptHotTier tier = new PromptHotTier(true, 4, 1 << 20, 0.8f);
+        record(tier, 1);
+
+        tier.remove("prompts", 1, null);
+
+        assertNull(tier.search("prompts", 1, QUERY, 10));
+    }
+
+    @Test
+    void confidenceNeedsKHitsWithTheKthAboveTheSkipScore() {
+        PromptHotTier tier = new PromptHotTier(true, 4, 1 << 20, 0.8f);
+        List<PromptWithScore> hits = List.of(hit(0.95f), hit(0.7f), hit(0.85f));
+
+        assertTrue(tier.isConfident(hits, 2));
+        assertFalse(tier.isConfident(hits, 3));
+        assertFalse(tier.isConfident(hits, 4));
+        assertFalse(tier.isConfident(hits, 0));
+    }
+
+    private static void record(PromptHotTier tier, long timestamp) {
+        tier.record("prompts", 1, "prompt " + timestamp, new float[]{1, timestamp}, timestamp);
+    }
+
+    private static List<Long> sortedTimestamps(PromptHotTier.HotHits hits) {
+        return hits.hits().stream().map(PromptWithScore::getTimestamp).sorted().toList();
+    }
+
+    private static PromptWithScore hit(float score) {
+        return new PromptWithScore("prompt", 0L, score);
+    }
+}
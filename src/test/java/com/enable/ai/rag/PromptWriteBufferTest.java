@@ -0,0 +1,169 @@
+package com.enable.ai.rag;
+
+import com.enable.ai.rag.PromptWriteBuffer.BufferedPrompt;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromptWriteBufferTest {
+
+    private final List<String> targets = new CopyOnWriteArrayList<>();
+    private final List<List<BufferedPrompt>> batches = new CopyOnWriteArrayList<>();
+
+    @Test
+    void fullBatchIsInsertedWithoutWaitingForTheInterval() throws Exception {
+        try (PromptWriteBuffer buffer = new PromptWriteBuffer(this::record, 100, 3, 60_000)) {
+            List<BufferedPrompt> prompts = List.of(prompt("p", 1, 1), prompt("p", 2, 2), prompt("p", 3, 3));
+            prompts.forEach(buffer::submit);
+
+            CompletableFuture.allOf(prompts.stream().map(BufferedPrompt::future).toArray(CompletableFuture[]::new))
+                    .get(2, TimeUnit.SECONDS);
+
+            assertEquals(List.of(prompts), batches);
+        }
+    }
+
+    @Test
+    void batchIsSplitByTargetCollection() throws Exception {
+        try (PromptWriteBuffer buffer = new PromptWriteBuffer(this::record, 100, 2, 60_000)) {
+            BufferedPrompt first = prompt("p_202401", 1, 1);
+            BufferedPrompt second = prompt("p_202402", 2, 2);
+            buffer.submit(first);
+            buffer.submit(second);
+
+            second.future().get(2, TimeUnit.SECONDS);
+
+            assertEquals(List.of("p_202401", "p_202402"), targets);
+            assertEquals(List.of(List.of(first), List.of(second)), batches);
+        }
+    }
+
+    @Test
+    void partialBatchIsInsertedAfterTheInterval() throws Exception {
+        try (PromptWriteBuffer buffer = new PromptWriteBuffer(this::record, 100, 100, 50)) {
+            BufferedPrompt prompt = prompt("p", 1, 1);
+            buffer.submit(prompt);
+
+            prompt.future().get(2, TimeUnit.SECONDS);
+
+            assertEquals(List.of(List.of(prompt)), batches);
+        }
+    }
+
+    @Test
+    void queuedPromptsAreServedToReadsUntilInserted() throws Exception {
+        Gate gate = new Gate();
+        try (PromptWriteBuffer buffer = new PromptWriteBuffer(gate::insert, 100, 1, 60_000)) {
+            BufferedPrompt prompt = prompt("p", 1, 1);
+            buffer.submit(prompt);
+            gate.awaitEntered();
+
+            assertEquals(List.of(prompt), buffer.pending("p", 1));
+            assertEquals(List.of(), buffer.pending("p", 2));
+
+            gate.open();
+            prompt.future().get(2, TimeUnit.SECONDS);
+            assertEquals(List.of(), buffer.pending("p", 1));
+        }
+    }
+
+    @Test
+    void fullQueueHandsThePromptBackToTheCaller() throws Exception {
+        Gate gate = new Gate();
+        try (PromptWriteBuffer buffer = new PromptWriteBuffer(gate::insert, 1, 1, 60_000)) {
+            buffer.submit(prompt("p", 1, 1));
+            gate.awaitEntered();
+            assertNotNull(buffer.submit(prompt("p", 1, 2)));
+
+            BufferedPrompt rejected = prompt("p", 1, 3);
+            assertNull(buffer.submit(rejected));
+            assertFalse(buffer.pending("p", 1).contains(rejected));
+            gate.open();
+        }
+    }
+
+    @Test
+    void discardDropsOlderPromptsAndWaitsForTheBatchInFlight() throws Exception {
+        Gate gate = new Gate();
+        try (PromptWriteBuffer buffer = new PromptWriteBuffer(gate::insert, 100, 1, 60_000)) {
+            BufferedPrompt inFlight = prompt("p", 1, 1);
+            buffer.submit(inFlight);
+            gate.awaitEntered();
+            BufferedPrompt older = prompt("p", 1, 2);
+            BufferedPrompt newer = prompt("p", 1, 4);
+            buffer.submit(older);
+            buffer.submit(newer);
+
+            CompletableFuture<Void> discard = CompletableFuture.runAsync(() -> buffer.discard("p", 1, 3));
+
+            older.future().get(2, TimeUnit.SECONDS);
+            assertEquals(List.of(newer), buffer.pending("p", 1));
+            Thread.sleep(100);
+            assertFalse(discard.isDone(), "discard must wait for the batch in flight");
+
+            gate.open();
+            discard.get(2, TimeUnit.SECONDS);
+            newer.future().get(2, TimeUnit.SECONDS);
+            assertEquals(List.of(List.of(inFlight), List.of(newer)), gate.batches);
+        }
+    }
+
+    @Test
+    void closeInsertsEverythingQueuedAndRejectsLaterPrompts() {
+        PromptWriteBuffer buffer = new PromptWriteBuffer(this::record, 100, 100, 200);
+        List<BufferedPrompt> prompts = List.of(prompt("p", 1, 1), prompt("p", 2, 2), prompt("q", 1, 3));
+        prompts.forEach(buffer::submit);
+
+        buffer.close();
+
+        prompts.forEach(prompt -> assertTrue(prompt.future().isDone()));
+        assertEquals(3, batches.stream().mapToInt(List::size).sum());
+        assertEquals(0, buffer.size());
+        assertNull(buffer.submit(prompt("p", 1, 4)));
+    }
+
+    private CompletableFuture<Void> record(String target, List<BufferedPrompt> prompts) {
+        targets.add(target);
+        batches.add(List.copyOf(prompts));
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static BufferedPrompt prompt(String target, long userId, long timestamp) {
+        return new BufferedPrompt("p", target, userId, "prompt " + timestamp, new float[]{1}, List.of(1f),
+                timestamp, new CompletableFuture<>());
+    }
+
+    /**
+     * Inserter that holds every batch until opened
+     */
+    private static final class Gate {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch opened = new CountDownLatch(1);
+        private final List<List<BufferedPrompt>> batches = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<Void> insert(String target, List<BufferedPrompt> prompts) {
+            batches.add(List.copyOf(prompts));
+            entered.countDown();
+            try {
+                assertTrue(opened.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+
+        void awaitEntered() throws InterruptedException {
+            assertTrue(entered.await(2, TimeUnit.SECONDS));
+        }
+
+        void open() {
+            opened.countDown();
+        }
+    }
+}
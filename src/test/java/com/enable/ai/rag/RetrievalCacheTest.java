@@ -0,0 +1,86 @@
+package com.enable.ai.rag;
+
+import com.enable.ai.rag.vo.RagChunk;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetrievalCacheTest {
+
+    private static final float[] VECTOR = {1, 0, 0};
+
+    @Test
+    void exactHitIgnoresCaseWhitespaceAndTrailingPunctuation() {
+        RetrievalCache cache = new RetrievalCache(true, 1 << 20, 600, 0.95f);
+        RetrievalCache.Lookup lookup = cache.begin("docs", "What is  RAG?", null);
+        cache.put(lookup, VECTOR, 2, null, chunks("a", "b"));
+
+        List<RagChunk> hit = cache.getExact("docs", "what is rag", 2, null);
+
+        assertNotNull(hit);
+        assertEquals(List.of("a", "b"), hit.stream().map(RagChunk::getId).toList());
+        // Stored with k = 2, so a larger k is a miss
+        assertNull(cache.getExact("docs", "what is rag", 3, null));
+        assertNull(cache.getExact("other", "what is rag", 2, null));
+    }
+
+    @Test
+    void resultOfASearchThatRacedWithAMutationIsNotStored() {
+        RetrievalCache cache = new RetrievalCache(true, 1 << 20, 600, 0.95f);
+        RetrievalCache.Lookup lookup = cache.begin("docs", "query", null);
+        cache.onCollectionMutated(new CollectionMutatedEvent("docs", false));
+        cache.put(lookup, VECTOR, 1, null, chunks("a"));
+
+        assertNull(cache.getExact("docs", "query", 1, null));
+
+        // A lookup begun after the mutation is stored, and the next mutation drops it
+        cache.put(cache.begin("docs", "query", null), VECTOR, 1, null, chunks("a"));
+        assertNotNull(cache.getExact("docs", "query", 1, null));
+        cache.invalidate("docs");
+        assertNull(cache.getExact("docs", "query", 1, null));
+    }
+
+    @Test
+    void entriesExpireAfterTheTtl() throws InterruptedException {
+        RetrievalCache cache = new RetrievalCache(true, 1 << 20, 1, 0.95f);
+        cache.put(cache.begin("docs", "query", null), VECTOR, 1, null, chunks("a"));
+        assertNotNull(cache.getExact("docs", "query", 1, null));
+
+        Thread.sleep(1100);
+
+        assertNull(cache.getExact("docs", "query", 1, null));
+        assertNull(cache.getSimilar("docs", VECTOR, 1, null));
+        assertEquals(0, cache.stats().get("docs").entries());
+    }
+
+    @Test
+    void semanticHitNeedsSimilarityAboveTheThreshold() {
+        RetrievalCache cache = new RetrievalCache(true, 1 << 20, 600, 0.95f);
+        cache.put(cache.begin("docs", "how do I reset my password", null), VECTOR, 1, null, chunks("a"));
+
+        // cos = 0.995 and 0.707 against the cached query vector
+        List<RagChunk> hit = cache.getSimilar("docs", new float[]{10, 1, 0}, 1, null);
+        assertNotNull(hit);
+        assertEquals("a", hit.get(0).getId());
+        assertNull(cache.getSimilar("docs", new float[]{1, 1, 0}, 1, null));
+
+        RetrievalCache.Stats stats = cache.stats().get("docs");
+        assertEquals(1, stats.semanticHits());
+        assertEquals(1, stats.misses());
+    }
+
+    @Test
+    void emptyResultsAreNotCached() {
+        RetrievalCache cache = new RetrievalCache(true, 1 << 20, 600, 0.95f);
+        cache.put(cache.begin("docs", "query", null), VECTOR, 1, null, List.of());
+
+        assertNull(cache.getExact("docs", "query", 1, null));
+    }
+
+    private static List<RagChunk> chunks(String... ids) {
+        return Arrays.stream(ids).map(id -> new RagChunk(id, "text " + id)).toList();
+    }
+}
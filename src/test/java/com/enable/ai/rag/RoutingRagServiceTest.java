@@ -0,0 +1,102 @@
+package com.enable.ai.rag;
+
+import com.enable.ai.embedding.Embedding;
+import com.enable.ai.rag.vo.RagChunk;
+import com.enable.ai.service.EmbeddingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RoutingRagServiceTest {
+
+    private static final String COLLECTION = "tools";
+
+    private final MilvusRagService milvusRagService = mock(MilvusRagService.class);
+    private final HnswRagService hnswRagService = mock(HnswRagService.class);
+    private final EmbeddingService embeddingService = mock(EmbeddingService.class);
+    private final RetrievalCache retrievalCache = mock(RetrievalCache.class);
+    private final HybridRetriever hybridRetriever = mock(HybridRetriever.class);
+    private final RoutingRagService service = new RoutingRagService(milvusRagService, hnswRagService, embeddingService,
+            retrievalCache, hybridRetriever, mock(PassageAssembler.class), new ScoreCutoff(0.05f),
+            mock(ApplicationEventPublisher.class), List.of(COLLECTION), 2);
+
+    @AfterEach
+    void shutdown() {
+        service.shutdown();
+    }
+
+    @Test
+    void writesDoNotWaitForThePromotionCopy() throws Exception {
+        RagChunk stored = new RagChunk("a", "", 0, "stored");
+        Embedding vector = new Embedding(new float[]{1});
+        when(hnswRagService.size(COLLECTION)).thenReturn(2);
+        when(hnswRagService.exportCollection(COLLECTION)).thenReturn(List.of(Map.entry(stored, vector)));
+        CountDownLatch copying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            copying.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return null;
+        }).when(milvusRagService).insertEmbeddedChunks(eq(COLLECTION), anyList(), anyList());
+
+        service.addChunkToCollection(COLLECTION, new RagChunk("b", "", 0, "over the limit"));
+        assertTrue(copying.await(5, TimeUnit.SECONDS));
+        // While the copy runs, writes go to Milvus without waiting and reads stay local
+        service.addChunkToCollection(COLLECTION, new RagChunk("c", "", 0, "during the copy"));
+        verify(milvusRagService, times(2)).addChunkToCollection(eq(COLLECTION), any());
+        verify(hnswRagService, never()).addChunkToCollection(anyString(), any());
+        assertTrue(service.isLocal(COLLECTION));
+
+        release.countDown();
+        verify(hnswRagService, timeout(5000)).deleteCollection(COLLECTION);
+        assertFalse(service.isLocal(COLLECTION));
+        verify(milvusRagService).insertEmbeddedChunks(COLLECTION, List.of(stored), List.of(vector));
+    }
+
+    @Test
+    void failedPromotionKeepsTheCollectionLocalAndIsRetried() {
+        when(hnswRagService.size(COLLECTION)).thenReturn(2);
+        when(hnswRagService.exportCollection(COLLECTION)).thenReturn(List.of());
+        doThrow(new RuntimeException("milvus unavailable"))
+                .doNothing()
+                .when(milvusRagService).insertEmbeddedChunks(eq(COLLECTION), anyList(), anyList());
+
+        service.addChunkToCollection(COLLECTION, new RagChunk("a", "", 0, "first"));
+        verify(milvusRagService, timeout(5000)).insertEmbeddedChunks(eq(COLLECTION), anyList(), anyList());
+        verify(hnswRagService, after(200).never()).deleteCollection(COLLECTION);
+        assertTrue(service.isLocal(COLLECTION));
+
+        service.addChunkToCollection(COLLECTION, new RagChunk("b", "", 0, "second"));
+        verify(hnswRagService, timeout(5000)).deleteCollection(COLLECTION);
+        assertFalse(service.isLocal(COLLECTION));
+    }
+
+    @Test
+    void batchRetrievalGoesThroughTheCacheAndHybridSearch() {
+        Embedding first = new Embedding(new float[]{1, 0});
+        Embedding second = new Embedding(new float[]{0, 1});
+        when(milvusRagService.collectionExists(COLLECTION)).thenReturn(true);
+        when(embeddingService.generateBatchEmbeddings(List.of("first", "second"))).thenReturn(List.of(first, second));
+        RagChunk cached = new RagChunk("cached", "", 0, "cached");
+        when(retrievalCache.getExact(eq(COLLECTION), eq("first"), eq(3), any())).thenReturn(List.of(cached));
+        RagChunk searched = new RagChunk("searched", "", 0, "searched");
+        when(hybridRetriever.retrieveAsync(eq(COLLECTION), eq("second"), same(second), eq(3), any(), same(milvusRagService), eq(false)))
+                .thenReturn(CompletableFuture.completedFuture(List.of(searched)));
+
+        List<List<RagChunk>> results = service.retrieveTopKChunksBatch(COLLECTION, List.of("first", "second"), 3);
+
+        assertEquals(List.of(List.of(cached), List.of(searched)), results);
+        verify(embeddingService, times(1)).generateBatchEmbeddings(anyList());
+        verify(milvusRagService, never()).retrieveTopKChunksBatch(anyString(), anyList(), anyInt());
+    }
+}
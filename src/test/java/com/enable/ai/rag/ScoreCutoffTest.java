@@ -0,0 +1,61 @@
+package com.enable.ai.rag;
+
+import com.enable.ai.rag.vo.RagChunk;
+import com.enable.ai.rag.vo.RetrieveOptions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScoreCutoffTest {
+
+    private final ScoreCutoff cutoff = new ScoreCutoff(0.05f);
+
+    @Test
+    void adaptiveCutStopsAtTheLargestGap() {
+        // Gaps 0.02, 0.3, 0.1: the cut falls between 0.88 and 0.58
+        assertEquals(List.of(0.9f, 0.88f), adaptive(0.9f, 0.88f, 0.58f, 0.48f));
+    }
+
+    @Test
+    void inputOrderIsPreserved() {
+        assertEquals(List.of(0.88f, 0.9f), adaptive(0.2f, 0.88f, 0.1f, 0.9f));
+    }
+
+    @Test
+    void evenlySpreadScoresAreNotCut() {
+        List<Float> scores = List.of(0.9f, 0.87f, 0.84f, 0.81f);
+
+        assertEquals(scores, cutoff.apply(scores, Function.identity(), null, true));
+    }
+
+    @Test
+    void minScoreIsAppliedBeforeTheGapSearch() {
+        // Without the minimum the largest gap would be 0.6 -> 0.1 and keep all three high scores
+        List<Float> scores = List.of(0.9f, 0.85f, 0.6f, 0.1f);
+
+        assertEquals(List.of(0.9f, 0.85f, 0.6f), cutoff.apply(scores, Function.identity(), 0.5f, false));
+        assertEquals(List.of(0.9f, 0.85f), cutoff.apply(scores, Function.identity(), 0.5f, true));
+    }
+
+    @Test
+    void chunksWithoutAScoreAreKept() {
+        List<RagChunk> chunks = List.of(chunk("a", 0.9f), chunk("b", null), chunk("c", 0.3f));
+
+        List<RagChunk> kept = cutoff.apply(chunks, new RetrieveOptions(null, null, false, null, true));
+
+        assertEquals(List.of("a", "b"), kept.stream().map(RagChunk::getId).toList());
+        assertSame(chunks, cutoff.apply(chunks, RetrieveOptions.defaults()));
+    }
+
+    private List<Float> adaptive(Float... scores) {
+        return cutoff.apply(Arrays.asList(scores), Function.identity(), null, true);
+    }
+
+    private static RagChunk chunk(String id, Float score) {
+        return new RagChunk(id, "", 0, "text " + id, score, null);
+    }
+}
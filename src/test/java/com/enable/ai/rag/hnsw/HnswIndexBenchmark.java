@@ -0,0 +1,88 @@
+package com.enable.ai.rag.hnsw;
+
+import com.enable.ai.embedding.ScoredIndex;
+import com.enable.ai.embedding.SimilarityMetric;
+import com.enable.ai.embedding.VectorKernels;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Recall and latency benchmark for {@link HnswIndex} against an exact brute-force scan.
+ * It is a plain main class rather than a JUnit test; run it against the test classpath.
+ */
+public class HnswIndexBenchmark {
+
+    private static final int DIMENSION = 1536;
+    private static final int ROWS = 5_000;
+    private static final int QUERIES = 200;
+    private static final int K = 10;
+    private static final int CLUSTERS = 64;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        HnswIndex index = new HnswIndex(DIMENSION, 16, 200, 64);
+        float[] matrix = new float[ROWS * DIMENSION];
+        // Real embeddings are clustered by topic; uniform random vectors are a worst case for HNSW
+        float[][] centroids = new float[CLUSTERS][];
+        for (int c = 0; c < CLUSTERS; c++) {
+            centroids[c] = randomVector(random);
+        }
+
+        long start = System.nanoTime();
+        for (int row = 0; row < ROWS; row++) {
+            float[] vector = VectorKernels.normalize(nearby(centroids[random.nextInt(CLUSTERS)], random));
+            System.arraycopy(vector, 0, matrix, row * DIMENSION, DIMENSION);
+            index.add(String.valueOf(row), "chunk " + row, vector);
+        }
+        System.out.printf("Kernel: %s, built %,d nodes in %,d ms%n", VectorKernels.kernelName(), ROWS, (System.nanoTime() - start) / 1_000_000);
+
+        float[][] queries = new float[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = nearby(centroids[random.nextInt(CLUSTERS)], random);
+        }
+
+        int matched = 0;
+        long hnswNanos = 0;
+        long exactNanos = 0;
+        for (float[] query : queries) {
+            start = System.nanoTime();
+            List<HnswIndex.SearchHit> hits = index.search(query, K);
+            hnswNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            List<ScoredIndex> exact = VectorKernels.topK(query, matrix, ROWS, K, SimilarityMetric.COSINE);
+            exactNanos += System.nanoTime() - start;
+
+            Set<Integer> expected = new HashSet<>();
+            exact.forEach(scored -> expected.add(scored.index()));
+            for (HnswIndex.SearchHit hit : hits) {
+                if (expected.contains(hit.nodeId())) {
+                    matched++;
+                }
+            }
+        }
+
+        System.out.printf("recall@%d:          %.3f%n", K, matched / (double) (QUERIES * K));
+        System.out.printf("hnsw search:        %,d us/op%n", hnswNanos / QUERIES / 1000);
+        System.out.printf("brute-force search: %,d us/op%n", exactNanos / QUERIES / 1000);
+    }
+
+    private static float[] nearby(float[] centroid, Random random) {
+        float[] vector = randomVector(random);
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = centroid[i] + 0.5f * vector[i];
+        }
+        return vector;
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,156 @@
+package com.enable.ai.rag.hnsw;
+
+import com.enable.ai.embedding.ScoredIndex;
+import com.enable.ai.embedding.SimilarityMetric;
+import com.enable.ai.embedding.VectorKernels;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HnswIndexTest {
+
+    private static final int DIMENSION = 32;
+    private static final int ROWS = 2_000;
+    private static final int QUERIES = 100;
+    private static final int K = 10;
+
+    private final Random random = new Random(42);
+    private final float[][] centroids = new float[16][];
+
+    @Test
+    void recallAgainstBruteForce() {
+        float[][] vectors = vectors();
+        HnswIndex index = build(vectors);
+
+        assertTrue(recall(index, vectors, new boolean[ROWS]) >= 0.95);
+    }
+
+    @Test
+    void recallAgainstBruteForceAfterDeletes() {
+        float[][] vectors = vectors();
+        HnswIndex index = build(vectors);
+        boolean[] removed = new boolean[ROWS];
+        // Remove a third of the nodes; tombstones stay in the graph for navigation
+        for (int row = 0; row < ROWS; row++) {
+            if (random.nextInt(3) == 0) {
+                removed[row] = index.remove(String.valueOf(row));
+            }
+        }
+
+        assertTrue(recall(index, vectors, removed) >= 0.9);
+    }
+
+    @Test
+    void removedNodesAreNeverReturnedUntilReAdded() {
+        float[][] vectors = vectors();
+        HnswIndex index = build(vectors);
+        for (int row = 0; row < 50; row++) {
+            index.remove(String.valueOf(row));
+        }
+        assertFalse(index.remove("0"));
+        assertEquals(ROWS - 50, index.liveSize());
+
+        // Each removed vector queried with itself: its own node would be the top hit
+        for (int row = 0; row < 50; row++) {
+            List<HnswIndex.SearchHit> hits = index.search(vectors[row], K);
+            assertEquals(K, hits.size());
+            hits.forEach(hit -> assertTrue(Integer.parseInt(hit.id()) >= 50, hit.id()));
+        }
+
+        index.add("7", "chunk 7", vectors[7]);
+        assertTrue(index.contains("7"));
+        assertEquals("7", index.search(vectors[7], 1).get(0).id());
+    }
+
+    @Test
+    void hitsAreOrderedByDescendingCosine() {
+        float[][] vectors = vectors();
+        HnswIndex index = build(vectors);
+        float[] query = nearby(centroids[0]);
+
+        List<HnswIndex.SearchHit> hits = index.search(query, K);
+
+        for (int i = 1; i < hits.size(); i++) {
+            assertTrue(hits.get(i - 1).score() >= hits.get(i).score());
+        }
+        assertEquals(VectorKernels.cosine(query, vectors[Integer.parseInt(hits.get(0).id())]), hits.get(0).score(), 1e-5f);
+    }
+
+    /**
+     * Mean share of the exact top k among live vectors that the index returns
+     */
+    private double recall(HnswIndex index, float[][] vectors, boolean[] removed) {
+        List<Integer> live = new ArrayList<>();
+        for (int row = 0; row < ROWS; row++) {
+            if (!removed[row]) {
+                live.add(row);
+            }
+        }
+        float[] matrix = new float[live.size() * DIMENSION];
+        for (int i = 0; i < live.size(); i++) {
+            System.arraycopy(vectors[live.get(i)], 0, matrix, i * DIMENSION, DIMENSION);
+        }
+
+        int matched = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            float[] query = nearby(centroids[random.nextInt(centroids.length)]);
+            Set<String> expected = new HashSet<>();
+            for (ScoredIndex scored : VectorKernels.topK(query, matrix, live.size(), K, SimilarityMetric.COSINE)) {
+                expected.add(String.valueOf(live.get(scored.index())));
+            }
+            List<HnswIndex.SearchHit> hits = index.search(query, K);
+            assertEquals(K, hits.size());
+            for (HnswIndex.SearchHit hit : hits) {
+                assertFalse(removed[Integer.parseInt(hit.id())], "removed node " + hit.id() + " returned");
+                if (expected.contains(hit.id())) {
+                    matched++;
+                }
+            }
+        }
+        return matched / (double) (QUERIES * K);
+    }
+
+    private HnswIndex build(float[][] vectors) {
+        HnswIndex index = new HnswIndex(DIMENSION, 16, 200, 64);
+        for (int row = 0; row < vectors.length; row++) {
+            index.add(String.valueOf(row), "chunk " + row, vectors[row]);
+        }
+        return index;
+    }
+
+    /**
+     * Vectors clustered around a few centroids, like embeddings of related topics
+     */
+    private float[][] vectors() {
+        for (int c = 0; c < centroids.length; c++) {
+            centroids[c] = randomVector();
+        }
+        float[][] vectors = new float[ROWS][];
+        for (int row = 0; row < ROWS; row++) {
+            vectors[row] = nearby(centroids[random.nextInt(centroids.length)]);
+        }
+        return vectors;
+    }
+
+    private float[] nearby(float[] centroid) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = centroid[i] + (float) random.nextGaussian() * 0.5f;
+        }
+        return vector;
+    }
+
+    private float[] randomVector() {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
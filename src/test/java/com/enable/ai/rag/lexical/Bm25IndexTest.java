@@ -0,0 +1,86 @@
+package com.enable.ai.rag.lexical;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Bm25IndexTest {
+
+    @Test
+    void rareTermOutranksCommonTerms() {
+        Bm25Index index = new Bm25Index(1.2f, 0.75f);
+        index.add("a", "the weather service returns the weather");
+        index.add("b", "the service returns ERR-404 when the city is unknown");
+        index.add("c", "the service caches the forecast");
+
+        List<Bm25Index.Hit> hits = index.search("service ERR-404", 3);
+
+        assertEquals(3, hits.size());
+        assertEquals("b", hits.get(0).id());
+        assertTrue(hits.get(0).score() > hits.get(1).score());
+    }
+
+    @Test
+    void identifierPartsMatch() {
+        Bm25Index index = new Bm25Index(1.2f, 0.75f);
+        index.add("tool", "name=getWeatherForecast, description=forecast for a city");
+        index.add("other", "name=sendEmail, description=send a message");
+
+        assertEquals(List.of("tool"), ids(index.search("weather", 5)));
+        assertEquals(List.of("tool"), ids(index.search("getweatherforecast", 5)));
+    }
+
+    @Test
+    void duplicateAddIsANoOp() {
+        Bm25Index index = new Bm25Index(1.2f, 0.75f);
+
+        assertTrue(index.add("a", "alpha"));
+        assertFalse(index.add("a", "alpha"));
+        assertEquals(1, index.size());
+        assertEquals(1, index.search("alpha", 5).size());
+    }
+
+    @Test
+    void removedChunksAreNotReturned() {
+        Bm25Index index = new Bm25Index(1.2f, 0.75f);
+        index.add("a", "alpha beta");
+        index.add("b", "alpha gamma");
+
+        assertTrue(index.remove("a"));
+        assertFalse(index.remove("a"));
+
+        assertEquals(List.of("b"), ids(index.search("alpha", 5)));
+        assertEquals(List.of(), index.search("beta", 5));
+        assertFalse(index.contains("a"));
+
+        // A removed id can be indexed again
+        assertTrue(index.add("a", "alpha beta"));
+        assertEquals(List.of("a"), ids(index.search("beta", 5)));
+    }
+
+    @Test
+    void searchAfterCompactionOnlySeesLiveChunks() {
+        Bm25Index index = new Bm25Index(1.2f, 0.75f);
+        for (int i = 0; i < 2000; i++) {
+            index.add("c" + i, "common term" + i + (i % 2 == 0 ? " even" : " odd"));
+        }
+        // Crosses the compaction threshold (1024 removals, a quarter of the live chunks)
+        for (int i = 0; i < 1500; i++) {
+            index.remove("c" + i);
+        }
+
+        assertEquals(500, index.size());
+        assertEquals("c1700", index.search("term1700", 5).get(0).id());
+        // "term10" also matches every live chunk through its "term" part, but never a removed one
+        List<Bm25Index.Hit> hits = index.search("term10", 2000);
+        assertEquals(500, hits.size());
+        hits.forEach(hit -> assertTrue(Integer.parseInt(hit.id().substring(1)) >= 1500, hit.id()));
+        assertEquals(250, index.search("even", 2000).size());
+    }
+
+    private static List<String> ids(List<Bm25Index.Hit> hits) {
+        return hits.stream().map(Bm25Index.Hit::id).toList();
+    }
+}
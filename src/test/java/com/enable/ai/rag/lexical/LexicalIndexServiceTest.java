@@ -0,0 +1,51 @@
+package com.enable.ai.rag.lexical;
+
+import com.enable.ai.rag.ChunksChangedEvent;
+import com.enable.ai.rag.CollectionMutatedEvent;
+import com.enable.ai.rag.MilvusRagService;
+import com.enable.ai.rag.vo.RagChunk;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class LexicalIndexServiceTest {
+
+    private final LexicalIndexService service = new LexicalIndexService(mock(MilvusRagService.class), 1.2f, 0.75f, 100, 2);
+
+    @AfterEach
+    void shutdown() {
+        service.shutdown();
+    }
+
+    @Test
+    void collectionOverTheRowCapFallsBackToVectorOnly() {
+        service.onChunksChanged(new ChunksChangedEvent("tools", List.of(chunk("a"), chunk("b")), List.of()));
+        assertEquals(1, service.search("tools", "a", 5, false).size());
+
+        service.onChunksChanged(new ChunksChangedEvent("tools", List.of(chunk("c")), List.of()));
+
+        assertNull(service.search("tools", "a", 5, false));
+        // Later writes do not bring it back
+        service.onChunksChanged(new ChunksChangedEvent("tools", List.of(), List.of("b", "c")));
+        assertNull(service.search("tools", "a", 5, false));
+    }
+
+    @Test
+    void deletingTheCollectionResetsTheCap() {
+        service.onChunksChanged(new ChunksChangedEvent("tools", List.of(chunk("a"), chunk("b"), chunk("c")), List.of()));
+        assertNull(service.search("tools", "a", 5, false));
+
+        service.onCollectionMutated(new CollectionMutatedEvent("tools", true));
+        service.onChunksChanged(new ChunksChangedEvent("tools", List.of(chunk("a")), List.of()));
+
+        assertEquals(1, service.search("tools", "a", 5, false).size());
+    }
+
+    private static RagChunk chunk(String id) {
+        return new RagChunk(id, "chunk " + id);
+    }
+}
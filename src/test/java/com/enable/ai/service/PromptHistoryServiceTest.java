@@ -0,0 +1,113 @@
+package com.enable.ai.service;
+
+import com.enable.ai.util.Constants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PromptHistoryServiceTest {
+
+    private static final String COLLECTION = Constants.USER_PROMPTS_COLLECTION_NAME;
+    private static final long USER = 7;
+
+    // The user's stored prompts by timestamp
+    private final NavigableMap<Long, String> stored = new ConcurrentSkipListMap<>();
+    private final AtomicReference<String> compressionPrompt = new AtomicReference<>();
+    private final PromptRagService promptRagService = mock(PromptRagService.class);
+    private final PromptHistoryService service = new PromptHistoryService();
+
+    @AfterEach
+    void shutdown() {
+        service.shutdown();
+    }
+
+    @Test
+    void promptStillEmbeddingWhenCompactionStartsIsSummarizedBeforeItIsDeleted() throws InterruptedException {
+        stored.put(1L, "old question");
+        stored.put(2L, "old answer");
+        // An add stamped at 3 is still embedding: it only lands once the compaction waits for it
+        when(promptRagService.awaitPendingAdds(COLLECTION, USER)).thenAnswer(invocation -> {
+            stored.put(3L, "late prompt");
+            return 4L;
+        });
+        start();
+
+        service.scheduleCompaction(USER);
+        awaitCompactions(1);
+
+        assertTrue(compressionPrompt.get().contains("old question"));
+        assertTrue(compressionPrompt.get().contains("late prompt"), "a deleted prompt was never summarized");
+        assertEquals(List.of("summary"), new ArrayList<>(stored.values()));
+
+        InOrder order = inOrder(promptRagService);
+        order.verify(promptRagService).awaitPendingAdds(COLLECTION, USER);
+        order.verify(promptRagService).findAllUserPromptsStrict(COLLECTION, USER);
+        order.verify(promptRagService).addUserPromptToCollection(COLLECTION, USER, "summary");
+        order.verify(promptRagService).deleteUserPrompts(COLLECTION, USER, 4L, null);
+    }
+
+    @Test
+    void failedReadDeletesNothing() throws InterruptedException {
+        stored.put(1L, "old question");
+        when(promptRagService.awaitPendingAdds(COLLECTION, USER)).thenReturn(2L);
+        start();
+        when(promptRagService.findAllUserPromptsStrict(COLLECTION, USER)).thenThrow(new RuntimeException("bucket unavailable"));
+
+        service.scheduleCompaction(USER);
+        awaitCompactions(1);
+
+        assertEquals(1, service.stats().failed());
+        assertEquals(List.of("old question"), new ArrayList<>(stored.values()));
+        verify(promptRagService, never()).deleteUserPrompts(anyString(), anyLong(), any(), any());
+    }
+
+    private void start() {
+        when(promptRagService.findAllUserPromptsStrict(COLLECTION, USER))
+                .thenAnswer(invocation -> new ArrayList<>(stored.values()));
+        doAnswer(invocation -> stored.put(10L, invocation.getArgument(2)))
+                .when(promptRagService).addUserPromptToCollection(eq(COLLECTION), eq(USER), anyString());
+        when(promptRagService.deleteUserPrompts(eq(COLLECTION), eq(USER), anyLong(), isNull())).thenAnswer(invocation -> {
+            NavigableMap<Long, String> deleted = stored.headMap(invocation.getArgument(2), false);
+            long count = deleted.size();
+            deleted.clear();
+            return count;
+        });
+
+        ChatClient chatClient = mock(ChatClient.class);
+        ChatClient.ChatClientRequestSpec request = mock(ChatClient.ChatClientRequestSpec.class, RETURNS_DEEP_STUBS);
+        when(request.call().content()).thenReturn("summary");
+        when(chatClient.prompt(anyString())).thenAnswer(invocation -> {
+            compressionPrompt.set(invocation.getArgument(0));
+            return request;
+        });
+
+        ReflectionTestUtils.setField(service, "chatClient", chatClient);
+        ReflectionTestUtils.setField(service, "promptRagService", promptRagService);
+        ReflectionTestUtils.setField(service, "maxConcurrent", 1);
+        ReflectionTestUtils.setField(service, "maxSummaries", 100);
+        service.init();
+    }
+
+    private void awaitCompactions(int count) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            PromptHistoryService.CompactionStats stats = service.stats();
+            if (stats.completed() + stats.failed() >= count && stats.running() == 0) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        fail("compaction did not finish");
+    }
+}
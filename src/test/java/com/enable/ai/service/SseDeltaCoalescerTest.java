@@ -0,0 +1,99 @@
+package com.enable.ai.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SseDeltaCoalescerTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final BlockingQueue<String> sent = new LinkedBlockingQueue<>();
+
+    @AfterEach
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void firstDeltaIsSentImmediatelyAndTheRestIsCoalesced() {
+        SseDeltaCoalescer coalescer = new SseDeltaCoalescer(sent::add, scheduler, 5, 60_000);
+
+        coalescer.append("Hi");
+        assertEquals(List.of("Hi"), drain());
+
+        coalescer.append(" th");
+        coalescer.append("e");
+        assertEquals(List.of(), drain());
+        // Reaching max-chars sends everything pending, including the overshoot
+        coalescer.append("re!");
+        assertEquals(List.of(" there!"), drain());
+    }
+
+    @Test
+    void pendingTextIsSentAfterTheInterval() throws InterruptedException {
+        SseDeltaCoalescer coalescer = new SseDeltaCoalescer(sent::add, scheduler, 1000, 50);
+        coalescer.append("a");
+        assertEquals("a", sent.poll());
+
+        coalescer.append("b");
+        coalescer.append("c");
+
+        assertEquals("bc", sent.poll(2, TimeUnit.SECONDS));
+        assertNull(sent.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void closeSendsTheTailAndCancelsTheTimer() throws InterruptedException {
+        SseDeltaCoalescer coalescer = new SseDeltaCoalescer(sent::add, scheduler, 1000, 100);
+        coalescer.append("a");
+        coalescer.append("b");
+
+        coalescer.close();
+
+        assertEquals(List.of("a", "b"), drain());
+        assertNull(sent.poll(300, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void zeroIntervalSendsEveryDelta() {
+        SseDeltaCoalescer coalescer = new SseDeltaCoalescer(sent::add, scheduler, 1000, 0);
+
+        coalescer.append("a");
+        coalescer.append("");
+        coalescer.append(null);
+        coalescer.append("b");
+
+        assertEquals(List.of("a", "b"), drain());
+    }
+
+    @Test
+    void failingSinkDoesNotStopTheStream() {
+        List<String> delivered = new ArrayList<>();
+        SseDeltaCoalescer coalescer = new SseDeltaCoalescer(delta -> {
+            if (delta.equals("boom")) {
+                throw new IllegalStateException("client gone");
+            }
+            delivered.add(delta);
+        }, scheduler, 1, 60_000);
+
+        coalescer.append("boom");
+        coalescer.append("ok");
+
+        assertEquals(List.of("ok"), delivered);
+    }
+
+    private List<String> drain() {
+        List<String> deltas = new ArrayList<>();
+        sent.drainTo(deltas);
+        return deltas;
+    }
+}
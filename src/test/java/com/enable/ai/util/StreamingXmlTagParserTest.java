@@ -0,0 +1,138 @@
+package com.enable.ai.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingXmlTagParserTest {
+
+    private static final String[] TAGS = {"thought", "action", "final_answer"};
+
+    @Test
+    void tagsSplitAcrossChunks() {
+        String text = "x<thought>think <b>a</b></thought>y<action>call</action>";
+        List<String> events = new ArrayList<>();
+        StreamingXmlTagParser parser = new StreamingXmlTagParser(recorder(events), TAGS);
+        for (int i = 0; i < text.length(); i++) {
+            parser.feed(text.substring(i, i + 1));
+        }
+        parser.finish();
+
+        assertEquals("think <b>a</b>", parser.content("thought"));
+        assertEquals("call", parser.content("action"));
+        assertEquals(List.of("open thought", "close thought=think <b>a</b>", "open action", "close action=call"), events);
+    }
+
+    @Test
+    void tagsWithAttributes() {
+        StreamingXmlTagParser parser = StreamingXmlTagParser.parse(
+                "<action name=\"search\" id='1'>query</action>", TAGS);
+
+        assertEquals("query", parser.content("action"));
+    }
+
+    @Test
+    void selfClosingTags() {
+        List<String> events = new ArrayList<>();
+        StreamingXmlTagParser parser = new StreamingXmlTagParser(recorder(events), TAGS);
+        parser.feed("<thought/>after<action kind=\"none\" />");
+        parser.finish();
+
+        assertEquals("", parser.content("thought"));
+        assertEquals("", parser.content("action"));
+        assertEquals(List.of("open thought", "close thought=", "open action", "close action="), events);
+    }
+
+    @Test
+    void duplicateTagsReportEveryOccurrenceAndKeepTheFirst() {
+        List<String> events = new ArrayList<>();
+        StreamingXmlTagParser parser = new StreamingXmlTagParser(recorder(events), TAGS);
+        parser.feed("<thought>one</thought><thought>two</thought>");
+        parser.finish();
+
+        assertEquals("one", parser.content("thought"));
+        assertEquals(List.of("open thought", "close thought=one", "open thought", "close thought=two"), events);
+    }
+
+    @Test
+    void nestedOpenOfTheSameTagIsText() {
+        StreamingXmlTagParser parser = StreamingXmlTagParser.parse("<thought>a<thought>b</thought>", TAGS);
+
+        assertEquals("a<thought>b", parser.content("thought"));
+    }
+
+    @Test
+    void unopenedAndUnknownTagsAreText() {
+        StreamingXmlTagParser parser = StreamingXmlTagParser.parse(
+                "</action><thought>x</action><other>y</other></thought>", TAGS);
+
+        assertEquals("x</action><other>y</other>", parser.content("thought"));
+        assertNull(parser.content("action"));
+        assertFalse(parser.isOpened("action"));
+    }
+
+    @Test
+    void unclosedTagHasNoContent() {
+        StreamingXmlTagParser parser = StreamingXmlTagParser.parse("<final_answer>partial", TAGS);
+
+        assertTrue(parser.isOpened("final_answer"));
+        assertFalse(parser.isClosed("final_answer"));
+        assertNull(parser.content("final_answer"));
+    }
+
+    @Test
+    void overlongTokenIsText() {
+        String longToken = "<" + "a".repeat(300) + ">";
+        StreamingXmlTagParser parser = StreamingXmlTagParser.parse(
+                "<thought>" + longToken + "<action>run</action></thought>", TAGS);
+
+        assertEquals(longToken + "<action>run</action>", parser.content("thought"));
+        assertEquals("run", parser.content("action"));
+    }
+
+    @Test
+    void lessThanInsideTokenRestartsIt() {
+        StreamingXmlTagParser parser = StreamingXmlTagParser.parse("<thought>1 <<action>go</action></thought>", TAGS);
+
+        assertEquals("go", parser.content("action"));
+        assertEquals("1 <<action>go</action>", parser.content("thought"));
+    }
+
+    @Test
+    void stopAfterReportsDoneOnceTheTagCloses() {
+        StreamingXmlTagParser parser = new StreamingXmlTagParser(null, TAGS).stopAfter("final_answer");
+        parser.feed("<thought>t</thought><final_answer>ans");
+        assertFalse(parser.isDone());
+        parser.feed("wer</final_ans");
+        assertFalse(parser.isDone());
+        parser.feed("wer>trailing");
+        assertTrue(parser.isDone());
+        parser.finish();
+
+        assertEquals("answer", parser.content("final_answer"));
+    }
+
+    @Test
+    void withoutStopAfterNeverDone() {
+        StreamingXmlTagParser parser = StreamingXmlTagParser.parse("<final_answer>a</final_answer>", TAGS);
+
+        assertFalse(parser.isDone());
+    }
+
+    private static StreamingXmlTagParser.Listener recorder(List<String> events) {
+        return new StreamingXmlTagParser.Listener() {
+            @Override
+            public void onOpen(String tag) {
+                events.add("open " + tag);
+            }
+
+            @Override
+            public void onClose(String tag, String content) {
+                events.add("close " + tag + "=" + content);
+            }
+        };
+    }
+}
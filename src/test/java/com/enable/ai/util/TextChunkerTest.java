@@ -0,0 +1,41 @@
+package com.enable.ai.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextChunkerTest {
+
+    @Test
+    void lastWindowEndingAtTextLengthTerminates() {
+        // Windows 0-10, 5-15, 10-20, 15-25: the last one ends exactly at the end of the text
+        String text = "abcdefghijklmnopqrstuvwxy";
+
+        List<String> chunks = assertTimeoutPreemptively(Duration.ofSeconds(2),
+                () -> TextChunker.chunkText(text, 10, 5));
+
+        assertEquals(List.of("abcdefghij", "fghijklmno", "klmnopqrst", "pqrstuvwxy"), chunks);
+    }
+
+    @Test
+    void overlapWithSentenceBreaksCoversTheWholeText() {
+        String text = "One two three. Four five six. Seven eight nine. Ten eleven.";
+
+        List<String> chunks = assertTimeoutPreemptively(Duration.ofSeconds(2),
+                () -> TextChunker.chunkText(text, 20, 5));
+
+        assertFalse(chunks.isEmpty());
+        assertTrue(chunks.get(0).startsWith("One"));
+        assertTrue(chunks.get(chunks.size() - 1).endsWith("eleven."));
+        chunks.forEach(chunk -> assertTrue(chunk.length() <= 20, chunk));
+    }
+
+    @Test
+    void shortTextIsOneChunk() {
+        assertEquals(List.of("short"), TextChunker.chunkText("  short  ", 10, 5));
+        assertEquals(List.of(), TextChunker.chunkText("   ", 10, 5));
+    }
+}